@@ -27,6 +27,11 @@ public class PreprocessedEiderMessage
     private final String packageNameGen;
     private final boolean fixedLength;
     private final boolean buildHeader;
+    private final int timestampHops;
+    private final boolean sequenceLock;
+    private final boolean delta;
+    private final List<String> projectFrom;
+    private final ByteOrderType byteOrder;
 
     private final List<PreprocessedEiderProperty> propertyList;
 
@@ -34,7 +39,9 @@ public class PreprocessedEiderMessage
         final short eiderId, final short eiderGroupId,
         final String packageNameGen,
         final boolean fixedLength,
-        final boolean buildHeader, final List<PreprocessedEiderProperty> propertyList)
+        final boolean buildHeader, final int timestampHops, final boolean sequenceLock,
+        final boolean delta, final List<String> projectFrom, final ByteOrderType byteOrder,
+        final List<PreprocessedEiderProperty> propertyList)
     {
         this.name = name;
         this.classNameInput = classNameInput;
@@ -45,6 +52,21 @@ public class PreprocessedEiderMessage
 
         this.propertyList = propertyList;
         this.buildHeader = buildHeader;
+        this.timestampHops = timestampHops;
+        this.sequenceLock = sequenceLock;
+        this.delta = delta;
+        this.projectFrom = projectFrom;
+        this.byteOrder = byteOrder;
+    }
+
+    /**
+     * The wire protocol id for a message without one given explicitly, derived from the qualified name of its
+     * definition so that it does not depend on the order in which definitions are processed. Two names can give the
+     * same id, so ids should be given explicitly where messages are compiled separately.
+     */
+    public static short defaultEiderId(final String qualifiedName)
+    {
+        return (short)(1 + Math.floorMod(qualifiedName.hashCode(), Short.MAX_VALUE));
     }
 
     public String getName()
@@ -87,4 +109,35 @@ public class PreprocessedEiderMessage
     {
         return buildHeader;
     }
+
+    public int getTimestampHops()
+    {
+        return timestampHops;
+    }
+
+    public boolean isSequenceLock()
+    {
+        return sequenceLock;
+    }
+
+    public boolean isDelta()
+    {
+        return delta;
+    }
+
+    /**
+     * The names of the specs this spec is projected from, by copying the fields they have in common.
+     */
+    public List<String> getProjectFrom()
+    {
+        return projectFrom;
+    }
+
+    /**
+     * The byte order of the fields of this spec; the header and other framing are always little endian.
+     */
+    public ByteOrderType getByteOrder()
+    {
+        return byteOrder;
+    }
 }
@@ -24,15 +24,18 @@ public class PreprocessedEiderRepeatableRecord
     private final String classNameInput;
     private final String packageNameGen;
     private final List<PreprocessedEiderProperty> propertyList;
+    private final boolean columnar;
 
     public PreprocessedEiderRepeatableRecord(final String name, final String classNameInput,
         final String packageNameGen,
-        final List<PreprocessedEiderProperty> propertyList)
+        final List<PreprocessedEiderProperty> propertyList,
+        final boolean columnar)
     {
         this.name = name;
         this.classNameInput = classNameInput;
         this.packageNameGen = packageNameGen;
         this.propertyList = propertyList;
+        this.columnar = columnar;
     }
 
     public String getName()
@@ -54,4 +57,9 @@ public class PreprocessedEiderRepeatableRecord
     {
         return propertyList;
     }
+
+    public boolean isColumnar()
+    {
+        return columnar;
+    }
 }
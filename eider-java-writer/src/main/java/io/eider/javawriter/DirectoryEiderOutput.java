@@ -0,0 +1,50 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter;
+
+import com.squareup.javapoet.JavaFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Writes generated source files below a source root directory, for use outside of javac. Files are written
+ * independently, so one output can be shared by threads generating different specs.
+ */
+public final class DirectoryEiderOutput implements EiderOutput
+{
+    private final Path directory;
+
+    public DirectoryEiderOutput(final Path directory)
+    {
+        this.directory = directory;
+    }
+
+    @Override
+    public void write(final JavaFile javaFile)
+    {
+        try
+        {
+            javaFile.writeTo(directory);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException("unable to write " + javaFile.typeSpec.name + " to " + directory, e);
+        }
+    }
+}
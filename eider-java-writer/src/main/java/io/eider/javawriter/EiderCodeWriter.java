@@ -19,12 +19,43 @@ package io.eider.javawriter;
 import io.eider.internals.PreprocessedEiderMessage;
 import io.eider.internals.PreprocessedEiderRepeatableRecord;
 
-import javax.annotation.processing.ProcessingEnvironment;
 import java.util.List;
 
 public interface EiderCodeWriter
 {
-    void generate(ProcessingEnvironment pe,
-                  List<PreprocessedEiderRepeatableRecord> records,
-                  List<PreprocessedEiderMessage> objects);
+    /**
+     * Generates the code for a single repeatable record.
+     */
+    void generateRecord(EiderOutput output,
+                        PreprocessedEiderRepeatableRecord rec);
+
+    /**
+     * Generates the code for a single spec; the records given must include every record the spec refers to.
+     */
+    void generateSpec(EiderOutput output,
+                      List<PreprocessedEiderRepeatableRecord> records,
+                      PreprocessedEiderMessage object);
+
+    /**
+     * Generates the code which depends on every spec, such as the dispatcher; the records given must include every
+     * record the specs refer to.
+     */
+    void generateAggregates(EiderOutput output,
+                            List<PreprocessedEiderRepeatableRecord> records,
+                            List<PreprocessedEiderMessage> objects);
+
+    default void generate(EiderOutput output,
+                          List<PreprocessedEiderRepeatableRecord> records,
+                          List<PreprocessedEiderMessage> objects)
+    {
+        for (final PreprocessedEiderRepeatableRecord rec : records)
+        {
+            generateRecord(output, rec);
+        }
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            generateSpec(output, records, object);
+        }
+        generateAggregates(output, records, objects);
+    }
 }
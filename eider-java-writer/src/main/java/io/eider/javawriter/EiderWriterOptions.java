@@ -0,0 +1,54 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter;
+
+import java.util.Map;
+
+public final class EiderWriterOptions
+{
+    /**
+     * When true, a JMH benchmark is generated alongside every spec.
+     */
+    public static final String BENCHMARKS = "eider.benchmarks";
+
+    /**
+     * When true, generated flyweights and the dispatcher update off-heap counters in io.eider.util.EiderCounters.
+     */
+    public static final String COUNTERS = "eider.counters";
+
+    /**
+     * When true, io.eider.util.EiderBroadcastPublisher and EiderBroadcastSubscriber are generated to fan messages
+     * out over an Agrona broadcast buffer.
+     */
+    public static final String BROADCAST = "eider.broadcast";
+
+    /**
+     * When true, the column kernels of columnar records also use the incubating Vector API when its module is
+     * present, which requires compiling with --add-modules jdk.incubator.vector.
+     */
+    public static final String VECTOR = "eider.vector";
+
+    private EiderWriterOptions()
+    {
+        //not used
+    }
+
+    public static boolean isEnabled(final Map<String, String> options, final String option)
+    {
+        return Boolean.parseBoolean(options.get(option));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter;
+
+import com.squareup.javapoet.JavaFile;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes generated source files through an annotation processor's {@link Filer}, passing the originating elements
+ * so that Gradle can tell which generated files belong to which annotated types when compiling incrementally. Files
+ * which cannot be written are reported as compile errors.
+ */
+public final class FilerEiderOutput implements EiderOutput
+{
+    private final Filer filer;
+    private final Messager messager;
+    private final Element[] originatingElements;
+
+    public FilerEiderOutput(final Filer filer, final Messager messager, final Element... originatingElements)
+    {
+        this.filer = filer;
+        this.messager = messager;
+        this.originatingElements = originatingElements;
+    }
+
+    @Override
+    public void write(final JavaFile javaFile)
+    {
+        final String name = javaFile.packageName + "." + javaFile.typeSpec.name;
+        try
+        { // write the file
+            final JavaFileObject source = filer.createSourceFile(name, originatingElements);
+            final Writer writer = source.openWriter();
+            javaFile.writeTo(writer);
+            writer.flush();
+            writer.close();
+        }
+        catch (final IOException e)
+        {
+            final String message = "Could not write " + name + ": " + e.getMessage();
+            if (originatingElements.length == 0)
+            {
+                messager.printMessage(Diagnostic.Kind.ERROR, message);
+            }
+            else
+            {
+                messager.printMessage(Diagnostic.Kind.ERROR, message, originatingElements[0]);
+            }
+        }
+    }
+}
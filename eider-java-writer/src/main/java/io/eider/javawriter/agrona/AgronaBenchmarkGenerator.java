@@ -0,0 +1,231 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class AgronaBenchmarkGenerator
+{
+    private static final String JMH = "org.openjdk.jmh.annotations";
+    private static final ClassName BENCHMARK = ClassName.get(JMH, "Benchmark");
+    private static final ClassName SETUP = ClassName.get(JMH, "Setup");
+    private static final ClassName PARAM = ClassName.get(JMH, "Param");
+    private static final ClassName BLACKHOLE = ClassName.get("org.openjdk.jmh.infra", "Blackhole");
+    private static final String WRITER = "writer";
+    private static final String READER = "reader";
+    private static final String BLACKHOLE_PARAM = "blackhole";
+    private static final String RECORD_COUNTS = "{\"1\", \"16\", \"256\"}";
+
+    private final AgronaSpecGenerator specGenerator;
+
+    public AgronaBenchmarkGenerator(final AgronaSpecGenerator specGenerator)
+    {
+        this.specGenerator = specGenerator;
+    }
+
+    public void generateBenchmarks(final EiderOutput output, final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+
+        final TypeSpec.Builder builder = benchmarkClass(object.getName() + "Benchmark", flyweight)
+            .addMethod(MethodSpec.methodBuilder("setup").addAnnotation(SETUP).addModifiers(Modifier.PUBLIC)
+                .addStatement("buffer = new $T($T.allocateDirect(" + bufferLength(object, "0") + "))",
+                    UnsafeBuffer.class, ByteBuffer.class)
+                .addStatement("wrapAndEncode()")
+                .build())
+            .addMethod(wrapAndEncode(object, flyweight))
+            .addMethod(decodeAllFields(object));
+
+        if (object.mustBuildHeader())
+        {
+            builder.addMethod(MethodSpec.methodBuilder("validateHeader").addAnnotation(BENCHMARK)
+                .addModifiers(Modifier.PUBLIC).returns(boolean.class)
+                .addStatement("reader.setUnderlyingBuffer(buffer, 0)")
+                .addStatement("return reader.validateHeader()")
+                .build());
+        }
+
+        output.write(JavaFile.builder(object.getPackageNameGen(), builder.build()).build());
+
+        if (specGenerator.hasAtLeastOneRecord(object))
+        {
+            for (final PreprocessedEiderRepeatableRecord rec : specGenerator.listRecords(object, records))
+            {
+                generateRecordBenchmark(output, object, flyweight, rec);
+            }
+        }
+    }
+
+    private void generateRecordBenchmark(final EiderOutput output, final PreprocessedEiderMessage object,
+        final ClassName flyweight, final PreprocessedEiderRepeatableRecord rec)
+    {
+        final ClassName recordName = ClassName.get(rec.getPackageNameGen(), rec.getName());
+
+        final MethodSpec.Builder writeRecords = MethodSpec.methodBuilder("write" + rec.getName() + "Records")
+            .addAnnotation(BENCHMARK).addModifiers(Modifier.PUBLIC).returns(flyweight)
+            .addStatement(wrap(object))
+            .addStatement("writer.reset" + rec.getName() + "Size(recordCount)")
+            .beginControlFlow("for (int i = 0; i < recordCount; i++)")
+            .addStatement("final $T item = writer.get" + rec.getName() + "(i)", recordName);
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            writeRecords.addStatement("item.write" + Util.upperFirst(property.getName()) + "(" +
+                sampleValue(property) + ")");
+        }
+        writeRecords.endControlFlow().addStatement("return writer");
+
+        final MethodSpec.Builder iterateRecords = MethodSpec.methodBuilder("iterate" + rec.getName() + "Records")
+            .addAnnotation(BENCHMARK).addModifiers(Modifier.PUBLIC)
+            .addParameter(BLACKHOLE, BLACKHOLE_PARAM, Modifier.FINAL)
+            .addStatement("reader.setUnderlyingBuffer(buffer, 0)")
+            .addStatement("final int count = reader.read" + rec.getName() + "Size()")
+            .beginControlFlow("for (int i = 0; i < count; i++)")
+            .addStatement("final $T item = reader.get" + rec.getName() + "(i)", recordName);
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            iterateRecords.addStatement("blackhole.consume(item.read" + Util.upperFirst(property.getName()) + "())");
+        }
+        iterateRecords.endControlFlow();
+
+        final TypeSpec.Builder builder = benchmarkClass(object.getName() + rec.getName() + "Benchmark", flyweight)
+            .addField(FieldSpec.builder(int.class, "recordCount").addModifiers(Modifier.PUBLIC)
+                .addAnnotation(AnnotationSpec.builder(PARAM).addMember("value", RECORD_COUNTS).build())
+                .addJavadoc("The number of " + rec.getName() + " records written per message.").build())
+            .addMethod(MethodSpec.methodBuilder("setup").addAnnotation(SETUP).addModifiers(Modifier.PUBLIC)
+                .addStatement("buffer = new $T($T.allocateDirect(" + bufferLength(object, "recordCount") + "))",
+                    UnsafeBuffer.class, ByteBuffer.class)
+                .addStatement("write" + rec.getName() + "Records()")
+                .build())
+            .addMethod(writeRecords.build())
+            .addMethod(iterateRecords.build());
+
+        output.write(JavaFile.builder(object.getPackageNameGen(), builder.build()).build());
+    }
+
+    private TypeSpec.Builder benchmarkClass(final String name, final ClassName flyweight)
+    {
+        return TypeSpec.classBuilder(name).addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Generated JMH benchmark for {@link $T}.", flyweight)
+            .addAnnotation(AnnotationSpec.builder(ClassName.get(JMH, "State"))
+                .addMember("value", "$T.Thread", ClassName.get(JMH, "Scope")).build())
+            .addAnnotation(AnnotationSpec.builder(ClassName.get(JMH, "BenchmarkMode"))
+                .addMember("value", "$T.AverageTime", ClassName.get(JMH, "Mode")).build())
+            .addAnnotation(AnnotationSpec.builder(ClassName.get(JMH, "OutputTimeUnit"))
+                .addMember("value", "$T.NANOSECONDS", ClassName.get("java.util.concurrent", "TimeUnit")).build())
+            .addAnnotation(AnnotationSpec.builder(ClassName.get(JMH, "Fork")).addMember("value", "1").build())
+            .addAnnotation(AnnotationSpec.builder(ClassName.get(JMH, "Warmup"))
+                .addMember("iterations", "3").addMember("time", "1").build())
+            .addAnnotation(AnnotationSpec.builder(ClassName.get(JMH, "Measurement"))
+                .addMember("iterations", "5").addMember("time", "1").build())
+            .addField(FieldSpec.builder(flyweight, WRITER).addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T()", flyweight).build())
+            .addField(FieldSpec.builder(flyweight, READER).addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T()", flyweight).build())
+            .addField(FieldSpec.builder(UnsafeBuffer.class, Constants.BUFFER).addModifiers(Modifier.PRIVATE)
+                .build());
+    }
+
+    private MethodSpec wrapAndEncode(final PreprocessedEiderMessage object, final ClassName flyweight)
+    {
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder("wrapAndEncode").addAnnotation(BENCHMARK)
+            .addModifiers(Modifier.PUBLIC).returns(flyweight)
+            .addStatement(wrap(object));
+
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                break;
+            }
+            builder.addStatement("writer.write" + Util.upperFirst(property.getName()) + "(" +
+                sampleValue(property) + ")");
+        }
+        return builder.addStatement("return writer").build();
+    }
+
+    private MethodSpec decodeAllFields(final PreprocessedEiderMessage object)
+    {
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder("decodeAllFields").addAnnotation(BENCHMARK)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(BLACKHOLE, BLACKHOLE_PARAM, Modifier.FINAL)
+            .addStatement("reader.setUnderlyingBuffer(buffer, 0)");
+
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                break;
+            }
+            builder.addStatement("blackhole.consume(reader.read" + Util.upperFirst(property.getName()) + "())");
+        }
+        return builder.build();
+    }
+
+    private String wrap(final PreprocessedEiderMessage object)
+    {
+        if (object.mustBuildHeader())
+        {
+            return "writer.setBufferWriteHeader(buffer, 0)";
+        }
+        return "writer.setUnderlyingBuffer(buffer, 0)";
+    }
+
+    private String bufferLength(final PreprocessedEiderMessage object, final String recordCount)
+    {
+        if (specGenerator.hasAtLeastOneRecord(object))
+        {
+            return "writer.precomputeBufferLength(" + recordCount + ")";
+        }
+        return object.getName() + ".BUFFER_LENGTH";
+    }
+
+    private String sampleValue(final PreprocessedEiderProperty property)
+    {
+        switch (property.getType())
+        {
+            case BOOLEAN:
+                return "true";
+            case SHORT:
+                return "(short)42";
+            case LONG:
+                return "42L";
+            case DOUBLE:
+                return "42.0d";
+            case FIXED_STRING:
+                final int maxLength = Util.byteLength(property.getType(), property.getAnnotations());
+                return "\"" + "eiderwire".substring(0, Math.min(maxLength, "eiderwire".length())) + "\"";
+            default:
+                return "42";
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.broadcast.BroadcastBufferDescriptor;
+import org.agrona.concurrent.broadcast.BroadcastReceiver;
+import org.agrona.concurrent.broadcast.BroadcastTransmitter;
+
+import javax.lang.model.element.Modifier;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Generates a publisher and subscriber for fanning Eider messages out to many consumers over an Agrona broadcast
+ * buffer, which may be in a memory mapped file shared between processes.
+ */
+public class AgronaBroadcastGenerator
+{
+    static final String PUBLISHER = "EiderBroadcastPublisher";
+    static final String SUBSCRIBER = "EiderBroadcastSubscriber";
+    private static final String LAP_HANDLER = "LapHandler";
+    private static final String BROADCAST_BUFFER = "broadcastBuffer";
+    private static final String NOTHING_CLAIMED = "NOTHING_CLAIMED";
+
+    private final String packageName;
+
+    public AgronaBroadcastGenerator(final String packageName)
+    {
+        this.packageName = packageName;
+    }
+
+    public void generateBroadcast(final EiderOutput output, final List<PreprocessedEiderMessage> objects)
+    {
+        output.write(JavaFile.builder(packageName, publisher(objects)).build());
+        output.write(JavaFile.builder(packageName, subscriber()).build());
+    }
+
+    private TypeSpec publisher(final List<PreprocessedEiderMessage> objects)
+    {
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(PUBLISHER)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Publishes Eider messages to every {@link " + SUBSCRIBER + "} of a broadcast buffer. Each " +
+                "message is encoded once, in place, into the flyweight returned by a claim method, and copied into " +
+                "the broadcast buffer by {@link #publish()}. Only a single thread may publish.")
+            .addField(FieldSpec.builder(int.class, "MSG_TYPE_ID")
+                .addJavadoc("The Agrona message type id used for every Eider message; the Eider header identifies " +
+                    "the message.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL).initializer("1").build())
+            .addField(FieldSpec.builder(int.class, NOTHING_CLAIMED)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("Integer.MIN_VALUE").build())
+            .addField(FieldSpec.builder(BroadcastTransmitter.class, "transmitter")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(FieldSpec.builder(UnsafeBuffer.class, "encodeBuffer")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(FieldSpec.builder(int.class, "claimedProtocolId")
+                .addModifiers(Modifier.PRIVATE).initializer(NOTHING_CLAIMED).build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Creates a publisher over a broadcast buffer, which must be a power of two in length " +
+                    "plus the broadcast trailer.")
+                .addParameter(AtomicBuffer.class, BROADCAST_BUFFER, Modifier.FINAL)
+                .addStatement("transmitter = new $T(broadcastBuffer)", BroadcastTransmitter.class)
+                .addStatement("encodeBuffer = new $T($T.allocateDirect(transmitter.maxMsgLength()))",
+                    UnsafeBuffer.class, ByteBuffer.class)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("mapNewFile")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(UnsafeBuffer.class)
+                .addJavadoc("Creates a memory mapped broadcast buffer for subscribers in other processes, with the " +
+                    "given power of two capacity.")
+                .addParameter(File.class, "file", Modifier.FINAL)
+                .addParameter(int.class, "capacity", Modifier.FINAL)
+                .addStatement("return new $T($T.mapNewFile(file, capacity + $T.TRAILER_LENGTH))",
+                    UnsafeBuffer.class, IoUtil.class, BroadcastBufferDescriptor.class)
+                .build());
+
+        final MethodSpec.Builder publish = MethodSpec.methodBuilder("publish").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Publishes the message encoded into the last claimed flyweight.")
+            .addStatement("final int length")
+            .beginControlFlow("switch (claimedProtocolId)");
+
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            if (!object.mustBuildHeader())
+            {
+                continue;
+            }
+
+            final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+            final String field = Util.lowerFirst(object.getName());
+
+            builder.addField(FieldSpec.builder(flyweight, field)
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).initializer("new $T()", flyweight).build());
+
+            builder.addMethod(MethodSpec.methodBuilder("claim" + object.getName())
+                .addModifiers(Modifier.PUBLIC).returns(flyweight)
+                .addJavadoc("Returns a flyweight with its header written, to encode a " + object.getName() +
+                    " into before calling publish. Valid until the next claim.")
+                .addStatement(field + ".setBufferWriteHeader(encodeBuffer, 0)")
+                .addStatement("claimedProtocolId = $T.WIRE_PROTOCOL_ID", flyweight)
+                .addStatement("return " + field)
+                .build());
+
+            publish.addCode("case $T.WIRE_PROTOCOL_ID:\n", flyweight)
+                .addStatement("length = " + field + ".contentLength()")
+                .addStatement("break");
+        }
+
+        publish.addCode("default:\n")
+            .addStatement("throw new IllegalStateException(\"no message claimed\")")
+            .endControlFlow()
+            .addStatement("claimedProtocolId = " + NOTHING_CLAIMED)
+            .addStatement("transmitter.transmit(MSG_TYPE_ID, encodeBuffer, 0, length)");
+
+        return builder.addMethod(publish.build()).build();
+    }
+
+    private TypeSpec subscriber()
+    {
+        final ClassName listener = ClassName.get(packageName, AgronaDispatcherGenerator.LISTENER);
+        final ClassName dispatcher = ClassName.get(packageName, AgronaDispatcherGenerator.DISPATCHER);
+        final ClassName lapHandler = ClassName.get(packageName, SUBSCRIBER, LAP_HANDLER);
+
+        final TypeSpec lapHandlerType = TypeSpec.interfaceBuilder(LAP_HANDLER)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addAnnotation(FunctionalInterface.class)
+            .addJavadoc("Called when the subscriber fell so far behind that the publisher overwrote messages it had " +
+                "not yet received; those messages are lost.")
+            .addMethod(MethodSpec.methodBuilder("onLapped").addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .addParameter(long.class, "lappedCount", Modifier.FINAL).build())
+            .build();
+
+        return TypeSpec.classBuilder(SUBSCRIBER)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Receives Eider messages from a broadcast buffer and passes them to an {@link " +
+                AgronaDispatcherGenerator.LISTENER + "} through a dispatcher. Each subscriber keeps its own " +
+                "position, so any number may read the same buffer; one that falls behind is told through its " +
+                "{@link " + LAP_HANDLER + "} and skips ahead rather than slowing the publisher.")
+            .addType(lapHandlerType)
+            .addField(FieldSpec.builder(BroadcastReceiver.class, "receiver")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(FieldSpec.builder(UnsafeBuffer.class, "copyBuffer")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(FieldSpec.builder(dispatcher, "dispatcher")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(FieldSpec.builder(lapHandler, "lapHandler")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(FieldSpec.builder(long.class, "lappedCount")
+                .addModifiers(Modifier.PRIVATE).build())
+            .addField(FieldSpec.builder(long.class, "receiverLappedCount")
+                .addModifiers(Modifier.PRIVATE).build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Creates a subscriber which receives from the current position of the publisher.")
+                .addParameter(AtomicBuffer.class, BROADCAST_BUFFER, Modifier.FINAL)
+                .addParameter(listener, "listener", Modifier.FINAL)
+                .addParameter(lapHandler, "lapHandler", Modifier.FINAL)
+                .addStatement("receiver = new $T(broadcastBuffer)", BroadcastReceiver.class)
+                .addStatement("copyBuffer = new $T($T.allocateDirect(receiver.capacity()))", UnsafeBuffer.class,
+                    ByteBuffer.class)
+                .addStatement("dispatcher = new $T(listener)", dispatcher)
+                .addStatement("this.lapHandler = lapHandler")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("mapExistingFile")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(UnsafeBuffer.class)
+                .addJavadoc("Maps a broadcast buffer created by {@link " + PUBLISHER + "#mapNewFile}.")
+                .addParameter(File.class, "file", Modifier.FINAL)
+                .addStatement("return new $T($T.mapExistingFile(file, \"eider broadcast\"))", UnsafeBuffer.class,
+                    IoUtil.class)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("receive").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addJavadoc("Receives and dispatches up to the given number of messages, returning the number " +
+                    "dispatched.")
+                .addParameter(int.class, "limit", Modifier.FINAL)
+                .addStatement("int received = 0")
+                .beginControlFlow("while (received < limit && receiver.receiveNext())")
+                .beginControlFlow("if (receiver.lappedCount() != receiverLappedCount)")
+                .addStatement("receiverLappedCount = receiver.lappedCount()")
+                .addStatement("lapped()")
+                .endControlFlow()
+                .beginControlFlow("if (receiver.typeId() != " + PUBLISHER + ".MSG_TYPE_ID)")
+                .addStatement("continue")
+                .endControlFlow()
+                .addComment("copied out so the publisher cannot overwrite the message while it is decoded")
+                .addStatement("copyBuffer.putBytes(0, receiver.buffer(), receiver.offset(), receiver.length())")
+                .beginControlFlow("if (!receiver.validate())")
+                .addStatement("lapped()")
+                .addStatement("continue")
+                .endControlFlow()
+                .beginControlFlow("if (dispatcher.dispatch(copyBuffer, 0))")
+                .addStatement("received++")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return received")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("lappedCount").addModifiers(Modifier.PUBLIC).returns(long.class)
+                .addJavadoc("The number of times this subscriber has been lapped by the publisher.")
+                .addStatement("return lappedCount")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("lapped").addModifiers(Modifier.PRIVATE)
+                .addStatement("lappedCount++")
+                .addStatement("lapHandler.onLapped(lappedCount)")
+                .build())
+            .build();
+    }
+}
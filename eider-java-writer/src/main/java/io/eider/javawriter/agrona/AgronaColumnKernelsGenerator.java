@@ -0,0 +1,412 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates sum, min, max and count kernels over the columns of columnar records. The kernels read the column in
+ * place with a scalar loop; with the vector option they also use the incubating Vector API when its module is
+ * present, copying the column a block at a time into a small array which vectors load from, as the Vector API
+ * cannot load from off-heap memory without the preview foreign memory API in Java 21.
+ */
+public class AgronaColumnKernelsGenerator
+{
+    static final String KERNELS = "EiderColumnKernels";
+    static final String VECTOR_KERNELS = "EiderVectorKernels";
+    private static final String VECTOR_PACKAGE = "jdk.incubator.vector";
+    private static final String COMPARISON = "Comparison";
+    private static final String COUNT = "count";
+    private static final String VALUE = "value";
+    private static final ClassName BYTE_VECTOR = ClassName.get(VECTOR_PACKAGE, "ByteVector");
+    private static final ClassName LONG_VECTOR = ClassName.get(VECTOR_PACKAGE, "LongVector");
+    private static final ClassName VECTOR_OPERATORS = ClassName.get(VECTOR_PACKAGE, "VectorOperators");
+    private static final ClassName VECTOR_SPECIES = ClassName.get(VECTOR_PACKAGE, "VectorSpecies");
+
+    private final String packageName;
+    private final ClassName comparison;
+
+    public AgronaColumnKernelsGenerator(final String packageName)
+    {
+        this.packageName = packageName;
+        this.comparison = ClassName.get(packageName, AgronaFilterGenerator.COMPARISON);
+    }
+
+    public ClassName kernels()
+    {
+        return ClassName.get(packageName, KERNELS);
+    }
+
+    public ClassName comparison()
+    {
+        return comparison;
+    }
+
+    /**
+     * The name the kernels use for columns of the type, or null if there are no kernels for it.
+     */
+    public static String kernelType(final EiderPropertyType type)
+    {
+        switch (type)
+        {
+            case LONG:
+                return "Long";
+            case INT:
+                return "Int";
+            case SHORT:
+                return "Short";
+            case DOUBLE:
+                return "Double";
+            default:
+                return null;
+        }
+    }
+
+    public void generateColumnKernels(final EiderOutput output, final List<PreprocessedEiderRepeatableRecord> records,
+        final boolean vector)
+    {
+        if (records.stream().noneMatch(PreprocessedEiderRepeatableRecord::isColumnar))
+        {
+            return;
+        }
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(KERNELS)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Sums, minimums, maximums and counts of the values of a column which compare with a " +
+                "constant, read from the buffer without decoding a record. Columns are count little endian values " +
+                "one after another from the offset, as columnar records store them. Sums of integers are longs, " +
+                "which may overflow. Holds a scratch block, so is not thread safe.");
+
+        if (vector)
+        {
+            builder.addField(FieldSpec.builder(boolean.class, "VECTOR_MODULE")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addJavadoc("The Vector API is only used when its module was added to the JVM.")
+                    .initializer("ModuleLayer.boot().findModule(\"" + VECTOR_PACKAGE + "\").isPresent()").build())
+                .addField(FieldSpec.builder(ClassName.get(packageName, VECTOR_KERNELS), "vector")
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                    .addJavadoc("Kernels which use the Vector API if its module was added to the JVM, with " +
+                        "{@code --add-modules " + VECTOR_PACKAGE + "}, and scalar loops otherwise.")
+                    .addStatement("this(true)").build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                    .addJavadoc("@param vectorize false to use the scalar loops even if the Vector API is present.")
+                    .addParameter(boolean.class, "vectorize", Modifier.FINAL)
+                    .addStatement("vector = vectorize && VECTOR_MODULE ? new " + VECTOR_KERNELS + "() : null")
+                    .build())
+                .addMethod(MethodSpec.methodBuilder("isVectorized").addModifiers(Modifier.PUBLIC)
+                    .returns(boolean.class)
+                    .addStatement("return vector != null").build())
+                .addMethod(MethodSpec.methodBuilder("vectorized").addModifiers(Modifier.PRIVATE)
+                    .returns(int.class)
+                    .addJavadoc("The number of the count values the vector kernels take, leaving the rest to the " +
+                        "scalar loops.")
+                    .addParameter(int.class, COUNT, Modifier.FINAL)
+                    .addParameter(int.class, "width", Modifier.FINAL)
+                    .addStatement("return vector == null ? 0 : vector.vectorizable(count, width)").build());
+        }
+        else
+        {
+            builder.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                    .addJavadoc("Kernels which use scalar loops, as the vector option was not set.").build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                    .addJavadoc("@param vectorize ignored, as the vector option was not set.")
+                    .addParameter(boolean.class, "vectorize", Modifier.FINAL).build())
+                .addMethod(MethodSpec.methodBuilder("isVectorized").addModifiers(Modifier.PUBLIC)
+                    .returns(boolean.class)
+                    .addStatement("return false").build());
+        }
+
+        for (final EiderPropertyType type : new EiderPropertyType[]{EiderPropertyType.LONG, EiderPropertyType.INT,
+            EiderPropertyType.SHORT, EiderPropertyType.DOUBLE})
+        {
+            builder.addMethods(scalarKernels(type, vector));
+        }
+        output.write(JavaFile.builder(packageName, builder.build()).build());
+
+        if (vector)
+        {
+            generateVectorKernels(output);
+        }
+    }
+
+    /**
+     * The primitive type of a column's values; the flyweights read doubles boxed, which the kernels must not.
+     */
+    static Class<?> valueType(final EiderPropertyType type)
+    {
+        return type == EiderPropertyType.DOUBLE ? double.class : Util.fromType(type);
+    }
+
+    private static Class<?> sumType(final EiderPropertyType type)
+    {
+        return type == EiderPropertyType.DOUBLE ? double.class : long.class;
+    }
+
+    private static String width(final EiderPropertyType type)
+    {
+        return type == EiderPropertyType.INT ? "Integer.BYTES" : kernelType(type) + ".BYTES";
+    }
+
+    private static String identity(final EiderPropertyType type, final boolean min)
+    {
+        if (type == EiderPropertyType.DOUBLE)
+        {
+            return min ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return (type == EiderPropertyType.INT ? "Integer" : kernelType(type)) + (min ? ".MAX_VALUE" : ".MIN_VALUE");
+    }
+
+    private static MethodSpec.Builder kernel(final String name, final Class<?> returns, final String javadoc)
+    {
+        return MethodSpec.methodBuilder(name).addModifiers(Modifier.PUBLIC).returns(returns)
+            .addJavadoc(javadoc)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, COUNT, Modifier.FINAL);
+    }
+
+    private List<MethodSpec> scalarKernels(final EiderPropertyType type, final boolean vector)
+    {
+        final String kernelType = kernelType(type);
+        final String width = width(type);
+        final String read = "buffer.get" + kernelType + "(position" +
+            Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+        final String start = vector ? "offset + vectorized * " + width : Constants.OFFSET;
+        final String loop = "for (int position = " + start + "; position < end; position += " + width + ")";
+        final String cast = type == EiderPropertyType.SHORT ? "(short)" : "";
+        final Class<?> valueType = valueType(type);
+        final List<MethodSpec> methods = new ArrayList<>();
+
+        final MethodSpec.Builder sum = kernel("sum" + kernelType, sumType(type), "Sums the count " +
+            valueType.getName() + " values of the column from the offset.");
+        methods.add(scalarKernel(sum, vector, "sum" + kernelType, "", sumType(type).getName() + " result",
+            type == EiderPropertyType.DOUBLE ? "0.0" : "0", width)
+            .beginControlFlow(loop)
+            .addStatement("result += " + read)
+            .endControlFlow()
+            .addStatement("return result")
+            .build());
+
+        for (final boolean min : new boolean[]{true, false})
+        {
+            final String name = (min ? "min" : "max") + kernelType;
+            final MethodSpec.Builder builder = kernel(name, valueType, "The " + (min ? "least" : "greatest") +
+                " of the count " + valueType.getName() + " values of the column from the offset, or " +
+                identity(type, min) + " if count is 0.");
+            methods.add(scalarKernel(builder, vector, name, "", valueType.getName() + " result",
+                identity(type, min), width)
+                .beginControlFlow(loop)
+                .addStatement("result = " + cast + "Math." + (min ? "min" : "max") + "(result, " + read + ")")
+                .endControlFlow()
+                .addStatement("return result")
+                .build());
+        }
+
+        final MethodSpec.Builder count = kernel(COUNT + kernelType, int.class, "Counts the " +
+            valueType.getName() + " values of the column from the offset which compare with the value as given, " +
+            "as the Java operators do.")
+            .addParameter(comparison, "comparison", Modifier.FINAL)
+            .addParameter(valueType, VALUE, Modifier.FINAL);
+        scalarKernel(count, vector, COUNT + kernelType, ", comparison, value", "int result", "0", width);
+        final CodeBlock.Builder cases = CodeBlock.builder().beginControlFlow("switch (comparison)");
+        for (int i = 0; i < AgronaFilterGenerator.COMPARISONS.length; i++)
+        {
+            cases.add("case " + AgronaFilterGenerator.COMPARISONS[i] + ":\n")
+                .beginControlFlow(loop)
+                .addStatement("result += " + read + " " + AgronaFilterGenerator.OPERATORS[i] + " value ? 1 : 0")
+                .endControlFlow()
+                .addStatement("return result");
+        }
+        cases.add("default:\n")
+            .addStatement("throw new IllegalArgumentException(\"unknown comparison \" + comparison)")
+            .endControlFlow();
+        methods.add(count.addCode(cases.build()).build());
+        return methods;
+    }
+
+    /**
+     * Starts a scalar kernel, which with the vector option first hands the values it can to the vector kernel.
+     */
+    private static MethodSpec.Builder scalarKernel(final MethodSpec.Builder builder, final boolean vector,
+        final String name, final String arguments, final String result, final String identity, final String width)
+    {
+        if (vector)
+        {
+            builder.addStatement("final int vectorized = vectorized(count, " + width + ")")
+                .addStatement(result + " = vectorized == 0 ? " + identity + " : vector." + name + "(buffer, " +
+                    "offset, vectorized" + arguments + ")");
+        }
+        else
+        {
+            builder.addStatement(result + " = " + identity);
+        }
+        return builder.addStatement("final int end = offset + count * " + width);
+    }
+
+    private void generateVectorKernels(final EiderOutput output)
+    {
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(VECTOR_KERNELS)
+            .addModifiers(Modifier.FINAL)
+            .addJavadoc("The vector kernels of {@link " + KERNELS + "}, which take a whole number of vectors of " +
+                "values. Only loaded when the " + VECTOR_PACKAGE + " module is present.")
+            .addField(FieldSpec.builder(ParameterizedTypeName.get(VECTOR_SPECIES, ClassName.get(Byte.class)),
+                    "BYTES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.SPECIES_PREFERRED", BYTE_VECTOR).build())
+            .addField(FieldSpec.builder(int.class, "BLOCK_LENGTH", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("The bytes copied from the buffer at a time, which stay in the L1 cache, and a whole " +
+                    "number of vectors of any shape.")
+                .initializer("4096").build())
+            .addField(FieldSpec.builder(byte[].class, "block", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new byte[BLOCK_LENGTH]").build())
+            .addMethod(MethodSpec.methodBuilder("vectorizable").returns(int.class)
+                .addJavadoc("The most of count values of the given width which fill whole vectors.")
+                .addParameter(int.class, COUNT, Modifier.FINAL)
+                .addParameter(int.class, "width", Modifier.FINAL)
+                .addStatement("return count - count % (BYTES.length() / width)")
+                .build())
+            .addMethod(operatorMethod());
+
+        for (final EiderPropertyType type : new EiderPropertyType[]{EiderPropertyType.LONG, EiderPropertyType.INT,
+            EiderPropertyType.SHORT, EiderPropertyType.DOUBLE})
+        {
+            final ClassName vectorClass = vectorClass(type);
+            final String species = kernelType(type).toUpperCase() + "S";
+            builder.addField(FieldSpec.builder(ParameterizedTypeName.get(VECTOR_SPECIES,
+                        ClassName.get("java.lang", type == EiderPropertyType.INT ? "Integer" : kernelType(type))),
+                    species, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.SPECIES_PREFERRED", vectorClass).build())
+                .addMethods(vectorKernels(type, vectorClass, species));
+        }
+        output.write(JavaFile.builder(packageName, builder.build()).build());
+    }
+
+    private static ClassName vectorClass(final EiderPropertyType type)
+    {
+        return ClassName.get(VECTOR_PACKAGE, kernelType(type) + "Vector");
+    }
+
+    private MethodSpec operatorMethod()
+    {
+        final CodeBlock.Builder cases = CodeBlock.builder().beginControlFlow("switch (comparison)");
+        for (final String constant : AgronaFilterGenerator.COMPARISONS)
+        {
+            cases.add("case " + constant + ":\n").addStatement("return $T." + constant, VECTOR_OPERATORS);
+        }
+        cases.add("default:\n")
+            .addStatement("throw new IllegalArgumentException(\"unknown comparison \" + comparison)")
+            .endControlFlow();
+        return MethodSpec.methodBuilder("operator").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(VECTOR_OPERATORS.nestedClass(COMPARISON))
+            .addParameter(comparison, "comparison", Modifier.FINAL)
+            .addCode(cases.build())
+            .build();
+    }
+
+    private List<MethodSpec> vectorKernels(final EiderPropertyType type, final ClassName vectorClass,
+        final String species)
+    {
+        final String kernelType = kernelType(type);
+        final Class<?> valueType = valueType(type);
+        final List<MethodSpec> methods = new ArrayList<>();
+
+        final MethodSpec.Builder sum = vectorKernel("sum" + kernelType, sumType(type));
+        if (type == EiderPropertyType.INT || type == EiderPropertyType.SHORT)
+        {
+            // each vector of ints or shorts is widened into two or four vectors of longs, so that sums carry
+            final int parts = type == EiderPropertyType.INT ? 2 : 4;
+            final String conversion = type == EiderPropertyType.INT ? "I2L" : "S2L";
+            sum.addStatement("$T sum = $T.zero(LONGS)", LONG_VECTOR, LONG_VECTOR);
+            blockLoop(sum, type, vectorClass);
+            for (int part = 0; part < parts; part++)
+            {
+                sum.addStatement("sum = sum.add(($T)values.convertShape($T." + conversion + ", LONGS, " + part + "))",
+                    LONG_VECTOR, VECTOR_OPERATORS);
+            }
+        }
+        else
+        {
+            sum.addStatement("$T sum = $T.zero(" + species + ")", vectorClass, vectorClass);
+            blockLoop(sum, type, vectorClass).addStatement("sum = sum.add(values)");
+        }
+        methods.add(endBlockLoop(sum).addStatement("return sum.reduceLanes($T.ADD)", VECTOR_OPERATORS).build());
+
+        for (final boolean min : new boolean[]{true, false})
+        {
+            final String operation = min ? "min" : "max";
+            final MethodSpec.Builder builder = vectorKernel(operation + kernelType, valueType)
+                .addStatement("$T result = $T.broadcast(" + species + ", " + identity(type, min) + ")",
+                    vectorClass, vectorClass);
+            blockLoop(builder, type, vectorClass).addStatement("result = result." + operation + "(values)");
+            methods.add(endBlockLoop(builder)
+                .addStatement("return result.reduceLanes($T." + operation.toUpperCase() + ")", VECTOR_OPERATORS)
+                .build());
+        }
+
+        final MethodSpec.Builder count = vectorKernel(COUNT + kernelType, int.class)
+            .addParameter(comparison, "comparison", Modifier.FINAL)
+            .addParameter(valueType, VALUE, Modifier.FINAL)
+            .addStatement("final $T.Comparison operator = operator(comparison)", VECTOR_OPERATORS)
+            .addStatement("int matches = 0");
+        blockLoop(count, type, vectorClass).addStatement("matches += values.compare(operator, value).trueCount()");
+        methods.add(endBlockLoop(count).addStatement("return matches").build());
+        return methods;
+    }
+
+    private static MethodSpec.Builder vectorKernel(final String name, final Class<?> returns)
+    {
+        return MethodSpec.methodBuilder(name).returns(returns)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, COUNT, Modifier.FINAL);
+    }
+
+    /**
+     * Copies the column into the block a block at a time, and loads each vector of values from it. The vectors
+     * are reinterpreted from bytes, which the Vector API defines as little endian on every platform, as the wire is.
+     */
+    private static MethodSpec.Builder blockLoop(final MethodSpec.Builder builder, final EiderPropertyType type,
+        final ClassName vectorClass)
+    {
+        return builder.addStatement("final int length = count * " + width(type))
+            .beginControlFlow("for (int done = 0; done < length; done += BLOCK_LENGTH)")
+            .addStatement("final int blockLength = Math.min(BLOCK_LENGTH, length - done)")
+            .addStatement("buffer.getBytes(offset + done, block, 0, blockLength)")
+            .beginControlFlow("for (int i = 0; i < blockLength; i += BYTES.length())")
+            .addStatement("final $T values = $T.fromArray(BYTES, block, i).reinterpretAs" + kernelType(type) +
+                "s()", vectorClass, BYTE_VECTOR);
+    }
+
+    private static MethodSpec.Builder endBlockLoop(final MethodSpec.Builder builder)
+    {
+        return builder.endControlFlow().endControlFlow();
+    }
+}
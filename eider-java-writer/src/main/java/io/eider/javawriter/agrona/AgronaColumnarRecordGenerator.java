@@ -0,0 +1,384 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import org.agrona.DirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.eider.javawriter.agrona.Constants.BUFFER;
+import static io.eider.javawriter.agrona.Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+import static io.eider.javawriter.agrona.Constants.MUTABLE_BUFFER;
+import static io.eider.javawriter.agrona.Constants.OFFSET;
+
+/**
+ * Generates the columnar layout of repeated records, in which each field of the records is stored as its own
+ * contiguous column. The columns of a spec holding count records follow one another, each starting at
+ * count * X_COLUMN_OFFSET from the first record, widest values first so that every value is aligned to its width
+ * relative to the start of the records. The record flyweight becomes a facade over one row, keeping the API of the
+ * row layout, while the spec gets column offsets for bulk reads and per index accessors.
+ */
+public class AgronaColumnarRecordGenerator
+{
+    private static final String BUFFER_LENGTH = "BUFFER_LENGTH";
+    private static final String COUNT = "count";
+    private static final String INDEX = "index";
+    private static final String VALUE = "value";
+
+    private final AgronaColumnKernelsGenerator columnKernelsGenerator;
+
+    public AgronaColumnarRecordGenerator(final AgronaColumnKernelsGenerator columnKernelsGenerator)
+    {
+        this.columnKernelsGenerator = columnKernelsGenerator;
+    }
+
+    /**
+     * The fields of a record in column order: 8 byte values, then 4 byte, then 2 byte, then the rest in
+     * declaration order.
+     */
+    public static List<PreprocessedEiderProperty> columns(final PreprocessedEiderRepeatableRecord rec)
+    {
+        final List<PreprocessedEiderProperty> columns = new ArrayList<>();
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (property.getType() != EiderPropertyType.REPEATABLE_RECORD)
+            {
+                columns.add(property);
+            }
+        }
+        // a stable sort, so columns of the same rank keep their declaration order
+        columns.sort(Comparator.comparingInt(property -> rank(property.getType())));
+        return columns;
+    }
+
+    private static int rank(final EiderPropertyType type)
+    {
+        switch (type)
+        {
+            case LONG:
+            case DOUBLE:
+                return 0;
+            case INT:
+                return 1;
+            case SHORT:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    public static String columnOffsetName(final String name)
+    {
+        return name.toUpperCase() + "_COLUMN_OFFSET";
+    }
+
+    public static String widthName(final String name)
+    {
+        return name.toUpperCase() + "_WIDTH";
+    }
+
+    /**
+     * The column offset of each field, keyed by the name of its per record offset as in the row layout, and the
+     * BUFFER_LENGTH of a record.
+     */
+    public Map<String, Integer> columnLayout(final PreprocessedEiderRepeatableRecord rec)
+    {
+        final Map<String, Integer> result = new HashMap<>();
+        int columnOffset = 0;
+        for (final PreprocessedEiderProperty property : columns(rec))
+        {
+            result.put(AgronaSpecGenerator.offsetName(property.getName()), columnOffset);
+            columnOffset += Util.byteLength(property.getType(), property.getAnnotations());
+        }
+        result.put(BUFFER_LENGTH, columnOffset);
+        return result;
+    }
+
+    /**
+     * The column constants of a columnar record, and the offsets of the fields of the row it is set to, which
+     * replace the constant field offsets of the row layout.
+     */
+    public List<FieldSpec> recordFields(final PreprocessedEiderRepeatableRecord rec)
+    {
+        final Map<String, Integer> layout = columnLayout(rec);
+        final List<FieldSpec> results = new ArrayList<>();
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                continue;
+            }
+            final String name = property.getName();
+            results.add(FieldSpec.builder(int.class, columnOffsetName(name))
+                .addJavadoc("The bytes of each record before the " + name + " column; with count records, it " +
+                    "starts count * " + columnOffsetName(name) + " bytes after the first record.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(layout.get(AgronaSpecGenerator.offsetName(name)))).build());
+            results.add(FieldSpec.builder(int.class, widthName(name))
+                .addJavadoc("The byte length of each " + property.getType().name() + " in the " + name +
+                    " column, which is the stride between them.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(Util.byteLength(property.getType(), property.getAnnotations())))
+                .build());
+        }
+
+        results.add(FieldSpec.builder(int.class, BUFFER_LENGTH).addJavadoc("The total bytes required to store a " +
+                "single record.")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer(Integer.toString(layout.get(BUFFER_LENGTH))).build());
+
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (property.getType() != EiderPropertyType.REPEATABLE_RECORD)
+            {
+                results.add(FieldSpec.builder(int.class, AgronaSpecGenerator.offsetName(property.getName()))
+                    .addJavadoc("The offset of " + property.getName() + " in the current row from the first record.")
+                    .addModifiers(Modifier.PRIVATE).build());
+            }
+        }
+        return results;
+    }
+
+    public List<MethodSpec> recordSetUnderlyingBuffer(final PreprocessedEiderRepeatableRecord rec)
+    {
+        final MethodSpec.Builder row = MethodSpec.methodBuilder("setUnderlyingBuffer").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Uses the row at the given index of the count records from the given offset.\n" +
+                "@param buffer - buffer to read from and write to.\n" +
+                "@param offset - offset of the first record in the buffer.\n" +
+                "@param count - the number of records, which places the columns.\n" +
+                "@param index - the row to read and write.\n")
+            .addParameter(DirectBuffer.class, BUFFER, Modifier.FINAL)
+            .addParameter(int.class, OFFSET, Modifier.FINAL)
+            .addParameter(int.class, COUNT, Modifier.FINAL)
+            .addParameter(int.class, INDEX, Modifier.FINAL)
+            .addStatement("if (index < 0 || index >= count) throw new IndexOutOfBoundsException(\"row \" + index + " +
+                "\" of \" + count)")
+            .addStatement("this.initialOffset = offset")
+            .addStatement("this.buffer = buffer")
+            .beginControlFlow("if (buffer instanceof MutableDirectBuffer)")
+            .addStatement(MUTABLE_BUFFER + " = (MutableDirectBuffer) buffer")
+            .addStatement("isMutable = true")
+            .endControlFlow().beginControlFlow("else").addStatement("isMutable = false").endControlFlow();
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (property.getType() != EiderPropertyType.REPEATABLE_RECORD)
+            {
+                final String name = property.getName();
+                row.addStatement(AgronaSpecGenerator.offsetName(name) + " = count * " + columnOffsetName(name) +
+                    " + index * " + widthName(name));
+            }
+        }
+        row.addStatement("buffer.checkLimit(initialOffset + count * BUFFER_LENGTH)");
+
+        final MethodSpec single = MethodSpec.methodBuilder("setUnderlyingBuffer").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Uses the provided {@link org.agrona.DirectBuffer} from the given offset, holding a single " +
+                "record.\n" +
+                "@param buffer - buffer to read from and write to.\n" +
+                "@param offset - offset to begin reading from/writing to in the buffer.\n")
+            .addParameter(DirectBuffer.class, BUFFER, Modifier.FINAL)
+            .addParameter(int.class, OFFSET, Modifier.FINAL)
+            .addStatement("setUnderlyingBuffer(buffer, offset, 1, 0)")
+            .build();
+
+        final List<MethodSpec> methods = new ArrayList<>();
+        methods.add(row.build());
+        methods.add(single);
+        return methods;
+    }
+
+    /**
+     * Adds the column offsets of a columnar record, and per index accessors for its fixed width fields, to the spec
+     * holding it.
+     */
+    public void addColumnMembers(final TypeSpec.Builder builder, final PreprocessedEiderRepeatableRecord rec)
+    {
+        final String name = rec.getName();
+        final String upper = name.toUpperCase();
+        final ClassName recordName = ClassName.get(rec.getPackageNameGen(), name);
+        final ClassName kernels = columnKernelsGenerator.kernels();
+        builder.addField(FieldSpec.builder(kernels, upper + "_KERNELS")
+            .addJavadoc("Aggregates the columns of the " + name + " records.")
+            .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new $T()", kernels).build());
+        builder.addMethod(moveColumns(rec));
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                continue;
+            }
+            final String field = Util.upperFirst(property.getName());
+            final String columnOffset = "get" + name + field + "ColumnOffset";
+            builder.addMethods(aggregateMethods(rec, property, kernels, columnOffset));
+            builder.addMethod(MethodSpec.methodBuilder(columnOffset).addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addJavadoc("The offset in the buffer of the " + property.getName() + " column of the committed " +
+                    name + " records, which holds the " + property.getName() + " of each record in turn, {@link $T#" +
+                    widthName(property.getName()) + "} bytes apart. Columns move when the record count changes.",
+                    recordName)
+                .addStatement("return " + upper + "_RECORD_START_OFFSET + initialOffset + " + upper +
+                    "_COMMITTED_SIZE * $T." + columnOffsetName(property.getName()), recordName)
+                .build());
+
+            if (property.getType() == EiderPropertyType.FIXED_STRING)
+            {
+                continue;
+            }
+            final String address = columnOffset + "() + index * $T." + widthName(property.getName());
+            final String checkIndex = "if (" + upper + "_COMMITTED_SIZE <= index) throw new " +
+                "RuntimeException(\"cannot access record beyond committed size\")";
+            builder.addMethod(MethodSpec.methodBuilder("read" + name + field).addModifiers(Modifier.PUBLIC)
+                .returns(AgronaColumnKernelsGenerator.valueType(property.getType()))
+                .addJavadoc("Reads " + property.getName() + " of the " + name + " at the given index from its " +
+                    "column.")
+                .addParameter(int.class, INDEX, Modifier.FINAL)
+                .addStatement(checkIndex)
+                .addStatement("return " + read(property.getType(), address), recordName)
+                .build());
+            builder.addMethod(MethodSpec.methodBuilder("write" + name + field).addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Writes " + property.getName() + " of the " + name + " at the given index to its " +
+                    "column. Set the record count first, as it places the columns.")
+                .addParameter(int.class, INDEX, Modifier.FINAL)
+                .addParameter(AgronaColumnKernelsGenerator.valueType(property.getType()), VALUE, Modifier.FINAL)
+                .addStatement("if (!isMutable) throw new RuntimeException(\"cannot write to immutable buffer\")")
+                .addStatement(checkIndex)
+                .addStatement(write(property.getType(), address), recordName)
+                .build());
+        }
+    }
+
+    public static String moveColumnsName(final PreprocessedEiderRepeatableRecord rec)
+    {
+        return "move" + rec.getName() + "Columns";
+    }
+
+    /**
+     * Moves the columns of the records already in the buffer to where the new record count places them, keeping
+     * the rows they share. Columns move towards the end as the count grows, so the last column moves first, and
+     * towards the start as it shrinks, so the first moves first; neither overwrites a column yet to move. The first
+     * column starts with the records whatever the count, so never moves.
+     */
+    private static MethodSpec moveColumns(final PreprocessedEiderRepeatableRecord rec)
+    {
+        final String upper = rec.getName().toUpperCase();
+        final ClassName recordName = ClassName.get(rec.getPackageNameGen(), rec.getName());
+        final List<PreprocessedEiderProperty> columns = columns(rec);
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder(moveColumnsName(rec))
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, "previousCount", Modifier.FINAL)
+            .addParameter(int.class, COUNT, Modifier.FINAL)
+            .addStatement("final int start = " + upper + "_RECORD_START_OFFSET + initialOffset")
+            .addStatement("final int rows = Math.min(previousCount, count)")
+            .beginControlFlow("if (count > previousCount)");
+        for (int i = columns.size() - 1; i > 0; i--)
+        {
+            builder.addStatement(moveColumn(columns.get(i).getName()), recordName, recordName, recordName);
+        }
+        builder.nextControlFlow("else");
+        for (int i = 1; i < columns.size(); i++)
+        {
+            builder.addStatement(moveColumn(columns.get(i).getName()), recordName, recordName, recordName);
+        }
+        return builder.endControlFlow().build();
+    }
+
+    private static String moveColumn(final String name)
+    {
+        final String columnOffset = "$T." + columnOffsetName(name);
+        return "mutableBuffer.putBytes(start + count * " + columnOffset + ", buffer, start + previousCount * " +
+            columnOffset + ", rows * $T." + widthName(name) + ")";
+    }
+
+    /**
+     * Sums, minimums, maximums and counts over the column of an integer or double field.
+     */
+    private List<MethodSpec> aggregateMethods(final PreprocessedEiderRepeatableRecord rec,
+        final PreprocessedEiderProperty property, final ClassName kernels, final String columnOffset)
+    {
+        final List<MethodSpec> methods = new ArrayList<>();
+        final String kernelType = AgronaColumnKernelsGenerator.kernelType(property.getType());
+        if (kernelType == null)
+        {
+            return methods;
+        }
+        final String name = rec.getName();
+        final String field = Util.upperFirst(property.getName());
+        final String arguments = "(buffer, " + columnOffset + "(), " + name.toUpperCase() + "_COMMITTED_SIZE";
+        final String kernel = "return " + name.toUpperCase() + "_KERNELS.";
+        final Class<?> valueType = AgronaColumnKernelsGenerator.valueType(property.getType());
+
+        methods.add(MethodSpec.methodBuilder("sum" + name + field).addModifiers(Modifier.PUBLIC)
+            .returns(property.getType() == EiderPropertyType.DOUBLE ? double.class : long.class)
+            .addJavadoc("Sums " + property.getName() + " over the committed " + name + " records, reading only " +
+                "its column.")
+            .addStatement(kernel + "sum" + kernelType + arguments + ")")
+            .build());
+        methods.add(MethodSpec.methodBuilder("min" + name + field).addModifiers(Modifier.PUBLIC)
+            .returns(valueType)
+            .addJavadoc("The least " + property.getName() + " of the committed " + name + " records, reading only " +
+                "its column.")
+            .addStatement(kernel + "min" + kernelType + arguments + ")")
+            .build());
+        methods.add(MethodSpec.methodBuilder("max" + name + field).addModifiers(Modifier.PUBLIC)
+            .returns(valueType)
+            .addJavadoc("The greatest " + property.getName() + " of the committed " + name + " records, reading " +
+                "only its column.")
+            .addStatement(kernel + "max" + kernelType + arguments + ")")
+            .build());
+        methods.add(MethodSpec.methodBuilder(COUNT + name + field).addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addJavadoc("Counts the committed " + name + " records whose " + property.getName() + " compares with " +
+                "the value as given, reading only its column.")
+            .addParameter(columnKernelsGenerator.comparison(), "comparison", Modifier.FINAL)
+            .addParameter(valueType, VALUE, Modifier.FINAL)
+            .addStatement(kernel + COUNT + kernelType + arguments + ", comparison, value)")
+            .build());
+        return methods;
+    }
+
+    private static String read(final EiderPropertyType type, final String address)
+    {
+        if (type == EiderPropertyType.BOOLEAN)
+        {
+            return "buffer.getByte(" + address + ") == (byte)1";
+        }
+        return "buffer.get" + Util.upperFirst(Util.fromTypeToStr(type)) + "(" + address +
+            JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+    }
+
+    private static String write(final EiderPropertyType type, final String address)
+    {
+        if (type == EiderPropertyType.BOOLEAN)
+        {
+            return "mutableBuffer.putByte(" + address + ", value ? (byte)1 : (byte)0)";
+        }
+        return "mutableBuffer.put" + Util.upperFirst(Util.fromTypeToStr(type)) + "(" + address + ", value" +
+            JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a table matching responses to outstanding requests by the field marked as the correlation id of each
+ * spec, with the deadlines of the requests held in a timer wheel. Only specs whose correlation id is marked as a
+ * response complete requests, so a request passed to the table by mistake never completes itself.
+ */
+public class AgronaCorrelationGenerator
+{
+    static final String TABLE = "EiderCorrelationTable";
+    private static final String RESPONSE_HANDLER = "ResponseHandler";
+    private static final String CORRELATION_ID = "correlationId";
+    private static final String CONTEXT = "context";
+    private static final String SLOT = "slot";
+
+    private final String packageName;
+    private final AgronaSpecGenerator specGenerator;
+
+    public AgronaCorrelationGenerator(final String packageName, final AgronaSpecGenerator specGenerator)
+    {
+        this.packageName = packageName;
+        this.specGenerator = specGenerator;
+    }
+
+    /**
+     * The correlation id property of the object, or null if it has none.
+     */
+    public static PreprocessedEiderProperty correlationProperty(final PreprocessedEiderMessage object)
+    {
+        PreprocessedEiderProperty result = null;
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (Util.isCorrelation(property.getAnnotations()))
+            {
+                if (result != null)
+                {
+                    throw new AgronaWriterException("Only one field can be the correlation id: " + object.getName());
+                }
+                result = property;
+            }
+        }
+        return result;
+    }
+
+    public void generateCorrelationTable(final EiderOutput output, final List<PreprocessedEiderMessage> objects,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final List<PreprocessedEiderMessage> responses = new ArrayList<>();
+        boolean correlated = false;
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            final PreprocessedEiderProperty correlation = correlationProperty(object);
+            if (correlation == null)
+            {
+                continue;
+            }
+            if (!object.mustBuildHeader())
+            {
+                throw new AgronaWriterException("A correlation id requires a spec with a header: " +
+                    object.getName());
+            }
+            if (correlation.getType() != EiderPropertyType.INT && correlation.getType() != EiderPropertyType.LONG)
+            {
+                throw new AgronaWriterException("Correlation ids must be int or long: " + object.getName());
+            }
+            correlated = true;
+            if (Util.isCorrelationResponse(correlation.getAnnotations()))
+            {
+                responses.add(object);
+            }
+        }
+        if (!correlated)
+        {
+            return;
+        }
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(TABLE)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Tracks outstanding requests by correlation id until a message with the same correlation id " +
+                "answers them or their deadline passes, calling the handler once either way. Each request may carry " +
+                "a long context, e.g. an index into the caller's own state, so neither registering nor completing " +
+                "a request allocates. Deadlines are held in a timer wheel, in the time unit it was created with. " +
+                "Not thread safe.")
+            .addType(responseHandler())
+            .addField(Util.protocolIdOffsetField())
+            .addField(FieldSpec.builder(long.class, "MISSING")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("-1").build());
+        for (final PreprocessedEiderMessage object : responses)
+        {
+            final Map<String, Integer> layout = specGenerator.layout(object, records);
+            final String offsetName = AgronaSpecGenerator.offsetName(correlationProperty(object).getName());
+            builder.addField(FieldSpec.builder(int.class, correlationOffsetName(object))
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(layout.get(offsetName))).build());
+        }
+
+        builder.addField(long[].class, "correlationIds", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(long[].class, "contexts", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(long[].class, "timerIds", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int[].class, "freeSlots", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(Long2LongHashMap.class, "slotsByCorrelationId", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(Long2LongHashMap.class, "slotsByTimerId", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(DeadlineTimerWheel.class, "timerWheel", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(FieldSpec.builder(DeadlineTimerWheel.TimerHandler.class, "expiryHandler")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).initializer("this::onTimerExpiry").build())
+            .addField(ClassName.get(packageName, TABLE).nestedClass(RESPONSE_HANDLER), "handler", Modifier.PRIVATE,
+                Modifier.FINAL)
+            .addField(int.class, "freeCount", Modifier.PRIVATE)
+            .addMethod(constructor())
+            .addMethod(register())
+            .addMethod(cancel())
+            .addMethod(MethodSpec.methodBuilder("isPending").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+                .addParameter(long.class, CORRELATION_ID, Modifier.FINAL)
+                .addStatement("return slotsByCorrelationId.containsKey(correlationId)")
+                .build())
+            .addMethod(onMessage(responses))
+            .addMethod(complete())
+            .addMethod(MethodSpec.methodBuilder("poll").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addJavadoc("Times out the requests whose deadline is at or before now, at most limit of them.\n" +
+                    "@return the number of requests timed out.\n")
+                .addParameter(long.class, "now", Modifier.FINAL)
+                .addParameter(int.class, "limit", Modifier.FINAL)
+                .addStatement("return timerWheel.poll(now, expiryHandler, limit)")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("pending").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addStatement("return correlationIds.length - freeCount")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("capacity").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addStatement("return correlationIds.length")
+                .build())
+            .addMethod(onTimerExpiry())
+            .addMethod(MethodSpec.methodBuilder("release").addModifiers(Modifier.PRIVATE)
+                .addParameter(int.class, SLOT, Modifier.FINAL)
+                .addStatement("freeSlots[freeCount++] = slot")
+                .build());
+
+        output.write(JavaFile.builder(packageName, builder.build()).build());
+    }
+
+    private static String correlationOffsetName(final PreprocessedEiderMessage object)
+    {
+        return object.getName().toUpperCase() + "_CORRELATION_OFFSET";
+    }
+
+    private static TypeSpec responseHandler()
+    {
+        return TypeSpec.interfaceBuilder(RESPONSE_HANDLER).addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Receives the outcome of each request registered.")
+            .addMethod(MethodSpec.methodBuilder("onResponse").addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .addJavadoc("Called with the message answering a request, which is only valid during the call.")
+                .addParameter(long.class, CORRELATION_ID, Modifier.FINAL)
+                .addParameter(long.class, CONTEXT, Modifier.FINAL)
+                .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                .addParameter(int.class, "length", Modifier.FINAL)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("onTimeout").addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .addJavadoc("Called when the deadline of a request passes before it is answered.")
+                .addParameter(long.class, CORRELATION_ID, Modifier.FINAL)
+                .addParameter(long.class, CONTEXT, Modifier.FINAL)
+                .build())
+            .build();
+    }
+
+    private MethodSpec constructor()
+    {
+        return MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+            .addJavadoc("@param capacity - the most requests outstanding at once.\n" +
+                "@param timeUnit - the unit of deadlines and of the times passed to poll.\n" +
+                "@param startTime - the current time, from which the timer wheel starts.\n" +
+                "@param tickResolution - the time each tick of the wheel spans, a power of two; deadlines expire " +
+                "up to a tick late.\n" +
+                "@param ticksPerWheel - the number of ticks in the wheel, a power of two.\n" +
+                "@param handler - called when a request is answered or times out.\n")
+            .addParameter(int.class, "capacity", Modifier.FINAL)
+            .addParameter(TimeUnit.class, "timeUnit", Modifier.FINAL)
+            .addParameter(long.class, "startTime", Modifier.FINAL)
+            .addParameter(long.class, "tickResolution", Modifier.FINAL)
+            .addParameter(int.class, "ticksPerWheel", Modifier.FINAL)
+            .addParameter(ClassName.get(packageName, TABLE).nestedClass(RESPONSE_HANDLER), "handler",
+                Modifier.FINAL)
+            .beginControlFlow("if (capacity <= 0)")
+            .addStatement("throw new IllegalArgumentException(\"Capacity must be positive: \" + capacity)")
+            .endControlFlow()
+            .addStatement("this.correlationIds = new long[capacity]")
+            .addStatement("this.contexts = new long[capacity]")
+            .addStatement("this.timerIds = new long[capacity]")
+            .addStatement("this.freeSlots = new int[capacity]")
+            .beginControlFlow("for (int i = 0; i < capacity; i++)")
+            .addStatement("freeSlots[i] = capacity - 1 - i")
+            .endControlFlow()
+            .addStatement("this.freeCount = capacity")
+            .addStatement("this.slotsByCorrelationId = new $T(capacity * 2, 0.65f, MISSING)", Long2LongHashMap.class)
+            .addStatement("this.slotsByTimerId = new $T(capacity * 2, 0.65f, MISSING)", Long2LongHashMap.class)
+            .addStatement("this.timerWheel = new $T(timeUnit, startTime, tickResolution, ticksPerWheel)",
+                DeadlineTimerWheel.class)
+            .addStatement("this.handler = handler")
+            .build();
+    }
+
+    private MethodSpec register()
+    {
+        return MethodSpec.methodBuilder("register").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Starts tracking a request, which is answered by the first message with its correlation id " +
+                "or times out at the deadline.\n" +
+                "@param context - passed back to the handler with the outcome.\n" +
+                "@return false if the correlation id is already outstanding or the table is full.\n")
+            .addParameter(long.class, CORRELATION_ID, Modifier.FINAL)
+            .addParameter(long.class, "deadline", Modifier.FINAL)
+            .addParameter(long.class, CONTEXT, Modifier.FINAL)
+            .beginControlFlow("if (freeCount == 0 || slotsByCorrelationId.containsKey(correlationId))")
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("final int slot = freeSlots[--freeCount]")
+            .addStatement("final long timerId = timerWheel.scheduleTimer(deadline)")
+            .addStatement("correlationIds[slot] = correlationId")
+            .addStatement("contexts[slot] = context")
+            .addStatement("timerIds[slot] = timerId")
+            .addStatement("slotsByCorrelationId.put(correlationId, slot)")
+            .addStatement("slotsByTimerId.put(timerId, slot)")
+            .addStatement("return true")
+            .build();
+    }
+
+    private MethodSpec cancel()
+    {
+        return MethodSpec.methodBuilder("cancel").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Stops tracking a request without calling the handler. Returns false if it was not " +
+                "outstanding.")
+            .addParameter(long.class, CORRELATION_ID, Modifier.FINAL)
+            .addStatement("final long slot = slotsByCorrelationId.remove(correlationId)")
+            .beginControlFlow("if (slot == MISSING)")
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("timerWheel.cancelTimer(timerIds[(int)slot])")
+            .addStatement("slotsByTimerId.remove(timerIds[(int)slot])")
+            .addStatement("release((int)slot)")
+            .addStatement("return true")
+            .build();
+    }
+
+    private MethodSpec onMessage(final List<PreprocessedEiderMessage> responses)
+    {
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder("onMessage").addModifiers(Modifier.PUBLIC)
+            .returns(boolean.class)
+            .addJavadoc("Reads the correlation id of the response with a header at the given offset and completes " +
+                "the request it answers. Returns false if the message is not a response, including a request with " +
+                "the same correlation id, or answers no outstanding request.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL);
+        if (responses.isEmpty())
+        {
+            // no spec is a response, so callers complete requests with the correlation id they read
+            return builder.addStatement("return false").build();
+        }
+        builder.addStatement("final long correlationId")
+            .addStatement("final short protocolId = buffer.getShort(offset + PROTOCOL_ID_OFFSET" +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .beginControlFlow("switch (protocolId)");
+        for (final PreprocessedEiderMessage object : responses)
+        {
+            final boolean isLong = correlationProperty(object).getType() == EiderPropertyType.LONG;
+            builder.addCode("case $T.WIRE_PROTOCOL_ID:\n", ClassName.get(object.getPackageNameGen(), object.getName()))
+                .addStatement("correlationId = buffer." + (isLong ? "getLong" : "getInt") + "(offset + " +
+                    correlationOffsetName(object) + Util.byteOrderSuffix(object.getByteOrder()))
+                .addStatement("break");
+        }
+        return builder.addCode("default:\n")
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("return complete(correlationId, buffer, offset, length)")
+            .build();
+    }
+
+    private MethodSpec complete()
+    {
+        return MethodSpec.methodBuilder("complete").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Completes the request with the given correlation id with the message at the given offset, " +
+                "for responses whose correlation id was read elsewhere. Returns false if it was not outstanding.")
+            .addParameter(long.class, CORRELATION_ID, Modifier.FINAL)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addStatement("final long slot = slotsByCorrelationId.remove(correlationId)")
+            .beginControlFlow("if (slot == MISSING)")
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("final long context = contexts[(int)slot]")
+            .addStatement("timerWheel.cancelTimer(timerIds[(int)slot])")
+            .addStatement("slotsByTimerId.remove(timerIds[(int)slot])")
+            .addStatement("release((int)slot)")
+            .addStatement("handler.onResponse(correlationId, context, buffer, offset, length)")
+            .addStatement("return true")
+            .build();
+    }
+
+    private MethodSpec onTimerExpiry()
+    {
+        return MethodSpec.methodBuilder("onTimerExpiry").addModifiers(Modifier.PRIVATE).returns(boolean.class)
+            .addParameter(TimeUnit.class, "timeUnit", Modifier.FINAL)
+            .addParameter(long.class, "now", Modifier.FINAL)
+            .addParameter(long.class, "timerId", Modifier.FINAL)
+            .addStatement("final long slot = slotsByTimerId.remove(timerId)")
+            .beginControlFlow("if (slot != MISSING)")
+            .addStatement("final long correlationId = correlationIds[(int)slot]")
+            .addStatement("final long context = contexts[(int)slot]")
+            .addStatement("slotsByCorrelationId.remove(correlationId)")
+            .addStatement("release((int)slot)")
+            .addStatement("handler.onTimeout(correlationId, context)")
+            .endControlFlow()
+            .addStatement("return true")
+            .build();
+    }
+}
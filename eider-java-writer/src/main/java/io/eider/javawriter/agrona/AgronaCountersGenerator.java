@@ -0,0 +1,146 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.agrona.concurrent.status.CountersReader;
+
+import javax.lang.model.element.Modifier;
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AgronaCountersGenerator
+{
+    static final String COUNTERS = "EiderCounters";
+    static final String ENCODED = "ENCODED";
+    static final String BYTES_ENCODED = "BYTES_ENCODED";
+    static final String DECODED = "DECODED";
+    static final String BYTES_DECODED = "BYTES_DECODED";
+    static final String VALIDATION_FAILURES = "VALIDATION_FAILURES";
+
+    private static final String[] SUFFIXES = {ENCODED, BYTES_ENCODED, DECODED, BYTES_DECODED, VALIDATION_FAILURES};
+    private static final String[] LABELS = {"encoded", "bytes encoded", "decoded", "bytes decoded",
+        "validation failures"};
+
+    private final String packageName;
+
+    public AgronaCountersGenerator(final String packageName)
+    {
+        this.packageName = packageName;
+    }
+
+    /**
+     * The statement used by generated code to reach the counter for the given spec.
+     */
+    String counter(final String specName, final String suffix)
+    {
+        return packageName + "." + COUNTERS + "." + counterField(specName, suffix);
+    }
+
+    private static String counterField(final String specName, final String suffix)
+    {
+        return specName.toUpperCase() + "_" + suffix;
+    }
+
+    public void generateCounters(final EiderOutput output, final List<PreprocessedEiderMessage> objects)
+    {
+        final List<PreprocessedEiderMessage> specs = new ArrayList<>();
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            if (object.mustBuildHeader())
+            {
+                specs.add(object);
+            }
+        }
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(COUNTERS)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Per message type codec counters, held in a memory mapped Agrona counters file so they can " +
+                "be read from outside the process.\nThe file holds the metadata buffer followed by the values buffer " +
+                "and is recreated on each start, so its default name holds the process id, keeping the files of " +
+                "processes sharing java.io.tmpdir apart.\nCounters are updated with ordered writes rather than " +
+                "atomic adds, so each message type is expected to be encoded and decoded by a single thread.")
+            .addField(FieldSpec.builder(String.class, "COUNTERS_FILE_PROP")
+                .addJavadoc("System property naming the counters file.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("\"eider.counters.file\"").build())
+            .addField(FieldSpec.builder(String.class, "DEFAULT_COUNTERS_FILE")
+                .addJavadoc("The counters file name used within java.io.tmpdir when the property is not set.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("\"eider-counters-\" + $T.current().pid() + \".dat\"", ProcessHandle.class).build())
+            .addField(FieldSpec.builder(int.class, "COUNTER_COUNT")
+                .addJavadoc("The number of counters allocated.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(specs.size() * SUFFIXES.length)).build())
+            .addField(FieldSpec.builder(int.class, "METADATA_LENGTH")
+                .addJavadoc("The length of the metadata buffer at the start of the file.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("COUNTER_COUNT * $T.METADATA_LENGTH", CountersReader.class).build())
+            .addField(FieldSpec.builder(int.class, "VALUES_LENGTH")
+                .addJavadoc("The length of the values buffer following the metadata.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("COUNTER_COUNT * $T.COUNTER_LENGTH", CountersReader.class).build())
+            .addField(FieldSpec.builder(CountersManager.class, "COUNTERS_MANAGER")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE)
+                .addStatement("//unused").build());
+
+        final CodeBlock.Builder init = CodeBlock.builder()
+            .addStatement("final $T file = new $T(System.getProperty(COUNTERS_FILE_PROP, new $T(System.getProperty(" +
+                "\"java.io.tmpdir\"), DEFAULT_COUNTERS_FILE).getPath()))", File.class, File.class, File.class)
+            .addStatement("final $T mapped = $T.mapNewFile(file, METADATA_LENGTH + VALUES_LENGTH)",
+                MappedByteBuffer.class, IoUtil.class)
+            .addStatement("final $T metadata = new $T(mapped, 0, METADATA_LENGTH)", AtomicBuffer.class,
+                UnsafeBuffer.class)
+            .addStatement("final $T values = new $T(mapped, METADATA_LENGTH, VALUES_LENGTH)", AtomicBuffer.class,
+                UnsafeBuffer.class)
+            .addStatement("COUNTERS_MANAGER = new $T(metadata, values)", CountersManager.class);
+
+        for (final PreprocessedEiderMessage spec : specs)
+        {
+            for (int i = 0; i < SUFFIXES.length; i++)
+            {
+                final String field = counterField(spec.getName(), SUFFIXES[i]);
+                builder.addField(FieldSpec.builder(AtomicCounter.class, field)
+                    .addJavadoc("The " + LABELS[i] + " counter for " + spec.getName() + ".")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL).build());
+                init.addStatement(field + " = COUNTERS_MANAGER.newCounter(\"" + spec.getName() + " " + LABELS[i] +
+                    "\", " + (i + 1) + ")");
+            }
+        }
+
+        builder.addStaticBlock(init.build());
+
+        final TypeSpec generated = builder.build();
+        final JavaFile javaFile = JavaFile.builder(packageName, generated).build();
+
+        output.write(javaFile);
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a delta flyweight for a fixed length spec: a 64 bit field presence bitmap followed by only the fields
+ * which are present, in the order they are declared. Fields are copied as raw bytes, so deltas are computed and
+ * applied without decoding any field.
+ */
+public class AgronaDeltaGenerator
+{
+    static final String SUFFIX = "Delta";
+    private static final int MAX_FIELDS = Long.SIZE;
+    private static final String PRESENCE = "presence";
+    private static final String POSITION = "position";
+    private static final String HEADER_LENGTH = "HEADER_LENGTH";
+    private static final String IMMUTABLE_CHECK =
+        "if (!isMutable) throw new RuntimeException(\"cannot write to immutable buffer\")";
+
+    private final AgronaSpecGenerator specGenerator;
+
+    public AgronaDeltaGenerator(final AgronaSpecGenerator specGenerator)
+    {
+        this.specGenerator = specGenerator;
+    }
+
+    public void generateDelta(final EiderOutput output, final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final Map<String, Integer> layout = specGenerator.layout(object, records);
+        final List<DeltaField> fields = new ArrayList<>();
+        int optionalCount = 0;
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                throw new AgronaWriterException("Deltas require a spec without records: " + object.getName());
+            }
+            fields.add(new DeltaField(property.getName(), property.getName().toUpperCase() + "_PRESENT",
+                layout.get(AgronaSpecGenerator.offsetName(property.getName())),
+                Util.byteLength(property.getType(), property.getAnnotations())));
+            optionalCount += Util.isOptional(property.getAnnotations()) ? 1 : 0;
+        }
+        if (optionalCount > 0)
+        {
+            // the presence of optional fields changes like any other field
+            fields.add(new DeltaField("the bitmap of optional fields present", "OPTIONAL_PRESENCE_PRESENT",
+                layout.get("OPTIONAL_PRESENCE_OFFSET"), optionalCount > Integer.SIZE ? Long.BYTES : Integer.BYTES));
+        }
+        if (fields.size() > MAX_FIELDS)
+        {
+            throw new AgronaWriterException("Deltas support at most " + MAX_FIELDS + " fields: " + object.getName());
+        }
+
+        final String name = object.getName() + SUFFIX;
+        int maxLength = Long.BYTES;
+        for (final DeltaField field : fields)
+        {
+            maxLength += field.length;
+        }
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(name)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("A change to a {@link " + object.getName() + "}: a presence bitmap, followed by the value " +
+                "of each field present, in declaration order. Deltas hold no Eider header, so they are framed by the " +
+                "transport carrying them; their length is known from the bitmap.")
+            .addField(FieldSpec.builder(int.class, "PRESENCE_OFFSET")
+                .addJavadoc("The offset of the 64 bit field presence bitmap.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL).initializer("0").build())
+            .addField(FieldSpec.builder(int.class, HEADER_LENGTH)
+                .addJavadoc("The length of a delta with no fields present.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL).initializer("8").build())
+            .addField(FieldSpec.builder(int.class, "MAX_LENGTH")
+                .addJavadoc("The length of a delta with every field present.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(maxLength)).build());
+
+        for (int i = 0; i < fields.size(); i++)
+        {
+            builder.addField(FieldSpec.builder(long.class, fields.get(i).bit)
+                .addJavadoc("The presence bit of " + fields.get(i).name + ".")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("1L << " + i).build());
+        }
+
+        builder.addField(DirectBuffer.class, "buffer", Modifier.PRIVATE)
+            .addField(MutableDirectBuffer.class, "mutableBuffer", Modifier.PRIVATE)
+            .addField(boolean.class, "isMutable", Modifier.PRIVATE)
+            .addField(int.class, "initialOffset", Modifier.PRIVATE)
+            .addMethod(setUnderlyingBuffer())
+            .addMethod(MethodSpec.methodBuilder(PRESENCE)
+                .addJavadoc("Reads the field presence bitmap.")
+                .addModifiers(Modifier.PUBLIC).returns(long.class)
+                .addStatement("return buffer.getLong(initialOffset + PRESENCE_OFFSET" +
+                    Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+                .build())
+            .addMethod(MethodSpec.methodBuilder("isPresent")
+                .addJavadoc("True if the field with the given presence bit is in this delta.")
+                .addModifiers(Modifier.PUBLIC).returns(boolean.class)
+                .addParameter(long.class, "bit", Modifier.FINAL)
+                .addStatement("return (presence() & bit) != 0")
+                .build())
+            .addMethod(deltaLength(fields))
+            .addMethod(diff(fields))
+            .addMethod(applyTo(object, fields))
+            .addMethod(merge(ClassName.get(object.getPackageNameGen(), name), fields))
+            .addMethod(bytesEqual());
+
+        output.write(JavaFile.builder(object.getPackageNameGen(), builder.build()).build());
+    }
+
+    private MethodSpec setUnderlyingBuffer()
+    {
+        return MethodSpec.methodBuilder("setUnderlyingBuffer")
+            .addJavadoc("Uses the provided {@link org.agrona.DirectBuffer} from the given offset. Deltas can only be " +
+                "written to a {@link org.agrona.MutableDirectBuffer}.\n" +
+                "@param buffer - buffer to read from and write to.\n" +
+                "@param offset - offset to begin reading from/writing to in the buffer.\n")
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addStatement("this.initialOffset = offset")
+            .addStatement("this.buffer = buffer")
+            .beginControlFlow("if (buffer instanceof $T)", MutableDirectBuffer.class)
+            .addStatement("mutableBuffer = ($T) buffer", MutableDirectBuffer.class)
+            .addStatement("isMutable = true")
+            .endControlFlow()
+            .beginControlFlow("else")
+            .addStatement("mutableBuffer = null")
+            .addStatement("isMutable = false")
+            .endControlFlow()
+            .addStatement("buffer.checkLimit(initialOffset + HEADER_LENGTH)")
+            .build();
+    }
+
+    private MethodSpec deltaLength(final List<DeltaField> fields)
+    {
+        final MethodSpec.Builder method = MethodSpec.methodBuilder("deltaLength")
+            .addJavadoc("The length of this delta, including its presence bitmap.")
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addStatement("final long presence = presence()")
+            .addStatement("int length = HEADER_LENGTH");
+        for (final DeltaField field : fields)
+        {
+            method.addStatement("length += (presence & " + field.bit + ") != 0 ? " + field.length + " : 0");
+        }
+        return method.addStatement("return length").build();
+    }
+
+    private MethodSpec diff(final List<DeltaField> fields)
+    {
+        final MethodSpec.Builder method = MethodSpec.methodBuilder("diff")
+            .addJavadoc("Writes the fields which differ between two messages into this delta, comparing their raw " +
+                "bytes. The buffer must have room for MAX_LENGTH bytes.\n" +
+                "@param previous - the buffer holding the earlier message.\n" +
+                "@param previousOffset - the offset of the earlier message, as given to its flyweight.\n" +
+                "@param current - the buffer holding the later message.\n" +
+                "@param currentOffset - the offset of the later message, as given to its flyweight.\n" +
+                "@return the length of the delta written, HEADER_LENGTH if the messages do not differ.\n")
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addParameter(DirectBuffer.class, "previous", Modifier.FINAL)
+            .addParameter(int.class, "previousOffset", Modifier.FINAL)
+            .addParameter(DirectBuffer.class, "current", Modifier.FINAL)
+            .addParameter(int.class, "currentOffset", Modifier.FINAL)
+            .addStatement(IMMUTABLE_CHECK)
+            .addStatement("long presence = 0")
+            .addStatement("int position = initialOffset + HEADER_LENGTH");
+        for (final DeltaField field : fields)
+        {
+            final String previous = "previousOffset + " + field.offset;
+            final String current = "currentOffset + " + field.offset;
+            if (field.accessor() == null)
+            {
+                method.beginControlFlow("if (!bytesEqual(previous, " + previous + ", current, " + current + ", " +
+                    field.length + "))");
+            }
+            else
+            {
+                method.beginControlFlow("if (previous.get" + field.accessor() + "(" + previous + ") != current.get" +
+                    field.accessor() + "(" + current + "))");
+            }
+            method.addStatement(field.copy("mutableBuffer", POSITION, "current", current))
+                .addStatement("position += " + field.length)
+                .addStatement("presence |= " + field.bit)
+                .endControlFlow();
+        }
+        return method.addStatement("mutableBuffer.putLong(initialOffset + PRESENCE_OFFSET, presence" +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .addStatement("return position - initialOffset")
+            .build();
+    }
+
+    private MethodSpec applyTo(final PreprocessedEiderMessage object, final List<DeltaField> fields)
+    {
+        final MethodSpec.Builder method = MethodSpec.methodBuilder("applyTo")
+            .addJavadoc("Writes the fields present in this delta over a message, leaving the others as they are. " +
+                "The header is not touched. A message with a sequence lock should be written between " +
+                "beginWrite and endWrite.\n" +
+                "@param target - the buffer holding the " + object.getName() + " to update.\n" +
+                "@param targetOffset - the offset of the message, as given to its flyweight.\n" +
+                "@return the length of this delta.\n")
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addParameter(MutableDirectBuffer.class, "target", Modifier.FINAL)
+            .addParameter(int.class, "targetOffset", Modifier.FINAL)
+            .addStatement("final long presence = presence()")
+            .addStatement("int position = initialOffset + HEADER_LENGTH");
+        for (final DeltaField field : fields)
+        {
+            method.beginControlFlow("if ((presence & " + field.bit + ") != 0)")
+                .addStatement(field.copy("target", "targetOffset + " + field.offset, "buffer", POSITION))
+                .addStatement("position += " + field.length)
+                .endControlFlow();
+        }
+        return method.addStatement("return position - initialOffset").build();
+    }
+
+    private MethodSpec merge(final ClassName delta, final List<DeltaField> fields)
+    {
+        final MethodSpec.Builder method = MethodSpec.methodBuilder("merge")
+            .addJavadoc("Writes the combination of two deltas into this one, such that applying it has the same " +
+                "effect as applying first and then second. This delta must not overlap either of them.\n" +
+                "@param first - the earlier delta.\n" +
+                "@param second - the later delta, whose fields take precedence.\n" +
+                "@return the length of the delta written.\n")
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addParameter(delta, "first", Modifier.FINAL)
+            .addParameter(delta, "second", Modifier.FINAL)
+            .addStatement(IMMUTABLE_CHECK)
+            .addStatement("final long firstPresence = first.presence()")
+            .addStatement("final long secondPresence = second.presence()")
+            .addStatement("int firstPosition = first.initialOffset + HEADER_LENGTH")
+            .addStatement("int secondPosition = second.initialOffset + HEADER_LENGTH")
+            .addStatement("int position = initialOffset + HEADER_LENGTH");
+        for (final DeltaField field : fields)
+        {
+            method.beginControlFlow("if ((secondPresence & " + field.bit + ") != 0)")
+                .addStatement(field.copy("mutableBuffer", POSITION, "second.buffer", "secondPosition"))
+                .addStatement("secondPosition += " + field.length)
+                .addStatement("position += " + field.length)
+                .endControlFlow()
+                .beginControlFlow("else if ((firstPresence & " + field.bit + ") != 0)")
+                .addStatement(field.copy("mutableBuffer", POSITION, "first.buffer", "firstPosition"))
+                .addStatement("position += " + field.length)
+                .endControlFlow()
+                .beginControlFlow("if ((firstPresence & " + field.bit + ") != 0)")
+                .addStatement("firstPosition += " + field.length)
+                .endControlFlow();
+        }
+        return method.addStatement("mutableBuffer.putLong(initialOffset + PRESENCE_OFFSET, " +
+                "firstPresence | secondPresence" + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .addStatement("return position - initialOffset")
+            .build();
+    }
+
+    private MethodSpec bytesEqual()
+    {
+        return MethodSpec.methodBuilder("bytesEqual")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(boolean.class)
+            .addParameter(DirectBuffer.class, "a", Modifier.FINAL)
+            .addParameter(int.class, "aOffset", Modifier.FINAL)
+            .addParameter(DirectBuffer.class, "b", Modifier.FINAL)
+            .addParameter(int.class, "bOffset", Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addStatement("int i = 0")
+            .beginControlFlow("for (; i <= length - Long.BYTES; i += Long.BYTES)")
+            .addStatement("if (a.getLong(aOffset + i) != b.getLong(bOffset + i)) return false")
+            .endControlFlow()
+            .beginControlFlow("for (; i < length; i++)")
+            .addStatement("if (a.getByte(aOffset + i) != b.getByte(bOffset + i)) return false")
+            .endControlFlow()
+            .addStatement("return true")
+            .build();
+    }
+
+    private static final class DeltaField
+    {
+        private final String name;
+        private final String bit;
+        private final int offset;
+        private final int length;
+
+        private DeltaField(final String name, final String bit, final int offset, final int length)
+        {
+            this.name = name;
+            this.bit = bit;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * The buffer accessor which reads the whole field at once, or null if it must be copied as bytes.
+         */
+        private String accessor()
+        {
+            switch (length)
+            {
+                case Byte.BYTES:
+                    return "Byte";
+                case Short.BYTES:
+                    return "Short";
+                case Integer.BYTES:
+                    return "Int";
+                case Long.BYTES:
+                    return "Long";
+                default:
+                    return null;
+            }
+        }
+
+        private String copy(final String to, final String toIndex, final String from, final String fromIndex)
+        {
+            if (accessor() == null)
+            {
+                return to + ".putBytes(" + toIndex + ", " + from + ", " + fromIndex + ", " + length + ")";
+            }
+            return to + ".put" + accessor() + "(" + toIndex + ", " + from + ".get" + accessor() + "(" + fromIndex +
+                "))";
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+
+import javax.lang.model.element.Modifier;
+import java.util.List;
+
+public class AgronaDispatcherGenerator
+{
+    static final String DISPATCHER = "EiderDispatcher";
+    static final String LISTENER = "EiderMessageListener";
+
+    private final String packageName;
+    private final AgronaCountersGenerator countersGenerator;
+
+    public AgronaDispatcherGenerator(final String packageName, final AgronaCountersGenerator countersGenerator)
+    {
+        this.packageName = packageName;
+        this.countersGenerator = countersGenerator;
+    }
+
+    public void generateDispatcher(final EiderOutput output, final List<PreprocessedEiderMessage> objects,
+        final boolean counters)
+    {
+        final ClassName listener = ClassName.get(packageName, LISTENER);
+        final ClassName filter = ClassName.get(packageName, AgronaFilterGenerator.FILTER);
+
+        final TypeSpec.Builder listenerBuilder = TypeSpec.interfaceBuilder(LISTENER)
+            .addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Receives messages decoded by the {@link " + DISPATCHER + "}. The flyweight passed to each " +
+                "method is only valid for the duration of the call.");
+
+        final MethodSpec.Builder dispatch = MethodSpec.methodBuilder("dispatch")
+            .addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Reads the wire protocol id from the header at the given offset, wraps the matching " +
+                "flyweight and passes it to the listener, if the filter of its type accepts it. Returns false if the " +
+                "id is not known or the message was filtered out, in which case no flyweight was wrapped; " +
+                "{@link #unknownCount} and {@link #filteredCount} tell the two apart.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addStatement("final short protocolId = buffer.getShort(offset + PROTOCOL_ID_OFFSET" +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .beginControlFlow("switch (protocolId)");
+
+        final TypeSpec.Builder dispatcher = TypeSpec.classBuilder(DISPATCHER)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addSuperinterface(MessageHandler.class)
+            .addJavadoc("Dispatches Eider messages with a header to an {@link " + LISTENER + "}, reusing a single " +
+                "flyweight per message type.")
+            .addField(Util.protocolIdOffsetField())
+            .addField(FieldSpec.builder(int.class, "HEADER_LENGTH")
+                .addJavadoc("The length of the header every dispatched message starts with.")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(Constants.HEADER_LENGTH)).build())
+            .addField(FieldSpec.builder(listener, "listener")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build())
+            .addField(long.class, "unknown", Modifier.PRIVATE)
+            .addField(long.class, "filtered", Modifier.PRIVATE)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Creates a dispatcher for the given listener.")
+                .addParameter(listener, "listener", Modifier.FINAL)
+                .addStatement("this.listener = listener")
+                .build());
+
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            if (!object.mustBuildHeader())
+            {
+                continue;
+            }
+
+            final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+            final String field = Util.lowerFirst(object.getName());
+
+            listenerBuilder.addMethod(MethodSpec.methodBuilder("on" + object.getName())
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addJavadoc("Called for each " + object.getName() + " dispatched.")
+                .addParameter(flyweight, "message", Modifier.FINAL)
+                .addComment("nothing by default")
+                .build());
+
+            dispatcher.addField(FieldSpec.builder(flyweight, field)
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL).initializer("new $T()", flyweight).build())
+                .addField(FieldSpec.builder(filter, field + AgronaFilterGenerator.SUFFIX)
+                    .addModifiers(Modifier.PRIVATE).initializer("$T.ALL", filter).build())
+                .addMethod(setFilter(object, filter));
+
+            dispatch.addCode("case $T.WIRE_PROTOCOL_ID:\n", flyweight)
+                .beginControlFlow("if (!" + field + AgronaFilterGenerator.SUFFIX + ".test(buffer, offset))")
+                .addStatement("filtered++")
+                .addStatement("return false")
+                .endControlFlow()
+                .addStatement(field + ".setUnderlyingBuffer(buffer, offset)");
+            if (counters)
+            {
+                dispatch.addStatement(countersGenerator.counter(object.getName(), AgronaCountersGenerator.DECODED) +
+                        ".incrementOrdered()")
+                    .addStatement(countersGenerator.counter(object.getName(), AgronaCountersGenerator.BYTES_DECODED) +
+                        ".getAndAddOrdered(" + field + ".contentLength())");
+            }
+            dispatch.addStatement("listener.on" + object.getName() + "(" + field + ")")
+                .addStatement(Constants.RETURN_TRUE);
+        }
+
+        dispatch.addCode("default:\n")
+            .addStatement("unknown++")
+            .addStatement("return false")
+            .endControlFlow();
+
+        dispatcher.addMethod(dispatch.build())
+            .addMethod(MethodSpec.methodBuilder("unknownCount").addModifiers(Modifier.PUBLIC).returns(long.class)
+                .addJavadoc("The number of messages not dispatched as their wire protocol id is not known.")
+                .addStatement("return unknown")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("filteredCount").addModifiers(Modifier.PUBLIC).returns(long.class)
+                .addJavadoc("The number of messages not dispatched as the filter of their type rejected them.")
+                .addStatement("return filtered")
+                .build())
+            .addMethod(replay())
+            .addMethod(MethodSpec.methodBuilder("onMessage")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Dispatches a message read from an Agrona ring buffer or an Eider transport. The message " +
+                    "is identified by its header, so msgTypeId is not used. Throws if the length given is shorter " +
+                    "than the message its header describes, as its fields would be read past the bytes written.")
+                .addParameter(int.class, "msgTypeId", Modifier.FINAL)
+                .addParameter(MutableDirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                .addParameter(int.class, "index", Modifier.FINAL)
+                .addParameter(int.class, "length", Modifier.FINAL)
+                .beginControlFlow("if (length < HEADER_LENGTH || " + AgronaRegistryGenerator.REGISTRY +
+                    ".messageLength(buffer, index) > length)")
+                .addStatement("throw new IllegalStateException(\"message at \" + index + \" is longer than the \" + " +
+                    "length + \" bytes given\")")
+                .endControlFlow()
+                .addStatement("dispatch(buffer, index)")
+                .build());
+
+        output.write(JavaFile.builder(packageName, listenerBuilder.build()).build());
+        output.write(JavaFile.builder(packageName, dispatcher.build()).build());
+    }
+
+    private static MethodSpec setFilter(final PreprocessedEiderMessage object, final ClassName filter)
+    {
+        return MethodSpec.methodBuilder("set" + object.getName() + AgronaFilterGenerator.SUFFIX)
+            .addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Sets the filter " + object.getName() + " messages must pass to be dispatched, such as one " +
+                "built by {@link $T}. Accepts every message by default.",
+                ClassName.get(object.getPackageNameGen(), object.getName() + AgronaFilterGenerator.SUFFIX))
+            .addParameter(filter, "filter", Modifier.FINAL)
+            .addStatement("this." + Util.lowerFirst(object.getName()) + AgronaFilterGenerator.SUFFIX + " = filter")
+            .build();
+    }
+
+    private static MethodSpec replay()
+    {
+        return MethodSpec.methodBuilder("replay")
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Dispatches each message of a run laid one after another, such as a journal, from the " +
+                "offset for the given length, skipping those their filters reject without wrapping them. " +
+                "Messages are sized by the {@link " + AgronaRegistryGenerator.REGISTRY + "}, reading only their " +
+                "header and any record count. Returns the number of messages passed to the listener.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addStatement("final int end = offset + length")
+            .addStatement("int position = offset")
+            .addStatement("int dispatched = 0")
+            .beginControlFlow("while (position < end)")
+            .addStatement("final int messageLength = " + AgronaRegistryGenerator.REGISTRY +
+                ".messageLength(buffer, position)")
+            .beginControlFlow("if (messageLength <= 0 || messageLength > end - position)")
+            .addStatement("throw new IllegalStateException(\"no known message at \" + position)")
+            .endControlFlow()
+            .beginControlFlow("if (dispatch(buffer, position))")
+            .addStatement("dispatched++")
+            .endControlFlow()
+            .addStatement("position += messageLength")
+            .endControlFlow()
+            .addStatement("return dispatched")
+            .build();
+    }
+}
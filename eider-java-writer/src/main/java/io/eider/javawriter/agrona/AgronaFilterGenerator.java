@@ -0,0 +1,316 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates filters which test messages in the buffer without wrapping a flyweight: the {@code EiderFilter}
+ * interface, and for each spec with a header a {@code <Spec>Filter} whose factories build filters reading only the
+ * wire protocol id and the fields they test.
+ */
+public class AgronaFilterGenerator
+{
+    static final String FILTER = "EiderFilter";
+    static final String COMPARISON = "EiderComparison";
+    static final String SUFFIX = "Filter";
+    static final String[] COMPARISONS = {"EQ", "NE", "LT", "LE", "GT", "GE"};
+    static final String[] OPERATORS = {"==", "!=", "<", "<=", ">", ">="};
+    private static final String VALUE = "value";
+    private static final String LAMBDA = "return (buffer, offset) -> matches(buffer, offset) && ";
+    private static final String PRESENCE_OFFSET = "OPTIONAL_PRESENCE_OFFSET";
+
+    private final String packageName;
+    private final AgronaSpecGenerator specGenerator;
+    private final ClassName filter;
+    private final ClassName comparison;
+
+    public AgronaFilterGenerator(final String packageName, final AgronaSpecGenerator specGenerator)
+    {
+        this.packageName = packageName;
+        this.specGenerator = specGenerator;
+        this.filter = ClassName.get(packageName, FILTER);
+        this.comparison = ClassName.get(packageName, COMPARISON);
+    }
+
+    public void generateFilterTypes(final EiderOutput output)
+    {
+        final TypeSpec.Builder comparisonBuilder = TypeSpec.enumBuilder(COMPARISON)
+            .addModifiers(Modifier.PUBLIC)
+            .addJavadoc("How a value read from the buffer compares with a constant, as the Java operators do.");
+        for (final String constant : COMPARISONS)
+        {
+            comparisonBuilder.addEnumConstant(constant);
+        }
+
+        final TypeSpec filterType = TypeSpec.interfaceBuilder(FILTER)
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(FunctionalInterface.class)
+            .addJavadoc("Tests the message with a header at an offset in a buffer, reading the buffer directly. The " +
+                "filters of each spec are built by its generated Filter class; build them once, as building them " +
+                "allocates, while testing does not.")
+            .addField(FieldSpec.builder(filter, "ALL")
+                .addJavadoc("Accepts every message.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("(buffer, offset) -> true").build())
+            .addMethod(MethodSpec.methodBuilder("test").addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .addJavadoc("True if the message at the offset is accepted.")
+                .returns(boolean.class)
+                .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                .build())
+            .addMethod(combinator("and", "accepts messages both this and the other filter accept, testing the other " +
+                "only if this accepts", "test(buffer, offset) && other.test(buffer, offset)"))
+            .addMethod(combinator("or", "accepts messages either this or the other filter accepts, testing the " +
+                "other only if this rejects", "test(buffer, offset) || other.test(buffer, offset)"))
+            .addMethod(MethodSpec.methodBuilder("negate").addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addJavadoc("A filter which accepts the messages this filter rejects.")
+                .returns(filter)
+                .addStatement("return (buffer, offset) -> !test(buffer, offset)")
+                .build())
+            .build();
+
+        output.write(JavaFile.builder(packageName, comparisonBuilder.build()).build());
+        output.write(JavaFile.builder(packageName, filterType).build());
+    }
+
+    public void generateFilter(final EiderOutput output, final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final Map<String, Integer> layout = specGenerator.layout(object, records);
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(object.getName() + SUFFIX)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Builds filters over {@link " + object.getName() + "} messages. Each filter checks the wire " +
+                "protocol id, so rejects messages of any other type, then reads only the fields it tests, without " +
+                "wrapping a flyweight." + (object.isSequenceLock()
+                ? " Fields are read without the sequence lock, so a filter may see a write in progress." : ""))
+            .addField(Util.protocolIdOffsetField())
+            .addMethod(MethodSpec.constructorBuilder()
+                .addJavadoc("private constructor.")
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("//unused")
+                .build())
+            .addMethods(typeMethods(object));
+
+        boolean strings = false;
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                continue;
+            }
+            final String offsetName = AgronaSpecGenerator.offsetName(property.getName());
+            builder.addField(FieldSpec.builder(int.class, offsetName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(layout.get(offsetName))).build());
+
+            String presence = "";
+            if (Util.isOptional(property.getAnnotations()))
+            {
+                // the filter is generated alongside the flyweight, so its bits need no import
+                presence = "present(buffer, offset, " + object.getName() + "." + property.getName().toUpperCase() +
+                    "_PRESENT) && ";
+                builder.addMethod(MethodSpec.methodBuilder("has" + Util.upperFirst(property.getName()))
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .addJavadoc("A filter which accepts each " + object.getName() + " with " + property.getName() +
+                        " present.")
+                    .returns(filter)
+                    .addStatement(LAMBDA + presence.substring(0, presence.length() - 4))
+                    .build());
+            }
+
+            if (property.getType() == EiderPropertyType.FIXED_STRING)
+            {
+                strings = true;
+                builder.addMethod(stringFilter(object, property, presence));
+            }
+            else if (property.getType() == EiderPropertyType.BOOLEAN)
+            {
+                builder.addMethod(MethodSpec.methodBuilder(property.getName())
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .addJavadoc("A filter which accepts each " + object.getName() + " whose " + property.getName() +
+                        " is the value.")
+                    .returns(filter)
+                    .addParameter(boolean.class, VALUE, Modifier.FINAL)
+                    .addStatement(LAMBDA + presence + "(buffer.getByte(offset + " + offsetName +
+                        ") == (byte)1) == value")
+                    .build());
+            }
+            else
+            {
+                builder.addMethod(comparisonFilter(object, property, presence));
+            }
+        }
+
+        if (!AgronaSpecGenerator.optionalProperties(object).isEmpty())
+        {
+            final String accessor = AgronaSpecGenerator.presenceAccessor(object);
+            builder.addField(FieldSpec.builder(int.class, PRESENCE_OFFSET)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer(Integer.toString(layout.get(PRESENCE_OFFSET))).build())
+                .addMethod(MethodSpec.methodBuilder("present").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(boolean.class)
+                    .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                    .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                    .addParameter(long.class, "bit", Modifier.FINAL)
+                    .addStatement("return (buffer.get" + accessor + "(offset + " + PRESENCE_OFFSET +
+                        Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " & bit) != 0")
+                    .build());
+        }
+        if (strings)
+        {
+            builder.addMethod(trimmedBytes()).addMethod(stringEquals());
+        }
+
+        output.write(JavaFile.builder(object.getPackageNameGen(), builder.build()).build());
+    }
+
+    private List<MethodSpec> typeMethods(final PreprocessedEiderMessage object)
+    {
+        final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+        return Arrays.asList(
+            MethodSpec.methodBuilder("any").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("A filter which accepts every " + object.getName() + ".")
+                .returns(filter)
+                .addStatement("return " + object.getName() + SUFFIX + "::matches")
+                .build(),
+            MethodSpec.methodBuilder("matches").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(boolean.class)
+                .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                .addStatement("return buffer.getShort(offset + PROTOCOL_ID_OFFSET" +
+                    Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " == $T.WIRE_PROTOCOL_ID", flyweight)
+                .build());
+    }
+
+    private MethodSpec combinator(final String name, final String javadoc, final String test)
+    {
+        return MethodSpec.methodBuilder(name).addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .addJavadoc("A filter which " + javadoc + ".")
+            .returns(filter)
+            .addParameter(filter, "other", Modifier.FINAL)
+            .addStatement("return (buffer, offset) -> " + test)
+            .build();
+    }
+
+    private MethodSpec comparisonFilter(final PreprocessedEiderMessage object, final PreprocessedEiderProperty property,
+        final String presence)
+    {
+        final String read = "buffer.get" + Util.upperFirst(Util.fromTypeToStr(property.getType())) + "(offset + " +
+            AgronaSpecGenerator.offsetName(property.getName()) + Util.byteOrderSuffix(object.getByteOrder());
+        final CodeBlock.Builder cases = CodeBlock.builder().beginControlFlow("switch (comparison)");
+        for (int i = 0; i < COMPARISONS.length; i++)
+        {
+            // a lambda per comparison, so testing a message does not switch on it
+            cases.add("case " + COMPARISONS[i] + ":\n")
+                .addStatement(LAMBDA + presence + read + " " + OPERATORS[i] + " value");
+        }
+        cases.add("default:\n")
+            .addStatement("throw new IllegalArgumentException(\"unknown comparison \" + comparison)")
+            .endControlFlow();
+
+        return MethodSpec.methodBuilder(property.getName()).addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addJavadoc("A filter which accepts each " + object.getName() + " whose " + property.getName() +
+                (presence.isEmpty() ? "" : " is present and") + " compares with the value as given.")
+            .returns(filter)
+            .addParameter(comparison, "comparison", Modifier.FINAL)
+            .addParameter(Util.fromType(property.getType()), VALUE, Modifier.FINAL)
+            .addCode(cases.build())
+            .build();
+    }
+
+    private MethodSpec stringFilter(final PreprocessedEiderMessage object, final PreprocessedEiderProperty property,
+        final String presence)
+    {
+        return MethodSpec.methodBuilder(property.getName()).addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addJavadoc("A filter which accepts each " + object.getName() + " whose " + property.getName() +
+                (presence.isEmpty() ? "" : " is present and") + " equals the value, both without surrounding " +
+                "spaces, as read.")
+            .returns(filter)
+            .addParameter(CharSequence.class, VALUE, Modifier.FINAL)
+            .addStatement("final byte[] expected = trimmedBytes(value)")
+            .addStatement(LAMBDA + presence + "stringEquals(buffer, offset + " +
+                AgronaSpecGenerator.offsetName(property.getName()) + ", " +
+                Util.byteLength(property.getType(), property.getAnnotations()) + ", expected)")
+            .build();
+    }
+
+    private static MethodSpec trimmedBytes()
+    {
+        return MethodSpec.methodBuilder("trimmedBytes").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(byte[].class)
+            .addParameter(CharSequence.class, VALUE, Modifier.FINAL)
+            .addStatement("int start = 0")
+            .addStatement("int end = value.length()")
+            .beginControlFlow("while (start < end && value.charAt(start) <= ' ')")
+            .addStatement("start++")
+            .endControlFlow()
+            .beginControlFlow("while (end > start && value.charAt(end - 1) <= ' ')")
+            .addStatement("end--")
+            .endControlFlow()
+            .addStatement("final byte[] result = new byte[end - start]")
+            .beginControlFlow("for (int i = 0; i < result.length; i++)")
+            .addStatement("result[i] = (byte)value.charAt(start + i)")
+            .endControlFlow()
+            .addStatement("return result")
+            .build();
+    }
+
+    private static MethodSpec stringEquals()
+    {
+        return MethodSpec.methodBuilder("stringEquals").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(boolean.class)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, "fieldOffset", Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addParameter(byte[].class, "expected", Modifier.FINAL)
+            .addStatement("int start = 0")
+            .beginControlFlow("while (start < length && (buffer.getByte(fieldOffset + start) & 0xFF) <= ' ')")
+            .addStatement("start++")
+            .endControlFlow()
+            .addStatement("int end = length")
+            .beginControlFlow("while (end > start && (buffer.getByte(fieldOffset + end - 1) & 0xFF) <= ' ')")
+            .addStatement("end--")
+            .endControlFlow()
+            .beginControlFlow("if (end - start != expected.length)")
+            .addStatement("return false")
+            .endControlFlow()
+            .beginControlFlow("for (int i = 0; i < expected.length; i++)")
+            .beginControlFlow("if (buffer.getByte(fieldOffset + start + i) != expected[i])")
+            .addStatement("return false")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement(Constants.RETURN_TRUE)
+            .build();
+    }
+}
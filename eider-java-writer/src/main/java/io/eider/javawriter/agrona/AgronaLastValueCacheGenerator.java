@@ -0,0 +1,395 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.ByteOrderType;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static io.eider.javawriter.agrona.Constants.HASH_MULTIPLIER;
+
+/**
+ * Generates an off-heap last value cache for a fixed length spec with a key field: one slot per key in a single
+ * slab, overwritten in place by each new message, with the keys changed since they were last published queued once
+ * each for conflated publication.
+ */
+public class AgronaLastValueCacheGenerator
+{
+    static final String SUFFIX = "LastValueCache";
+    private static final String DIRTY_HANDLER = "DirtyHandler";
+    private static final String FLYWEIGHT = "flyweight";
+    private static final String KEY = "key";
+    private static final String SLOT = "slot";
+    private static final int MAX_INDEX_CAPACITY = 1 << 29;
+
+    private final AgronaSpecGenerator specGenerator;
+
+    public AgronaLastValueCacheGenerator(final AgronaSpecGenerator specGenerator)
+    {
+        this.specGenerator = specGenerator;
+    }
+
+    /**
+     * The key property of the object, or null if it has none.
+     */
+    public static PreprocessedEiderProperty keyProperty(final PreprocessedEiderMessage object)
+    {
+        PreprocessedEiderProperty result = null;
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (Util.isKey(property.getAnnotations()))
+            {
+                if (result != null)
+                {
+                    throw new AgronaWriterException("Only one field can be the key: " + object.getName());
+                }
+                result = property;
+            }
+        }
+        return result;
+    }
+
+    public void generateLastValueCache(final EiderOutput output, final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        if (specGenerator.hasAtLeastOneRecord(object))
+        {
+            throw new AgronaWriterException("A last value cache requires a spec without records: " +
+                object.getName());
+        }
+        final PreprocessedEiderProperty key = keyProperty(object);
+        if (key.getType() == EiderPropertyType.BOOLEAN || key.getType() == EiderPropertyType.DOUBLE)
+        {
+            throw new AgronaWriterException("Keys must be integers or strings: " + object.getName());
+        }
+        final boolean stringKey = key.getType() == EiderPropertyType.FIXED_STRING;
+        final Map<String, Integer> layout = specGenerator.layout(object, records);
+        final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+        final ClassName self = ClassName.get(object.getPackageNameGen(), object.getName() + SUFFIX);
+        final int slotLength = BitUtil.align(layout.get("BUFFER_LENGTH"), Long.BYTES);
+        // the slab must fit in one buffer, and the index of twice the capacity, rounded up, in an int array
+        final long maxCapacity = Math.min(Integer.MAX_VALUE / slotLength, MAX_INDEX_CAPACITY);
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(self.simpleName())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Holds the latest {@link " + object.getName() + "} for each " + key.getName() + " in an " +
+                "off-heap slab of fixed size slots. Each put overwrites the slot of its key in place, and queues the " +
+                "key for the next drainDirty once however often it changes, so publication at a fixed cadence does " +
+                "bounded work at any input rate. Puts and lookups do not allocate. Not thread safe.")
+            .addType(TypeSpec.interfaceBuilder(DIRTY_HANDLER).addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Receives the latest message of each key changed since the last drain.")
+                .addMethod(MethodSpec.methodBuilder("onDirty").addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                    .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                    .addParameter(int.class, "length", Modifier.FINAL)
+                    .build())
+                .build())
+            .addField(FieldSpec.builder(int.class, "SLOT_LENGTH")
+                .addJavadoc("The length of each slot, the message length aligned to 8 bytes.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(slotLength)).build())
+            .addField(FieldSpec.builder(int.class, "MAX_CAPACITY")
+                .addJavadoc("The most keys a cache can hold, limited by the slab fitting in a single buffer.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Long.toString(maxCapacity)).build())
+            .addField(FieldSpec.builder(int.class, "KEY_OFFSET")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(layout.get(AgronaSpecGenerator.offsetName(key.getName())))).build())
+            .addField(FieldSpec.builder(int.class, "KEY_LENGTH")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(Util.byteLength(key.getType(), key.getAnnotations()))).build())
+            .addField(UnsafeBuffer.class, "slab", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int.class, "capacity", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int[].class, "index", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int.class, "mask", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(boolean[].class, "dirty", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int[].class, "dirtySlots", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int.class, "dirtyHead", Modifier.PRIVATE)
+            .addField(int.class, "dirtyCount", Modifier.PRIVATE)
+            .addField(int.class, "size", Modifier.PRIVATE)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addJavadoc("@param capacity the number of distinct keys the cache can hold.\n")
+                .addParameter(int.class, "capacity", Modifier.FINAL)
+                .addStatement("if (capacity <= 0 || capacity > MAX_CAPACITY) throw new IllegalArgumentException(" +
+                    "\"capacity must be between 1 and \" + MAX_CAPACITY + \": \" + capacity)")
+                .addStatement("this.capacity = capacity")
+                .addStatement("this.slab = new $T($T.allocateDirect(capacity * SLOT_LENGTH))", UnsafeBuffer.class,
+                    ByteBuffer.class)
+                .addComment("at most half full, so probes stay short")
+                .addStatement("this.index = new int[$T.findNextPositivePowerOfTwo(capacity * 2)]", BitUtil.class)
+                .addStatement("this.mask = index.length - 1")
+                .addStatement("this.dirty = new boolean[capacity]")
+                .addStatement("this.dirtySlots = new int[capacity]")
+                .build())
+            .addMethod(put(flyweight, key, object.getByteOrder(), stringKey))
+            .addMethod(lookup(object, key, flyweight, stringKey))
+            .addMethod(drainDirty(flyweight))
+            .addMethods(housekeepingMethods());
+
+        if (stringKey)
+        {
+            builder.addMethods(stringKeyMethods());
+        }
+        else
+        {
+            builder.addMethod(integralIndexOf(key, object.getByteOrder()));
+        }
+
+        output.write(JavaFile.builder(object.getPackageNameGen(), builder.build()).build());
+    }
+
+    private List<MethodSpec> housekeepingMethods()
+    {
+        return Arrays.asList(
+            MethodSpec.methodBuilder("size").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addJavadoc("The number of keys held.")
+                .addStatement("return size").build(),
+            MethodSpec.methodBuilder("capacity").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addStatement("return capacity").build(),
+            MethodSpec.methodBuilder("dirtyCount").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addJavadoc("The number of keys changed since they were last drained.")
+                .addStatement("return dirtyCount").build(),
+            MethodSpec.methodBuilder("clear").addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Removes every key.")
+                .addStatement("$T.fill(index, 0)", Arrays.class)
+                .addStatement("$T.fill(dirty, false)", Arrays.class)
+                .addStatement("dirtyHead = 0")
+                .addStatement("dirtyCount = 0")
+                .addStatement("size = 0")
+                .build(),
+            MethodSpec.methodBuilder("hash").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(int.class)
+                .addParameter(long.class, "value", Modifier.FINAL)
+                .addStatement("final long hash = value * " + HASH_MULTIPLIER)
+                .addStatement("return (int)(hash ^ (hash >>> 32))")
+                .build());
+    }
+
+    private MethodSpec put(final ClassName flyweight, final PreprocessedEiderProperty key,
+        final ByteOrderType byteOrder, final boolean stringKey)
+    {
+        return MethodSpec.methodBuilder("put").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Copies the message into the slot of its key, replacing the previous value, and marks the " +
+                "key dirty.\n" +
+                "@param buffer - the buffer holding the message.\n" +
+                "@param offset - the offset of the message, as given to its flyweight.\n" +
+                "@return the slot of the key, or -1 if the key is new and the cache is full.\n")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addStatement(stringKey ? "final int position = indexOf(buffer, offset + KEY_OFFSET)"
+                : "final int position = indexOf(" + readKey(key, byteOrder, "buffer", "offset") + ")")
+            .addStatement("int slot = index[position] - 1")
+            .beginControlFlow("if (slot < 0)")
+            .beginControlFlow("if (size == capacity)")
+            .addStatement("return -1")
+            .endControlFlow()
+            .addStatement("slot = size++")
+            .addStatement("index[position] = slot + 1")
+            .endControlFlow()
+            .addStatement("slab.putBytes(slot * SLOT_LENGTH, buffer, offset, $T.BUFFER_LENGTH)", flyweight)
+            .beginControlFlow("if (!dirty[slot])")
+            .addStatement("dirty[slot] = true")
+            .addStatement("final int tail = dirtyHead + dirtyCount")
+            .addStatement("dirtySlots[tail < capacity ? tail : tail - capacity] = slot")
+            .addStatement("dirtyCount++")
+            .endControlFlow()
+            .addStatement("return slot")
+            .build();
+    }
+
+    private MethodSpec lookup(final PreprocessedEiderMessage object, final PreprocessedEiderProperty key,
+        final ClassName flyweight, final boolean stringKey)
+    {
+        return MethodSpec.methodBuilder("lookup").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Wraps the flyweight around the latest " + object.getName() + " with the given " +
+                key.getName() + ", which stays in place until it is next put. Returns false if there is none.")
+            .addParameter(stringKey ? CharSequence.class : long.class, KEY, Modifier.FINAL)
+            .addParameter(flyweight, FLYWEIGHT, Modifier.FINAL)
+            .addStatement("final int slot = index[indexOf(key)] - 1")
+            .beginControlFlow("if (slot < 0)")
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("flyweight.setUnderlyingBuffer(slab, slot * SLOT_LENGTH)")
+            .addStatement("return true")
+            .build();
+    }
+
+    private MethodSpec drainDirty(final ClassName flyweight)
+    {
+        return MethodSpec.methodBuilder("drainDirty").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Passes the latest message of each dirty key to the handler, oldest change first, and marks " +
+                "them clean. The handler may put further messages.\n" +
+                "@param handler - receives each message, which is only valid during the call.\n" +
+                "@param limit - the most keys to drain.\n" +
+                "@return the number of keys drained.\n")
+            .addParameter(ClassName.get(flyweight.packageName(), flyweight.simpleName() + SUFFIX)
+                .nestedClass(DIRTY_HANDLER), "handler", Modifier.FINAL)
+            .addParameter(int.class, "limit", Modifier.FINAL)
+            .addStatement("int drained = 0")
+            .beginControlFlow("while (dirtyCount > 0 && drained < limit)")
+            .addStatement("final int slot = dirtySlots[dirtyHead]")
+            .addStatement("dirtyHead = dirtyHead + 1 == capacity ? 0 : dirtyHead + 1")
+            .addStatement("dirtyCount--")
+            .addStatement("dirty[slot] = false")
+            .addStatement("handler.onDirty(slab, slot * SLOT_LENGTH, $T.BUFFER_LENGTH)", flyweight)
+            .addStatement("drained++")
+            .endControlFlow()
+            .addStatement("return drained")
+            .build();
+    }
+
+    private MethodSpec integralIndexOf(final PreprocessedEiderProperty key, final ByteOrderType byteOrder)
+    {
+        return MethodSpec.methodBuilder("indexOf").addModifiers(Modifier.PRIVATE).returns(int.class)
+            .addJavadoc("The index position holding the key, or the empty position where it would be added.")
+            .addParameter(long.class, KEY, Modifier.FINAL)
+            .addStatement("int position = hash(key) & mask")
+            .beginControlFlow("while (true)")
+            .addStatement("final int entry = index[position]")
+            .beginControlFlow("if (entry == 0 || " + readKey(key, byteOrder, "slab", "(entry - 1) * SLOT_LENGTH") +
+                " == key)")
+            .addStatement("return position")
+            .endControlFlow()
+            .addStatement("position = (position + 1) & mask")
+            .endControlFlow()
+            .build();
+    }
+
+    private List<MethodSpec> stringKeyMethods()
+    {
+        final MethodSpec bytesIndexOf = MethodSpec.methodBuilder("indexOf").addModifiers(Modifier.PRIVATE)
+            .returns(int.class)
+            .addJavadoc("The index position holding the key at the given offset, or the empty position where it " +
+                "would be added. Keys are compared as read, without leading or trailing spaces.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, "keyOffset", Modifier.FINAL)
+            .addStatement("final int start = trimStart(buffer, keyOffset)")
+            .addStatement("final int end = trimEnd(buffer, keyOffset, start)")
+            .addStatement("long hash = end - start")
+            .beginControlFlow("for (int i = start; i < end; i++)")
+            .addStatement("hash = (hash ^ buffer.getByte(keyOffset + i)) * " + HASH_MULTIPLIER)
+            .endControlFlow()
+            .addStatement("int position = hash(hash) & mask")
+            .beginControlFlow("while (true)")
+            .addStatement("final int entry = index[position]")
+            .beginControlFlow("if (entry == 0)")
+            .addStatement("return position")
+            .endControlFlow()
+            .addStatement("final int slotKey = (entry - 1) * SLOT_LENGTH + KEY_OFFSET")
+            .addStatement("final int slotStart = trimStart(slab, slotKey)")
+            .beginControlFlow("if (trimEnd(slab, slotKey, slotStart) - slotStart == end - start)")
+            .addStatement("int i = 0")
+            .beginControlFlow("while (i < end - start && " +
+                "slab.getByte(slotKey + slotStart + i) == buffer.getByte(keyOffset + start + i))")
+            .addStatement("i++")
+            .endControlFlow()
+            .beginControlFlow("if (i == end - start)")
+            .addStatement("return position")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("position = (position + 1) & mask")
+            .endControlFlow()
+            .build();
+
+        final MethodSpec charsIndexOf = MethodSpec.methodBuilder("indexOf").addModifiers(Modifier.PRIVATE)
+            .returns(int.class)
+            .addParameter(CharSequence.class, KEY, Modifier.FINAL)
+            .addStatement("int start = 0")
+            .addStatement("int end = key.length()")
+            .beginControlFlow("while (start < end && key.charAt(start) <= ' ')")
+            .addStatement("start++")
+            .endControlFlow()
+            .beginControlFlow("while (end > start && key.charAt(end - 1) <= ' ')")
+            .addStatement("end--")
+            .endControlFlow()
+            .addStatement("long hash = end - start")
+            .beginControlFlow("for (int i = start; i < end; i++)")
+            .addStatement("hash = (hash ^ (byte)key.charAt(i)) * " + HASH_MULTIPLIER)
+            .endControlFlow()
+            .addStatement("int position = hash(hash) & mask")
+            .beginControlFlow("while (true)")
+            .addStatement("final int entry = index[position]")
+            .beginControlFlow("if (entry == 0)")
+            .addStatement("return position")
+            .endControlFlow()
+            .addStatement("final int slotKey = (entry - 1) * SLOT_LENGTH + KEY_OFFSET")
+            .addStatement("final int slotStart = trimStart(slab, slotKey)")
+            .beginControlFlow("if (trimEnd(slab, slotKey, slotStart) - slotStart == end - start)")
+            .addStatement("int i = 0")
+            .beginControlFlow("while (i < end - start && " +
+                "slab.getByte(slotKey + slotStart + i) == (byte)key.charAt(start + i))")
+            .addStatement("i++")
+            .endControlFlow()
+            .beginControlFlow("if (i == end - start)")
+            .addStatement("return position")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("position = (position + 1) & mask")
+            .endControlFlow()
+            .build();
+
+        final MethodSpec trimStart = MethodSpec.methodBuilder("trimStart")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, "keyOffset", Modifier.FINAL)
+            .addStatement("int start = 0")
+            .beginControlFlow("while (start < KEY_LENGTH && (buffer.getByte(keyOffset + start) & 0xFF) <= ' ')")
+            .addStatement("start++")
+            .endControlFlow()
+            .addStatement("return start")
+            .build();
+
+        final MethodSpec trimEnd = MethodSpec.methodBuilder("trimEnd")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, "keyOffset", Modifier.FINAL)
+            .addParameter(int.class, "start", Modifier.FINAL)
+            .addStatement("int end = KEY_LENGTH")
+            .beginControlFlow("while (end > start && (buffer.getByte(keyOffset + end - 1) & 0xFF) <= ' ')")
+            .addStatement("end--")
+            .endControlFlow()
+            .addStatement("return end")
+            .build();
+
+        return Arrays.asList(bytesIndexOf, charsIndexOf, trimStart, trimEnd);
+    }
+
+    private static String readKey(final PreprocessedEiderProperty key, final ByteOrderType byteOrder,
+        final String buffer, final String offset)
+    {
+        return buffer + ".get" + Util.upperFirst(Util.fromTypeToStr(key.getType())) + "(" + offset +
+            " + KEY_OFFSET" + Util.byteOrderSuffix(byteOrder);
+    }
+}
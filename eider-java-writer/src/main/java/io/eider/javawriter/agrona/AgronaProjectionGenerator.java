@@ -0,0 +1,308 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates projections from one spec to another which copy the fields they share, by name and type, without
+ * decoding them. The copies are planned when generating: fields lying next to each other in both specs are copied
+ * as one range, and a header with the same layout in both is copied with them and then given the target's id,
+ * version and length.
+ */
+public class AgronaProjectionGenerator
+{
+    static final String PROJECTIONS = "EiderProjections";
+    private static final String HOP_COUNT_OFFSET = "HOP_COUNT_OFFSET";
+    private static final String HOP_TIMESTAMPS_OFFSET = "HOP_TIMESTAMPS_OFFSET";
+    private static final String PRESENCE_OFFSET = "OPTIONAL_PRESENCE_OFFSET";
+    private static final String BUFFER_LENGTH = "BUFFER_LENGTH";
+    private static final String SOURCE = "source";
+    private static final String TARGET = "target";
+    private static final String PRESENT = "_PRESENT";
+
+    private final String packageName;
+    private final AgronaSpecGenerator specGenerator;
+
+    public AgronaProjectionGenerator(final String packageName, final AgronaSpecGenerator specGenerator)
+    {
+        this.packageName = packageName;
+        this.specGenerator = specGenerator;
+    }
+
+    public void generateProjections(final EiderOutput output, final List<PreprocessedEiderMessage> objects,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(PROJECTIONS)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Projects messages of one spec into another, copying the fields with the same name and " +
+                "type as byte ranges planned when the projections were generated, without decoding them.")
+            .addMethod(MethodSpec.constructorBuilder()
+                .addJavadoc("private constructor.")
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("//unused")
+                .build());
+
+        boolean any = false;
+        for (final PreprocessedEiderMessage target : objects)
+        {
+            for (final String sourceName : target.getProjectFrom())
+            {
+                builder.addMethod(projection(find(objects, sourceName, target), target, records));
+                any = true;
+            }
+        }
+
+        if (any)
+        {
+            output.write(JavaFile.builder(packageName, builder.build()).build());
+        }
+    }
+
+    private static PreprocessedEiderMessage find(final List<PreprocessedEiderMessage> objects, final String name,
+        final PreprocessedEiderMessage target)
+    {
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            if (object.getName().equals(name) || object.getClassNameInput().equals(name))
+            {
+                return object;
+            }
+        }
+        throw new AgronaWriterException("Unknown spec " + name + " to project " + target.getName() + " from");
+    }
+
+    private MethodSpec projection(final PreprocessedEiderMessage source, final PreprocessedEiderMessage target,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        if (source.isSequenceLock() || target.isSequenceLock() || specGenerator.hasAtLeastOneRecord(target))
+        {
+            throw new AgronaWriterException("Projections cannot read or write specs with a sequence lock, or " +
+                "write specs with records: " + source.getName() + " to " + target.getName());
+        }
+        if (source.getByteOrder() != target.getByteOrder())
+        {
+            throw new AgronaWriterException("Projections copy fields as they are, so need specs of the same byte " +
+                "order: " + source.getName() + " to " + target.getName());
+        }
+
+        final Map<String, Integer> sourceLayout = specGenerator.layout(source, records);
+        final Map<String, Integer> targetLayout = specGenerator.layout(target, records);
+        final ClassName sourceClass = ClassName.get(source.getPackageNameGen(), source.getName());
+        final ClassName targetClass = ClassName.get(target.getPackageNameGen(), target.getName());
+        final boolean copyHeader = target.mustBuildHeader() && source.mustBuildHeader() &&
+            source.getTimestampHops() == target.getTimestampHops();
+
+        final List<Range> copies = new ArrayList<>();
+        final List<Range> clears = new ArrayList<>();
+        final List<String> mapped = new ArrayList<>();
+        if (copyHeader)
+        {
+            copies.add(new Range(0, 0, headerLength(target, targetLayout)));
+        }
+        for (final PreprocessedEiderProperty property : target.getPropertyList())
+        {
+            final int targetOffset = targetLayout.get(AgronaSpecGenerator.offsetName(property.getName()));
+            final int length = Util.byteLength(property.getType(), property.getAnnotations());
+            final PreprocessedEiderProperty match = match(source, property);
+            if (match == null)
+            {
+                clears.add(new Range(targetOffset, targetOffset, length));
+            }
+            else
+            {
+                copies.add(new Range(sourceLayout.get(AgronaSpecGenerator.offsetName(match.getName())), targetOffset,
+                    length));
+                mapped.add(property.getName());
+            }
+        }
+
+        final MethodSpec.Builder method = MethodSpec.methodBuilder(Util.lowerFirst(source.getName()) + "To" +
+                target.getName())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(int.class)
+            .addJavadoc("Projects the {@link $T} at the source offset into a {@link $T} at the target offset, " +
+                "copying " + (mapped.isEmpty() ? "no fields" : String.join(", ", mapped)) + " and clearing any " +
+                "other field. Returns the length of the target message.", sourceClass, targetClass)
+            .addParameter(DirectBuffer.class, SOURCE, Modifier.FINAL)
+            .addParameter(int.class, "sourceOffset", Modifier.FINAL)
+            .addParameter(MutableDirectBuffer.class, TARGET, Modifier.FINAL)
+            .addParameter(int.class, "targetOffset", Modifier.FINAL);
+
+        for (final Range range : coalesce(copies))
+        {
+            method.addStatement("target.putBytes(targetOffset + " + range.target + ", source, sourceOffset + " +
+                range.source + ", " + range.length + ")");
+        }
+        for (final Range range : coalesce(clears))
+        {
+            method.addStatement("target.setMemory(targetOffset + " + range.target + ", " + range.length +
+                ", (byte)0)");
+        }
+        if (target.mustBuildHeader())
+        {
+            writeHeader(method, target, targetClass, targetLayout, copyHeader);
+        }
+        writePresence(method, source, target, sourceLayout, targetLayout);
+        return method.addStatement("return " + targetLayout.get(BUFFER_LENGTH)).build();
+    }
+
+    private static int headerLength(final PreprocessedEiderMessage object, final Map<String, Integer> layout)
+    {
+        if (layout.containsKey(HOP_COUNT_OFFSET))
+        {
+            return layout.get(HOP_TIMESTAMPS_OFFSET) + object.getTimestampHops() * Long.BYTES;
+        }
+        return layout.get("HEADER_VERSION_OFFSET") + Short.BYTES;
+    }
+
+    private static PreprocessedEiderProperty match(final PreprocessedEiderMessage source,
+        final PreprocessedEiderProperty property)
+    {
+        if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+        {
+            return null;
+        }
+        for (final PreprocessedEiderProperty candidate : source.getPropertyList())
+        {
+            if (candidate.getName().equals(property.getName()) && candidate.getType() == property.getType() &&
+                Util.byteLength(candidate.getType(), candidate.getAnnotations()) ==
+                Util.byteLength(property.getType(), property.getAnnotations()) &&
+                // an absent value is only carried over as absent
+                (!Util.isOptional(candidate.getAnnotations()) || Util.isOptional(property.getAnnotations())))
+            {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merges ranges which follow one another in both the source and the target into one.
+     */
+    private static List<Range> coalesce(final List<Range> ranges)
+    {
+        final List<Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingInt(range -> range.target));
+        final List<Range> result = new ArrayList<>();
+        for (final Range range : sorted)
+        {
+            final Range last = result.isEmpty() ? null : result.get(result.size() - 1);
+            if (last != null && last.source + last.length == range.source &&
+                last.target + last.length == range.target)
+            {
+                result.set(result.size() - 1, new Range(last.source, last.target, last.length + range.length));
+            }
+            else
+            {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    private static void writeHeader(final MethodSpec.Builder method, final PreprocessedEiderMessage target,
+        final ClassName targetClass, final Map<String, Integer> layout, final boolean copied)
+    {
+        method.addStatement("target.putInt(targetOffset + " + layout.get("MESSAGE_LENGTH_OFFSET") + ", " +
+            layout.get(BUFFER_LENGTH) + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+        if (!copied)
+        {
+            method.addStatement("target.putShort(targetOffset + " + layout.get("EIDER_WIRE_ENCODING_TYPE_OFFSET") +
+                ", (short)" + Constants.EIDER_ENCODING_TYPE + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+        }
+        method.addStatement("target.putShort(targetOffset + " + layout.get("PROTOCOL_ID_OFFSET") +
+                ", $T.WIRE_PROTOCOL_ID" + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1, targetClass)
+            .addStatement("target.putShort(targetOffset + " + layout.get("HEADER_VERSION_OFFSET") + ", (short)" +
+                target.getEiderGroupId() + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+        if (!copied && layout.containsKey(HOP_COUNT_OFFSET))
+        {
+            // hop timestamps are only carried between specs with the same number of hops
+            method.addStatement("target.putInt(targetOffset + " + layout.get(HOP_COUNT_OFFSET) + ", 0" +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+        }
+    }
+
+    private static void writePresence(final MethodSpec.Builder method, final PreprocessedEiderMessage source,
+        final PreprocessedEiderMessage target, final Map<String, Integer> sourceLayout,
+        final Map<String, Integer> targetLayout)
+    {
+        final List<PreprocessedEiderProperty> targetOptionals = AgronaSpecGenerator.optionalProperties(target);
+        if (targetOptionals.isEmpty())
+        {
+            return;
+        }
+        final String targetAccessor = AgronaSpecGenerator.presenceAccessor(target);
+        final String sourceAccessor = AgronaSpecGenerator.presenceAccessor(source);
+        method.addStatement("$T presence = 0", targetAccessor.equals("Long") ? long.class : int.class);
+        for (final PreprocessedEiderProperty property : targetOptionals)
+        {
+            final PreprocessedEiderProperty match = match(source, property);
+            if (match == null)
+            {
+                continue;
+            }
+            if (Util.isOptional(match.getAnnotations()))
+            {
+                method.beginControlFlow("if ((source.get" + sourceAccessor + "(sourceOffset + " +
+                        sourceLayout.get(PRESENCE_OFFSET) + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " & $T." +
+                        match.getName().toUpperCase() + PRESENT + ") != 0)",
+                        ClassName.get(source.getPackageNameGen(), source.getName()))
+                    .addStatement("presence |= $T." + property.getName().toUpperCase() + PRESENT,
+                        ClassName.get(target.getPackageNameGen(), target.getName()))
+                    .endControlFlow();
+            }
+            else
+            {
+                method.addStatement("presence |= $T." + property.getName().toUpperCase() + PRESENT,
+                    ClassName.get(target.getPackageNameGen(), target.getName()));
+            }
+        }
+        method.addStatement("target.put" + targetAccessor + "(targetOffset + " + targetLayout.get(PRESENCE_OFFSET) +
+            ", presence" + Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+    }
+
+    private static final class Range
+    {
+        private final int source;
+        private final int target;
+        private final int length;
+
+        private Range(final int source, final int target, final int length)
+        {
+            this.source = source;
+            this.target = target;
+            this.length = length;
+        }
+    }
+}
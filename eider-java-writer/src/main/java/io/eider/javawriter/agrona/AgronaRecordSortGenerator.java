@@ -0,0 +1,492 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import org.agrona.DirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates in place sorts and binary searches over the repeated records of a spec, comparing fields where they lie
+ * in the buffer. Each integer, double or string field of a record is a key on its own, and the fields ranked with
+ * sortKey form one more key, compared in rank order.
+ */
+public class AgronaRecordSortGenerator
+{
+    private static final String COMPARE_ASCII = "compareAscii";
+    private static final String LE = Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+    private static final String LEFT = "left";
+    private static final String RIGHT = "right";
+    private static final String KEY = "key";
+
+    public void addSortMembers(final TypeSpec.Builder builder, final PreprocessedEiderRepeatableRecord rec,
+        final Map<String, Integer> layout)
+    {
+        final List<List<PreprocessedEiderProperty>> keys = keys(rec);
+        if (keys.isEmpty())
+        {
+            return;
+        }
+
+        final String name = rec.getName();
+        final String upper = name.toUpperCase();
+        final ClassName recordName = ClassName.get(rec.getPackageNameGen(), name);
+        boolean hasStringKey = false;
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (sortable(property))
+            {
+                builder.addField(FieldSpec.builder(int.class, fieldOffset(rec, property))
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer(Integer.toString(layout.get(AgronaSpecGenerator.offsetName(property.getName()))))
+                    .build());
+                hasStringKey |= property.getType() == EiderPropertyType.FIXED_STRING;
+            }
+        }
+        builder.addField(FieldSpec.builder(byte[].class, upper + "_SWAP")
+            .addJavadoc("Holds one " + name + " while two are swapped by a sort.")
+            .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new byte[$T.BUFFER_LENGTH]", recordName).build());
+
+        final CodeBlock.Builder dispatch = CodeBlock.builder().beginControlFlow("switch (key)");
+        for (int i = 0; i < keys.size(); i++)
+        {
+            final List<PreprocessedEiderProperty> key = keys.get(i);
+            final String keyName = keyName(key);
+            builder.addMethod(MethodSpec.methodBuilder("sort" + name + "By" + keyName).addModifiers(Modifier.PUBLIC)
+                    .addJavadoc("Sorts the committed " + name + " records in place by " + describe(key) + ", " +
+                        "ascending, without allocating. Strings compare as read, without surrounding spaces. The " +
+                        "sort is not stable.")
+                    .addStatement("sort" + name + "(" + i + ")")
+                    .build())
+                .addMethod(binarySearch(rec, key, keyName))
+                .addMethod(compare(rec, key, keyName));
+            dispatch.add("case " + i + ":\n")
+                .addStatement("return compare" + name + "By" + keyName + "(left, right)");
+        }
+        dispatch.add("default:\n")
+            .addStatement("throw new IllegalArgumentException(\"unknown sort key \" + key)")
+            .endControlFlow();
+
+        builder.addMethod(MethodSpec.methodBuilder("compare" + name).addModifiers(Modifier.PRIVATE)
+                .returns(int.class)
+                .addParameter(int.class, KEY, Modifier.FINAL)
+                .addParameter(int.class, LEFT, Modifier.FINAL)
+                .addParameter(int.class, RIGHT, Modifier.FINAL)
+                .addCode(dispatch.build())
+                .build())
+            .addMethods(sortMethods(rec, recordName));
+        // specs have at most one repeated record, so the string helpers are only ever added once
+        if (hasStringKey)
+        {
+            builder.addMethods(compareAsciiMethods());
+        }
+    }
+
+    private static boolean sortable(final PreprocessedEiderProperty property)
+    {
+        switch (property.getType())
+        {
+            case SHORT:
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case FIXED_STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static List<List<PreprocessedEiderProperty>> keys(final PreprocessedEiderRepeatableRecord rec)
+    {
+        final List<List<PreprocessedEiderProperty>> keys = new ArrayList<>();
+        final List<PreprocessedEiderProperty> ranked = new ArrayList<>();
+        for (final PreprocessedEiderProperty property : rec.getPropertyList())
+        {
+            if (sortable(property))
+            {
+                keys.add(Collections.singletonList(property));
+            }
+            if (Util.sortKey(property.getAnnotations()) > 0)
+            {
+                ranked.add(property);
+            }
+        }
+        ranked.sort(Comparator.comparingInt(property -> Util.sortKey(property.getAnnotations())));
+        for (int i = 1; i < ranked.size(); i++)
+        {
+            if (Util.sortKey(ranked.get(i).getAnnotations()) == Util.sortKey(ranked.get(i - 1).getAnnotations()))
+            {
+                throw new AgronaWriterException("Sort key ranks must be unique: " + rec.getName());
+            }
+        }
+        if (ranked.size() > 1)
+        {
+            keys.add(ranked);
+        }
+        return keys;
+    }
+
+    private static String keyName(final List<PreprocessedEiderProperty> key)
+    {
+        final StringBuilder result = new StringBuilder();
+        for (final PreprocessedEiderProperty property : key)
+        {
+            result.append(result.length() == 0 ? "" : "Then").append(Util.upperFirst(property.getName()));
+        }
+        return result.toString();
+    }
+
+    private static String describe(final List<PreprocessedEiderProperty> key)
+    {
+        final StringBuilder result = new StringBuilder();
+        for (final PreprocessedEiderProperty property : key)
+        {
+            result.append(result.length() == 0 ? "" : " then ").append(property.getName());
+        }
+        return result.toString();
+    }
+
+    private static String fieldOffset(final PreprocessedEiderRepeatableRecord rec,
+        final PreprocessedEiderProperty property)
+    {
+        return rec.getName().toUpperCase() + "_" + AgronaSpecGenerator.offsetName(property.getName());
+    }
+
+    private static String position(final PreprocessedEiderRepeatableRecord rec, final String index)
+    {
+        return rec.getName().toUpperCase() + "_RECORD_START_OFFSET + initialOffset + " + index + " * " +
+            rec.getName() + ".BUFFER_LENGTH";
+    }
+
+    /**
+     * The position of the field of the record at the given index: within the record in the row layout, or within
+     * the field's column in the columnar layout.
+     */
+    private static String address(final PreprocessedEiderRepeatableRecord rec,
+        final PreprocessedEiderProperty property, final String index)
+    {
+        final String upper = rec.getName().toUpperCase();
+        if (rec.isColumnar())
+        {
+            return upper + "_RECORD_START_OFFSET + initialOffset + " + upper + "_COMMITTED_SIZE * " +
+                fieldOffset(rec, property) + " + " + index + " * " +
+                Util.byteLength(property.getType(), property.getAnnotations());
+        }
+        return position(rec, index) + " + " + fieldOffset(rec, property);
+    }
+
+    private static String maxLength(final PreprocessedEiderProperty property)
+    {
+        return property.getAnnotations().get(AttributeConstants.MAXLENGTH);
+    }
+
+    /**
+     * Compares the field of the records at the given indexes.
+     */
+    private static String compareFields(final PreprocessedEiderRepeatableRecord rec,
+        final PreprocessedEiderProperty property)
+    {
+        final String left = address(rec, property, LEFT);
+        final String right = address(rec, property, RIGHT);
+        if (property.getType() == EiderPropertyType.FIXED_STRING)
+        {
+            return COMPARE_ASCII + "(buffer, " + left + ", " + right + ", " + maxLength(property) + ")";
+        }
+        final String getter = "buffer.get" + Util.upperFirst(Util.fromTypeToStr(property.getType()));
+        return Util.upperFirst(boxedName(property.getType())) + ".compare(" + getter + "(" + left + LE +
+            ", " + getter + "(" + right + LE + ")";
+    }
+
+    /**
+     * Compares the field of the record at the middle index with the parameter of the same name.
+     */
+    private static String compareWithValue(final PreprocessedEiderRepeatableRecord rec,
+        final PreprocessedEiderProperty property)
+    {
+        final String position = address(rec, property, "mid");
+        if (property.getType() == EiderPropertyType.FIXED_STRING)
+        {
+            return COMPARE_ASCII + "(buffer, " + position + ", " + maxLength(property) + ", " +
+                property.getName() + ")";
+        }
+        return Util.upperFirst(boxedName(property.getType())) + ".compare(buffer.get" +
+            Util.upperFirst(Util.fromTypeToStr(property.getType())) + "(" + position + LE + ", " +
+            property.getName() + ")";
+    }
+
+    private static String boxedName(final EiderPropertyType type)
+    {
+        return type == EiderPropertyType.INT ? "integer" : Util.fromTypeToStr(type);
+    }
+
+    private MethodSpec compare(final PreprocessedEiderRepeatableRecord rec,
+        final List<PreprocessedEiderProperty> key, final String keyName)
+    {
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder("compare" + rec.getName() + "By" + keyName)
+            .addModifiers(Modifier.PRIVATE).returns(int.class)
+            .addParameter(int.class, LEFT, Modifier.FINAL)
+            .addParameter(int.class, RIGHT, Modifier.FINAL);
+        if (key.size() == 1)
+        {
+            return builder.addStatement("return " + compareFields(rec, key.get(0))).build();
+        }
+        builder.addStatement("int result = " + compareFields(rec, key.get(0)));
+        for (int i = 1; i < key.size(); i++)
+        {
+            builder.beginControlFlow("if (result == 0)")
+                .addStatement("result = " + compareFields(rec, key.get(i)))
+                .endControlFlow();
+        }
+        return builder.addStatement("return result").build();
+    }
+
+    private MethodSpec binarySearch(final PreprocessedEiderRepeatableRecord rec,
+        final List<PreprocessedEiderProperty> key, final String keyName)
+    {
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder("binarySearch" + rec.getName() + "By" + keyName)
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Finds a committed " + rec.getName() + " with the given " + describe(key) + " in records " +
+                "sorted by it, without copying them. Returns its index, or (-(insertion point) - 1) if there is " +
+                "none, as {@link java.util.Arrays#binarySearch(int[], int)} does.");
+        for (final PreprocessedEiderProperty property : key)
+        {
+            builder.addParameter(property.getType() == EiderPropertyType.FIXED_STRING ? CharSequence.class :
+                Util.fromType(property.getType()), property.getName(), Modifier.FINAL);
+        }
+        builder.addStatement("int low = 0")
+            .addStatement("int high = " + rec.getName().toUpperCase() + "_COMMITTED_SIZE - 1")
+            .beginControlFlow("while (low <= high)")
+            .addStatement("final int mid = (low + high) >>> 1")
+            .addStatement("int result = " + compareWithValue(rec, key.get(0)));
+        for (int i = 1; i < key.size(); i++)
+        {
+            builder.beginControlFlow("if (result == 0)")
+                .addStatement("result = " + compareWithValue(rec, key.get(i)))
+                .endControlFlow();
+        }
+        return builder.beginControlFlow("if (result < 0)")
+            .addStatement("low = mid + 1")
+            .nextControlFlow("else if (result > 0)")
+            .addStatement("high = mid - 1")
+            .nextControlFlow("else")
+            .addStatement("return mid")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return -(low + 1)")
+            .build();
+    }
+
+    private List<MethodSpec> sortMethods(final PreprocessedEiderRepeatableRecord rec, final ClassName recordName)
+    {
+        final String name = rec.getName();
+        final String upper = name.toUpperCase();
+        final List<MethodSpec> methods = new ArrayList<>();
+
+        methods.add(MethodSpec.methodBuilder("sort" + name).addModifiers(Modifier.PRIVATE)
+            .addJavadoc("Heap sorts the committed records, which needs no recursion or extra memory.")
+            .addParameter(int.class, KEY, Modifier.FINAL)
+            .addStatement("if (!isMutable) throw new RuntimeException(\"cannot write to immutable buffer\")")
+            .addStatement("final int count = " + upper + "_COMMITTED_SIZE")
+            .beginControlFlow("for (int root = count / 2 - 1; root >= 0; root--)")
+            .addStatement("siftDown" + name + "(key, root, count)")
+            .endControlFlow()
+            .beginControlFlow("for (int end = count - 1; end > 0; end--)")
+            .addStatement("swap" + name + "(0, end)")
+            .addStatement("siftDown" + name + "(key, 0, end)")
+            .endControlFlow()
+            .build());
+
+        methods.add(MethodSpec.methodBuilder("siftDown" + name).addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, KEY, Modifier.FINAL)
+            .addParameter(int.class, "root", Modifier.FINAL)
+            .addParameter(int.class, "count", Modifier.FINAL)
+            .addStatement("int parent = root")
+            .addStatement("int child = 2 * parent + 1")
+            .beginControlFlow("while (child < count)")
+            .beginControlFlow("if (child + 1 < count && compare" + name + "(key, child, child + 1) < 0)")
+            .addStatement("child++")
+            .endControlFlow()
+            .beginControlFlow("if (compare" + name + "(key, parent, child) >= 0)")
+            .addStatement("return")
+            .endControlFlow()
+            .addStatement("swap" + name + "(parent, child)")
+            .addStatement("parent = child")
+            .addStatement("child = 2 * parent + 1")
+            .endControlFlow()
+            .build());
+
+        methods.add(rec.isColumnar() ? swapColumns(rec, recordName) : MethodSpec.methodBuilder("swap" + name)
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, "first", Modifier.FINAL)
+            .addParameter(int.class, "second", Modifier.FINAL)
+            .addStatement("final int firstPosition = " + position(rec, "first"))
+            .addStatement("final int secondPosition = " + position(rec, "second"))
+            .addStatement("mutableBuffer.getBytes(firstPosition, " + upper + "_SWAP)")
+            .addStatement("mutableBuffer.putBytes(firstPosition, mutableBuffer, secondPosition, $T.BUFFER_LENGTH)",
+                recordName)
+            .addStatement("mutableBuffer.putBytes(secondPosition, " + upper + "_SWAP)")
+            .build());
+        return methods;
+    }
+
+    /**
+     * Swaps two columnar records a column at a time.
+     */
+    private MethodSpec swapColumns(final PreprocessedEiderRepeatableRecord rec, final ClassName recordName)
+    {
+        final String upper = rec.getName().toUpperCase();
+        final MethodSpec.Builder builder = MethodSpec.methodBuilder("swap" + rec.getName())
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, "first", Modifier.FINAL)
+            .addParameter(int.class, "second", Modifier.FINAL)
+            .addStatement("final int start = " + upper + "_RECORD_START_OFFSET + initialOffset")
+            .addStatement("int column")
+            .addStatement("int width");
+        for (final PreprocessedEiderProperty property : AgronaColumnarRecordGenerator.columns(rec))
+        {
+            builder.addStatement("column = start + " + upper + "_COMMITTED_SIZE * $T." +
+                    AgronaColumnarRecordGenerator.columnOffsetName(property.getName()), recordName)
+                .addStatement("width = $T." + AgronaColumnarRecordGenerator.widthName(property.getName()),
+                    recordName)
+                .addStatement("mutableBuffer.getBytes(column + first * width, " + upper + "_SWAP, 0, width)")
+                .addStatement("mutableBuffer.putBytes(column + first * width, mutableBuffer, column + second * " +
+                    "width, width)")
+                .addStatement("mutableBuffer.putBytes(column + second * width, " + upper + "_SWAP, 0, width)");
+        }
+        return builder.build();
+    }
+
+    private List<MethodSpec> trimMethods()
+    {
+        final MethodSpec isBlank = MethodSpec.methodBuilder("isBlank")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(boolean.class)
+            .addJavadoc("Checks 8 bytes at once for the zeros of unwritten bytes or the spaces of padding.")
+            .addParameter(long.class, "word", Modifier.FINAL)
+            .addStatement("return word == 0 || word == 0x2020202020202020L")
+            .build();
+
+        final MethodSpec trimStart = MethodSpec.methodBuilder("trimStart")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addStatement("int start = 0")
+            .beginControlFlow("while (start + 8 <= length && isBlank(buffer.getLong(offset + start)))")
+            .addStatement("start += 8")
+            .endControlFlow()
+            .beginControlFlow("while (start < length && (buffer.getByte(offset + start) & 0xFF) <= ' ')")
+            .addStatement("start++")
+            .endControlFlow()
+            .addStatement("return start")
+            .build();
+
+        final MethodSpec trimEnd = MethodSpec.methodBuilder("trimEnd")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class)
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, "start", Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addStatement("int end = length")
+            .beginControlFlow("while (end - 8 >= start && isBlank(buffer.getLong(offset + end - 8)))")
+            .addStatement("end -= 8")
+            .endControlFlow()
+            .beginControlFlow("while (end > start && (buffer.getByte(offset + end - 1) & 0xFF) <= ' ')")
+            .addStatement("end--")
+            .endControlFlow()
+            .addStatement("return end")
+            .build();
+
+        final List<MethodSpec> methods = new ArrayList<>();
+        methods.add(isBlank);
+        methods.add(trimStart);
+        methods.add(trimEnd);
+        return methods;
+    }
+
+    private List<MethodSpec> compareAsciiMethods()
+    {
+        final MethodSpec compareStored = MethodSpec.methodBuilder(COMPARE_ASCII)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class)
+            .addJavadoc("Compares two strings of the given length in the buffer as read, without surrounding spaces.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, LEFT, Modifier.FINAL)
+            .addParameter(int.class, RIGHT, Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addStatement("final int leftStart = trimStart(buffer, left, length)")
+            .addStatement("final int leftLength = trimEnd(buffer, left, leftStart, length) - leftStart")
+            .addStatement("final int rightStart = trimStart(buffer, right, length)")
+            .addStatement("final int rightLength = trimEnd(buffer, right, rightStart, length) - rightStart")
+            .beginControlFlow("for (int i = 0; i < leftLength && i < rightLength; i++)")
+            .addStatement("final int result = (buffer.getByte(left + leftStart + i) & 0xFF) - " +
+                "(buffer.getByte(right + rightStart + i) & 0xFF)")
+            .beginControlFlow("if (result != 0)")
+            .addStatement("return result")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return leftLength - rightLength")
+            .build();
+
+        final MethodSpec compareValue = MethodSpec.methodBuilder(COMPARE_ASCII)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class)
+            .addJavadoc("Compares a string of the given length in the buffer as read with a value, both without " +
+                "surrounding spaces.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addParameter(int.class, "length", Modifier.FINAL)
+            .addParameter(CharSequence.class, "value", Modifier.FINAL)
+            .addStatement("final int start = trimStart(buffer, offset, length)")
+            .addStatement("final int storedLength = trimEnd(buffer, offset, start, length) - start")
+            .addStatement("int valueStart = 0")
+            .addStatement("int valueEnd = value.length()")
+            .beginControlFlow("while (valueStart < valueEnd && value.charAt(valueStart) <= ' ')")
+            .addStatement("valueStart++")
+            .endControlFlow()
+            .beginControlFlow("while (valueEnd > valueStart && value.charAt(valueEnd - 1) <= ' ')")
+            .addStatement("valueEnd--")
+            .endControlFlow()
+            .beginControlFlow("for (int i = 0; i < storedLength && i < valueEnd - valueStart; i++)")
+            .addStatement("final int result = (buffer.getByte(offset + start + i) & 0xFF) - " +
+                "(value.charAt(valueStart + i) & 0xFF)")
+            .beginControlFlow("if (result != 0)")
+            .addStatement("return result")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return storedLength - (valueEnd - valueStart)")
+            .build();
+
+        final List<MethodSpec> methods = trimMethods();
+        methods.add(compareStored);
+        methods.add(compareValue);
+        return methods;
+    }
+}
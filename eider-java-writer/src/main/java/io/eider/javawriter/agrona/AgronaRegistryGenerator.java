@@ -0,0 +1,370 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.javawriter.agrona;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.ByteOrderType;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import javax.lang.model.element.Modifier;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Generates a registry describing every spec with a header, looked up by wire protocol id, so generic code can size,
+ * validate, copy and inspect messages of any type without reflection.
+ */
+public class AgronaRegistryGenerator
+{
+    static final String REGISTRY = "EiderRegistry";
+    static final String MESSAGE_TYPE = "EiderMessageType";
+    private static final String FIELD_TYPE = "FieldType";
+    private static final String INDEX = "index";
+
+    private final String packageName;
+    private final AgronaSpecGenerator specGenerator;
+
+    public AgronaRegistryGenerator(final String packageName, final AgronaSpecGenerator specGenerator)
+    {
+        this.packageName = packageName;
+        this.specGenerator = specGenerator;
+    }
+
+    public void generateRegistry(final EiderOutput output, final List<PreprocessedEiderMessage> objects,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        output.write(JavaFile.builder(packageName, messageType()).build());
+        output.write(JavaFile.builder(packageName, registry(objects, records)).build());
+    }
+
+    private TypeSpec registry(final List<PreprocessedEiderMessage> objects,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final ClassName messageType = ClassName.get(packageName, MESSAGE_TYPE);
+
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            if (object.mustBuildHeader())
+            {
+                minId = Math.min(minId, object.getEiderId());
+                maxId = Math.max(maxId, object.getEiderId());
+            }
+        }
+        if (minId > maxId)
+        {
+            minId = 0;
+            maxId = -1;
+        }
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(REGISTRY)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Describes every Eider message with a header. Lookups by wire protocol id index a single " +
+                "array holding the ids from " + minId + " to " + maxId + ".")
+            .addField(Util.protocolIdOffsetField())
+            .addField(FieldSpec.builder(int.class, "MIN_PROTOCOL_ID")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(Integer.toString(minId)).build())
+            .addField(FieldSpec.builder(ArrayTypeName.of(messageType), "TYPES")
+                .addJavadoc("Indexed by wire protocol id less MIN_PROTOCOL_ID; null where no message has the id.")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T[" + (maxId - minId + 1) + "]", messageType).build())
+            .addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(List.class), messageType), "ALL")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).addStatement("//unused")
+                .build());
+
+        final CodeBlock.Builder init = CodeBlock.builder()
+            .addStatement("final $T<$T> all = new $T<>()", List.class, messageType, ArrayList.class);
+        for (final PreprocessedEiderMessage object : objects)
+        {
+            if (!object.mustBuildHeader())
+            {
+                continue;
+            }
+            final String factory = Util.lowerFirst(object.getName());
+            builder.addMethod(describe(object, records, factory, messageType));
+            init.addStatement("all.add($L())", factory);
+        }
+        init.beginControlFlow("for (final $T type : all)", messageType)
+            .addStatement("TYPES[type.protocolId() - MIN_PROTOCOL_ID] = type")
+            .endControlFlow()
+            .addStatement("ALL = $T.unmodifiableList(all)", Collections.class);
+
+        return builder.addStaticBlock(init.build())
+            .addMethod(MethodSpec.methodBuilder("lookup")
+                .addJavadoc("Returns the message type with the given wire protocol id, or null if there is none.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(messageType)
+                .addParameter(short.class, "protocolId", Modifier.FINAL)
+                .addStatement("final int index = protocolId - MIN_PROTOCOL_ID")
+                .addStatement("return index >= 0 && index < TYPES.length ? TYPES[index] : null")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("lookup")
+                .addJavadoc("Returns the message type of the message with a header at the given offset, or null if " +
+                    "its wire protocol id is not known.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(messageType)
+                .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                .addStatement("return lookup(buffer.getShort(offset + PROTOCOL_ID_OFFSET" +
+                    Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + ")")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("messageLength")
+                .addJavadoc("Returns the total length of the message with a header at the given offset, including " +
+                    "any repeated records, or -1 if its wire protocol id is not known.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(int.class)
+                .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+                .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+                .addStatement("final $T type = lookup(buffer, offset)", messageType)
+                .addStatement("return type == null ? -1 : type.messageLength(buffer, offset)")
+                .build())
+            .addMethod(MethodSpec.methodBuilder("types")
+                .addJavadoc("Every message type, in the order the specs were generated.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(ClassName.get(List.class), messageType))
+                .addStatement("return ALL")
+                .build())
+            .build();
+    }
+
+    private MethodSpec describe(final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records, final String factory, final ClassName messageType)
+    {
+        final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+        final ClassName fieldType = messageType.nestedClass(FIELD_TYPE);
+        final Map<String, Integer> layout = specGenerator.layout(object, records);
+
+        final List<String> names = new ArrayList<>();
+        final List<String> types = new ArrayList<>();
+        final List<String> offsets = new ArrayList<>();
+        final List<String> lengths = new ArrayList<>();
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (property.getType() == EiderPropertyType.REPEATABLE_RECORD)
+            {
+                continue;
+            }
+            names.add("\"" + property.getName() + "\"");
+            types.add(MESSAGE_TYPE + "." + FIELD_TYPE + "." + property.getType().name());
+            offsets.add(Integer.toString(layout.get(AgronaSpecGenerator.offsetName(property.getName()))));
+            lengths.add(Integer.toString(Util.byteLength(property.getType(), property.getAnnotations())));
+        }
+
+        String recordCountOffset = "-1";
+        CodeBlock recordLength = CodeBlock.of("0");
+        if (specGenerator.hasAtLeastOneRecord(object))
+        {
+            final PreprocessedEiderRepeatableRecord rec = specGenerator.listRecords(object, records).get(0);
+            recordCountOffset = Integer.toString(layout.get(AgronaSpecGenerator.offsetName(rec.getName() +
+                "_COUNT")));
+            recordLength = CodeBlock.of("$T.BUFFER_LENGTH", ClassName.get(rec.getPackageNameGen(), rec.getName()));
+        }
+
+        return MethodSpec.methodBuilder(factory)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(messageType)
+            .addStatement("return new $T(\"" + object.getName() + "\", $T.WIRE_PROTOCOL_ID, " +
+                    "$T.WIRE_PROTOCOL_VERSION, $T.FIXED_LENGTH, " + byteOrder(object.getByteOrder()) + ", " +
+                    layout.get("BUFFER_LENGTH") + ", " +
+                    recordCountOffset + ", $L, $T::new,\n" +
+                    "new String[] {" + String.join(", ", names) + "},\n" +
+                    "new $T[] {" + String.join(", ", types) + "},\n" +
+                    "new int[] {" + String.join(", ", offsets) + "},\n" +
+                    "new int[] {" + String.join(", ", lengths) + "})",
+                messageType, flyweight, flyweight, flyweight, recordLength, flyweight, fieldType)
+            .build();
+    }
+
+    private static String byteOrder(final ByteOrderType byteOrder)
+    {
+        return byteOrder == ByteOrderType.NATIVE ? "java.nio.ByteOrder.nativeOrder()" :
+            "java.nio.ByteOrder." + byteOrder.name();
+    }
+
+    private TypeSpec messageType()
+    {
+        final ClassName fieldType = ClassName.get(packageName, MESSAGE_TYPE).nestedClass(FIELD_TYPE);
+        final TypeSpec.Builder fieldTypes = TypeSpec.enumBuilder(FIELD_TYPE).addModifiers(Modifier.PUBLIC)
+            .addJavadoc("The type of a field, as declared in the spec; enums are held as INT.");
+        for (final EiderPropertyType type : Arrays.asList(EiderPropertyType.BOOLEAN, EiderPropertyType.SHORT,
+            EiderPropertyType.INT, EiderPropertyType.LONG, EiderPropertyType.DOUBLE, EiderPropertyType.FIXED_STRING))
+        {
+            fieldTypes.addEnumConstant(type.name());
+        }
+
+        final TypeSpec.Builder builder = TypeSpec.classBuilder(MESSAGE_TYPE)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addJavadoc("Describes the layout of one type of Eider message, as held by the {@link " + REGISTRY +
+                "}. Fields are numbered in the order declared, excluding repeated records.")
+            .addType(fieldTypes.build())
+            .addField(String.class, "name", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(short.class, "protocolId", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(short.class, "version", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(boolean.class, "fixedLength", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(ByteOrder.class, "byteOrder", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int.class, "bufferLength", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int.class, "recordCountOffset", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int.class, "recordLength", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(ParameterizedTypeName.get(Supplier.class, Object.class), "factory", Modifier.PRIVATE,
+                Modifier.FINAL)
+            .addField(String[].class, "fieldNames", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(ArrayTypeName.of(fieldType), "fieldTypes", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int[].class, "fieldOffsets", Modifier.PRIVATE, Modifier.FINAL)
+            .addField(int[].class, "fieldLengths", Modifier.PRIVATE, Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addParameter(String.class, "name", Modifier.FINAL)
+                .addParameter(short.class, "protocolId", Modifier.FINAL)
+                .addParameter(short.class, "version", Modifier.FINAL)
+                .addParameter(boolean.class, "fixedLength", Modifier.FINAL)
+                .addParameter(ByteOrder.class, "byteOrder", Modifier.FINAL)
+                .addParameter(int.class, "bufferLength", Modifier.FINAL)
+                .addParameter(int.class, "recordCountOffset", Modifier.FINAL)
+                .addParameter(int.class, "recordLength", Modifier.FINAL)
+                .addParameter(ParameterizedTypeName.get(Supplier.class, Object.class), "factory", Modifier.FINAL)
+                .addParameter(String[].class, "fieldNames", Modifier.FINAL)
+                .addParameter(ArrayTypeName.of(fieldType), "fieldTypes", Modifier.FINAL)
+                .addParameter(int[].class, "fieldOffsets", Modifier.FINAL)
+                .addParameter(int[].class, "fieldLengths", Modifier.FINAL)
+                .addStatement("this.name = name")
+                .addStatement("this.protocolId = protocolId")
+                .addStatement("this.version = version")
+                .addStatement("this.fixedLength = fixedLength")
+                .addStatement("this.byteOrder = byteOrder")
+                .addStatement("this.bufferLength = bufferLength")
+                .addStatement("this.recordCountOffset = recordCountOffset")
+                .addStatement("this.recordLength = recordLength")
+                .addStatement("this.factory = factory")
+                .addStatement("this.fieldNames = fieldNames")
+                .addStatement("this.fieldTypes = fieldTypes")
+                .addStatement("this.fieldOffsets = fieldOffsets")
+                .addStatement("this.fieldLengths = fieldLengths")
+                .build())
+            .addMethod(getter("name", String.class, "The name of the generated flyweight."))
+            .addMethod(getter("protocolId", short.class, "The wire protocol id."))
+            .addMethod(getter("version", short.class, "The wire protocol version."))
+            .addMethod(MethodSpec.methodBuilder("isFixedLength").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+                .addJavadoc("False if the message has repeated records.")
+                .addStatement("return fixedLength").build())
+            .addMethod(getter("byteOrder", ByteOrder.class, "The byte order of the fields. The header and record " +
+                "count are always little endian."))
+            .addMethod(getter("bufferLength", int.class, "The length of the message, excluding any repeated " +
+                "records."))
+            .addMethod(MethodSpec.methodBuilder("newFlyweight").addModifiers(Modifier.PUBLIC).returns(Object.class)
+                .addJavadoc("Creates a new, unwrapped flyweight for this type of message.")
+                .addStatement("return factory.get()").build())
+            .addMethods(sizeAndCopyMethods())
+            .addMethods(fieldMethods(fieldType));
+        return builder.build();
+    }
+
+    private List<MethodSpec> sizeAndCopyMethods()
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+        results.add(MethodSpec.methodBuilder("messageLength").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("The total length of the message of this type at the given offset, including any repeated " +
+                "records.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .beginControlFlow("if (fixedLength)")
+            .addStatement("return bufferLength")
+            .endControlFlow()
+            .addStatement("return bufferLength + (buffer.getInt(offset + recordCountOffset" +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " * recordLength)")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("validateHeader").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("True if the header at the given offset has the Eider encoding type, and the id and " +
+                "version of this type.")
+            .addParameter(DirectBuffer.class, Constants.BUFFER, Modifier.FINAL)
+            .addParameter(int.class, Constants.OFFSET, Modifier.FINAL)
+            .addStatement("return buffer.getShort(offset + " + Constants.ENCODING_TYPE_OFFSET +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " == " + Constants.EIDER_ENCODING_TYPE + " &&\n" +
+                "buffer.getShort(offset + " + Constants.PROTOCOL_ID_OFFSET +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " == protocolId &&\n" +
+                "buffer.getShort(offset + " + Constants.HEADER_VERSION_OFFSET +
+                Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " == version")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("copy").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Copies the message of this type at the given offset, returning the number of bytes copied.")
+            .addParameter(DirectBuffer.class, "source", Modifier.FINAL)
+            .addParameter(int.class, "sourceOffset", Modifier.FINAL)
+            .addParameter(MutableDirectBuffer.class, "destination", Modifier.FINAL)
+            .addParameter(int.class, "destinationOffset", Modifier.FINAL)
+            .addStatement("final int length = messageLength(source, sourceOffset)")
+            .addStatement("destination.putBytes(destinationOffset, source, sourceOffset, length)")
+            .addStatement("return length")
+            .build());
+        return results;
+    }
+
+    private List<MethodSpec> fieldMethods(final ClassName fieldType)
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+        results.add(MethodSpec.methodBuilder("fieldCount").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addStatement("return fieldNames.length").build());
+        results.add(fieldGetter("fieldName", TypeName.get(String.class), "fieldNames"));
+        results.add(fieldGetter("fieldType", fieldType, "fieldTypes"));
+        results.add(fieldGetter("fieldOffset", TypeName.INT, "fieldOffsets"));
+        results.add(fieldGetter("fieldLength", TypeName.INT, "fieldLengths"));
+        results.add(MethodSpec.methodBuilder("fieldIndex").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("The index of the field with the given name, or -1 if there is none. Look indexes up once, " +
+                "rather than on every message.")
+            .addParameter(String.class, "fieldName", Modifier.FINAL)
+            .beginControlFlow("for (int i = 0; i < fieldNames.length; i++)")
+            .beginControlFlow("if (fieldNames[i].equals(fieldName))")
+            .addStatement("return i")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return -1")
+            .build());
+        return results;
+    }
+
+    private MethodSpec getter(final String name, final Class<?> type, final String javadoc)
+    {
+        return MethodSpec.methodBuilder(name).addModifiers(Modifier.PUBLIC).returns(type)
+            .addJavadoc(javadoc)
+            .addStatement("return " + name).build();
+    }
+
+    private MethodSpec fieldGetter(final String name, final TypeName type, final String array)
+    {
+        return MethodSpec.methodBuilder(name).addModifiers(Modifier.PUBLIC).returns(type)
+            .addParameter(int.class, INDEX, Modifier.FINAL)
+            .addStatement("return " + array + "[index]").build();
+    }
+}
@@ -18,30 +18,36 @@ package io.eider.javawriter.agrona;
 
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeSpec;
+import io.eider.internals.ByteOrderType;
 import io.eider.internals.EiderPropertyType;
 import io.eider.internals.PreprocessedEiderMessage;
 import io.eider.internals.PreprocessedEiderProperty;
 import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderOutput;
+import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 
-import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Modifier;
-import javax.tools.JavaFileObject;
-import java.io.IOException;
-import java.io.Writer;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static io.eider.javawriter.agrona.Constants.BUFFER;
 import static io.eider.javawriter.agrona.Constants.FALSE;
+import static io.eider.javawriter.agrona.Constants.HASH_MULTIPLIER;
 import static io.eider.javawriter.agrona.Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN;
 import static io.eider.javawriter.agrona.Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
 import static io.eider.javawriter.agrona.Constants.MUTABLE_BUFFER;
@@ -58,8 +64,22 @@ public class AgronaSpecGenerator
     private static final String VALUE = "value";
     private static final String COMMITTED_SIZE = "CommittedSize";
     private static final String RETURN = "return ";
-    private static final String VALUE_JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN = ", value, java.nio.ByteOrder.LITTLE_ENDIAN)";
-
+    private static final String SEQUENCE_LOCK_READ_ATTEMPTS = "SEQUENCE_LOCK_READ_ATTEMPTS";
+    private static final String SEQUENCE = "initialOffset + SEQUENCE_LOCK_OFFSET";
+    private static final String REQUIRE_UNSAFE =
+        "if (!isUnsafe) throw new RuntimeException(\"a sequence lock requires an UnsafeBuffer\")";
+    private static final String PRESENCE = "initialOffset + OPTIONAL_PRESENCE_OFFSET";
+
+    private final AgronaCountersGenerator countersGenerator;
+    private final AgronaRecordSortGenerator recordSortGenerator = new AgronaRecordSortGenerator();
+    private final AgronaColumnarRecordGenerator columnarRecordGenerator;
+
+    public AgronaSpecGenerator(final AgronaCountersGenerator countersGenerator,
+        final AgronaColumnKernelsGenerator columnKernelsGenerator)
+    {
+        this.countersGenerator = countersGenerator;
+        this.columnarRecordGenerator = new AgronaColumnarRecordGenerator(columnKernelsGenerator);
+    }
 
     public boolean hasAtLeastOneRecord(final PreprocessedEiderMessage object)
     {
@@ -93,7 +113,39 @@ public class AgronaSpecGenerator
         return results;
     }
 
-    public void generateSpecObject(final ProcessingEnvironment processingEnv, final PreprocessedEiderMessage object,
+    /**
+     * The offsets and lengths used by the flyweight of the object, keyed by the name of their constant, such as
+     * FIELD_OFFSET or BUFFER_LENGTH, for code which needs to know the layout without access to the flyweight.
+     */
+    public Map<String, Integer> layout(final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final AgronaWriterState state = new AgronaWriterState();
+        offsetsForFields(object, records, state);
+        return state.getLayout();
+    }
+
+    /**
+     * The offsets of the fields of a record within each record, keyed by the name of their constant, and its
+     * BUFFER_LENGTH. For columnar records these are the offsets of their columns per record.
+     */
+    public Map<String, Integer> recordLayout(final PreprocessedEiderRepeatableRecord rec)
+    {
+        if (rec.isColumnar())
+        {
+            return columnarRecordGenerator.columnLayout(rec);
+        }
+        final AgronaWriterState state = new AgronaWriterState();
+        offsetsForRecFields(rec, state);
+        return state.getLayout();
+    }
+
+    public static String offsetName(final String name)
+    {
+        return name.toUpperCase() + "_OFFSET";
+    }
+
+    public void generateSpecObject(final EiderOutput output, final PreprocessedEiderMessage object,
         final List<PreprocessedEiderRepeatableRecord> records,
         final AgronaWriterState state)
     {
@@ -107,41 +159,57 @@ public class AgronaSpecGenerator
             .addFields(internalFields(object, records))
             .addMethod(buildSetUnderlyingBuffer())
             .addMethod(buildEiderId())
-            .addMethods(forInternalFields(object));
+            .addMethods(forInternalFields(object, state));
 
         if (object.mustBuildHeader())
         {
             builder.addField(buildVersionField(object.getEiderGroupId()))
-                .addMethod(buildSetUnderlyingBufferAndWriteHeader());
+                .addMethod(buildSetUnderlyingBufferAndWriteHeader(object, listRecords(object, records), state));
         }
 
         if (hasAtLeastOneRecord(object))
         {
-            builder.addMethods(buildRecordHelpers(object, records));
+            builder.addMethods(buildRecordHelpers(object, records, state));
+            for (final PreprocessedEiderRepeatableRecord rec : listRecords(object, records))
+            {
+                recordSortGenerator.addSortMembers(builder, rec, recordLayout(rec));
+                if (rec.isColumnar())
+                {
+                    columnarRecordGenerator.addColumnMembers(builder, rec);
+                }
+            }
         }
 
-        final TypeSpec generated = builder.build();
-
-        final JavaFile javaFile = JavaFile.builder(object.getPackageNameGen(), generated).build();
+        if (object.isSequenceLock())
+        {
+            builder.addField(FieldSpec.builder(int.class, SEQUENCE_LOCK_READ_ATTEMPTS)
+                    .addJavadoc("The number of times tryRead reads the fields before giving up on a busy writer.")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL).initializer("1000").build())
+                .addMethods(buildSequenceLockMethods(object));
+        }
 
-        try
-        { // write the file
-            final JavaFileObject source =
-                processingEnv.getFiler().createSourceFile(object.getPackageNameGen() + "." + object.getName());
-            final Writer writer = source.openWriter();
-            javaFile.writeTo(writer);
-            writer.flush();
-            writer.close();
+        if (!optionalProperties(object).isEmpty())
+        {
+            builder.addFields(buildPresenceFields(object))
+                .addMethods(buildPresenceMethods(object));
         }
-        catch (final IOException e)
+
+        if (hasAtomicProperty(object) && object.getByteOrder() == ByteOrderType.LITTLE_ENDIAN)
         {
-            // Note: calling e.printStackTrace() will print IO errors
-            // that occur from the file already existing after its first run, this is normal
+            builder.addStaticBlock(buildNativeOrderCheck(object));
         }
+
+        builder.addMethods(buildContentMethods(object, records));
+
+        final TypeSpec generated = builder.build();
+
+        final JavaFile javaFile = JavaFile.builder(object.getPackageNameGen(), generated).build();
+
+        output.write(javaFile);
     }
 
     private Iterable<MethodSpec> buildRecordHelpers(final PreprocessedEiderMessage object,
-        final List<PreprocessedEiderRepeatableRecord> records)
+        final List<PreprocessedEiderRepeatableRecord> records, final AgronaWriterState state)
     {
         final List<PreprocessedEiderRepeatableRecord> toGen = listRecords(object, records);
         final List<MethodSpec> methods = new ArrayList<>();
@@ -181,18 +249,40 @@ public class AgronaSpecGenerator
         for (final PreprocessedEiderRepeatableRecord rec : toGen)
         {
             final MethodSpec.Builder resetSize = MethodSpec.methodBuilder("reset" + rec.getName() + "Size").addJavadoc(
-                    "Sets the amount of " + rec.getName() + " items that can be written to the buffer")
-                .addModifiers(Modifier.PUBLIC).addParameter(int.class, rec.getName() + COMMITTED_SIZE, Modifier.FINAL)
-                .addStatement(rec.getName().toUpperCase() + "_COMMITTED_SIZE = " + rec.getName() + COMMITTED_SIZE)
-                .addStatement("buffer.checkLimit(committedBufferLength())").addStatement(
+                    "Sets the amount of " + rec.getName() + " items that can be written to the buffer" +
+                        (rec.isColumnar() ? ". The records already written keep their rows, as their columns " +
+                            "move to where the new amount places them." : ""))
+                .addModifiers(Modifier.PUBLIC).addParameter(int.class, rec.getName() + COMMITTED_SIZE, Modifier.FINAL);
+            if ((state.isCounters() && object.mustBuildHeader()) || rec.isColumnar())
+            {
+                resetSize.addStatement("final int previousSize = buffer.getInt(initialOffset + " +
+                    rec.getName().toUpperCase() + "_COUNT_OFFSET" + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+            }
+            resetSize.addStatement(rec.getName().toUpperCase() + "_COMMITTED_SIZE = " + rec.getName() + COMMITTED_SIZE)
+                .addStatement("buffer.checkLimit(committedBufferLength())");
+            if (rec.isColumnar())
+            {
+                // the columns are placed by the count, so the records already written move with it
+                resetSize.addStatement(AgronaColumnarRecordGenerator.moveColumnsName(rec) + "(previousSize, " +
+                    rec.getName() + COMMITTED_SIZE + ")");
+            }
+            resetSize.addStatement(
                     "mutableBuffer.putInt(" + rec.getName().toUpperCase() + "_COUNT_OFFSET + initialOffset, " +
                         rec.getName() + COMMITTED_SIZE + ", java.nio.ByteOrder.LITTLE_ENDIAN)").returns(void.class);
+            if (state.isCounters() && object.mustBuildHeader())
+            {
+                // only the records added or removed since the count was last written
+                resetSize.addStatement(countersGenerator.counter(object.getName(),
+                    AgronaCountersGenerator.BYTES_ENCODED) + ".getAndAddOrdered((long)(" + rec.getName() +
+                    COMMITTED_SIZE + " - previousSize) * " + rec.getName() + ".BUFFER_LENGTH)");
+            }
             methods.add(resetSize.build());
 
             final MethodSpec.Builder readSize = MethodSpec.methodBuilder("read" + rec.getName() + "Size").addJavadoc(
                     "Returns & internally sets the amount of " + rec.getName() + " items that the buffer potentially " +
                         "contains").addModifiers(Modifier.PUBLIC).addStatement(rec.getName().toUpperCase() +
-                    "_COMMITTED_SIZE = mutableBuffer.getInt(" + rec.getName().toUpperCase() + "_COUNT_OFFSET)")
+                    "_COMMITTED_SIZE = buffer.getInt(initialOffset + " + rec.getName().toUpperCase() +
+                    "_COUNT_OFFSET, java.nio.ByteOrder.LITTLE_ENDIAN)")
                 .addStatement(RETURN + rec.getName().toUpperCase() + "_COMMITTED_SIZE").returns(int.class);
             methods.add(readSize.build());
 
@@ -202,11 +292,12 @@ public class AgronaSpecGenerator
                 MethodSpec.methodBuilder("get" + rec.getName()).addJavadoc("Gets " +
                         "the " + rec.getName() + " flyweight at the given index").addModifiers(Modifier.PUBLIC)
                     .addParameter(int.class, "offset", Modifier.FINAL).addStatement(
-                        "if (" + rec.getName().toUpperCase() + "_COMMITTED_SIZE < offset) throw new " +
+                        "if (" + rec.getName().toUpperCase() + "_COMMITTED_SIZE <= offset) throw new " +
                             "RuntimeException(\"cannot access record beyond committed size\")").addStatement(
                         rec.getName().toUpperCase() + "_FLYWEIGHT.setUnderlyingBuffer(this.buffer, " +
-                            rec.getName().toUpperCase() + "_RECORD_START_OFFSET + initialOffset + (offset * " +
-                            rec.getName() + ".BUFFER_LENGTH))")
+                            rec.getName().toUpperCase() + "_RECORD_START_OFFSET + initialOffset" +
+                            (rec.isColumnar() ? ", " + rec.getName().toUpperCase() + "_COMMITTED_SIZE, offset)" :
+                            " + (offset * " + rec.getName() + ".BUFFER_LENGTH))"))
                     .addStatement(RETURN + rec.getName().toUpperCase() + "_FLYWEIGHT").returns(recordName);
             methods.add(getRecordAtOffset.build());
         }
@@ -272,38 +363,75 @@ public class AgronaSpecGenerator
 
         if (object.mustBuildHeader())
         {
-            results.add(FieldSpec.builder(int.class, "MESSAGE_LENGTH_OFFSET")
+            results.add(intConstant(state, "MESSAGE_LENGTH_OFFSET", Constants.MESSAGE_LENGTH_OFFSET)
                 .addJavadoc("The offset for the message length within the buffer.")
                 .addModifiers(Modifier.STATIC)
                 .addModifiers(Modifier.PRIVATE)
-                .addModifiers(Modifier.FINAL).initializer(Integer.toString(state.getCurrentOffset())).build());
-
-            state.extendCurrentOffset(Integer.BYTES);
+                .addModifiers(Modifier.FINAL).build());
 
-            results.add(FieldSpec.builder(int.class, "EIDER_WIRE_ENCODING_TYPE_OFFSET")
+            results.add(intConstant(state, "EIDER_WIRE_ENCODING_TYPE_OFFSET", Constants.ENCODING_TYPE_OFFSET)
                 .addJavadoc("The offset for the encoding type within the buffer.")
                 .addModifiers(Modifier.STATIC)
                 .addModifiers(Modifier.PRIVATE)
-                .addModifiers(Modifier.FINAL).initializer(Integer.toString(state.getCurrentOffset())).build());
-
-            state.extendCurrentOffset(Short.BYTES);
+                .addModifiers(Modifier.FINAL).build());
 
-            results.add(FieldSpec.builder(int.class, "PROTOCOL_ID_OFFSET")
+            results.add(intConstant(state, "PROTOCOL_ID_OFFSET", Constants.PROTOCOL_ID_OFFSET)
                 .addJavadoc("The offset for the WIRE_PROTOCOL_ID within the buffer.")
                 .addModifiers(Modifier.STATIC)
                 .addModifiers(Modifier.PRIVATE)
-                .addModifiers(Modifier.FINAL).initializer(Integer.toString(state.getCurrentOffset())).build());
+                .addModifiers(Modifier.FINAL).build());
 
-            state.extendCurrentOffset(Short.BYTES);
-
-            results.add(FieldSpec.builder(int.class, "HEADER_VERSION_OFFSET").addJavadoc("The offset for the " +
-                    "WIRE_PROTOCOL_VERSION within the buffer.")
+            results.add(intConstant(state, "HEADER_VERSION_OFFSET", Constants.HEADER_VERSION_OFFSET)
+                .addJavadoc("The offset for the WIRE_PROTOCOL_VERSION within the buffer.")
                 .addModifiers(Modifier.STATIC)
                 .addModifiers(Modifier.PRIVATE)
-                .addModifiers(Modifier.FINAL).initializer(Integer.toString(state.getCurrentOffset())).build());
+                .addModifiers(Modifier.FINAL).build());
+
+            state.setCurrentOffset(Constants.HEADER_LENGTH);
+
+            if (object.getTimestampHops() > 0)
+            {
+                results.add(intConstant(state, "MAX_TIMESTAMP_HOPS", object.getTimestampHops())
+                    .addJavadoc("The number of hop timestamps which can be stamped into the header.")
+                    .addModifiers(Modifier.STATIC).addModifiers(Modifier.PUBLIC).addModifiers(Modifier.FINAL).build());
+
+                results.add(intConstant(state, "HOP_COUNT_OFFSET", state.getCurrentOffset())
+                    .addJavadoc("The offset for the number of hop timestamps stamped within the buffer.")
+                    .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build());
+
+                state.extendCurrentOffset(Integer.BYTES);
 
-            state.extendCurrentOffset(Short.BYTES);
+                results.add(intConstant(state, "HOP_TIMESTAMPS_OFFSET", state.getCurrentOffset())
+                    .addJavadoc("The offset for the first hop timestamp within the buffer.")
+                    .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build());
 
+                state.extendCurrentOffset(object.getTimestampHops() * Long.BYTES);
+            }
+        }
+
+        if (object.isSequenceLock())
+        {
+            // aligned so the sequence is read and written atomically when the flyweight offset is also aligned
+            state.setCurrentOffset(BitUtil.align(state.getCurrentOffset(), Long.BYTES));
+            results.add(intConstant(state, "SEQUENCE_LOCK_OFFSET", state.getCurrentOffset())
+                .addJavadoc("The offset for the sequence guarding the fields; odd while a write is in progress.")
+                .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build());
+
+            state.extendCurrentOffset(Long.BYTES);
+        }
+
+        final int optionalCount = optionalProperties(object).size();
+        if (optionalCount > Long.SIZE)
+        {
+            throw new AgronaWriterException("At most " + Long.SIZE + " fields can be optional: " + object.getName());
+        }
+        if (optionalCount > 0)
+        {
+            results.add(intConstant(state, "OPTIONAL_PRESENCE_OFFSET", state.getCurrentOffset())
+                .addJavadoc("The offset for the bitmap of the optional fields which are present.")
+                .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build());
+
+            state.extendCurrentOffset(optionalCount > Integer.SIZE ? Long.BYTES : Integer.BYTES);
         }
 
         for (final PreprocessedEiderProperty property : object.getPropertyList())
@@ -323,70 +451,95 @@ public class AgronaSpecGenerator
                     "_COUNT", EiderPropertyType.INT, "", Collections.emptyMap());
                 results.add(genOffset(fake, state));
 
-                results.add(FieldSpec.builder(int.class, rec.getName().toUpperCase() + "_RECORD_START_OFFSET")
+                results.add(intConstant(state, rec.getName().toUpperCase() + "_RECORD_START_OFFSET",
+                    state.getCurrentOffset())
                     .addJavadoc("The byte offset in the byte array to start writing " + rec.getName() + ".")
-                    .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL)
-                    .initializer(Integer.toString(state.getCurrentOffset())).build());
+                    .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build());
             }
         }
 
 
         if (!hasAtLeastOneRecord(object))
         {
-            results.add(FieldSpec.builder(int.class, BUFFER_LENGTH).addJavadoc("The total bytes required to store " +
-                    "this fixed length object.").addModifiers(Modifier.STATIC).addModifiers(Modifier.PUBLIC)
-                .addModifiers(Modifier.FINAL).initializer(Integer.toString(state.getCurrentOffset())).build());
+            results.add(intConstant(state, BUFFER_LENGTH, state.getCurrentOffset())
+                .addJavadoc("The total bytes required to store this fixed length object.")
+                .addModifiers(Modifier.STATIC).addModifiers(Modifier.PUBLIC).addModifiers(Modifier.FINAL).build());
         }
         else
         {
-            results.add(FieldSpec.builder(int.class, BUFFER_LENGTH).addJavadoc("The total bytes required to store the" +
-                    " core data, excluding any repeating record data. " +
-                    "Use precomputeBufferLength to compute buffer " +
-                    "length this object.").addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE)
-                .addModifiers(Modifier.FINAL).initializer(Integer.toString(state.getCurrentOffset())).build());
+            results.add(intConstant(state, BUFFER_LENGTH, state.getCurrentOffset())
+                .addJavadoc("The total bytes required to store the core data, excluding any repeating record data. " +
+                    "Use precomputeBufferLength to compute buffer length this object.")
+                .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build());
         }
 
         return results;
     }
 
+    /**
+     * Starts an int constant of the layout, recording its value in the state so the layout can be read back as data.
+     */
+    private static FieldSpec.Builder intConstant(final AgronaWriterState state, final String name, final int value)
+    {
+        state.putLayout(name, value);
+        return FieldSpec.builder(int.class, name).initializer(Integer.toString(value));
+    }
+
     private FieldSpec genOffset(final PreprocessedEiderProperty property, final AgronaWriterState runningOffset)
     {
         final int bytes = Util.byteLength(property.getType(), property.getAnnotations());
+        if (Util.isAtomic(property.getAnnotations()))
+        {
+            // atomic operations on UnsafeBuffer require the field to be aligned to its width
+            runningOffset.setCurrentOffset(BitUtil.align(runningOffset.getCurrentOffset(), bytes));
+        }
         final int startAt = runningOffset.getCurrentOffset();
         runningOffset.extendCurrentOffset(bytes);
 
-        return FieldSpec.builder(int.class, getOffsetName(property.getName())).addJavadoc("The byte offset in the " +
-                "byte array for this " + property.getType().name() + ". Byte length is " + bytes + ".")
-            .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL)
-            .initializer(Integer.toString(startAt)).build();
-    }
-
-    private String getOffsetName(final String name)
-    {
-        return name.toUpperCase() + "_OFFSET";
+        return intConstant(runningOffset, offsetName(property.getName()), startAt).addJavadoc("The byte offset in " +
+                "the byte array for this " + property.getType().name() + ". Byte length is " + bytes + ".")
+            .addModifiers(Modifier.STATIC).addModifiers(Modifier.PRIVATE).addModifiers(Modifier.FINAL).build();
     }
 
     @SuppressWarnings("all")
-    private Iterable<MethodSpec> forInternalFields(PreprocessedEiderMessage object)
+    private Iterable<MethodSpec> forInternalFields(final PreprocessedEiderMessage object,
+        final AgronaWriterState state)
     {
         List<PreprocessedEiderProperty> propertyList = object.getPropertyList();
         List<MethodSpec> results = new ArrayList<>();
 
         if (object.mustBuildHeader())
         {
-            results.add(MethodSpec.methodBuilder("writeHeader").addJavadoc("Writes the header data to the buffer.")
+            final MethodSpec.Builder writeHeader = MethodSpec.methodBuilder("writeHeader")
+                .addJavadoc("Writes the header data to the buffer.")
                 .addModifiers(Modifier.PUBLIC)
                 .addStatement("if (!isMutable) throw new RuntimeException(\"cannot write to immutable buffer\")")
                 .addStatement("mutableBuffer.putInt(initialOffset + MESSAGE_LENGTH_OFFSET" + ", BUFFER_LENGTH, " +
                     JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
                 .addStatement("mutableBuffer.putShort(initialOffset + EIDER_WIRE_ENCODING_TYPE_OFFSET" +
-                    ",  (short)43, " + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
+                    ", (short)" + Constants.EIDER_ENCODING_TYPE + ", " + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
                 .addStatement("mutableBuffer.putShort(initialOffset + PROTOCOL_ID_OFFSET" + ", WIRE_PROTOCOL_ID, " +
                     JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
                 .addStatement("mutableBuffer.putShort(initialOffset + HEADER_VERSION_OFFSET" +
-                    ", WIRE_PROTOCOL_VERSION, " + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN).build());
+                    ", WIRE_PROTOCOL_VERSION, " + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN);
+            if (object.getTimestampHops() > 0)
+            {
+                writeHeader.addStatement("mutableBuffer.putInt(initialOffset + HOP_COUNT_OFFSET, 0, " +
+                    JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN);
+            }
+            if (!optionalProperties(object).isEmpty())
+            {
+                writeHeader.addStatement("mutableBuffer.put" + presenceAccessor(object) + "(" + PRESENCE + ", 0, " +
+                    JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN);
+            }
+            results.add(writeHeader.build());
+            if (object.getTimestampHops() > 0)
+            {
+                results.addAll(buildTimestampHopMethods());
+            }
 
-            results.add(MethodSpec.methodBuilder("validateHeader").addModifiers(Modifier.PUBLIC).addJavadoc(
+            final MethodSpec.Builder validateHeader = MethodSpec.methodBuilder("validateHeader")
+                .addModifiers(Modifier.PUBLIC).addJavadoc(
                     "Validates the length and wireProtocolId in the header " + "against the expected values. False if " +
                         "invalid.").returns(boolean.class)
                 .addStatement("final int bufferLength = buffer.getInt(initialOffset + MESSAGE_LENGTH_OFFSET" +
@@ -398,11 +551,26 @@ public class AgronaSpecGenerator
                     "(initialOffset + PROTOCOL_ID_OFFSET" + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
                 .addStatement("final short " +
                     "wireProtocolVersion = buffer.getShort(initialOffset + " + "HEADER_VERSION_OFFSET" +
-                    JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
-                .addStatement("if (encodingType != EIDER_WIRE_ENCODING_TYPE_OFFSET) return false")
-                .addStatement("if (wireProtocolId != WIRE_PROTOCOL_ID) return false")
-                .addStatement("if (wireProtocolVersion != WIRE_PROTOCOL_VERSION) return false")
-                .addStatement("return bufferLength == BUFFER_LENGTH").build());
+                    JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+            if (state.isCounters())
+            {
+                validateHeader.beginControlFlow("if (encodingType != " + Constants.EIDER_ENCODING_TYPE +
+                        " || wireProtocolId != WIRE_PROTOCOL_ID || wireProtocolVersion != WIRE_PROTOCOL_VERSION" +
+                        " || bufferLength != BUFFER_LENGTH)")
+                    .addStatement(countersGenerator.counter(object.getName(),
+                        AgronaCountersGenerator.VALIDATION_FAILURES) + ".incrementOrdered()")
+                    .addStatement("return false")
+                    .endControlFlow()
+                    .addStatement(RETURN_TRUE);
+            }
+            else
+            {
+                validateHeader.addStatement("if (encodingType != " + Constants.EIDER_ENCODING_TYPE + ") return false")
+                    .addStatement("if (wireProtocolId != WIRE_PROTOCOL_ID) return false")
+                    .addStatement("if (wireProtocolVersion != WIRE_PROTOCOL_VERSION) return false")
+                    .addStatement("return bufferLength == BUFFER_LENGTH");
+            }
+            results.add(validateHeader.build());
         }
 
         for (final PreprocessedEiderProperty property : propertyList)
@@ -412,18 +580,392 @@ public class AgronaSpecGenerator
                 break;
             }
 
-            results.add(genReadProperty(property));
-            results.add(genWriteProperty(property));
+            results.add(genReadProperty(property, object.getByteOrder()));
+            results.add(genWriteProperty(property, object.getByteOrder(), Util.isOptional(property.getAnnotations())
+                ? "mutableBuffer.put" + presenceAccessor(object) + "(" + PRESENCE + ", mutableBuffer.get" +
+                presenceAccessor(object) + "(" + PRESENCE + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " | " +
+                presenceBit(property) + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1
+                : null));
+            results.add(genCompareProperty(property, object.getByteOrder()));
             if (property.getType() == EiderPropertyType.FIXED_STRING)
             {
                 results.add(genWritePropertyWithPadding(property));
             }
+            if (Util.isAtomic(property.getAnnotations()))
+            {
+                results.addAll(genAtomicProperty(property));
+            }
+        }
+
+        return results;
+    }
+
+    private boolean hasAtomicProperty(final PreprocessedEiderMessage object)
+    {
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (Util.isAtomic(property.getAnnotations()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The atomic accessors of UnsafeBuffer use the native order, so a little endian spec with atomic fields only
+     * agrees with its plain reads and writes on a little endian platform; fail when the class is loaded on any other.
+     */
+    private CodeBlock buildNativeOrderCheck(final PreprocessedEiderMessage object)
+    {
+        return CodeBlock.builder()
+            .beginControlFlow("if ($T.nativeOrder() != $T.LITTLE_ENDIAN)", ByteOrder.class, ByteOrder.class)
+            .addStatement("throw new $T($S)", IllegalStateException.class, object.getName() + " has atomic " +
+                "fields, which use the native byte order, but is little endian; make it NATIVE to use it here")
+            .endControlFlow()
+            .build();
+    }
+
+    static List<PreprocessedEiderProperty> optionalProperties(final PreprocessedEiderMessage object)
+    {
+        final List<PreprocessedEiderProperty> results = new ArrayList<>();
+        for (final PreprocessedEiderProperty property : object.getPropertyList())
+        {
+            if (Util.isOptional(property.getAnnotations()))
+            {
+                results.add(property);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The buffer accessor suffix of the presence bitmap of the object, which is a long when it has more optional
+     * fields than an int has bits.
+     */
+    static String presenceAccessor(final PreprocessedEiderMessage object)
+    {
+        return optionalProperties(object).size() > Integer.SIZE ? "Long" : "Int";
+    }
 
+    private static String presenceBit(final PreprocessedEiderProperty property)
+    {
+        return property.getName().toUpperCase() + "_PRESENT";
+    }
+
+    private List<FieldSpec> buildPresenceFields(final PreprocessedEiderMessage object)
+    {
+        final List<FieldSpec> results = new ArrayList<>();
+        final boolean wide = "Long".equals(presenceAccessor(object));
+        final List<PreprocessedEiderProperty> optionals = optionalProperties(object);
+        for (int i = 0; i < optionals.size(); i++)
+        {
+            results.add(FieldSpec.builder(wide ? long.class : int.class, presenceBit(optionals.get(i)))
+                .addJavadoc("The bit of " + optionals.get(i).getName() + " in the presence bitmap.")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer((wide ? "1L << " : "1 << ") + i).build());
         }
+        return results;
+    }
 
+    private List<MethodSpec> buildPresenceMethods(final PreprocessedEiderMessage object)
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+        final String accessor = presenceAccessor(object);
+        final Class<?> type = "Long".equals(accessor) ? long.class : int.class;
+
+        results.add(MethodSpec.methodBuilder("readPresence").addModifiers(Modifier.PUBLIC).returns(type)
+            .addJavadoc("Reads the bitmap of the optional fields which are present, so that several can be checked " +
+                "against their _PRESENT bits with a single load.")
+            .addStatement(RETURN + "buffer.get" + accessor + "(" + PRESENCE + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .build());
+
+        results.add(MethodSpec.methodBuilder("clearPresence").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Marks every optional field as absent.")
+            .addStatement("if (!isMutable) throw new RuntimeException(\"Cannot write to immutable buffer\")")
+            .addStatement("mutableBuffer.put" + accessor + "(" + PRESENCE + ", 0, " + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
+            .build());
+
+        for (final PreprocessedEiderProperty property : optionalProperties(object))
+        {
+            final String name = Util.upperFirst(property.getName());
+            results.add(MethodSpec.methodBuilder("has" + name).addModifiers(Modifier.PUBLIC).returns(boolean.class)
+                .addJavadoc("True if " + property.getName() + " has been written since it was last cleared. The " +
+                    "value read while it is absent is whatever the buffer holds.")
+                .addStatement(RETURN + "(buffer.get" + accessor + "(" + PRESENCE + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 +
+                    " & " + presenceBit(property) + ") != 0")
+                .build());
+
+            results.add(MethodSpec.methodBuilder("clear" + name).addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Marks " + property.getName() + " as absent, leaving its bytes as they are.")
+                .addStatement("if (!isMutable) throw new RuntimeException(\"Cannot write to immutable buffer\")")
+                .addStatement("mutableBuffer.put" + accessor + "(" + PRESENCE + ", mutableBuffer.get" + accessor + "(" +
+                    PRESENCE + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " & ~" + presenceBit(property) +
+                    JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+                .build());
+        }
         return results;
     }
 
+    private List<MethodSpec> buildTimestampHopMethods()
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+
+        results.add(MethodSpec.methodBuilder("stampHop").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Appends a timestamp to the hop trail in the header, in place. Returns false if all " +
+                "MAX_TIMESTAMP_HOPS have been stamped already.")
+            .addParameter(long.class, "timestampNs", Modifier.FINAL)
+            .addStatement("if (!isMutable) throw new RuntimeException(\"cannot write to immutable buffer\")")
+            .addStatement("final int hops = buffer.getInt(initialOffset + HOP_COUNT_OFFSET" +
+                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .addStatement("if (hops >= MAX_TIMESTAMP_HOPS) return false")
+            .addStatement("mutableBuffer.putLong(initialOffset + HOP_TIMESTAMPS_OFFSET + (hops * Long.BYTES), " +
+                "timestampNs, " + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
+            .addStatement("mutableBuffer.putInt(initialOffset + HOP_COUNT_OFFSET, hops + 1, " +
+                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
+            .addStatement(RETURN_TRUE)
+            .build());
+
+        results.add(MethodSpec.methodBuilder("readHopCount").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Reads the number of hop timestamps stamped so far.")
+            .addStatement("return buffer.getInt(initialOffset + HOP_COUNT_OFFSET" + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .build());
+
+        results.add(MethodSpec.methodBuilder("readHopTimestamp").addModifiers(Modifier.PUBLIC).returns(long.class)
+            .addJavadoc("Reads the hop timestamp at the given index, in the order they were stamped.")
+            .addParameter(int.class, "hop", Modifier.FINAL)
+            .addStatement("if (hop < 0 || hop >= readHopCount()) throw new RuntimeException(\"hop not stamped\")")
+            .addStatement("return buffer.getLong(initialOffset + HOP_TIMESTAMPS_OFFSET + (hop * Long.BYTES)" +
+                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1)
+            .build());
+
+        results.add(MethodSpec.methodBuilder("resetHops").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Clears the hop trail so the message can be stamped again, e.g. when it is forwarded.")
+            .addStatement("if (!isMutable) throw new RuntimeException(\"cannot write to immutable buffer\")")
+            .addStatement("mutableBuffer.putInt(initialOffset + HOP_COUNT_OFFSET, 0, " +
+                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN)
+            .build());
+
+        return results;
+    }
+
+    private List<MethodSpec> buildSequenceLockMethods(final PreprocessedEiderMessage object)
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+
+        results.add(MethodSpec.methodBuilder("beginWrite").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Starts a write by making the sequence odd, so concurrent readers retry. Only a single " +
+                "thread may write, and each beginWrite must be followed by endWrite.")
+            .addStatement(REQUIRE_UNSAFE)
+            .addComment("only the writer changes the sequence, so a plain read of it is current")
+            .addStatement("final long sequence = unsafeBuffer.getLong(" + SEQUENCE + ")")
+            .addStatement("unsafeBuffer.putLongOrdered(" + SEQUENCE + ", sequence + 1)")
+            .addComment("the field writes which follow must not become visible before the odd sequence")
+            .addStatement("$T.storeStoreFence()", VarHandle.class)
+            .build());
+
+        results.add(MethodSpec.methodBuilder("endWrite").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Ends a write by making the sequence even again, publishing the fields written since " +
+                "beginWrite.")
+            .addStatement(REQUIRE_UNSAFE)
+            .addStatement("final long sequence = unsafeBuffer.getLong(" + SEQUENCE + ")")
+            .addStatement("unsafeBuffer.putLongOrdered(" + SEQUENCE + ", sequence + 1)")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("readSequence").addModifiers(Modifier.PUBLIC).returns(long.class)
+            .addJavadoc("Reads the sequence, which is incremented twice per write.")
+            .addStatement(REQUIRE_UNSAFE)
+            .addStatement("return unsafeBuffer.getLongVolatile(" + SEQUENCE + ")")
+            .build());
+
+        final ClassName flyweight = ClassName.get(object.getPackageNameGen(), object.getName());
+        results.add(MethodSpec.methodBuilder("tryRead").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Passes this flyweight to the visitor, retrying if a write overlapped the read. The visitor " +
+                "should only copy the fields it needs, as it may be called more than once and may see a partial " +
+                "write before it is retried. Returns false if a write overlapped all " +
+                SEQUENCE_LOCK_READ_ATTEMPTS + " attempts.")
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Consumer.class), flyweight), "visitor",
+                Modifier.FINAL)
+            .addStatement(REQUIRE_UNSAFE)
+            .beginControlFlow("for (int attempt = 0; attempt < " + SEQUENCE_LOCK_READ_ATTEMPTS + "; attempt++)")
+            .addStatement("final long before = unsafeBuffer.getLongVolatile(" + SEQUENCE + ")")
+            .beginControlFlow("if ((before & 1) == 0)")
+            .addStatement("visitor.accept(this)")
+            .addComment("the field reads above must complete before the sequence is read again")
+            .addStatement("$T.loadLoadFence()", VarHandle.class)
+            .beginControlFlow("if (unsafeBuffer.getLongVolatile(" + SEQUENCE + ") == before)")
+            .addStatement(RETURN_TRUE)
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("Thread.onSpinWait()")
+            .endControlFlow()
+            .addStatement("return false")
+            .build());
+
+        return results;
+    }
+
+    private Iterable<MethodSpec> buildContentMethods(final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+        final ClassName self = ClassName.get(object.getPackageNameGen(), object.getName());
+
+        final MethodSpec.Builder contentLength = MethodSpec.methodBuilder("contentLength")
+            .addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Returns the number of bytes holding content, including any repeated records up to the " +
+                "count committed to the buffer.");
+
+        String length = RETURN + BUFFER_LENGTH;
+        if (hasAtLeastOneRecord(object))
+        {
+            for (final PreprocessedEiderRepeatableRecord rec : listRecords(object, records))
+            {
+                length += " + (buffer.getInt(initialOffset + " + offsetName(rec.getName() + "_COUNT") +
+                    JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1 + " * " + rec.getName() + ".BUFFER_LENGTH)";
+            }
+        }
+        contentLength.addStatement(length);
+        results.add(contentLength.build());
+
+        results.add(MethodSpec.methodBuilder("contentEquals").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+            .addJavadoc("Compares the raw content bytes of this flyweight with another, without decoding any fields. " +
+                "Unused bytes within fixed strings take part in the comparison.")
+            .addParameter(self, "other", Modifier.FINAL)
+            .addStatement("final int length = contentLength()")
+            .addStatement("if (length != other.contentLength()) return false")
+            .addStatement("int i = 0")
+            .beginControlFlow("for (; i <= length - Long.BYTES; i += Long.BYTES)")
+            .addStatement("if (buffer.getLong(initialOffset + i) != other.buffer.getLong(other.initialOffset + i)) " +
+                "return false")
+            .endControlFlow()
+            .beginControlFlow("for (; i < length; i++)")
+            .addStatement("if (buffer.getByte(initialOffset + i) != other.buffer.getByte(other.initialOffset + i)) " +
+                "return false")
+            .endControlFlow()
+            .addStatement(RETURN_TRUE)
+            .build());
+
+        results.add(MethodSpec.methodBuilder("contentHash").addModifiers(Modifier.PUBLIC).returns(int.class)
+            .addJavadoc("Hashes the raw content bytes of this flyweight, without decoding any fields. Flyweights " +
+                "which are contentEquals have the same contentHash.")
+            .addStatement("final int length = contentLength()")
+            .addStatement("long hash = length")
+            .addStatement("int i = 0")
+            .beginControlFlow("for (; i <= length - Long.BYTES; i += Long.BYTES)")
+            .addStatement("hash = (hash ^ buffer.getLong(initialOffset + i)) * " + HASH_MULTIPLIER)
+            .endControlFlow()
+            .beginControlFlow("for (; i < length; i++)")
+            .addStatement("hash = (hash ^ buffer.getByte(initialOffset + i)) * " + HASH_MULTIPLIER)
+            .endControlFlow()
+            .addStatement("return (int)(hash ^ (hash >>> 32))")
+            .build());
+
+        return results;
+    }
+
+    private MethodSpec genCompareProperty(final PreprocessedEiderProperty property, final ByteOrderType byteOrder)
+    {
+        final MethodSpec.Builder builder =
+            MethodSpec.methodBuilder("compare" + Util.upperFirst(property.getName())).addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addJavadoc("Compares " + property.getName() + " as stored in the buffer with the given value, " +
+                    "without decoding it. Returns a negative number, zero or a positive number as the stored value " +
+                    "is less than, equal to or greater than the given value.");
+
+        switch (property.getType())
+        {
+            case FIXED_STRING:
+                final int maxLength = Util.byteLength(property.getType(), property.getAnnotations());
+                builder.addParameter(CharSequence.class, VALUE, Modifier.FINAL)
+                    .addStatement("int start = initialOffset + " + offsetName(property.getName()))
+                    .addStatement("int end = start + " + maxLength)
+                    .addStatement("while (start < end && (buffer.getByte(start) & 0xFF) <= ' ') start++")
+                    .addStatement("while (end > start && (buffer.getByte(end - 1) & 0xFF) <= ' ') end--")
+                    .addStatement("final int storedLength = end - start")
+                    .addStatement("final int limit = Math.min(storedLength, value.length())")
+                    .beginControlFlow("for (int i = 0; i < limit; i++)")
+                    .addStatement("final int diff = (buffer.getByte(start + i) & 0xFF) - value.charAt(i)")
+                    .addStatement("if (diff != 0) return diff")
+                    .endControlFlow()
+                    .addStatement("return storedLength - value.length()");
+                break;
+            case BOOLEAN:
+                builder.addParameter(boolean.class, VALUE, Modifier.FINAL)
+                    .addStatement("return Boolean.compare(buffer.getByte(initialOffset + " +
+                        offsetName(property.getName()) + ") == (byte)1, value)");
+                break;
+            case DOUBLE:
+                builder.addParameter(double.class, VALUE, Modifier.FINAL)
+                    .addStatement("return Double.compare(buffer.getDouble(initialOffset + " +
+                        offsetName(property.getName()) + Util.byteOrderSuffix(byteOrder) + ", value)");
+                break;
+            default:
+                builder.addParameter(long.class, VALUE, Modifier.FINAL)
+                    .addStatement("return Long.compare(buffer.get" + Util.upperFirst(Util.fromTypeToStr(
+                        property.getType())) + "(initialOffset + " + offsetName(property.getName()) +
+                        Util.byteOrderSuffix(byteOrder) + ", value)");
+                break;
+        }
+        return builder.build();
+    }
+
+
+    private List<MethodSpec> genAtomicProperty(final PreprocessedEiderProperty property)
+    {
+        final List<MethodSpec> results = new ArrayList<>();
+        final String name = Util.upperFirst(property.getName());
+        final String agronaType = Util.upperFirst(Util.fromTypeToStr(property.getType()));
+        final String offset = "initialOffset + " + offsetName(property.getName());
+        final Class<?> type = Util.fromType(property.getType());
+        final String requireUnsafe =
+            "if (!isUnsafe) throw new RuntimeException(\"atomic access requires an UnsafeBuffer\")";
+
+        results.add(MethodSpec.methodBuilder("get" + name + "Volatile").addModifiers(Modifier.PUBLIC)
+            .returns(type)
+            .addJavadoc("Reads " + property.getName() + " with volatile semantics.")
+            .addStatement(requireUnsafe)
+            .addStatement(RETURN + "unsafeBuffer.get" + agronaType + "Volatile(" + offset + ")")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("put" + name + "Ordered").addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Writes " + property.getName() + " with ordered semantics, so earlier writes are visible " +
+                "before it.")
+            .addParameter(type, VALUE, Modifier.FINAL)
+            .addStatement(requireUnsafe)
+            .addStatement("unsafeBuffer.put" + agronaType + "Ordered(" + offset + ", value)")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("compareAndSet" + name).addModifiers(Modifier.PUBLIC)
+            .returns(boolean.class)
+            .addJavadoc("Atomically sets " + property.getName() + " to the update if it holds the expected value.")
+            .addParameter(type, "expectedValue", Modifier.FINAL)
+            .addParameter(type, "updateValue", Modifier.FINAL)
+            .addStatement(requireUnsafe)
+            .addStatement(RETURN + "unsafeBuffer.compareAndSet" + agronaType + "(" + offset +
+                ", expectedValue, updateValue)")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("getAndAdd" + name).addModifiers(Modifier.PUBLIC)
+            .returns(type)
+            .addJavadoc("Atomically adds the delta to " + property.getName() + ", returning the previous value. " +
+                "Safe with many writers.")
+            .addParameter(type, "delta", Modifier.FINAL)
+            .addStatement(requireUnsafe)
+            .addStatement(RETURN + "unsafeBuffer.getAndAdd" + agronaType + "(" + offset + ", delta)")
+            .build());
+
+        results.add(MethodSpec.methodBuilder("add" + name + "Ordered").addModifiers(Modifier.PUBLIC)
+            .returns(type)
+            .addJavadoc("Adds the delta to " + property.getName() + " with ordered semantics, returning the previous " +
+                "value. Cheaper than getAndAdd, but only safe with a single writer.")
+            .addParameter(type, "delta", Modifier.FINAL)
+            .addStatement(requireUnsafe)
+            .addStatement(RETURN + "unsafeBuffer.add" + agronaType + "Ordered(" + offset + ", delta)")
+            .build());
+
+        return results;
+    }
 
     private MethodSpec genWritePropertyWithPadding(final PreprocessedEiderProperty property)
     {
@@ -446,7 +988,11 @@ public class AgronaSpecGenerator
         return builder.build();
     }
 
-    private MethodSpec genWriteProperty(final PreprocessedEiderProperty property)
+    /**
+     * @param markPresent the statement marking an optional property as present once written, or null.
+     */
+    private MethodSpec genWriteProperty(final PreprocessedEiderProperty property, final ByteOrderType byteOrder,
+        final String markPresent)
     {
         final MethodSpec.Builder builder =
             MethodSpec.methodBuilder(WRITE + Util.upperFirst(property.getName())).addModifiers(Modifier.PUBLIC)
@@ -473,12 +1019,16 @@ public class AgronaSpecGenerator
         {
             builder.addJavadoc("Warning! Does not pad the string.");
             builder.addStatement(
-                "mutableBuffer.putStringWithoutLengthAscii(initialOffset + " + getOffsetName(property.getName()) +
+                "mutableBuffer.putStringWithoutLengthAscii(initialOffset + " + offsetName(property.getName()) +
                     ", value)");
         }
         else
         {
-            builder.addStatement(bufferWrite(property));
+            builder.addStatement(bufferWrite(property, byteOrder));
+        }
+        if (markPresent != null)
+        {
+            builder.addStatement(markPresent);
         }
         builder.addStatement(RETURN_TRUE);
         return builder.build();
@@ -496,59 +1046,41 @@ public class AgronaSpecGenerator
             " is longer than maxLength=" + maxLength + "\")";
     }
 
-    private String bufferWrite(final PreprocessedEiderProperty property)
+    private String bufferWrite(final PreprocessedEiderProperty property, final ByteOrderType byteOrder)
     {
-        if (property.getType() == EiderPropertyType.INT)
-        {
-            return "mutableBuffer.putInt(initialOffset + " + getOffsetName(property.getName()) + ", value, " +
-                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN;
-        }
-        else if (property.getType() == EiderPropertyType.LONG)
+        if (property.getType() == EiderPropertyType.INT || property.getType() == EiderPropertyType.LONG ||
+            property.getType() == EiderPropertyType.SHORT || property.getType() == EiderPropertyType.DOUBLE)
         {
-            return "mutableBuffer.putLong(initialOffset + " + getOffsetName(property.getName()) +
-                VALUE_JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN;
-        }
-        else if (property.getType() == EiderPropertyType.SHORT)
-        {
-            return "mutableBuffer.putShort(initialOffset + " + getOffsetName(property.getName()) +
-                VALUE_JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN;
-        }
-        else if (property.getType() == EiderPropertyType.DOUBLE)
-        {
-            return "mutableBuffer.putDouble(initialOffset + " + getOffsetName(property.getName()) +
-                VALUE_JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN;
+            return "mutableBuffer.put" + Util.upperFirst(Util.fromTypeToStr(property.getType())) + "(initialOffset + " +
+                offsetName(property.getName()) + ", value" + Util.byteOrderSuffix(byteOrder);
         }
         else if (property.getType() == EiderPropertyType.FIXED_STRING)
         {
-            return "mutableBuffer.putStringWithoutLengthAscii(initialOffset + " + getOffsetName(property.getName()) +
+            return "mutableBuffer.putStringWithoutLengthAscii(initialOffset + " + offsetName(property.getName()) +
                 ", value)";
         }
         else if (property.getType() == EiderPropertyType.BOOLEAN)
         {
-            return "mutableBuffer.putByte(initialOffset + " + getOffsetName(property.getName()) + ", value ? (byte)1 " +
+            return "mutableBuffer.putByte(initialOffset + " + offsetName(property.getName()) + ", value ? (byte)1 " +
                 ": (byte)0)";
         }
         return "// unsupported type " + property.getType().name();
     }
 
-    private MethodSpec genReadProperty(final PreprocessedEiderProperty property)
+    private MethodSpec genReadProperty(final PreprocessedEiderProperty property, final ByteOrderType byteOrder)
     {
         return MethodSpec.methodBuilder("read" + Util.upperFirst(property.getName())).addModifiers(Modifier.PUBLIC)
             .addJavadoc("Reads " + property.getName() + " as stored in the buffer.")
-            .returns(Util.fromType(property.getType())).addStatement(bufferRead(property)).build();
+            .returns(Util.fromType(property.getType())).addStatement(bufferRead(property, byteOrder)).build();
     }
 
-    private String bufferRead(final PreprocessedEiderProperty property)
+    private String bufferRead(final PreprocessedEiderProperty property, final ByteOrderType byteOrder)
     {
-        if (property.getType() == EiderPropertyType.INT)
+        if (property.getType() == EiderPropertyType.INT || property.getType() == EiderPropertyType.LONG ||
+            property.getType() == EiderPropertyType.SHORT || property.getType() == EiderPropertyType.DOUBLE)
         {
-            return "return buffer.getInt(initialOffset + " + getOffsetName(property.getName()) +
-                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
-        }
-        else if (property.getType() == EiderPropertyType.LONG)
-        {
-            return "return buffer.getLong(initialOffset + " + getOffsetName(property.getName()) +
-                JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+            return "return buffer.get" + Util.upperFirst(Util.fromTypeToStr(property.getType())) + "(initialOffset + " +
+                offsetName(property.getName()) + Util.byteOrderSuffix(byteOrder);
         }
         else if (property.getType() == EiderPropertyType.FIXED_STRING)
         {
@@ -556,7 +1088,7 @@ public class AgronaSpecGenerator
             {
                 final int length = Integer.parseInt(property.getAnnotations().get(AttributeConstants.MAXLENGTH));
                 return "return buffer.getStringWithoutLengthAscii(initialOffset + " +
-                    getOffsetName(property.getName()) + ", " + length + ").trim()";
+                    offsetName(property.getName()) + ", " + length + ").trim()";
             }
             catch (final NumberFormatException e)
             {
@@ -565,15 +1097,7 @@ public class AgronaSpecGenerator
         }
         else if (property.getType() == EiderPropertyType.BOOLEAN)
         {
-            return "return buffer.getByte(initialOffset + " + getOffsetName(property.getName()) + ") == (byte)1";
-        }
-        else if (property.getType() == EiderPropertyType.SHORT)
-        {
-            return "return buffer.getShort(initialOffset + " + getOffsetName(property.getName()) + ")";
-        }
-        else if (property.getType() == EiderPropertyType.DOUBLE)
-        {
-            return "return buffer.getDouble(initialOffset + " + getOffsetName(property.getName()) + ")";
+            return "return buffer.getByte(initialOffset + " + offsetName(property.getName()) + ") == (byte)1";
         }
         return "// unsupported type " + property.getType().name();
     }
@@ -634,7 +1158,8 @@ public class AgronaSpecGenerator
     }
 
 
-    private MethodSpec buildSetUnderlyingBufferAndWriteHeader()
+    private MethodSpec buildSetUnderlyingBufferAndWriteHeader(final PreprocessedEiderMessage object,
+        final List<PreprocessedEiderRepeatableRecord> records, final AgronaWriterState state)
     {
         final MethodSpec.Builder builder =
             MethodSpec.methodBuilder("setBufferWriteHeader").addModifiers(Modifier.PUBLIC).returns(void.class)
@@ -645,11 +1170,26 @@ public class AgronaSpecGenerator
                 .addParameter(int.class, OFFSET, Modifier.FINAL).addStatement("setUnderlyingBuffer(buffer, offset)")
                 .addStatement("writeHeader()");
 
+        // a new message starts with no records, so resizing can tell how many it adds
+        for (final PreprocessedEiderRepeatableRecord rec : records)
+        {
+            builder.addStatement(rec.getName().toUpperCase() + "_COMMITTED_SIZE = 0")
+                .addStatement("mutableBuffer.putInt(initialOffset + " + rec.getName().toUpperCase() +
+                    "_COUNT_OFFSET, 0" + JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1);
+        }
+
+        if (state.isCounters())
+        {
+            builder.addStatement(countersGenerator.counter(object.getName(), AgronaCountersGenerator.ENCODED) +
+                    ".incrementOrdered()")
+                .addStatement(countersGenerator.counter(object.getName(), AgronaCountersGenerator.BYTES_ENCODED) +
+                    ".getAndAddOrdered(BUFFER_LENGTH)");
+        }
+
         return builder.build();
     }
 
-    public void generateSpecRecord(final ProcessingEnvironment pe,
-        final PreprocessedEiderRepeatableRecord rec)
+    public void generateSpecRecord(final EiderOutput output, final PreprocessedEiderRepeatableRecord rec)
     {
         final TypeSpec.Builder builder =
             TypeSpec.classBuilder(rec.getName())
@@ -658,26 +1198,23 @@ public class AgronaSpecGenerator
 
         final AgronaWriterState state = new AgronaWriterState();
 
-        builder.addFields(offsetsForRecFields(rec, state)).addFields(internalRecFields())
-            .addMethod(buildSetUnderlyingRecBuffer()).addMethods(forInternalRecFields(rec));
+        if (rec.isColumnar())
+        {
+            builder.addFields(columnarRecordGenerator.recordFields(rec)).addFields(internalRecFields())
+                .addMethods(columnarRecordGenerator.recordSetUnderlyingBuffer(rec))
+                .addMethods(forInternalRecFields(rec));
+        }
+        else
+        {
+            builder.addFields(offsetsForRecFields(rec, state)).addFields(internalRecFields())
+                .addMethod(buildSetUnderlyingRecBuffer()).addMethods(forInternalRecFields(rec));
+        }
 
         final TypeSpec generated = builder.build();
 
         final JavaFile javaFile = JavaFile.builder(rec.getPackageNameGen(), generated).build();
 
-        try
-        { // write the file
-            final JavaFileObject source = pe.getFiler().createSourceFile(rec.getPackageNameGen() + "." + rec.getName());
-            final Writer writer = source.openWriter();
-            javaFile.writeTo(writer);
-            writer.flush();
-            writer.close();
-        }
-        catch (final IOException e)
-        {
-            // Note: calling e.printStackTrace() will print IO errors
-            // that occur from the file already existing after its first run, this is normal
-        }
+        output.write(javaFile);
     }
 
     private Iterable<MethodSpec> forInternalRecFields(final PreprocessedEiderRepeatableRecord rec)
@@ -692,8 +1229,9 @@ public class AgronaSpecGenerator
                 break;
             }
 
-            results.add(genReadProperty(property));
-            results.add(genWriteProperty(property));
+            results.add(genReadProperty(property, ByteOrderType.LITTLE_ENDIAN));
+            results.add(genWriteProperty(property, ByteOrderType.LITTLE_ENDIAN, null));
+            results.add(genCompareProperty(property, ByteOrderType.LITTLE_ENDIAN));
             if (property.getType() == EiderPropertyType.FIXED_STRING)
             {
                 results.add(genWritePropertyWithPadding(property));
@@ -716,12 +1254,12 @@ public class AgronaSpecGenerator
             }
         }
 
-        results.add(FieldSpec.builder(int.class, BUFFER_LENGTH).addJavadoc("The total bytes required to store a " +
-                "single record.")
+        results.add(intConstant(state, BUFFER_LENGTH, state.getCurrentOffset())
+            .addJavadoc("The total bytes required to store a single record.")
             .addModifiers(Modifier.STATIC)
             .addModifiers(Modifier.PUBLIC)
             .addModifiers(Modifier.FINAL)
-            .initializer(Integer.toString(state.getCurrentOffset())).build());
+            .build());
 
         return results;
     }
@@ -22,64 +22,129 @@ import com.squareup.javapoet.TypeSpec;
 import io.eider.internals.PreprocessedEiderMessage;
 import io.eider.internals.PreprocessedEiderRepeatableRecord;
 import io.eider.javawriter.EiderCodeWriter;
+import io.eider.javawriter.EiderOutput;
+import io.eider.javawriter.EiderWriterOptions;
 import org.agrona.DirectBuffer;
 
-import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Modifier;
-import javax.tools.JavaFileObject;
-import java.io.IOException;
-import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class AgronaWriter implements EiderCodeWriter
 {
     private static final String IO_EIDER_UTIL = "io.eider.util";
 
-    private final AgronaSpecGenerator specGenerator = new AgronaSpecGenerator();
+    private final AgronaCountersGenerator countersGenerator = new AgronaCountersGenerator(IO_EIDER_UTIL);
+    private final AgronaColumnKernelsGenerator columnKernelsGenerator =
+        new AgronaColumnKernelsGenerator(IO_EIDER_UTIL);
+    private final AgronaSpecGenerator specGenerator =
+        new AgronaSpecGenerator(countersGenerator, columnKernelsGenerator);
+    private final AgronaBenchmarkGenerator benchmarkGenerator = new AgronaBenchmarkGenerator(specGenerator);
+    private final AgronaDeltaGenerator deltaGenerator = new AgronaDeltaGenerator(specGenerator);
+    private final AgronaLastValueCacheGenerator lastValueCacheGenerator =
+        new AgronaLastValueCacheGenerator(specGenerator);
+    private final AgronaDispatcherGenerator dispatcherGenerator =
+        new AgronaDispatcherGenerator(IO_EIDER_UTIL, countersGenerator);
+    private final AgronaFilterGenerator filterGenerator = new AgronaFilterGenerator(IO_EIDER_UTIL, specGenerator);
+    private final AgronaProjectionGenerator projectionGenerator =
+        new AgronaProjectionGenerator(IO_EIDER_UTIL, specGenerator);
+    private final AgronaBroadcastGenerator broadcastGenerator = new AgronaBroadcastGenerator(IO_EIDER_UTIL);
+    private final AgronaRegistryGenerator registryGenerator =
+        new AgronaRegistryGenerator(IO_EIDER_UTIL, specGenerator);
+    private final AgronaCorrelationGenerator correlationGenerator =
+        new AgronaCorrelationGenerator(IO_EIDER_UTIL, specGenerator);
+    private final boolean benchmarks;
+    private final boolean counters;
+    private final boolean broadcast;
+    private final boolean vector;
+
+    public AgronaWriter()
+    {
+        this(Collections.emptyMap());
+    }
+
+    /**
+     * @param options the writer options, see {@link EiderWriterOptions}.
+     */
+    public AgronaWriter(final Map<String, String> options)
+    {
+        this.benchmarks = EiderWriterOptions.isEnabled(options, EiderWriterOptions.BENCHMARKS);
+        this.counters = EiderWriterOptions.isEnabled(options, EiderWriterOptions.COUNTERS);
+        this.broadcast = EiderWriterOptions.isEnabled(options, EiderWriterOptions.BROADCAST);
+        this.vector = EiderWriterOptions.isEnabled(options, EiderWriterOptions.VECTOR);
+    }
+
+    @Override
+    public void generateRecord(final EiderOutput output, final PreprocessedEiderRepeatableRecord rec)
+    {
+        //want the writing to be within the main object; this is just the basic outline
+        specGenerator.generateSpecRecord(output, rec);
+    }
 
     @Override
-    public void generate(final ProcessingEnvironment pe,
+    public void generateSpec(final EiderOutput output,
         final List<PreprocessedEiderRepeatableRecord> records,
-        final List<PreprocessedEiderMessage> objects)
+        final PreprocessedEiderMessage object)
     {
-        String packageName = null;
+        if (specGenerator.hasAtLeastOneRecord(object) && specGenerator.listRecords(object, records).size() > 1)
+        {
+            throw new RuntimeException("cannot have more than one repeated record at this time.");
+        }
+
+        final AgronaWriterState state = new AgronaWriterState();
+        state.setCounters(counters);
+        specGenerator.generateSpecObject(output, object, records, state);
+
+        if (object.isDelta())
+        {
+            deltaGenerator.generateDelta(output, object, records);
+        }
 
-        final List<PreprocessedEiderRepeatableRecord> alreadyGeneratedRecs = new ArrayList<>();
+        if (AgronaLastValueCacheGenerator.keyProperty(object) != null)
+        {
+            lastValueCacheGenerator.generateLastValueCache(output, object, records);
+        }
+
+        if (object.mustBuildHeader())
+        {
+            filterGenerator.generateFilter(output, object, records);
+        }
 
-        for (final PreprocessedEiderMessage object : objects)
+        if (benchmarks)
         {
-            if (specGenerator.hasAtLeastOneRecord(object))
-            {
-                final List<PreprocessedEiderRepeatableRecord> requiredRecs = specGenerator.listRecords(object, records);
-                if (requiredRecs.size() > 1)
-                {
-                    throw new RuntimeException("cannot have more than one repeated record at this time.");
-                }
-                for (final PreprocessedEiderRepeatableRecord rec : requiredRecs)
-                {
-                    if (!alreadyGeneratedRecs.contains(rec))
-                    {
-                        //want the writing to be within the main object; this is just the basic outline
-                        specGenerator.generateSpecRecord(pe, rec);
-                        alreadyGeneratedRecs.add(rec);
-                    }
-                }
-            }
-
-            packageName = object.getPackageNameGen();
-            final AgronaWriterState state = new AgronaWriterState();
-            specGenerator.generateSpecObject(pe, object, records, state);
+            benchmarkGenerator.generateBenchmarks(output, object, records);
+        }
+    }
 
+    @Override
+    public void generateAggregates(final EiderOutput output, final List<PreprocessedEiderRepeatableRecord> records,
+        final List<PreprocessedEiderMessage> objects)
+    {
+        if (objects.isEmpty())
+        {
+            return;
         }
 
-        if (packageName != null)
+        generateEiderHelper(output);
+        filterGenerator.generateFilterTypes(output);
+        dispatcherGenerator.generateDispatcher(output, objects, counters);
+        registryGenerator.generateRegistry(output, objects, records);
+        correlationGenerator.generateCorrelationTable(output, objects, records);
+        columnKernelsGenerator.generateColumnKernels(output, records, vector);
+        projectionGenerator.generateProjections(output, objects, records);
+        if (counters)
+        {
+            countersGenerator.generateCounters(output, objects);
+        }
+        if (broadcast)
         {
-            generateEiderHelper(pe);
+            broadcastGenerator.generateBroadcast(output, objects);
         }
     }
 
-    private void generateEiderHelper(final ProcessingEnvironment pe)
+    private void generateEiderHelper(final EiderOutput output)
     {
         final String packageName = IO_EIDER_UTIL;
 
@@ -91,19 +156,7 @@ public class AgronaWriter implements EiderCodeWriter
         final JavaFile javaFile = JavaFile.builder(packageName, generated)
             .build();
 
-        try
-        { // write the file
-            final JavaFileObject source = pe.getFiler()
-                .createSourceFile(packageName + ".EiderHelper");
-            final Writer writer = source.openWriter();
-            javaFile.writeTo(writer);
-            writer.flush();
-            writer.close();
-        }
-        catch (final IOException e)
-        {
-            //normal
-        }
+        output.write(javaFile);
     }
 
     private Iterable<MethodSpec> buildHeaderHelperMethods()
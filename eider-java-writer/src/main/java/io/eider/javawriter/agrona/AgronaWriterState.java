@@ -16,9 +16,15 @@
 
 package io.eider.javawriter.agrona;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class AgronaWriterState
 {
+    private final Map<String, Integer> layout = new LinkedHashMap<>();
     private int currentOffset;
+    private boolean counters;
 
     public int getCurrentOffset()
     {
@@ -34,4 +40,30 @@ public class AgronaWriterState
     {
         this.currentOffset = currentOffset + byBytes;
     }
+
+    public boolean isCounters()
+    {
+        return counters;
+    }
+
+    public void setCounters(final boolean counters)
+    {
+        this.counters = counters;
+    }
+
+    /**
+     * Records the value of an offset or length constant of the layout being generated.
+     */
+    public void putLayout(final String name, final int value)
+    {
+        layout.put(name, value);
+    }
+
+    /**
+     * The offsets and lengths generated so far, keyed by the name of their constant, in the order generated.
+     */
+    public Map<String, Integer> getLayout()
+    {
+        return Collections.unmodifiableMap(layout);
+    }
 }
@@ -25,4 +25,11 @@ public final class AttributeConstants
 
     public static final String MAXLENGTH = "string.maxlength";
     public static final String REPEATED_RECORD = "repeated.record";
+    public static final String ATOMIC = "atomic";
+    public static final String OPTIONAL = "optional";
+    public static final String KEY = "key";
+    public static final String CORRELATION = "correlation";
+    public static final String CORRELATION_REQUEST = "REQUEST";
+    public static final String CORRELATION_RESPONSE = "RESPONSE";
+    public static final String SORT_KEY = "sort.key";
 }
@@ -27,6 +27,15 @@ public final class Constants
     static final String RETURN_TRUE = "return true";
     static final String WRITE = "write";
     static final String BUFFER = "buffer";
+    static final String HASH_MULTIPLIER = "0x9E3779B97F4A7C15L";
+
+    // the header every spec with one starts with, all little endian
+    static final int MESSAGE_LENGTH_OFFSET = 0;
+    static final int ENCODING_TYPE_OFFSET = MESSAGE_LENGTH_OFFSET + Integer.BYTES;
+    static final int PROTOCOL_ID_OFFSET = ENCODING_TYPE_OFFSET + Short.BYTES;
+    static final int HEADER_VERSION_OFFSET = PROTOCOL_ID_OFFSET + Short.BYTES;
+    static final int HEADER_LENGTH = HEADER_VERSION_OFFSET + Short.BYTES;
+    static final short EIDER_ENCODING_TYPE = 43;
 
     private Constants()
     {
@@ -16,8 +16,11 @@
 
 package io.eider.javawriter.agrona;
 
+import com.squareup.javapoet.FieldSpec;
+import io.eider.internals.ByteOrderType;
 import io.eider.internals.EiderPropertyType;
 
+import javax.lang.model.element.Modifier;
 import java.util.Map;
 
 public final class Util
@@ -36,6 +39,15 @@ public final class Util
         return input.substring(0, 1).toUpperCase() + input.substring(1);
     }
 
+    public static String lowerFirst(final String input)
+    {
+        if (input == null)
+        {
+            throw new AgronaWriterException("Illegal input for lowerFirst");
+        }
+        return input.substring(0, 1).toLowerCase() + input.substring(1);
+    }
+
     @SuppressWarnings("all")
     public static Class fromType(final EiderPropertyType type)
     {
@@ -117,6 +129,70 @@ public final class Util
         }
     }
 
+    public static boolean isAtomic(final Map<String, String> annotations)
+    {
+        return Boolean.parseBoolean(annotations.get(AttributeConstants.ATOMIC));
+    }
+
+    public static boolean isOptional(final Map<String, String> annotations)
+    {
+        return Boolean.parseBoolean(annotations.get(AttributeConstants.OPTIONAL));
+    }
+
+    public static boolean isKey(final Map<String, String> annotations)
+    {
+        return Boolean.parseBoolean(annotations.get(AttributeConstants.KEY));
+    }
+
+    public static boolean isCorrelation(final Map<String, String> annotations)
+    {
+        return AttributeConstants.CORRELATION_REQUEST.equals(annotations.get(AttributeConstants.CORRELATION)) ||
+            isCorrelationResponse(annotations);
+    }
+
+    public static boolean isCorrelationResponse(final Map<String, String> annotations)
+    {
+        return AttributeConstants.CORRELATION_RESPONSE.equals(annotations.get(AttributeConstants.CORRELATION));
+    }
+
+    /**
+     * The rank of a record field within the multi field sort key of its record, or 0 if it is not part of it.
+     */
+    public static int sortKey(final Map<String, String> annotations)
+    {
+        final String rank = annotations.get(AttributeConstants.SORT_KEY);
+        return rank == null ? 0 : Integer.parseInt(rank);
+    }
+
+    /**
+     * Closes a buffer get or put of a field in the given byte order, e.g. {@code ", java.nio.ByteOrder.BIG_ENDIAN)"}.
+     * The native order passes no order at all, so Agrona never checks whether to swap the bytes.
+     */
+    public static String byteOrderSuffix(final ByteOrderType byteOrder)
+    {
+        switch (byteOrder)
+        {
+            case BIG_ENDIAN:
+                return ", java.nio.ByteOrder.BIG_ENDIAN)";
+            case NATIVE:
+                return ")";
+            default:
+                return Constants.JAVA_NIO_BYTE_ORDER_LITTLE_ENDIAN1;
+        }
+    }
+
+    /**
+     * The private constant for the offset of the wire protocol id within the header, for generated classes which
+     * read it from messages they have not wrapped.
+     */
+    public static FieldSpec protocolIdOffsetField()
+    {
+        return FieldSpec.builder(int.class, "PROTOCOL_ID_OFFSET")
+            .addJavadoc("The offset of the wire protocol id within the header.")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer(Integer.toString(Constants.PROTOCOL_ID_OFFSET)).build();
+    }
+
     public static String fromTypeToStr(final EiderPropertyType type)
     {
         switch (type)
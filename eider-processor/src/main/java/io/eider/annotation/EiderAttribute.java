@@ -27,4 +27,9 @@ public @interface EiderAttribute
 {
     int maxLength() default Integer.MIN_VALUE;
     boolean repeatedRecord() default false;
+    boolean atomic() default false;
+    boolean optional() default false;
+    boolean key() default false;
+    EiderCorrelation correlation() default EiderCorrelation.NONE;
+    int sortKey() default 0;
 }
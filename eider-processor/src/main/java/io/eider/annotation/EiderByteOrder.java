@@ -0,0 +1,39 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.annotation;
+
+/**
+ * The byte order of the fields of a spec in the buffer. The header, hop trail, presence bitmap and record counts are
+ * always little endian, so generic code can read them without knowing the spec.
+ */
+public enum EiderByteOrder
+{
+    /**
+     * Little endian, the default.
+     */
+    LITTLE_ENDIAN,
+    /**
+     * Big endian, or network order.
+     */
+    BIG_ENDIAN,
+    /**
+     * The order of the platform, read and written without passing an order, so without any swap. Only for messages
+     * which stay on hosts of the same order, such as those in shared memory.
+     */
+    NATIVE
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.annotation;
+
+/**
+ * Which side of a request and response exchange a correlation id field is on.
+ */
+public enum EiderCorrelation
+{
+    /**
+     * The field is not a correlation id.
+     */
+    NONE,
+    /**
+     * The field is the correlation id of a request, registered with the correlation table by the caller.
+     */
+    REQUEST,
+    /**
+     * The field is the correlation id of a response, which completes the request with the same id.
+     */
+    RESPONSE
+}
@@ -26,4 +26,5 @@ import java.lang.annotation.Target;
 public @interface EiderRepeatableRecord
 {
     int maxCount() default Integer.MAX_VALUE;
+    EiderRecordLayout layout() default EiderRecordLayout.ROW;
 }
@@ -30,4 +30,9 @@ public @interface EiderSpec
     String name() default "";
     short version() default 1;
     boolean header() default true;
+    int timestampHops() default 0;
+    boolean sequenceLock() default false;
+    boolean delta() default false;
+    String[] projectFrom() default {};
+    EiderByteOrder byteOrder() default EiderByteOrder.LITTLE_ENDIAN;
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.processor;
+
+import io.eider.annotation.EiderSpec;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderCodeWriter;
+import io.eider.javawriter.EiderWriterOptions;
+import io.eider.javawriter.FilerEiderOutput;
+import io.eider.javawriter.agrona.AgronaWriter;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the code which depends on every spec - EiderHelper, the dispatcher, the counters and the broadcast
+ * publisher and subscriber - and checks that wire protocol ids are unique. Registered with Gradle as an aggregating
+ * processor.
+ */
+@SupportedAnnotationTypes({
+    "io.eider.annotation.EiderSpec"
+})
+@SupportedSourceVersion(SourceVersion.RELEASE_21)
+@SupportedOptions({
+    EiderWriterOptions.COUNTERS,
+    EiderWriterOptions.BROADCAST,
+    EiderWriterOptions.VECTOR
+})
+public class EiderAggregatingProcessor extends AbstractProcessor
+{
+    private final List<TypeElement> specs = new ArrayList<>();
+    private EiderCodeWriter writer;
+    private EiderSpecReader reader;
+    private boolean generated;
+
+    @Override
+    public synchronized void init(final ProcessingEnvironment processingEnv)
+    {
+        super.init(processingEnv);
+        writer = new AgronaWriter(processingEnv.getOptions());
+        reader = new EiderSpecReader(processingEnv);
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv)
+    {
+        if (roundEnv.processingOver() || annotations.isEmpty())
+        {
+            return false;
+        }
+
+        final int previousSpecs = specs.size();
+        for (final Element el : roundEnv.getElementsAnnotatedWith(EiderSpec.class))
+        {
+            if (el instanceof TypeElement)
+            {
+                specs.add((TypeElement)el);
+            }
+        }
+
+        if (!uniqueProtocolIds())
+        {
+            return false;
+        }
+
+        if (generated)
+        {
+            if (specs.size() > previousSpecs)
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Specs generated in a later round are not included in the dispatcher or counters");
+            }
+            return false;
+        }
+
+        final List<PreprocessedEiderMessage> objects = new ArrayList<>();
+        final Map<String, PreprocessedEiderRepeatableRecord> records = new LinkedHashMap<>();
+        for (final TypeElement spec : specs)
+        {
+            final List<PreprocessedEiderRepeatableRecord> specRecords = reader.readReferencedRecords(spec);
+            for (final PreprocessedEiderRepeatableRecord rec : specRecords)
+            {
+                records.putIfAbsent(rec.getClassNameInput(), rec);
+            }
+            objects.add(reader.readSpec(spec, specRecords));
+        }
+
+        generated = true;
+        final FilerEiderOutput output = new FilerEiderOutput(processingEnv.getFiler(), processingEnv.getMessager(),
+            specs.toArray(new Element[0]));
+        writer.generateAggregates(output, new ArrayList<>(records.values()), objects);
+
+        return false;
+    }
+
+    private boolean uniqueProtocolIds()
+    {
+        final Map<Short, TypeElement> byId = new HashMap<>();
+        boolean unique = true;
+        for (final TypeElement spec : specs)
+        {
+            final TypeElement existing = byId.putIfAbsent(EiderSpecReader.protocolId(spec), spec);
+            if (existing != null)
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Wire protocol id " +
+                    EiderSpecReader.protocolId(spec) + " is used by both " + existing.getQualifiedName() + " and " +
+                    spec.getQualifiedName() + "; ids which are not given are derived from a hash of the qualified " +
+                    "name and can collide, so set wireProtocolId on one of them", spec);
+                unique = false;
+            }
+        }
+        return unique;
+    }
+}
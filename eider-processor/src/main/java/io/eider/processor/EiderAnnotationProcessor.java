@@ -16,48 +16,53 @@
 
 package io.eider.processor;
 
-import io.eider.annotation.EiderAttribute;
 import io.eider.annotation.EiderRepeatableRecord;
 import io.eider.annotation.EiderSpec;
-import io.eider.internals.EiderPropertyType;
 import io.eider.internals.PreprocessedEiderMessage;
-import io.eider.internals.PreprocessedEiderProperty;
 import io.eider.internals.PreprocessedEiderRepeatableRecord;
 import io.eider.javawriter.EiderCodeWriter;
+import io.eider.javawriter.EiderWriterOptions;
+import io.eider.javawriter.FilerEiderOutput;
 import io.eider.javawriter.agrona.AgronaWriter;
-import io.eider.javawriter.agrona.AttributeConstants;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+/**
+ * Generates the flyweight for each spec and record, working from a single annotated type at a time so that it can be
+ * registered with Gradle as an isolating processor. Gradle then only runs it again for the specs which changed and
+ * those which use them; within a compilation each type is handed to it once. Code depending on every spec is left to
+ * {@link EiderAggregatingProcessor}.
+ */
 @SupportedAnnotationTypes({
-    "io.eider.annotation.EiderSpec"
+    "io.eider.annotation.EiderSpec",
+    "io.eider.annotation.EiderRepeatableRecord"
 })
 @SupportedSourceVersion(SourceVersion.RELEASE_21)
+@SupportedOptions({
+    EiderWriterOptions.BENCHMARKS,
+    EiderWriterOptions.COUNTERS
+})
 public class EiderAnnotationProcessor extends AbstractProcessor
 {
-    public static final String STRING = "java.lang.String";
-    private short sequence = 0;
     private EiderCodeWriter writer;
+    private EiderSpecReader reader;
 
     @Override
     public synchronized void init(final ProcessingEnvironment processingEnv)
     {
         super.init(processingEnv);
-        writer = new AgronaWriter();
+        writer = new AgronaWriter(processingEnv.getOptions());
+        reader = new EiderSpecReader(processingEnv);
     }
 
     @Override
@@ -68,224 +73,31 @@ public class EiderAnnotationProcessor extends AbstractProcessor
             return false;
         }
 
-        final List<PreprocessedEiderRepeatableRecord> records = new ArrayList<>();
-        final List<PreprocessedEiderMessage> objects = new ArrayList<>();
-
         for (final Element el : roundEnv.getElementsAnnotatedWith(EiderRepeatableRecord.class))
         {
-            final boolean continueProcessing = el instanceof TypeElement;
-
-            if (!continueProcessing)
+            if (el instanceof TypeElement)
             {
-                break;
+                final TypeElement element = (TypeElement)el;
+                writer.generateRecord(output(element), reader.readRecord(element));
             }
-
-            final TypeElement element = (TypeElement)el;
-            preprocessRepeatableRecord(element, records);
         }
 
         for (final Element el : roundEnv.getElementsAnnotatedWith(EiderSpec.class))
         {
-            final boolean continueProcessing = el instanceof TypeElement;
-
-            if (!continueProcessing)
-            {
-                break;
-            }
-
-            final TypeElement element = (TypeElement)el;
-            preprocessObject(element, objects, records);
-        }
-
-        writer.generate(processingEnv, records, objects);
-
-        return true;
-    }
-
-    @SuppressWarnings("all")
-    private void preprocessObject(final TypeElement typeElement,
-        final List<PreprocessedEiderMessage> objects,
-        final List<PreprocessedEiderRepeatableRecord> records)
-    {
-        final String classNameInput = typeElement.getSimpleName().toString();
-        final String classNameGen = classNameInput + "Eider";
-        final String packageName = typeElement.getQualifiedName().toString();
-        final String packageNameGen = packageName.replace(classNameInput, "gen");
-        sequence += (short)1;
-
-        EiderSpec annotation = typeElement.getAnnotation(EiderSpec.class);
-
-        final List<PreprocessedEiderProperty> preprocessedEiderProperties = new ArrayList<>();
-        final List<? extends Element> enclosedElements = typeElement.getEnclosedElements();
-
-        for (Element element : enclosedElements)
-        {
-            ElementKind kind = element.getKind();
-            if (kind == ElementKind.FIELD)
-            {
-                Map<String, String> annotations = new HashMap<>();
-                boolean isFixed = false;
-                EiderAttribute attribute = element.getAnnotation(EiderAttribute.class);
-                if (attribute != null)
-                {
-                    annotations.put(AttributeConstants.MAXLENGTH, Integer.toString(attribute.maxLength()));
-
-                    if (attribute.maxLength() != -1)
-                    {
-                        isFixed = true;
-                    }
-                }
-                else
-                {
-                    applyDefaultAnnotations(annotations);
-                }
-
-                final String attrName = element.getSimpleName().toString();
-                checkUnfixedStringInFixedObject(annotation, element, isFixed);
-
-                final EiderPropertyType type = defineType(element.asType().toString(), isFixed, records);
-
-                final PreprocessedEiderProperty prop = new PreprocessedEiderProperty(attrName, type,
-                    element.asType().toString(), annotations);
-                preprocessedEiderProperties.add(prop);
-            }
-        }
-
-        final short objectEiderId;
-        if (annotation.wireProtocolId() == -1)
-        {
-            objectEiderId = sequence;
-        }
-        else
-        {
-            objectEiderId = annotation.wireProtocolId();
-        }
-
-        final String name;
-        if (!annotation.name().isEmpty())
-        {
-            name = annotation.name();
-        }
-        else
-        {
-            name = classNameGen;
-        }
-
-
-        final PreprocessedEiderMessage obj = new PreprocessedEiderMessage(name,
-            classNameInput,
-            objectEiderId,
-            annotation.version(),
-            packageNameGen,
-            annotation.fixedLength(),
-            annotation.header(),
-            preprocessedEiderProperties);
-
-        objects.add(obj);
-    }
-
-    @SuppressWarnings("all")
-    private void preprocessRepeatableRecord(TypeElement typeElement,
-        final List<PreprocessedEiderRepeatableRecord> records)
-    {
-        final String classNameInput = typeElement.getSimpleName().toString();
-        final String classNameGen = classNameInput;
-        final String packageName = typeElement.getQualifiedName().toString();
-        final String packageNameGen = packageName.replace(classNameInput, "gen");
-        sequence += (short)1;
-
-        EiderSpec annotation = typeElement.getAnnotation(EiderSpec.class);
-
-        final List<PreprocessedEiderProperty> preprocessedEiderProperties = new ArrayList<>();
-        final List<? extends Element> enclosedElements = typeElement.getEnclosedElements();
-
-        for (Element element : enclosedElements)
-        {
-            ElementKind kind = element.getKind();
-            if (kind == ElementKind.FIELD)
+            if (el instanceof TypeElement)
             {
-                Map<String, String> annotations = new HashMap<>();
-                boolean isFixed = false;
-                EiderAttribute attribute = element.getAnnotation(EiderAttribute.class);
-                if (attribute != null)
-                {
-                    annotations.put(AttributeConstants.MAXLENGTH, Integer.toString(attribute.maxLength()));
-                    annotations.put(AttributeConstants.REPEATED_RECORD, Boolean.toString(attribute.repeatedRecord()));
-
-                    if (attribute.maxLength() != -1)
-                    {
-                        isFixed = true;
-                    }
-                }
-                else
-                {
-                    applyDefaultAnnotations(annotations);
-                }
-
-                final String attrName = element.getSimpleName().toString();
-                checkUnfixedStringInFixedObject(annotation, element, isFixed);
-
-                //not allowing a repeatable record (by passing empty list) here as can't support records within records.
-                final EiderPropertyType type = defineType(element.asType().toString(), isFixed,
-                    Collections.emptyList());
-
-                final PreprocessedEiderProperty prop = new PreprocessedEiderProperty(attrName, type, "", annotations);
-                preprocessedEiderProperties.add(prop);
+                final TypeElement element = (TypeElement)el;
+                final List<PreprocessedEiderRepeatableRecord> records = reader.readReferencedRecords(element);
+                final PreprocessedEiderMessage object = reader.readSpec(element, records);
+                writer.generateSpec(output(element), records, object);
             }
         }
 
-        final PreprocessedEiderRepeatableRecord obj = new PreprocessedEiderRepeatableRecord(classNameGen,
-            classNameInput,
-            packageNameGen,
-            preprocessedEiderProperties);
-
-        records.add(obj);
+        return false;
     }
 
-    private void applyDefaultAnnotations(final Map<String, String> annotations)
+    private FilerEiderOutput output(final Element element)
     {
-        annotations.put(AttributeConstants.MAXLENGTH, Integer.toString(Integer.MIN_VALUE));
+        return new FilerEiderOutput(processingEnv.getFiler(), processingEnv.getMessager(), element);
     }
-
-    private EiderPropertyType defineType(final String typeStr,
-        final boolean isFixed,
-        final List<PreprocessedEiderRepeatableRecord> records)
-    {
-        if (typeStr.equalsIgnoreCase(STRING) && isFixed)
-        {
-            return EiderPropertyType.FIXED_STRING;
-        }
-        else if (typeStr.equalsIgnoreCase(STRING) && !isFixed)
-        {
-            return EiderPropertyType.INVALID;
-        }
-
-        final EiderPropertyType initialGuessType = EiderPropertyType.from(typeStr);
-        if (initialGuessType == EiderPropertyType.INVALID)
-        {
-            for (final PreprocessedEiderRepeatableRecord recordToProcess : records)
-            {
-                if (typeStr.contains(recordToProcess.getClassNameInput()))
-                {
-                    return EiderPropertyType.REPEATABLE_RECORD;
-                }
-            }
-        }
-
-        return initialGuessType;
-    }
-
-    private void checkUnfixedStringInFixedObject(final EiderSpec annotation, final Element element,
-        final boolean isFixed)
-    {
-        if (element.asType().toString().equalsIgnoreCase(STRING)
-            &&
-            !isFixed
-            &&
-            annotation.fixedLength())
-        {
-            throw new EiderProcessorException("Cannot have non fixed length strings on fixed length object");
-        }
-    }
-
 }
@@ -0,0 +1,325 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.processor;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderByteOrder;
+import io.eider.annotation.EiderCorrelation;
+import io.eider.annotation.EiderRecordLayout;
+import io.eider.annotation.EiderRepeatableRecord;
+import io.eider.annotation.EiderSpec;
+import io.eider.internals.ByteOrderType;
+import io.eider.internals.EiderPropertyType;
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.agrona.AttributeConstants;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads annotated types into the preprocessed model. Only the given type and the types of its fields are read, which
+ * keeps the annotation processor isolating.
+ */
+final class EiderSpecReader
+{
+    static final String STRING = "java.lang.String";
+
+    private final ProcessingEnvironment processingEnv;
+
+    EiderSpecReader(final ProcessingEnvironment processingEnv)
+    {
+        this.processingEnv = processingEnv;
+    }
+
+    /**
+     * The wire protocol id for a spec; either the one given in the annotation, or one derived from the qualified
+     * name of the spec so that it does not depend on the order in which specs are processed.
+     */
+    static short protocolId(final TypeElement typeElement)
+    {
+        final EiderSpec annotation = typeElement.getAnnotation(EiderSpec.class);
+        if (annotation.wireProtocolId() != -1)
+        {
+            return annotation.wireProtocolId();
+        }
+        return PreprocessedEiderMessage.defaultEiderId(typeElement.getQualifiedName().toString());
+    }
+
+    List<PreprocessedEiderRepeatableRecord> readReferencedRecords(final TypeElement typeElement)
+    {
+        final List<PreprocessedEiderRepeatableRecord> records = new ArrayList<>();
+        for (final Element element : typeElement.getEnclosedElements())
+        {
+            if (element.getKind() == ElementKind.FIELD)
+            {
+                final Element fieldType = processingEnv.getTypeUtils().asElement(element.asType());
+                if (fieldType instanceof TypeElement && fieldType.getAnnotation(EiderRepeatableRecord.class) != null)
+                {
+                    records.add(readRecord((TypeElement)fieldType));
+                }
+            }
+        }
+        return records;
+    }
+
+    @SuppressWarnings("all")
+    PreprocessedEiderMessage readSpec(final TypeElement typeElement,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        final String classNameInput = typeElement.getSimpleName().toString();
+        final String classNameGen = classNameInput + "Eider";
+        final String packageName = typeElement.getQualifiedName().toString();
+        final String packageNameGen = packageName.replace(classNameInput, "gen");
+
+        EiderSpec annotation = typeElement.getAnnotation(EiderSpec.class);
+
+        final List<PreprocessedEiderProperty> preprocessedEiderProperties = new ArrayList<>();
+        final List<? extends Element> enclosedElements = typeElement.getEnclosedElements();
+
+        for (Element element : enclosedElements)
+        {
+            ElementKind kind = element.getKind();
+            if (kind == ElementKind.FIELD)
+            {
+                Map<String, String> annotations = new HashMap<>();
+                boolean isFixed = false;
+                EiderAttribute attribute = element.getAnnotation(EiderAttribute.class);
+                if (attribute != null)
+                {
+                    annotations.put(AttributeConstants.MAXLENGTH, Integer.toString(attribute.maxLength()));
+                    annotations.put(AttributeConstants.ATOMIC, Boolean.toString(attribute.atomic()));
+                    annotations.put(AttributeConstants.OPTIONAL, Boolean.toString(attribute.optional()));
+                    annotations.put(AttributeConstants.KEY, Boolean.toString(attribute.key()));
+                    annotations.put(AttributeConstants.CORRELATION, attribute.correlation().name());
+
+                    if (attribute.maxLength() != -1)
+                    {
+                        isFixed = true;
+                    }
+                }
+                else
+                {
+                    applyDefaultAnnotations(annotations);
+                }
+
+                final String attrName = element.getSimpleName().toString();
+                checkUnfixedStringInFixedObject(annotation, element, isFixed);
+
+                final EiderPropertyType type = defineType(element.asType().toString(), isFixed, records);
+                if (attribute != null && attribute.atomic() && type != EiderPropertyType.INT &&
+                    type != EiderPropertyType.LONG)
+                {
+                    throw new EiderProcessorException("Only int and long fields can be atomic: " + attrName);
+                }
+                if (attribute != null && attribute.atomic() && annotation.byteOrder() == EiderByteOrder.BIG_ENDIAN)
+                {
+                    throw new EiderProcessorException("Atomic fields use the native byte order, so cannot be " +
+                        "big endian: " + attrName);
+                }
+                if (attribute != null && attribute.optional() &&
+                    (attribute.atomic() || type == EiderPropertyType.REPEATABLE_RECORD))
+                {
+                    throw new EiderProcessorException("Atomic fields and records cannot be optional: " + attrName);
+                }
+                if (attribute != null && attribute.key() && type != EiderPropertyType.SHORT &&
+                    type != EiderPropertyType.INT && type != EiderPropertyType.LONG &&
+                    type != EiderPropertyType.FIXED_STRING)
+                {
+                    throw new EiderProcessorException("Keys must be integers or fixed length strings: " + attrName);
+                }
+                if (attribute != null && attribute.sortKey() != 0)
+                {
+                    throw new EiderProcessorException("Only record fields can be sort keys: " + attrName);
+                }
+                if (attribute != null && attribute.correlation() != EiderCorrelation.NONE &&
+                    type != EiderPropertyType.INT && type != EiderPropertyType.LONG)
+                {
+                    throw new EiderProcessorException("Only int and long fields can be correlation ids: " + attrName);
+                }
+
+                final PreprocessedEiderProperty prop = new PreprocessedEiderProperty(attrName, type,
+                    element.asType().toString(), annotations);
+                preprocessedEiderProperties.add(prop);
+            }
+        }
+
+        if (annotation.timestampHops() < 0 || (annotation.timestampHops() > 0 && !annotation.header()))
+        {
+            throw new EiderProcessorException("Timestamp hops must not be negative and require a header");
+        }
+
+        if (annotation.sequenceLock() && !records.isEmpty())
+        {
+            throw new EiderProcessorException("A sequence lock requires a fixed length spec without records");
+        }
+
+        if (annotation.delta() && !records.isEmpty())
+        {
+            throw new EiderProcessorException("Deltas require a fixed length spec without records");
+        }
+
+        if (annotation.byteOrder() != EiderByteOrder.LITTLE_ENDIAN && !records.isEmpty())
+        {
+            throw new EiderProcessorException("Records are little endian, so specs with records must be too");
+        }
+
+        final String name;
+        if (!annotation.name().isEmpty())
+        {
+            name = annotation.name();
+        }
+        else
+        {
+            name = classNameGen;
+        }
+
+        return new PreprocessedEiderMessage(name,
+            classNameInput,
+            protocolId(typeElement),
+            annotation.version(),
+            packageNameGen,
+            annotation.fixedLength(),
+            annotation.header(),
+            annotation.timestampHops(),
+            annotation.sequenceLock(),
+            annotation.delta(),
+            Arrays.asList(annotation.projectFrom()),
+            ByteOrderType.valueOf(annotation.byteOrder().name()),
+            preprocessedEiderProperties);
+    }
+
+    @SuppressWarnings("all")
+    PreprocessedEiderRepeatableRecord readRecord(TypeElement typeElement)
+    {
+        final String classNameInput = typeElement.getSimpleName().toString();
+        final String classNameGen = classNameInput;
+        final String packageName = typeElement.getQualifiedName().toString();
+        final String packageNameGen = packageName.replace(classNameInput, "gen");
+
+        final List<PreprocessedEiderProperty> preprocessedEiderProperties = new ArrayList<>();
+        final List<? extends Element> enclosedElements = typeElement.getEnclosedElements();
+
+        for (Element element : enclosedElements)
+        {
+            ElementKind kind = element.getKind();
+            if (kind == ElementKind.FIELD)
+            {
+                Map<String, String> annotations = new HashMap<>();
+                boolean isFixed = false;
+                EiderAttribute attribute = element.getAnnotation(EiderAttribute.class);
+                if (attribute != null)
+                {
+                    annotations.put(AttributeConstants.MAXLENGTH, Integer.toString(attribute.maxLength()));
+                    annotations.put(AttributeConstants.REPEATED_RECORD, Boolean.toString(attribute.repeatedRecord()));
+                    annotations.put(AttributeConstants.SORT_KEY, Integer.toString(attribute.sortKey()));
+                    if (attribute.optional() || attribute.key() || attribute.correlation() != EiderCorrelation.NONE)
+                    {
+                        throw new EiderProcessorException("Record fields cannot be optional, keys or correlation " +
+                            "ids: " + element.getSimpleName());
+                    }
+
+                    if (attribute.maxLength() != -1)
+                    {
+                        isFixed = true;
+                    }
+                }
+                else
+                {
+                    applyDefaultAnnotations(annotations);
+                }
+
+                final String attrName = element.getSimpleName().toString();
+
+                //not allowing a repeatable record (by passing empty list) here as can't support records within records.
+                final EiderPropertyType type = defineType(element.asType().toString(), isFixed,
+                    Collections.emptyList());
+                if (attribute != null && attribute.sortKey() != 0 &&
+                    (attribute.sortKey() < 0 || type == EiderPropertyType.BOOLEAN))
+                {
+                    throw new EiderProcessorException("Sort keys must be ranked from 1 and cannot be boolean: " +
+                        attrName);
+                }
+
+                final PreprocessedEiderProperty prop = new PreprocessedEiderProperty(attrName, type, "", annotations);
+                preprocessedEiderProperties.add(prop);
+            }
+        }
+
+        final EiderRepeatableRecord recordAnnotation = typeElement.getAnnotation(EiderRepeatableRecord.class);
+        return new PreprocessedEiderRepeatableRecord(classNameGen,
+            classNameInput,
+            packageNameGen,
+            preprocessedEiderProperties,
+            recordAnnotation != null && recordAnnotation.layout() == EiderRecordLayout.COLUMNAR);
+    }
+
+    private void applyDefaultAnnotations(final Map<String, String> annotations)
+    {
+        annotations.put(AttributeConstants.MAXLENGTH, Integer.toString(Integer.MIN_VALUE));
+    }
+
+    private EiderPropertyType defineType(final String typeStr,
+        final boolean isFixed,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        if (typeStr.equalsIgnoreCase(STRING) && isFixed)
+        {
+            return EiderPropertyType.FIXED_STRING;
+        }
+        else if (typeStr.equalsIgnoreCase(STRING) && !isFixed)
+        {
+            return EiderPropertyType.INVALID;
+        }
+
+        final EiderPropertyType initialGuessType = EiderPropertyType.from(typeStr);
+        if (initialGuessType == EiderPropertyType.INVALID)
+        {
+            for (final PreprocessedEiderRepeatableRecord recordToProcess : records)
+            {
+                if (typeStr.contains(recordToProcess.getClassNameInput()))
+                {
+                    return EiderPropertyType.REPEATABLE_RECORD;
+                }
+            }
+        }
+
+        return initialGuessType;
+    }
+
+    private void checkUnfixedStringInFixedObject(final EiderSpec annotation, final Element element,
+        final boolean isFixed)
+    {
+        if (element.asType().toString().equalsIgnoreCase(STRING)
+            &&
+            !isFixed
+            &&
+            annotation.fixedLength())
+        {
+            throw new EiderProcessorException("Cannot have non fixed length strings on fixed length object");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+plugins {
+    `java-library`
+    checkstyle
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    checkstyle(libs.checkstyle)
+    api(libs.agrona)
+    testImplementation(libs.jupiterApi)
+    testRuntimeOnly(libs.jupiterEngine)
+}
+
+testing {
+    suites {
+        // Configure the built-in test suite
+        val test by getting(JvmTestSuite::class) {
+            // Use JUnit Jupiter test framework
+            useJUnitJupiter(libs.versions.junitVersion.get())
+        }
+    }
+}
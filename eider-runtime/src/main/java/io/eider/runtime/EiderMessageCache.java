@@ -0,0 +1,319 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.runtime;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Caches whole messages by a long key within a fixed number of off-heap bytes. Messages are appended to the arena
+ * as a log and evicted from its oldest end, so messages of any length share one byte budget without fragmenting
+ * it, and each key maps to its message through a primitive open addressing index. Not thread safe.
+ */
+public final class EiderMessageCache
+{
+    /**
+     * Decides which messages are kept when the oldest end of the arena is reclaimed.
+     */
+    public enum Policy
+    {
+        /**
+         * A hit marks the message, and a marked message reaching the oldest end is moved to the newest end with its
+         * mark cleared instead of being evicted. Hits never copy.
+         */
+        CLOCK,
+
+        /**
+         * A hit on a message in the older half of the arena moves it to the newest end, so the least recently used
+         * messages are evicted first. Hits in the newer half do not copy, which keeps hot messages cheap to read.
+         */
+        LRU
+    }
+
+    /**
+     * The bytes each message takes in the arena beyond its own length, before aligning to 8 bytes.
+     */
+    public static final int ENTRY_HEADER_LENGTH = 24;
+
+    private static final int ENTRY_LENGTH_OFFSET = 0;
+    private static final int MESSAGE_LENGTH_OFFSET = 4;
+    private static final int KEY_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 16;
+    private static final int ALIGNMENT = 8;
+    private static final int PADDING = -1;
+    private static final int DEAD = 0;
+    private static final int LIVE = 1;
+    private static final int REFERENCED = 2;
+    private static final long MISSING = -1;
+
+    private final UnsafeBuffer arena;
+    private final UnsafeBuffer scratch;
+    private final Long2LongHashMap index;
+    private final Policy policy;
+    private final int capacity;
+    private final int mask;
+    private final int maxMessageLength;
+    private long head;
+    private long tail;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity         the size of the arena, a power of two, which bounds the bytes cached.
+     * @param maxMessageLength the length of the longest message which may be cached.
+     * @param policy           how messages are chosen for eviction.
+     * @param expectedEntries  the number of messages the index is first sized for; it grows beyond this if needed.
+     */
+    public EiderMessageCache(final int capacity, final int maxMessageLength, final Policy policy,
+        final int expectedEntries)
+    {
+        if (!BitUtil.isPowerOfTwo(capacity))
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (maxMessageLength <= 0 || entryLength(maxMessageLength) > capacity)
+        {
+            throw new IllegalArgumentException("Max message length must be positive and fit the arena: " +
+                maxMessageLength);
+        }
+        this.arena = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity));
+        this.scratch = new UnsafeBuffer(ByteBuffer.allocateDirect(maxMessageLength));
+        this.index = new Long2LongHashMap(Math.max(expectedEntries, 8) * 2, 0.65f, MISSING);
+        this.policy = policy;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Caches the message with a header at the given offset under a key, reading its length from its header. Specs
+     * with repeated records must pass their committedBufferLength instead, as their header holds only the length of
+     * the fixed part.
+     */
+    public void put(final long key, final DirectBuffer buffer, final int offset)
+    {
+        put(key, buffer, offset, buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Caches length bytes at the given offset under a key, replacing any message already cached for it and evicting
+     * other messages until they fit.
+     */
+    public void put(final long key, final DirectBuffer buffer, final int offset, final int length)
+    {
+        if (length < 0 || length > maxMessageLength)
+        {
+            throw new IllegalArgumentException("Message length must be between 0 and " + maxMessageLength + ": " +
+                length);
+        }
+        remove(key);
+        append(key, buffer, offset, length);
+    }
+
+    /**
+     * Wraps the view around the message cached for a key, without copying it. The view is only valid until the next
+     * call to put or get, as either may move or evict the message.
+     *
+     * @return false if no message is cached for the key, in which case the view is unchanged.
+     */
+    public boolean get(final long key, final UnsafeBuffer view)
+    {
+        final long position = index.get(key);
+        if (position == MISSING)
+        {
+            misses++;
+            return false;
+        }
+
+        hits++;
+        int entry = (int)position & mask;
+        final int length = arena.getInt(entry + MESSAGE_LENGTH_OFFSET);
+        if (policy == Policy.CLOCK)
+        {
+            arena.putInt(entry + FLAGS_OFFSET, LIVE | REFERENCED);
+        }
+        else if (position - head < (tail - head) >>> 1)
+        {
+            scratch.putBytes(0, arena, entry + ENTRY_HEADER_LENGTH, length);
+            arena.putInt(entry + FLAGS_OFFSET, DEAD);
+            entry = append(key, scratch, 0, length);
+        }
+        view.wrap(arena, entry + ENTRY_HEADER_LENGTH, length);
+        return true;
+    }
+
+    /**
+     * @return true if a message is cached for the key; this does not count as a hit or a use.
+     */
+    public boolean contains(final long key)
+    {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Drops the message cached for a key. Its bytes are reclaimed when the oldest end of the arena reaches them.
+     *
+     * @return false if no message was cached for the key.
+     */
+    public boolean remove(final long key)
+    {
+        final long position = index.remove(key);
+        if (position == MISSING)
+        {
+            return false;
+        }
+        arena.putInt(((int)position & mask) + FLAGS_OFFSET, DEAD);
+        return true;
+    }
+
+    /**
+     * Drops every message, leaving the counters as they are.
+     */
+    public void clear()
+    {
+        index.clear();
+        head = 0;
+        tail = 0;
+    }
+
+    public int size()
+    {
+        return index.size();
+    }
+
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return the bytes of the arena in use, including those of removed messages not yet reclaimed.
+     */
+    public long usedBytes()
+    {
+        return tail - head;
+    }
+
+    public long hits()
+    {
+        return hits;
+    }
+
+    public long misses()
+    {
+        return misses;
+    }
+
+    public long evictions()
+    {
+        return evictions;
+    }
+
+    private int append(final long key, final DirectBuffer buffer, final int offset, final int length)
+    {
+        final int entryLength = entryLength(length);
+        while (!reserve(entryLength))
+        {
+            evictOldest();
+        }
+
+        return write(key, buffer, offset, length, entryLength);
+    }
+
+    private int write(final long key, final DirectBuffer buffer, final int offset, final int length,
+        final int entryLength)
+    {
+        final int entry = (int)tail & mask;
+        arena.putInt(entry + ENTRY_LENGTH_OFFSET, entryLength);
+        arena.putInt(entry + MESSAGE_LENGTH_OFFSET, length);
+        arena.putLong(entry + KEY_OFFSET, key);
+        arena.putInt(entry + FLAGS_OFFSET, LIVE);
+        arena.putBytes(entry + ENTRY_HEADER_LENGTH, buffer, offset, length);
+        index.put(key, tail);
+        tail += entryLength;
+        return entry;
+    }
+
+    /**
+     * Checks there is room for an entry at the newest end, padding out the end of the arena first if the entry would
+     * not fit before it, as entries never wrap.
+     */
+    private boolean reserve(final int entryLength)
+    {
+        if (head == tail)
+        {
+            // empty, so start again from the beginning of the arena where any entry fits
+            tail = BitUtil.align(tail, (long)capacity);
+            head = tail;
+        }
+
+        final int entry = (int)tail & mask;
+        final int toEnd = capacity - entry;
+        long free = capacity - (tail - head);
+        if (toEnd < entryLength)
+        {
+            if (free < toEnd)
+            {
+                return false;
+            }
+            arena.putInt(entry + ENTRY_LENGTH_OFFSET, toEnd);
+            arena.putInt(entry + MESSAGE_LENGTH_OFFSET, PADDING);
+            tail += toEnd;
+            free -= toEnd;
+        }
+        return free >= entryLength;
+    }
+
+    private void evictOldest()
+    {
+        final int entry = (int)head & mask;
+        final int entryLength = arena.getInt(entry + ENTRY_LENGTH_OFFSET);
+        final int length = arena.getInt(entry + MESSAGE_LENGTH_OFFSET);
+        final int flags = length == PADDING ? DEAD : arena.getInt(entry + FLAGS_OFFSET);
+        head += entryLength;
+        if (flags == DEAD)
+        {
+            return;
+        }
+
+        final long key = arena.getLong(entry + KEY_OFFSET);
+        if ((flags & REFERENCED) != 0)
+        {
+            // a second chance: copied out first, as the newest end may overlap the bytes just reclaimed
+            scratch.putBytes(0, arena, entry + ENTRY_HEADER_LENGTH, length);
+            if (reserve(entryLength))
+            {
+                write(key, scratch, 0, length, entryLength);
+                return;
+            }
+        }
+        index.remove(key);
+        evictions++;
+    }
+
+    private static int entryLength(final int length)
+    {
+        return BitUtil.align(ENTRY_HEADER_LENGTH + length, ALIGNMENT);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.runtime;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EiderMessageCacheTest
+{
+    private static final int CAPACITY = 256;
+    // with the entry header and alignment, four of these fill the arena
+    private static final int SHORT_MESSAGE = 40;
+    private static final int LONG_MESSAGE = 100;
+
+    private final UnsafeBuffer message = new UnsafeBuffer(new byte[CAPACITY]);
+    private final UnsafeBuffer view = new UnsafeBuffer();
+
+    @Test
+    void clockGivesReferencedMessagesASecondChance()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.CLOCK);
+        putAll(cache, 1, 4);
+        assertTrue(cache.get(1, view));
+
+        put(cache, 5, SHORT_MESSAGE);
+        assertCached(cache, 1, 3, 4, 5);
+        assertFalse(cache.contains(2));
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    void clockEvictsInOrderOnceEveryMessageHasHadItsSecondChance()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.CLOCK);
+        putAll(cache, 1, 4);
+        for (long key = 1; key <= 4; key++)
+        {
+            assertTrue(cache.get(key, view));
+        }
+
+        put(cache, 5, SHORT_MESSAGE);
+        assertCached(cache, 2, 3, 4, 5);
+        assertFalse(cache.contains(1));
+        put(cache, 6, SHORT_MESSAGE);
+        assertCached(cache, 3, 4, 5, 6);
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    void lruMovesMessagesUsedInTheOlderHalf()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.LRU);
+        putAll(cache, 1, 4);
+        assertTrue(cache.get(1, view));
+        assertContent(1, SHORT_MESSAGE);
+
+        put(cache, 5, SHORT_MESSAGE);
+        assertCached(cache, 1, 3, 4, 5);
+        assertFalse(cache.contains(2));
+        put(cache, 6, SHORT_MESSAGE);
+        assertCached(cache, 1, 4, 5, 6);
+        assertFalse(cache.contains(3));
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    void lruDoesNotCopyMessagesUsedInTheNewerHalf()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.LRU);
+        putAll(cache, 1, 4);
+        assertTrue(cache.get(4, view));
+        final long address = view.addressOffset();
+        assertTrue(cache.get(4, view));
+        assertEquals(address, view.addressOffset());
+
+        put(cache, 5, SHORT_MESSAGE);
+        assertFalse(cache.contains(1));
+        assertCached(cache, 2, 3, 4, 5);
+    }
+
+    @Test
+    void reusesTheArenaAsMessagesOfMixedLengthsAreEvicted()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.CLOCK);
+        for (long key = 0; key < 1_000; key++)
+        {
+            final int length = key % 3 == 0 ? LONG_MESSAGE : SHORT_MESSAGE;
+            put(cache, key, length);
+            assertTrue(cache.usedBytes() <= CAPACITY);
+            // the newest messages are always intact, however the arena has wrapped and been padded
+            for (long recent = Math.max(0, key - 1); recent <= key; recent++)
+            {
+                assertTrue(cache.get(recent, view));
+                assertContent(recent, recent % 3 == 0 ? LONG_MESSAGE : SHORT_MESSAGE);
+            }
+        }
+        assertTrue(cache.size() >= 2);
+        assertEquals(1_000 - cache.size(), cache.evictions());
+    }
+
+    @Test
+    void reclaimsRemovedMessagesBeforeEvictingLiveOnes()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.CLOCK);
+        putAll(cache, 1, 4);
+        assertTrue(cache.remove(1));
+        assertFalse(cache.remove(1));
+
+        put(cache, 5, SHORT_MESSAGE);
+        assertCached(cache, 2, 3, 4, 5);
+        assertEquals(0, cache.evictions());
+
+        put(cache, 2, SHORT_MESSAGE);
+        assertCached(cache, 2, 3, 4, 5);
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void aMessageAsLargeAsTheArenaEvictsEverythingElse()
+    {
+        final int largest = CAPACITY - EiderMessageCache.ENTRY_HEADER_LENGTH;
+        final EiderMessageCache cache = new EiderMessageCache(CAPACITY, largest, EiderMessageCache.Policy.LRU, 8);
+        putAll(cache, 1, 4);
+
+        put(cache, 9, largest);
+        assertEquals(1, cache.size());
+        assertEquals(CAPACITY, cache.usedBytes());
+        assertTrue(cache.get(9, view));
+        assertContent(9, largest);
+
+        put(cache, 1, SHORT_MESSAGE);
+        assertEquals(1, cache.size());
+        assertCached(cache, 1);
+    }
+
+    @Test
+    void rejectsMessagesLongerThanTheMaximum()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.CLOCK);
+        putAll(cache, 1, 2);
+        assertThrows(IllegalArgumentException.class, () -> cache.put(3, message, 0, LONG_MESSAGE + 1));
+        assertThrows(IllegalArgumentException.class, () -> cache.put(3, message, 0, -1));
+        assertCached(cache, 1, 2);
+        assertFalse(cache.contains(3));
+    }
+
+    @Test
+    void rejectsArenasWhichCannotHoldTheLongestMessage()
+    {
+        assertThrows(IllegalArgumentException.class,
+            () -> new EiderMessageCache(CAPACITY - 1, SHORT_MESSAGE, EiderMessageCache.Policy.CLOCK, 8));
+        assertThrows(IllegalArgumentException.class,
+            () -> new EiderMessageCache(CAPACITY, CAPACITY, EiderMessageCache.Policy.CLOCK, 8));
+        assertThrows(IllegalArgumentException.class,
+            () -> new EiderMessageCache(CAPACITY, 0, EiderMessageCache.Policy.CLOCK, 8));
+    }
+
+    @Test
+    void countsHitsAndMisses()
+    {
+        final EiderMessageCache cache = cache(EiderMessageCache.Policy.CLOCK);
+        putAll(cache, 1, 1);
+        assertTrue(cache.get(1, view));
+        assertFalse(cache.get(2, view));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    private static EiderMessageCache cache(final EiderMessageCache.Policy policy)
+    {
+        return new EiderMessageCache(CAPACITY, LONG_MESSAGE, policy, 8);
+    }
+
+    private void putAll(final EiderMessageCache cache, final long fromKey, final long toKey)
+    {
+        for (long key = fromKey; key <= toKey; key++)
+        {
+            put(cache, key, SHORT_MESSAGE);
+        }
+    }
+
+    private void put(final EiderMessageCache cache, final long key, final int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            message.putByte(i, (byte)(key + i));
+        }
+        cache.put(key, message, 0, length);
+    }
+
+    private void assertCached(final EiderMessageCache cache, final long... keys)
+    {
+        assertEquals(keys.length, cache.size());
+        for (final long key : keys)
+        {
+            assertTrue(cache.contains(key), "key " + key);
+        }
+    }
+
+    private void assertContent(final long key, final int length)
+    {
+        assertEquals(length, view.capacity());
+        for (int i = 0; i < length; i++)
+        {
+            assertEquals((byte)(key + i), view.getByte(i));
+        }
+    }
+}
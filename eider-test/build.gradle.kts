@@ -11,13 +11,16 @@ repositories {
 
 val generatedDir = file("${buildDir}/generated/src/main/java")
 val jmhDir = file("${projectDir}/src/jmh/java")
+// the vector column kernels use the incubating Vector API, so only the jmh sources and the tasks timing them need it
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
 
 sourceSets {
     val generated by creating {
         java.srcDir(file(generatedDir))
     }
+    // the jmh sources generate their own specs, with the vector kernels the main and test sources do without
     val jmh by creating {
-        java.srcDirs(file(jmhDir), file("${projectDir}/src/main/java"), file(generatedDir))
+        java.srcDirs(file(jmhDir), file("${projectDir}/src/main/java"))
     }
 }
 
@@ -38,8 +41,12 @@ dependencies {
     "jmhImplementation"(libs.jmhCore)
     "jmhAnnotationProcessor"(libs.jmhAnnotationProcessor)
     "jmhImplementation"(libs.agrona)
+    "jmhImplementation"(libs.hdrHistogram)
     "jmhImplementation"(project(":eider-internals"))
     "jmhImplementation"(project(":eider-processor"))
+    "jmhImplementation"(project(":eider-transport"))
+    "jmhImplementation"(project(":eider-runtime"))
+    "jmhAnnotationProcessor"(project(":eider-processor"))
 
     annotationProcessor(project(":eider-processor"))
     annotationProcessor(libs.jmhAnnotationProcessor)
@@ -62,8 +69,11 @@ tasks {
     "compileGeneratedJava" {
         dependsOn("compileTestJava")
     }
-    "compileJmhJava" {
+    "compileJmhJava"(JavaCompile::class) {
         dependsOn("compileJava")
+        options.compilerArgs.addAll(listOf("-Aeider.benchmarks=true", "-Aeider.broadcast=true",
+            "-Aeider.vector=true"))
+        options.compilerArgs.addAll(vectorModule)
     }
     "checkstyleJmh" {
         dependsOn("compileJava")
@@ -78,9 +88,40 @@ tasks {
         group = "benchmark"
         mainClass.set("org.openjdk.jmh.Main")
         classpath = sourceSets["jmh"].runtimeClasspath
+        jvmArgs(vectorModule)
     }
 }
 
+/**
+ * Registers a task running a harness from the jmh sources, given as its class under io.skua.configurationservice,
+ * with the arguments passed in the named project property, e.g. -PlatencyArgs="1000000 100000".
+ */
+fun registerHarness(name: String, harness: String, argsProperty: String, configure: JavaExec.() -> Unit = { }) {
+    tasks.register<JavaExec>(name) {
+        dependsOn("jmhClasses")
+        group = "benchmark"
+        mainClass.set("io.skua.configurationservice.$harness")
+        classpath = sourceSets["jmh"].runtimeClasspath
+        args = (project.findProperty(argsProperty) as String? ?: "").split(" ").filter { it.isNotEmpty() }
+        configure()
+    }
+}
+
+registerHarness("latency", "latency.LatencyHarness", "latencyArgs")
+registerHarness("sequenceLockStress", "stress.SequenceLockStress", "stressArgs")
+registerHarness("broadcastFanOut", "broadcast.BroadcastFanOut", "fanOutArgs")
+registerHarness("tcpLoopback", "transport.TcpLoopback", "tcpArgs")
+registerHarness("udpLoss", "transport.UdpLossHarness", "udpArgs")
+registerHarness("deltaReplication", "delta.DeltaReplication", "deltaArgs")
+registerHarness("conflation", "conflation.ConflationHarness", "conflationArgs")
+registerHarness("correlation", "correlation.CorrelationHarness", "correlationArgs")
+registerHarness("recordSort", "records.RecordSortHarness", "recordSortArgs")
+registerHarness("columnarScan", "records.ColumnarScanHarness", "columnarScanArgs") {
+    jvmArgs(vectorModule)
+}
+registerHarness("filter", "filter.FilterHarness", "filterArgs")
+registerHarness("projection", "projection.ProjectionHarness", "projectionArgs")
+registerHarness("byteOrder", "byteorder.ByteOrderHarness", "byteOrderArgs")
 
 testing {
     suites {
@@ -89,5 +130,18 @@ testing {
             // Use JUnit Jupiter test framework
             useJUnitJupiter(libs.versions.junitVersion.get())
         }
+        // tests of the code only the jmh sources generate, such as the broadcast publisher and subscriber
+        val jmhTest by creating(JvmTestSuite::class) {
+            useJUnitJupiter(libs.versions.junitVersion.get())
+            dependencies {
+                implementation(sourceSets["jmh"].output)
+            }
+        }
     }
 }
+
+configurations["jmhTestImplementation"].extendsFrom(configurations["jmhImplementation"])
+
+tasks.check {
+    dependsOn(testing.suites.named("jmhTest"))
+}
@@ -0,0 +1,125 @@
+package io.skua.configurationservice.broadcast;
+
+import io.eider.util.EiderBroadcastPublisher;
+import io.eider.util.EiderBroadcastSubscriber;
+import io.eider.util.EiderMessageListener;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.broadcast.BroadcastBufferDescriptor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans QuillServiceRegisteredEvent out to several subscribers over one broadcast buffer. The last subscriber is
+ * deliberately slow, so it is lapped by the publisher and reports it through its LapHandler while the others keep up.
+ *
+ * <p>Usage: {@code BroadcastFanOut [subscribers] [messages]}, e.g. {@code BroadcastFanOut 3 1000000}.
+ */
+public final class BroadcastFanOut
+{
+    private static final int CAPACITY = 64 * 1024;
+    private static final int DEFAULT_SUBSCRIBERS = 3;
+    private static final int DEFAULT_MESSAGES = 1_000_000;
+    private static final int BATCH = 64;
+
+    private BroadcastFanOut()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args) throws InterruptedException
+    {
+        final int subscriberCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SUBSCRIBERS;
+        final int messages = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MESSAGES;
+
+        final UnsafeBuffer broadcastBuffer = new UnsafeBuffer(
+            ByteBuffer.allocateDirect(CAPACITY + BroadcastBufferDescriptor.TRAILER_LENGTH));
+        final EiderBroadcastPublisher publisher = new EiderBroadcastPublisher(broadcastBuffer);
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final List<Receiver> receivers = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            // subscribers start from the current position, so they are created before anything is published
+            final Receiver receiver = new Receiver(broadcastBuffer, running, i == subscriberCount - 1);
+            receivers.add(receiver);
+            threads.add(new Thread(receiver, "subscriber-" + i));
+        }
+        threads.forEach(Thread::start);
+
+        final long startNs = System.nanoTime();
+        for (int i = 1; i <= messages; i++)
+        {
+            final QuillServiceRegisteredEvent event = publisher.claimQuillServiceRegisteredEvent();
+            event.writeCorrelationId(i);
+            event.writeSuccess(true);
+            event.writeStatusCode((short)200);
+            publisher.publish();
+        }
+        final long publishNs = System.nanoTime() - startNs;
+
+        TimeUnit.MILLISECONDS.sleep(500);
+        running.set(false);
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        System.out.printf("published=%,d in %,dms%n", messages, TimeUnit.NANOSECONDS.toMillis(publishNs));
+        for (int i = 0; i < receivers.size(); i++)
+        {
+            final Receiver receiver = receivers.get(i);
+            System.out.printf("subscriber=%d slow=%b received=%,d last correlationId=%,d out of order=%,d " +
+                "lapped=%,d%n", i, receiver.slow, receiver.received, receiver.lastCorrelationId, receiver.outOfOrder,
+                receiver.subscriber.lappedCount());
+        }
+    }
+
+    private static final class Receiver implements Runnable, EiderMessageListener
+    {
+        private final EiderBroadcastSubscriber subscriber;
+        private final AtomicBoolean running;
+        private final boolean slow;
+        private long received;
+        private long lastCorrelationId;
+        private long outOfOrder;
+
+        private Receiver(final UnsafeBuffer broadcastBuffer, final AtomicBoolean running, final boolean slow)
+        {
+            this.subscriber = new EiderBroadcastSubscriber(broadcastBuffer, this, lappedCount -> { });
+            this.running = running;
+            this.slow = slow;
+        }
+
+        @Override
+        public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+        {
+            received++;
+            // lapping skips messages, but what is received stays in order
+            if (message.readCorrelationId() <= lastCorrelationId)
+            {
+                outOfOrder++;
+            }
+            lastCorrelationId = message.readCorrelationId();
+        }
+
+        @Override
+        public void run()
+        {
+            while (running.get())
+            {
+                subscriber.receive(BATCH);
+                if (slow)
+                {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.skua.configurationservice.byteorder;
+
+import io.skua.configurationservice.gen.QuillServiceEndpointState;
+import io.skua.configurationservice.gen.QuillServiceSharedCounters;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Reports the time per message to read the numeric fields of big endian QuillServiceEndpointStates and native order
+ * QuillServiceSharedCounters, as the native order reads pass no byte order. ByteOrderTest checks that the fields are
+ * stored in the declared order.
+ *
+ * <p>Usage: {@code ByteOrderHarness [messages] [rounds]}, e.g. {@code ByteOrderHarness 1000000 20}.
+ */
+public final class ByteOrderHarness
+{
+    private static final int DEFAULT_MESSAGES = 1_000_000;
+    private static final int DEFAULT_ROUNDS = 20;
+
+    private ByteOrderHarness()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args)
+    {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        final SplittableRandom random = new SplittableRandom(42L);
+
+        final UnsafeBuffer endpoints =
+            new UnsafeBuffer(ByteBuffer.allocateDirect(messages * QuillServiceEndpointState.BUFFER_LENGTH));
+        final QuillServiceEndpointState endpoint = new QuillServiceEndpointState();
+        final UnsafeBuffer shared =
+            new UnsafeBuffer(ByteBuffer.allocateDirect(messages * QuillServiceSharedCounters.BUFFER_LENGTH));
+        final QuillServiceSharedCounters counters = new QuillServiceSharedCounters();
+        for (int i = 0; i < messages; i++)
+        {
+            endpoint.setBufferWriteHeader(endpoints, i * QuillServiceEndpointState.BUFFER_LENGTH);
+            endpoint.writeEndpointId(random.nextInt());
+            endpoint.writeUpdatedAtNs(random.nextLong());
+            counters.setBufferWriteHeader(shared, i * QuillServiceSharedCounters.BUFFER_LENGTH);
+            counters.writeActiveSessions(random.nextInt());
+            counters.writeRequestsServed(random.nextLong());
+        }
+
+        long bigEndianNs = 0;
+        long nativeNs = 0;
+        long sum = 0;
+        for (int round = 0; round < rounds; round++)
+        {
+            long startNs = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+            {
+                endpoint.setUnderlyingBuffer(endpoints, i * QuillServiceEndpointState.BUFFER_LENGTH);
+                sum += endpoint.readEndpointId() + endpoint.readPort() + endpoint.readUpdatedAtNs();
+            }
+            bigEndianNs += System.nanoTime() - startNs;
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+            {
+                counters.setUnderlyingBuffer(shared, i * QuillServiceSharedCounters.BUFFER_LENGTH);
+                sum += counters.readActiveSessions() + counters.readShardId() + counters.readRequestsServed();
+            }
+            nativeNs += System.nanoTime() - startNs;
+        }
+
+        final double read = (double)rounds * messages;
+        System.out.printf("messages=%d rounds=%d bigEndianNs=%.2f nativeNs=%.2f sum=%d%n",
+            messages, rounds, bigEndianNs / read, nativeNs / read, sum);
+    }
+}
@@ -0,0 +1,130 @@
+package io.skua.configurationservice.conflation;
+
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import io.skua.configurationservice.gen.QuillServiceConfigStateLastValueCache;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEventLastValueCache;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Feeds a stream of QuillServiceRegisteredEvents for a fixed set of correlationIds through a last value cache, and
+ * drains the dirty keys at a fixed cadence with a bounded batch, as a conflating publisher would. Checks that every
+ * drained message is the latest for its key and that every key ends up published, and reports how much work the
+ * conflation saved. Also checks string keys on a QuillServiceConfigState cache. Exits with 1 on any mismatch.
+ *
+ * <p>Usage: {@code ConflationHarness [updates] [keys] [updatesPerDrain] [drainLimit]},
+ * e.g. {@code ConflationHarness 10000000 10000 1000 512}.
+ */
+public final class ConflationHarness implements QuillServiceRegisteredEventLastValueCache.DirtyHandler
+{
+    private static final int DEFAULT_UPDATES = 10_000_000;
+    private static final int DEFAULT_KEYS = 10_000;
+    private static final int DEFAULT_UPDATES_PER_DRAIN = 1_000;
+    private static final int DEFAULT_DRAIN_LIMIT = 512;
+
+    private final QuillServiceRegisteredEvent drained = new QuillServiceRegisteredEvent();
+    private final short[] latest;
+    private long published;
+    private long mismatches;
+
+    private ConflationHarness(final int keys)
+    {
+        latest = new short[keys];
+    }
+
+    public static void main(final String[] args)
+    {
+        final int updates = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_UPDATES;
+        final int keys = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_KEYS;
+        final int updatesPerDrain = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_UPDATES_PER_DRAIN;
+        final int drainLimit = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_DRAIN_LIMIT;
+
+        final ConflationHarness harness = new ConflationHarness(keys);
+        final QuillServiceRegisteredEventLastValueCache cache = new QuillServiceRegisteredEventLastValueCache(keys);
+        final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+        final UnsafeBuffer buffer = new UnsafeBuffer(
+            ByteBuffer.allocateDirect(QuillServiceRegisteredEvent.BUFFER_LENGTH));
+        event.setBufferWriteHeader(buffer, 0);
+        final SplittableRandom random = new SplittableRandom(42L);
+
+        long putNs = 0;
+        for (int i = 0; i < updates; i++)
+        {
+            final int key = random.nextInt(keys);
+            event.writeCorrelationId(key);
+            event.writeStatusCode((short)i);
+            harness.latest[key] = (short)i;
+
+            final long startNs = System.nanoTime();
+            if (cache.put(buffer, 0) < 0)
+            {
+                harness.mismatches++;
+            }
+            putNs += System.nanoTime() - startNs;
+
+            if (i % updatesPerDrain == updatesPerDrain - 1)
+            {
+                cache.drainDirty(harness, drainLimit);
+            }
+        }
+        while (cache.drainDirty(harness, drainLimit) > 0)
+        {
+            //drain the backlog
+        }
+
+        final QuillServiceRegisteredEvent cached = new QuillServiceRegisteredEvent();
+        for (int key = 0; key < keys; key++)
+        {
+            if (!cache.lookup(key, cached) || cached.readStatusCode() != harness.latest[key])
+            {
+                harness.mismatches++;
+            }
+        }
+
+        harness.mismatches += checkStringKeys();
+        System.out.printf("updates=%d keys=%d published=%d conflation=%.1fx putNs=%.1f%n", updates, keys,
+            harness.published, (double)updates / harness.published, (double)putNs / updates);
+        System.out.println("mismatches=" + harness.mismatches);
+        System.exit(harness.mismatches == 0 ? 0 : 1);
+    }
+
+    @Override
+    public void onDirty(final DirectBuffer buffer, final int offset, final int length)
+    {
+        drained.setUnderlyingBuffer(buffer, offset);
+        if (drained.readStatusCode() != latest[(int)drained.readCorrelationId()])
+        {
+            mismatches++;
+        }
+        published++;
+    }
+
+    private static int checkStringKeys()
+    {
+        final QuillServiceConfigStateLastValueCache cache = new QuillServiceConfigStateLastValueCache(4);
+        final QuillServiceConfigState config = new QuillServiceConfigState();
+        final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(QuillServiceConfigState.BUFFER_LENGTH));
+        config.setBufferWriteHeader(buffer, 0);
+
+        config.writeRegionWithPadding("eu-west-1");
+        config.writeMaxConnections(1);
+        cache.put(buffer, 0);
+        config.writeRegionWithPadding("us-east-2");
+        config.writeMaxConnections(2);
+        cache.put(buffer, 0);
+        config.writeRegionWithPadding("eu-west-1");
+        config.writeMaxConnections(3);
+        cache.put(buffer, 0);
+
+        final QuillServiceConfigState cached = new QuillServiceConfigState();
+        int failures = cache.size() == 2 ? 0 : 1;
+        failures += cache.lookup(" eu-west-1", cached) && cached.readMaxConnections() == 3 ? 0 : 1;
+        failures += cache.lookup("us-east-2", cached) && cached.readMaxConnections() == 2 ? 0 : 1;
+        failures += cache.lookup("ap-south-1", cached) ? 1 : 0;
+        return failures;
+    }
+}
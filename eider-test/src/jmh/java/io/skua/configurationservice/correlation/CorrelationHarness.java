@@ -0,0 +1,131 @@
+package io.skua.configurationservice.correlation;
+
+import io.eider.util.EiderCorrelationTable;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives an EiderCorrelationTable with a fixed number of requests outstanding on a simulated clock. Each request is
+ * answered by a QuillServiceRegisteredEvent once the window has moved past it, except every dropEvery-th, which
+ * must time out instead. Checks each request has exactly one outcome, the right one, and reports the time and bytes
+ * allocated per request. Exits with 1 on any mismatch.
+ *
+ * <p>Usage: {@code CorrelationHarness [requests] [outstanding] [dropEvery]},
+ * e.g. {@code CorrelationHarness 5000000 1000000 100}.
+ */
+public final class CorrelationHarness implements EiderCorrelationTable.ResponseHandler
+{
+    private static final int DEFAULT_REQUESTS = 5_000_000;
+    private static final int DEFAULT_OUTSTANDING = 1_000_000;
+    private static final int DEFAULT_DROP_EVERY = 100;
+    private static final long BASE_CORRELATION_ID = 1L << 40;
+    private static final long NS_PER_REQUEST = 100;
+    private static final long TICK_NS = 1L << 16;
+    private static final int TICKS_PER_WHEEL = 1024;
+    private static final byte ANSWERED = 1;
+    private static final byte TIMED_OUT = 2;
+
+    private final QuillServiceRegisteredEvent response = new QuillServiceRegisteredEvent();
+    private final byte[] outcomes;
+    private long answered;
+    private long timedOut;
+    private long mismatches;
+
+    private CorrelationHarness(final int requests)
+    {
+        outcomes = new byte[requests];
+    }
+
+    public static void main(final String[] args)
+    {
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REQUESTS;
+        final int outstanding = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_OUTSTANDING;
+        final int dropEvery = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DROP_EVERY;
+        final long timeoutNs = 2 * outstanding * NS_PER_REQUEST;
+
+        final CorrelationHarness harness = new CorrelationHarness(requests);
+        // dropped requests stay outstanding until they time out, on top of those waiting for their response
+        final EiderCorrelationTable table = new EiderCorrelationTable(2 * outstanding, TimeUnit.NANOSECONDS, 0,
+            TICK_NS, TICKS_PER_WHEEL, harness);
+        final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+        final UnsafeBuffer buffer = new UnsafeBuffer(
+            ByteBuffer.allocateDirect(QuillServiceRegisteredEvent.BUFFER_LENGTH));
+        event.setBufferWriteHeader(buffer, 0);
+        event.writeSuccess(true);
+
+        final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long startBytes = threads.getCurrentThreadAllocatedBytes();
+        final long startNs = System.nanoTime();
+        long now = 0;
+        for (int i = 0; i < requests + outstanding; i++)
+        {
+            now += NS_PER_REQUEST;
+            final int answering = i - outstanding;
+            if (answering >= 0 && answering % dropEvery != 0)
+            {
+                event.writeCorrelationId(BASE_CORRELATION_ID + answering);
+                if (!table.onMessage(buffer, 0, QuillServiceRegisteredEvent.BUFFER_LENGTH))
+                {
+                    harness.mismatches++;
+                }
+            }
+            table.poll(now, Integer.MAX_VALUE);
+            if (i < requests && !table.register(BASE_CORRELATION_ID + i, now + timeoutNs, i))
+            {
+                harness.mismatches++;
+            }
+        }
+        final long elapsedNs = System.nanoTime() - startNs;
+        final long allocatedBytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+
+        while (table.pending() > 0)
+        {
+            now += TICK_NS;
+            table.poll(now, Integer.MAX_VALUE);
+        }
+
+        for (int i = 0; i < requests; i++)
+        {
+            if (harness.outcomes[i] != (i % dropEvery == 0 ? TIMED_OUT : ANSWERED))
+            {
+                harness.mismatches++;
+            }
+        }
+        System.out.printf("requests=%d outstanding=%d answered=%d timedOut=%d ns/request=%.1f bytes/request=%.2f%n",
+            requests, outstanding, harness.answered, harness.timedOut, (double)elapsedNs / requests,
+            (double)allocatedBytes / requests);
+        System.out.println("mismatches=" + harness.mismatches);
+        System.exit(harness.mismatches == 0 ? 0 : 1);
+    }
+
+    @Override
+    public void onResponse(final long correlationId, final long context, final DirectBuffer buffer, final int offset,
+        final int length)
+    {
+        response.setUnderlyingBuffer(buffer, offset);
+        if (response.readCorrelationId() != correlationId || correlationId != BASE_CORRELATION_ID + context ||
+            outcomes[(int)context] != 0)
+        {
+            mismatches++;
+        }
+        outcomes[(int)context] = ANSWERED;
+        answered++;
+    }
+
+    @Override
+    public void onTimeout(final long correlationId, final long context)
+    {
+        if (correlationId != BASE_CORRELATION_ID + context || outcomes[(int)context] != 0)
+        {
+            mismatches++;
+        }
+        outcomes[(int)context] = TIMED_OUT;
+        timedOut++;
+    }
+}
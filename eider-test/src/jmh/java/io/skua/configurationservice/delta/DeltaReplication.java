@@ -0,0 +1,132 @@
+package io.skua.configurationservice.delta;
+
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import io.skua.configurationservice.gen.QuillServiceConfigStateDelta;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Replicates a slowly changing QuillServiceConfigState with deltas rather than full messages. Each update changes
+ * a few random fields of the primary; the delta against the replica is applied to the replica, and each pair of
+ * deltas is also merged and applied to a second replica. Reports the bytes sent against full messages and the time
+ * per diff; {@code DeltaTest} checks the replicas end up equal to the primary.
+ *
+ * <p>Usage: {@code DeltaReplication [updates] [fieldsPerUpdate]}, e.g. {@code DeltaReplication 1000000 1}.
+ */
+public final class DeltaReplication
+{
+    private static final int DEFAULT_UPDATES = 1_000_000;
+    private static final int DEFAULT_FIELDS_PER_UPDATE = 1;
+    private static final int FIELDS = 9;
+
+    private DeltaReplication()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args)
+    {
+        final int updates = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_UPDATES;
+        final int fieldsPerUpdate = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_FIELDS_PER_UPDATE;
+        final SplittableRandom random = new SplittableRandom(42L);
+
+        final QuillServiceConfigState primary = new QuillServiceConfigState();
+        final QuillServiceConfigState replica = new QuillServiceConfigState();
+        final QuillServiceConfigState mergedReplica = new QuillServiceConfigState();
+        final UnsafeBuffer primaryBuffer = wrap(primary);
+        final UnsafeBuffer replicaBuffer = wrap(replica);
+        final UnsafeBuffer mergedReplicaBuffer = wrap(mergedReplica);
+
+        final UnsafeBuffer deltaBuffer = new UnsafeBuffer(new byte[QuillServiceConfigStateDelta.MAX_LENGTH]);
+        final UnsafeBuffer pendingBuffer = new UnsafeBuffer(new byte[QuillServiceConfigStateDelta.MAX_LENGTH]);
+        final QuillServiceConfigStateDelta delta = new QuillServiceConfigStateDelta();
+        final QuillServiceConfigStateDelta pending = new QuillServiceConfigStateDelta();
+        final QuillServiceConfigStateDelta merged = new QuillServiceConfigStateDelta();
+        delta.setUnderlyingBuffer(deltaBuffer, 0);
+        pending.setUnderlyingBuffer(pendingBuffer, 0);
+        merged.setUnderlyingBuffer(new UnsafeBuffer(new byte[QuillServiceConfigStateDelta.MAX_LENGTH]), 0);
+
+        long deltaBytes = 0;
+        long diffNs = 0;
+        for (int i = 0; i < updates; i++)
+        {
+            for (int f = 0; f < fieldsPerUpdate; f++)
+            {
+                update(primary, random.nextInt(FIELDS), i);
+            }
+
+            final long startNs = System.nanoTime();
+            final int length = delta.diff(replicaBuffer, 0, primaryBuffer, 0);
+            diffNs += System.nanoTime() - startNs;
+            deltaBytes += length;
+            delta.applyTo(replicaBuffer, 0);
+
+            // every other update, the last two deltas are merged into one for the second replica
+            if ((i & 1) == 0)
+            {
+                pendingBuffer.putBytes(0, deltaBuffer, 0, length);
+            }
+            else
+            {
+                merged.merge(pending, delta);
+                merged.applyTo(mergedReplicaBuffer, 0);
+            }
+        }
+
+        final long fullBytes = (long)updates * QuillServiceConfigState.BUFFER_LENGTH;
+        System.out.printf("updates=%d fieldsPerUpdate=%d fullBytes=%d deltaBytes=%d ratio=%.1fx diffNs=%.1f%n",
+            updates, fieldsPerUpdate, fullBytes, deltaBytes, (double)fullBytes / deltaBytes,
+            (double)diffNs / updates);
+    }
+
+    private static UnsafeBuffer wrap(final QuillServiceConfigState state)
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(QuillServiceConfigState.BUFFER_LENGTH));
+        state.setBufferWriteHeader(buffer, 0);
+        state.writeRegion("eu-west-1");
+        return buffer;
+    }
+
+    private static void update(final QuillServiceConfigState state, final int field, final int i)
+    {
+        switch (field)
+        {
+            case 0:
+                state.writeConfigVersion(i);
+                break;
+            case 1:
+                state.writeUpdatedAtNs(System.nanoTime());
+                break;
+            case 2:
+                state.writeRegion((i & 1) == 0 ? "eu-west-1" : "us-east-2");
+                break;
+            case 3:
+                state.writeMaxConnections(i & 1023);
+                break;
+            case 4:
+                state.writeLoadFactor(i / 1000.0);
+                break;
+            case 5:
+                state.writePriority((short)(i & 7));
+                break;
+            case 6:
+                state.writeAcceptingTraffic((i & 1) == 0);
+                break;
+            case 7:
+                state.writeLeaseExpiresAtNs(i * 1000L);
+                break;
+            default:
+                if (state.hasOwnerId())
+                {
+                    state.clearOwnerId();
+                }
+                else
+                {
+                    state.writeOwnerId(i);
+                }
+                break;
+        }
+    }
+}
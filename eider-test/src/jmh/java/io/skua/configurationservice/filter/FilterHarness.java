@@ -0,0 +1,188 @@
+package io.skua.configurationservice.filter;
+
+import io.eider.util.EiderComparison;
+import io.eider.util.EiderDispatcher;
+import io.eider.util.EiderFilter;
+import io.eider.util.EiderMessageListener;
+import io.eider.util.EiderRegistry;
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import io.skua.configurationservice.gen.QuillServiceConfigStateFilter;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEventFilter;
+import io.skua.configurationservice.gen.QuillServiceStatusState;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a journal of QuillServiceRegisteredEvent, QuillServiceStatusState, QuillServiceConfigState and
+ * RegisterQuillServiceCommand messages one after another, then replays it through the dispatcher twice: once with
+ * {@code statusCode != 0 && !success} as a filter on the registered events, so rejected events are never wrapped,
+ * and once decoding every event to test the same condition in the listener. Config states are then scanned for a
+ * region with an owner id, by filter and by decoding. Reports the time per message of each replay and scan;
+ * {@code FilterTest} checks the filters agree with the decoded messages.
+ *
+ * <p>Usage: {@code FilterHarness [messages] [rounds]}, e.g. {@code FilterHarness 1000000 20}.
+ */
+public final class FilterHarness
+{
+    private static final int DEFAULT_MESSAGES = 1_000_000;
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int MAX_MESSAGE_LENGTH = 256;
+    private static final String[] REGIONS = {"eu-west", "us-east", "ap-south"};
+    private static final EiderFilter OWNED_IN_US_EAST = QuillServiceConfigStateFilter.region(" us-east ")
+        .and(QuillServiceConfigStateFilter.hasOwnerId());
+    private static final QuillServiceConfigState CONFIG = new QuillServiceConfigState();
+
+    private FilterHarness()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args)
+    {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        final UnsafeBuffer journal = new UnsafeBuffer(ByteBuffer.allocateDirect(messages * MAX_MESSAGE_LENGTH));
+        final int length = writeJournal(journal, messages, new SplittableRandom(42L));
+
+        final CountingListener filtered = new CountingListener(false);
+        final EiderDispatcher filteredDispatcher = new EiderDispatcher(filtered);
+        filteredDispatcher.setQuillServiceRegisteredEventFilter(
+            QuillServiceRegisteredEventFilter.statusCode(EiderComparison.NE, (short)0)
+                .and(QuillServiceRegisteredEventFilter.success(false)));
+        final CountingListener decoded = new CountingListener(true);
+        final EiderDispatcher decodingDispatcher = new EiderDispatcher(decoded);
+
+        long filteredNs = 0;
+        long decodedNs = 0;
+        for (int round = 0; round < rounds; round++)
+        {
+            filtered.reset();
+            decoded.reset();
+            long startNs = System.nanoTime();
+            filteredDispatcher.replay(journal, 0, length);
+            filteredNs += System.nanoTime() - startNs;
+
+            startNs = System.nanoTime();
+            decodingDispatcher.replay(journal, 0, length);
+            decodedNs += System.nanoTime() - startNs;
+        }
+
+        long scanFilterNs = 0;
+        long scanDecodeNs = 0;
+        long found = 0;
+        for (int round = 0; round < rounds; round++)
+        {
+            long startNs = System.nanoTime();
+            found += scanByFilter(journal, length);
+            scanFilterNs += System.nanoTime() - startNs;
+
+            startNs = System.nanoTime();
+            found += scanByDecoding(journal, length);
+            scanDecodeNs += System.nanoTime() - startNs;
+        }
+
+        final double replayed = (double)rounds * messages;
+        System.out.printf("messages=%d rounds=%d failed=%d rejected=%d filteredNs=%.2f decodedNs=%.2f " +
+            "found=%d scanFilterNs=%.2f scanDecodeNs=%.2f%n", messages, rounds, decoded.failed,
+            filteredDispatcher.filteredCount() / rounds, filteredNs / replayed, decodedNs / replayed,
+            found / (2 * rounds), scanFilterNs / replayed, scanDecodeNs / replayed);
+    }
+
+    private static int writeJournal(final UnsafeBuffer journal, final int messages, final SplittableRandom random)
+    {
+        final QuillServiceRegisteredEvent registered = new QuillServiceRegisteredEvent();
+        final QuillServiceStatusState status = new QuillServiceStatusState();
+        final QuillServiceConfigState config = new QuillServiceConfigState();
+        final RegisterQuillServiceCommand command = new RegisterQuillServiceCommand();
+        int position = 0;
+        for (int i = 0; i < messages; i++)
+        {
+            switch (random.nextInt(8))
+            {
+                case 0:
+                    status.setBufferWriteHeader(journal, position);
+                    status.writeStatusCode((short)random.nextInt(4));
+                    position += QuillServiceStatusState.BUFFER_LENGTH;
+                    break;
+                case 1:
+                    config.setBufferWriteHeader(journal, position);
+                    config.writeRegionWithPadding(REGIONS[random.nextInt(REGIONS.length)]);
+                    if (random.nextBoolean())
+                    {
+                        config.writeOwnerId(i);
+                    }
+                    position += QuillServiceConfigState.BUFFER_LENGTH;
+                    break;
+                case 2:
+                    command.setBufferWriteHeader(journal, position);
+                    command.resetQuillHostConnectionSize(random.nextInt(3));
+                    command.writeCorrelationId(i);
+                    position += command.committedBufferLength();
+                    break;
+                default:
+                    registered.setBufferWriteHeader(journal, position);
+                    registered.writeCorrelationId(i);
+                    registered.writeStatusCode((short)random.nextInt(4));
+                    registered.writeSuccess(random.nextInt(4) == 0);
+                    position += QuillServiceRegisteredEvent.BUFFER_LENGTH;
+                    break;
+            }
+        }
+        return position;
+    }
+
+    private static int scanByFilter(final UnsafeBuffer journal, final int length)
+    {
+        int found = 0;
+        int position = 0;
+        while (position < length)
+        {
+            found += OWNED_IN_US_EAST.test(journal, position) ? 1 : 0;
+            position += EiderRegistry.messageLength(journal, position);
+        }
+        return found;
+    }
+
+    private static int scanByDecoding(final UnsafeBuffer journal, final int length)
+    {
+        int found = 0;
+        int position = 0;
+        while (position < length)
+        {
+            if (EiderRegistry.lookup(journal, position).protocolId() == QuillServiceConfigState.WIRE_PROTOCOL_ID)
+            {
+                CONFIG.setUnderlyingBuffer(journal, position);
+                found += CONFIG.readRegion().equals("us-east") && CONFIG.hasOwnerId() ? 1 : 0;
+            }
+            position += EiderRegistry.messageLength(journal, position);
+        }
+        return found;
+    }
+
+    private static final class CountingListener implements EiderMessageListener
+    {
+        private final boolean decode;
+        private long failed;
+
+        private CountingListener(final boolean decode)
+        {
+            this.decode = decode;
+        }
+
+        private void reset()
+        {
+            failed = 0;
+        }
+
+        @Override
+        public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+        {
+            // events passed on by the filter already meet the condition
+            failed += !decode || (message.readStatusCode() != 0 && !message.readSuccess()) ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.skua.configurationservice.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand written java.nio.ByteBuffer baseline with the same layouts as the generated
+ * QuillServiceRegisteredEvent and RegisterQuillServiceCommand flyweights.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ByteBufferBaselineBenchmark
+{
+    private static final int MESSAGE_LENGTH_OFFSET = 0;
+    private static final int ENCODING_TYPE_OFFSET = 4;
+    private static final int PROTOCOL_ID_OFFSET = 6;
+    private static final int VERSION_OFFSET = 8;
+    private static final short ENCODING_TYPE = 43;
+    private static final short VERSION = 1;
+
+    private static final short EVENT_PROTOCOL_ID = 101;
+    private static final int EVENT_CORRELATION_ID_OFFSET = 10;
+    private static final int EVENT_SUCCESS_OFFSET = 18;
+    private static final int EVENT_STATUS_CODE_OFFSET = 19;
+    private static final int EVENT_LENGTH = 21;
+
+    private static final short COMMAND_PROTOCOL_ID = 100;
+    private static final int COMMAND_CORRELATION_ID_OFFSET = 10;
+    private static final int COMMAND_COUNT_OFFSET = 18;
+    private static final int COMMAND_LENGTH = 22;
+    private static final int HOST_PORT_OFFSET = 0;
+    private static final int HOST_NAME_OFFSET = 2;
+    private static final int HOST_NAME_LENGTH = 50;
+    private static final int HOST_LENGTH = 52;
+
+    private static final byte[] HOST_NAME = "eiderwire".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(EVENT_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+    @Setup
+    public void setup()
+    {
+        wrapAndEncode();
+    }
+
+    @Benchmark
+    public ByteBuffer wrapAndEncode()
+    {
+        writeHeader(buffer, EVENT_PROTOCOL_ID, EVENT_LENGTH);
+        buffer.putLong(EVENT_CORRELATION_ID_OFFSET, 42L);
+        buffer.put(EVENT_SUCCESS_OFFSET, (byte)1);
+        buffer.putShort(EVENT_STATUS_CODE_OFFSET, (short)42);
+        return buffer;
+    }
+
+    @Benchmark
+    public void decodeAllFields(final Blackhole blackhole)
+    {
+        blackhole.consume(buffer.getLong(EVENT_CORRELATION_ID_OFFSET));
+        blackhole.consume(buffer.get(EVENT_SUCCESS_OFFSET) == (byte)1);
+        blackhole.consume(buffer.getShort(EVENT_STATUS_CODE_OFFSET));
+    }
+
+    @Benchmark
+    public boolean validateHeader()
+    {
+        return buffer.getInt(MESSAGE_LENGTH_OFFSET) == EVENT_LENGTH &&
+            buffer.getShort(ENCODING_TYPE_OFFSET) == ENCODING_TYPE &&
+            buffer.getShort(PROTOCOL_ID_OFFSET) == EVENT_PROTOCOL_ID &&
+            buffer.getShort(VERSION_OFFSET) == VERSION;
+    }
+
+    @Benchmark
+    public ByteBuffer writeQuillHostConnectionRecords(final RecordState state)
+    {
+        final ByteBuffer target = state.buffer;
+        writeHeader(target, COMMAND_PROTOCOL_ID, COMMAND_LENGTH);
+        target.putLong(COMMAND_CORRELATION_ID_OFFSET, 42L);
+        target.putInt(COMMAND_COUNT_OFFSET, state.recordCount);
+        for (int i = 0; i < state.recordCount; i++)
+        {
+            final int recordOffset = COMMAND_LENGTH + (i * HOST_LENGTH);
+            target.putShort(recordOffset + HOST_PORT_OFFSET, (short)42);
+            target.put(recordOffset + HOST_NAME_OFFSET, HOST_NAME);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public void iterateQuillHostConnectionRecords(final RecordState state, final Blackhole blackhole)
+    {
+        final ByteBuffer source = state.buffer;
+        final int count = source.getInt(COMMAND_COUNT_OFFSET);
+        final byte[] hostName = state.hostName;
+        for (int i = 0; i < count; i++)
+        {
+            final int recordOffset = COMMAND_LENGTH + (i * HOST_LENGTH);
+            blackhole.consume(source.getShort(recordOffset + HOST_PORT_OFFSET));
+            source.get(recordOffset + HOST_NAME_OFFSET, hostName);
+            blackhole.consume(new String(hostName, StandardCharsets.US_ASCII).trim());
+        }
+    }
+
+    private static void writeHeader(final ByteBuffer target, final short protocolId, final int length)
+    {
+        target.putInt(MESSAGE_LENGTH_OFFSET, length);
+        target.putShort(ENCODING_TYPE_OFFSET, ENCODING_TYPE);
+        target.putShort(PROTOCOL_ID_OFFSET, protocolId);
+        target.putShort(VERSION_OFFSET, VERSION);
+    }
+
+    @State(Scope.Thread)
+    public static class RecordState
+    {
+        @Param({"1", "16", "256"})
+        public int recordCount;
+
+        private ByteBuffer buffer;
+        private final byte[] hostName = new byte[HOST_NAME_LENGTH];
+
+        @Setup
+        public void setup()
+        {
+            buffer = ByteBuffer.allocateDirect(COMMAND_LENGTH + (recordCount * HOST_LENGTH))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(COMMAND_COUNT_OFFSET, recordCount);
+        }
+    }
+}
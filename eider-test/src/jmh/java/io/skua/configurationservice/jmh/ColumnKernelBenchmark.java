@@ -0,0 +1,136 @@
+package io.skua.configurationservice.jmh;
+
+import io.eider.util.EiderColumnKernels;
+import io.eider.util.EiderComparison;
+import io.skua.configurationservice.gen.QuillHostLatency;
+import io.skua.configurationservice.gen.QuillServiceLatencyReport;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates a column of a QuillServiceLatencyReport three ways: a loop over the record flyweight, the scalar column
+ * kernels, and the vector column kernels. The forks add the Vector API module, so the vector kernels are used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ColumnKernelBenchmark
+{
+    private static final double THRESHOLD = 5_000.0;
+
+    @Param({"1024", "16384", "65536"})
+    public int records;
+
+    private final QuillServiceLatencyReport report = new QuillServiceLatencyReport();
+    private final EiderColumnKernels scalar = new EiderColumnKernels(false);
+    private final EiderColumnKernels vector = new EiderColumnKernels(true);
+    private UnsafeBuffer buffer;
+
+    @Setup
+    public void setup()
+    {
+        if (!vector.isVectorized())
+        {
+            throw new IllegalStateException("the vector kernels need --add-modules=jdk.incubator.vector");
+        }
+        buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(report.precomputeBufferLength(records)));
+        report.setBufferWriteHeader(buffer, 0);
+        report.resetQuillHostLatencySize(records);
+        final SplittableRandom random = new SplittableRandom(42L);
+        for (int i = 0; i < records; i++)
+        {
+            report.writeQuillHostLatencyRequests(i, random.nextLong(1_000_000L));
+            report.writeQuillHostLatencyErrors(i, random.nextInt(1_000));
+            report.writeQuillHostLatencyLatencyMicros(i, random.nextDouble() * 10_000.0);
+        }
+    }
+
+    @Benchmark
+    public long sumRequestsFlyweight()
+    {
+        long sum = 0;
+        for (int i = 0; i < records; i++)
+        {
+            final QuillHostLatency host = report.getQuillHostLatency(i);
+            sum += host.readRequests();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sumRequestsScalar()
+    {
+        return scalar.sumLong(buffer, report.getQuillHostLatencyRequestsColumnOffset(), records);
+    }
+
+    @Benchmark
+    public long sumRequestsVector()
+    {
+        return vector.sumLong(buffer, report.getQuillHostLatencyRequestsColumnOffset(), records);
+    }
+
+    @Benchmark
+    public int maxErrorsFlyweight()
+    {
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < records; i++)
+        {
+            max = Math.max(max, report.getQuillHostLatency(i).readErrors());
+        }
+        return max;
+    }
+
+    @Benchmark
+    public int maxErrorsScalar()
+    {
+        return scalar.maxInt(buffer, report.getQuillHostLatencyErrorsColumnOffset(), records);
+    }
+
+    @Benchmark
+    public int maxErrorsVector()
+    {
+        return vector.maxInt(buffer, report.getQuillHostLatencyErrorsColumnOffset(), records);
+    }
+
+    @Benchmark
+    public int countSlowFlyweight()
+    {
+        int count = 0;
+        for (int i = 0; i < records; i++)
+        {
+            count += report.getQuillHostLatency(i).readLatencyMicros() > THRESHOLD ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int countSlowScalar()
+    {
+        return scalar.countDouble(buffer, report.getQuillHostLatencyLatencyMicrosColumnOffset(), records,
+            EiderComparison.GT, THRESHOLD);
+    }
+
+    @Benchmark
+    public int countSlowVector()
+    {
+        return vector.countDouble(buffer, report.getQuillHostLatencyLatencyMicrosColumnOffset(), records,
+            EiderComparison.GT, THRESHOLD);
+    }
+}
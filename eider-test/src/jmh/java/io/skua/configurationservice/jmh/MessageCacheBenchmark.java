@@ -0,0 +1,136 @@
+package io.skua.configurationservice.jmh;
+
+import io.eider.runtime.EiderMessageCache;
+import io.skua.configurationservice.gen.QuillHostConnection;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.agrona.BitUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches RegisterQuillServiceCommands by correlation id in an EiderMessageCache and, as the baseline, in a
+ * ConcurrentHashMap of byte arrays, reading and replacing keys in a random order. The arena holds every command, so
+ * the benchmarks measure lookups and copies rather than eviction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageCacheBenchmark
+{
+    private static final int HOSTS = 4;
+    private static final int ACCESSES = 1 << 16;
+
+    @Param({"1024", "65536"})
+    public int entries;
+
+    @Param({"CLOCK", "LRU"})
+    public EiderMessageCache.Policy policy;
+
+    private final RegisterQuillServiceCommand command = new RegisterQuillServiceCommand();
+    private final UnsafeBuffer view = new UnsafeBuffer();
+    private final UnsafeBuffer wrapped = new UnsafeBuffer();
+    private EiderMessageCache cache;
+    private ConcurrentHashMap<Long, byte[]> map;
+    private UnsafeBuffer source;
+    private int length;
+    private long[] keys;
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        source = new UnsafeBuffer(ByteBuffer.allocateDirect(command.precomputeBufferLength(HOSTS)));
+        command.setBufferWriteHeader(source, 0);
+        command.resetQuillHostConnectionSize(HOSTS);
+        for (int i = 0; i < HOSTS; i++)
+        {
+            final QuillHostConnection host = command.getQuillHostConnection(i);
+            host.writePort((short)(9000 + i));
+            host.writeHostNameWithPadding("quill" + i);
+        }
+        length = command.committedBufferLength();
+
+        final int entryLength = BitUtil.align(EiderMessageCache.ENTRY_HEADER_LENGTH + length, 8);
+        cache = new EiderMessageCache(BitUtil.findNextPositivePowerOfTwo(entries * entryLength * 2), length, policy,
+            entries);
+        map = new ConcurrentHashMap<>(entries * 2);
+
+        final Random random = new Random(42);
+        final long[] cached = new long[entries];
+        for (int i = 0; i < entries; i++)
+        {
+            cached[i] = random.nextLong();
+            command.writeCorrelationId(cached[i]);
+            cache.put(cached[i], source, 0, length);
+            map.put(cached[i], copy());
+        }
+        // uniformly random, as cycling through the keys in one order would always hit the least recently used
+        keys = new long[ACCESSES];
+        for (int i = 0; i < ACCESSES; i++)
+        {
+            keys[i] = cached[random.nextInt(entries)];
+        }
+    }
+
+    @Benchmark
+    public long eiderGet()
+    {
+        cache.get(nextKey(), view);
+        command.setUnderlyingBuffer(view, 0);
+        return command.readCorrelationId();
+    }
+
+    @Benchmark
+    public long mapGet()
+    {
+        wrapped.wrap(map.get(nextKey()));
+        command.setUnderlyingBuffer(wrapped, 0);
+        return command.readCorrelationId();
+    }
+
+    @Benchmark
+    public int eiderPut()
+    {
+        cache.put(nextKey(), source, 0, length);
+        return cache.size();
+    }
+
+    @Benchmark
+    public int mapPut()
+    {
+        map.put(nextKey(), copy());
+        return map.size();
+    }
+
+    private long nextKey()
+    {
+        final long key = keys[next];
+        next = (next + 1) & (ACCESSES - 1);
+        return key;
+    }
+
+    private byte[] copy()
+    {
+        final byte[] bytes = new byte[length];
+        source.getBytes(0, bytes);
+        return bytes;
+    }
+}
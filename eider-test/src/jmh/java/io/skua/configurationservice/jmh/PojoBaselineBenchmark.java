@@ -0,0 +1,132 @@
+package io.skua.configurationservice.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand written plain object baseline for the QuillServiceRegisteredEvent and RegisterQuillServiceCommand
+ * benchmarks, allocating a new object graph per encode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PojoBaselineBenchmark
+{
+    private static final short EVENT_PROTOCOL_ID = 101;
+    private static final short VERSION = 1;
+
+    private Event event;
+
+    @Setup
+    public void setup()
+    {
+        event = wrapAndEncode();
+    }
+
+    @Benchmark
+    public Event wrapAndEncode()
+    {
+        final Event result = new Event();
+        result.protocolId = EVENT_PROTOCOL_ID;
+        result.version = VERSION;
+        result.correlationId = 42L;
+        result.success = true;
+        result.statusCode = 42;
+        return result;
+    }
+
+    @Benchmark
+    public void decodeAllFields(final Blackhole blackhole)
+    {
+        blackhole.consume(event.correlationId);
+        blackhole.consume(event.success);
+        blackhole.consume(event.statusCode);
+    }
+
+    @Benchmark
+    public boolean validateHeader()
+    {
+        return event.protocolId == EVENT_PROTOCOL_ID && event.version == VERSION;
+    }
+
+    @Benchmark
+    public Command writeQuillHostConnectionRecords(final RecordState state)
+    {
+        final Command result = new Command();
+        result.correlationId = 42L;
+        result.hosts = new ArrayList<>(state.recordCount);
+        for (int i = 0; i < state.recordCount; i++)
+        {
+            final HostConnection host = new HostConnection();
+            host.port = 42;
+            host.hostName = "eiderwire";
+            result.hosts.add(host);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void iterateQuillHostConnectionRecords(final RecordState state, final Blackhole blackhole)
+    {
+        final List<HostConnection> hosts = state.command.hosts;
+        for (int i = 0; i < hosts.size(); i++)
+        {
+            final HostConnection host = hosts.get(i);
+            blackhole.consume(host.port);
+            blackhole.consume(host.hostName);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RecordState
+    {
+        @Param({"1", "16", "256"})
+        public int recordCount;
+
+        private Command command;
+
+        @Setup
+        public void setup()
+        {
+            command = new PojoBaselineBenchmark().writeQuillHostConnectionRecords(this);
+        }
+    }
+
+    public static class Event
+    {
+        private short protocolId;
+        private short version;
+        private long correlationId;
+        private boolean success;
+        private short statusCode;
+    }
+
+    public static class Command
+    {
+        private long correlationId;
+        private List<HostConnection> hosts;
+    }
+
+    public static class HostConnection
+    {
+        private short port;
+        private String hostName;
+    }
+}
@@ -0,0 +1,68 @@
+package io.skua.configurationservice.latency;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+
+/**
+ * Records the time taken between consecutive stages of a message's hop timestamp trail, one histogram per hop.
+ */
+public class HopLatencyRecorder
+{
+    private static final long HIGHEST_TRACKABLE_NS = 60_000_000_000L;
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+
+    private final String[] hopNames;
+    private final Histogram[] histograms;
+
+    /**
+     * @param stages the name of each stage, in the order they are stamped.
+     */
+    public HopLatencyRecorder(final String... stages)
+    {
+        hopNames = new String[stages.length - 1];
+        histograms = new Histogram[stages.length - 1];
+        for (int hop = 0; hop < hopNames.length; hop++)
+        {
+            hopNames[hop] = stages[hop] + " -> " + stages[hop + 1];
+            histograms[hop] = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+        }
+    }
+
+    /**
+     * Records the time between the stamp at {@code hop - 1} and the stamp at {@code hop}.
+     */
+    public void recordHop(final int hop, final long fromNs, final long toNs)
+    {
+        if (hop > 0 && hop <= histograms.length)
+        {
+            histograms[hop - 1].recordValue(Math.max(0, Math.min(HIGHEST_TRACKABLE_NS, toNs - fromNs)));
+        }
+    }
+
+    public void reset()
+    {
+        for (final Histogram histogram : histograms)
+        {
+            histogram.reset();
+        }
+    }
+
+    public void report(final PrintStream out)
+    {
+        for (int hop = 0; hop < histograms.length; hop++)
+        {
+            final Histogram histogram = histograms[hop];
+            final StringBuilder line = new StringBuilder(128);
+            line.append(String.format("    %-26s", hopNames[hop]));
+            for (final double percentile : PERCENTILES)
+            {
+                line.append(String.format(" p%s=%.3fus", percentile,
+                    histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            line.append(String.format(" max=%.3fus", histogram.getMaxValue() / 1000.0));
+            out.println(line);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.skua.configurationservice.latency;
+
+import io.eider.util.EiderDispatcher;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * End to end latency harness: encode in place into an Agrona ring buffer, then decode and dispatch on a consumer
+ * thread. Messages are sent at a fixed offered rate and latency is measured from the time each message was due to
+ * be sent rather than when it was actually sent, so stalls in the producer are not hidden (coordinated omission).
+ * QuillServiceRegisteredEvent also carries a hop timestamp trail, stamped before and after it is encoded into a
+ * scratch buffer, after it is copied into the ring buffer, when the consumer polls it and after it is decoded.
+ *
+ * <p>Usage: {@code LatencyHarness [rates] [seconds] [records]}, e.g. {@code LatencyHarness 100000,1000000 10 4}.
+ */
+public final class LatencyHarness
+{
+    private static final int RING_BUFFER_CAPACITY = 4 * 1024 * 1024;
+    private static final int WARMUP_SECONDS = 5;
+    private static final String DEFAULT_RATES = "100000,500000,1000000";
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_RECORDS = 4;
+
+    private final RegisterQuillServiceCommand command = new RegisterQuillServiceCommand();
+    private final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+    private final QuillServiceRegisteredEvent enqueued = new QuillServiceRegisteredEvent();
+    private final UnsafeBuffer scratch = new UnsafeBuffer(ByteBuffer.allocateDirect(
+        QuillServiceRegisteredEvent.BUFFER_LENGTH));
+    private final int records;
+    private final int commandLength;
+
+    private LatencyHarness(final int records)
+    {
+        this.records = records;
+        this.commandLength = command.precomputeBufferLength(records);
+    }
+
+    public static void main(final String[] args) throws InterruptedException
+    {
+        final String rates = args.length > 0 ? args[0] : DEFAULT_RATES;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        final int records = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RECORDS;
+        final LatencyHarness harness = new LatencyHarness(records);
+
+        for (final String rate : rates.split(","))
+        {
+            final long messagesPerSecond = Long.parseLong(rate.trim());
+            final LatencyRecorder recorder = harness.run(messagesPerSecond, WARMUP_SECONDS);
+            recorder.reset();
+            harness.run(messagesPerSecond, seconds, recorder);
+
+            System.out.printf("rate=%d msg/s duration=%ds records=%d checksum=%d%n",
+                messagesPerSecond, seconds, records, recorder.checksum());
+            recorder.report(System.out);
+        }
+    }
+
+    private LatencyRecorder run(final long messagesPerSecond, final int seconds) throws InterruptedException
+    {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        run(messagesPerSecond, seconds, recorder);
+        return recorder;
+    }
+
+    private void run(final long messagesPerSecond, final int seconds, final LatencyRecorder recorder)
+        throws InterruptedException
+    {
+        final RingBuffer ringBuffer = new OneToOneRingBuffer(new UnsafeBuffer(
+            ByteBuffer.allocateDirect(RING_BUFFER_CAPACITY + RingBufferDescriptor.TRAILER_LENGTH)));
+        final EiderDispatcher dispatcher = new EiderDispatcher(recorder);
+        final MessageHandler handler = (msgTypeId, buffer, index, length) ->
+        {
+            recorder.onPoll(System.nanoTime());
+            dispatcher.onMessage(msgTypeId, buffer, index, length);
+        };
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final Thread consumer = new Thread(() ->
+        {
+            while (running.get() || ringBuffer.size() > 0)
+            {
+                if (ringBuffer.read(handler) == 0)
+                {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "eider-latency-consumer");
+        consumer.start();
+
+        final long intervalNs = TimeUnit.SECONDS.toNanos(1) / messagesPerSecond;
+        final long messageCount = messagesPerSecond * seconds;
+        final long startNs = System.nanoTime();
+
+        for (long i = 0; i < messageCount; i++)
+        {
+            final long intendedSendTimeNs = startNs + (i * intervalNs);
+            while (System.nanoTime() < intendedSendTimeNs)
+            {
+                Thread.onSpinWait();
+            }
+
+            if ((i & 1) == 0)
+            {
+                sendEvent(ringBuffer, intendedSendTimeNs);
+            }
+            else
+            {
+                sendCommand(ringBuffer, intendedSendTimeNs);
+            }
+        }
+
+        running.set(false);
+        consumer.join();
+    }
+
+    private void sendEvent(final RingBuffer ringBuffer, final long intendedSendTimeNs)
+    {
+        // writing the header clears the hops, so the time before encoding is stamped once the fields are written
+        final long beforeEncodeNs = System.nanoTime();
+        event.setBufferWriteHeader(scratch, 0);
+        event.writeCorrelationId(intendedSendTimeNs);
+        event.writeSuccess(true);
+        event.writeStatusCode((short)200);
+        event.stampHop(beforeEncodeNs);
+        event.stampHop(System.nanoTime());
+
+        final int index = claim(ringBuffer, QuillServiceRegisteredEvent.WIRE_PROTOCOL_ID,
+            QuillServiceRegisteredEvent.BUFFER_LENGTH);
+        ringBuffer.buffer().putBytes(index, scratch, 0, QuillServiceRegisteredEvent.BUFFER_LENGTH);
+        enqueued.setUnderlyingBuffer(ringBuffer.buffer(), index);
+        enqueued.stampHop(System.nanoTime());
+        ringBuffer.commit(index);
+    }
+
+    private void sendCommand(final RingBuffer ringBuffer, final long intendedSendTimeNs)
+    {
+        final int index = claim(ringBuffer, RegisterQuillServiceCommand.WIRE_PROTOCOL_ID, commandLength);
+        command.setBufferWriteHeader(ringBuffer.buffer(), index);
+        command.writeCorrelationId(intendedSendTimeNs);
+        command.resetQuillHostConnectionSize(records);
+        for (int i = 0; i < records; i++)
+        {
+            command.getQuillHostConnection(i).writePort((short)(8000 + i));
+            command.getQuillHostConnection(i).writeHostNameWithPadding("quill-gateway");
+        }
+        ringBuffer.commit(index);
+    }
+
+    private static int claim(final RingBuffer ringBuffer, final int msgTypeId, final int length)
+    {
+        int index = ringBuffer.tryClaim(msgTypeId, length);
+        while (index < 0)
+        {
+            Thread.onSpinWait();
+            index = ringBuffer.tryClaim(msgTypeId, length);
+        }
+        return index;
+    }
+}
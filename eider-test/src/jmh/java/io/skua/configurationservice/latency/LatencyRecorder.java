@@ -0,0 +1,105 @@
+package io.skua.configurationservice.latency;
+
+import io.eider.util.EiderMessageListener;
+import io.skua.configurationservice.gen.QuillHostConnection;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+
+/**
+ * Decodes every field of the dispatched messages and records the time since the message was due to be sent,
+ * which the producer writes into correlationId. QuillServiceRegisteredEvent is stamped with the time the consumer
+ * polled it, given to {@link #onPoll(long)} before dispatch, and again once its fields are decoded.
+ */
+public class LatencyRecorder implements EiderMessageListener
+{
+    private static final long HIGHEST_TRACKABLE_NS = 60_000_000_000L;
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+
+    private final Histogram eventHistogram = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+    private final Histogram commandHistogram = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+    private final HopLatencyRecorder eventHops =
+        new HopLatencyRecorder("before encode", "encoded", "enqueued", "polled", "decoded");
+    private long polledNs;
+    private long checksum;
+
+    /**
+     * Called by the consumer as it polls each message, before the message is dispatched.
+     */
+    public void onPoll(final long nowNs)
+    {
+        polledNs = nowNs;
+    }
+
+    @Override
+    public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+    {
+        message.stampHop(polledNs);
+        checksum += message.readStatusCode() + (message.readSuccess() ? 1 : 0);
+        final long correlationId = message.readCorrelationId();
+        message.stampHop(System.nanoTime());
+        record(eventHistogram, correlationId);
+
+        final int hops = message.readHopCount();
+        for (int hop = 1; hop < hops; hop++)
+        {
+            eventHops.recordHop(hop, message.readHopTimestamp(hop - 1), message.readHopTimestamp(hop));
+        }
+    }
+
+    @Override
+    public void onRegisterQuillServiceCommand(final RegisterQuillServiceCommand message)
+    {
+        final int count = message.readQuillHostConnectionSize();
+        for (int i = 0; i < count; i++)
+        {
+            final QuillHostConnection host = message.getQuillHostConnection(i);
+            checksum += host.readPort() + host.compareHostName("");
+        }
+        record(commandHistogram, message.readCorrelationId());
+    }
+
+    public long messageCount()
+    {
+        return eventHistogram.getTotalCount() + commandHistogram.getTotalCount();
+    }
+
+    public long checksum()
+    {
+        return checksum;
+    }
+
+    public void reset()
+    {
+        eventHistogram.reset();
+        commandHistogram.reset();
+        eventHops.reset();
+    }
+
+    public void report(final PrintStream out)
+    {
+        report(out, "QuillServiceRegisteredEvent", eventHistogram);
+        eventHops.report(out);
+        report(out, "RegisterQuillServiceCommand", commandHistogram);
+    }
+
+    private static void record(final Histogram histogram, final long intendedSendTimeNs)
+    {
+        histogram.recordValue(Math.min(HIGHEST_TRACKABLE_NS, System.nanoTime() - intendedSendTimeNs));
+    }
+
+    private static void report(final PrintStream out, final String name, final Histogram histogram)
+    {
+        final StringBuilder line = new StringBuilder(128);
+        line.append(String.format("  %-28s count=%-10d", name, histogram.getTotalCount()));
+        for (final double percentile : PERCENTILES)
+        {
+            line.append(String.format(" p%s=%.3fus", percentile, histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        line.append(String.format(" max=%.3fus", histogram.getMaxValue() / 1000.0));
+        out.println(line);
+    }
+}
@@ -0,0 +1,85 @@
+package io.skua.configurationservice.projection;
+
+import io.eider.util.EiderProjections;
+import io.skua.configurationservice.gen.QuillServiceOutcomeEvent;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Forwards QuillServiceRegisteredEvents as QuillServiceOutcomeEvents two ways: through the generated projection,
+ * which copies the header, hop trail and fields in one range, and field by field through both flyweights. Reports
+ * the time per message of each way; {@code ProjectionTest} checks what the projections write.
+ *
+ * <p>Usage: {@code ProjectionHarness [messages] [rounds]}, e.g. {@code ProjectionHarness 1000000 20}.
+ */
+public final class ProjectionHarness
+{
+    private static final int DEFAULT_MESSAGES = 1_000_000;
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int HOPS = 3;
+
+    private ProjectionHarness()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args)
+    {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        final SplittableRandom random = new SplittableRandom(42L);
+
+        final UnsafeBuffer sources =
+            new UnsafeBuffer(ByteBuffer.allocateDirect(messages * QuillServiceRegisteredEvent.BUFFER_LENGTH));
+        final QuillServiceRegisteredEvent registered = new QuillServiceRegisteredEvent();
+        for (int i = 0; i < messages; i++)
+        {
+            registered.setBufferWriteHeader(sources, i * QuillServiceRegisteredEvent.BUFFER_LENGTH);
+            registered.writeCorrelationId(random.nextLong());
+            registered.writeSuccess(random.nextBoolean());
+            registered.writeStatusCode((short)random.nextInt(Short.MAX_VALUE));
+            for (int hop = 0; hop < HOPS; hop++)
+            {
+                registered.stampHop(random.nextLong());
+            }
+        }
+
+        final UnsafeBuffer target = new UnsafeBuffer(ByteBuffer.allocateDirect(QuillServiceOutcomeEvent.BUFFER_LENGTH));
+        final QuillServiceOutcomeEvent outcome = new QuillServiceOutcomeEvent();
+        long projectedNs = 0;
+        long copiedNs = 0;
+        for (int round = 0; round < rounds; round++)
+        {
+            long startNs = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+            {
+                EiderProjections.quillServiceRegisteredEventToQuillServiceOutcomeEvent(sources,
+                    i * QuillServiceRegisteredEvent.BUFFER_LENGTH, target, 0);
+            }
+            projectedNs += System.nanoTime() - startNs;
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+            {
+                registered.setUnderlyingBuffer(sources, i * QuillServiceRegisteredEvent.BUFFER_LENGTH);
+                outcome.setBufferWriteHeader(target, 0);
+                outcome.writeCorrelationId(registered.readCorrelationId());
+                outcome.writeSuccess(registered.readSuccess());
+                outcome.writeStatusCode(registered.readStatusCode());
+                outcome.writeAttempts(0);
+                for (int hop = 0; hop < registered.readHopCount(); hop++)
+                {
+                    outcome.stampHop(registered.readHopTimestamp(hop));
+                }
+            }
+            copiedNs += System.nanoTime() - startNs;
+        }
+
+        final double projected = (double)rounds * messages;
+        System.out.printf("messages=%d rounds=%d projectedNs=%.2f copiedNs=%.2f%n",
+            messages, rounds, projectedNs / projected, copiedNs / projected);
+    }
+}
@@ -0,0 +1,132 @@
+package io.skua.configurationservice.records;
+
+import io.eider.util.EiderColumnKernels;
+import io.eider.util.EiderComparison;
+import io.skua.configurationservice.gen.QuillHostLatency;
+import io.skua.configurationservice.gen.QuillServiceLatencyReport;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+/**
+ * Fills a QuillServiceLatencyReport with random columnar QuillHostLatency records through the row facade, then times
+ * a sum of the requests of every record three ways: through the facade, through the per index column accessors, and
+ * by reading the column directly at its stride. The tests check the layout and the scalar kernels; only the jmh
+ * sources are generated with the vector kernels, so this also checks they agree with the scalar kernels when run with
+ * {@code --add-modules jdk.incubator.vector}. Exits with 1 if they do not.
+ *
+ * <p>Usage: {@code ColumnarScanHarness [records] [rounds]}, e.g. {@code ColumnarScanHarness 100000 100}.
+ */
+public final class ColumnarScanHarness
+{
+    private static final int DEFAULT_RECORDS = 100_000;
+    private static final int DEFAULT_ROUNDS = 100;
+    private static final long PIVOT = 500_000L;
+
+    private static long sink;
+
+    private ColumnarScanHarness()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args)
+    {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RECORDS;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        final SplittableRandom random = new SplittableRandom(42L);
+
+        final QuillServiceLatencyReport report = new QuillServiceLatencyReport();
+        final UnsafeBuffer buffer =
+            new UnsafeBuffer(ByteBuffer.allocateDirect(report.precomputeBufferLength(records)));
+        report.setBufferWriteHeader(buffer, 0);
+        report.resetQuillHostLatencySize(records);
+
+        for (int i = 0; i < records; i++)
+        {
+            final QuillHostLatency host = report.getQuillHostLatency(i);
+            host.writePort((short)random.nextInt(1, Short.MAX_VALUE));
+            host.writeRequests(random.nextLong(2 * PIVOT));
+            host.writeErrors(random.nextInt(1_000));
+            host.writeLatencyMicros(random.nextDouble() * 10_000.0);
+        }
+
+        long facadeNs = 0;
+        long accessorNs = 0;
+        long columnNs = 0;
+        for (int round = 0; round < rounds; round++)
+        {
+            long startNs = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < records; i++)
+            {
+                sum += report.getQuillHostLatency(i).readRequests();
+            }
+            facadeNs += System.nanoTime() - startNs;
+            sink += sum;
+
+            startNs = System.nanoTime();
+            sum = 0;
+            for (int i = 0; i < records; i++)
+            {
+                sum += report.readQuillHostLatencyRequests(i);
+            }
+            accessorNs += System.nanoTime() - startNs;
+            sink += sum;
+
+            startNs = System.nanoTime();
+            sum = 0;
+            final int column = report.getQuillHostLatencyRequestsColumnOffset();
+            final int end = column + records * QuillHostLatency.REQUESTS_WIDTH;
+            for (int offset = column; offset < end; offset += QuillHostLatency.REQUESTS_WIDTH)
+            {
+                sum += buffer.getLong(offset, ByteOrder.LITTLE_ENDIAN);
+            }
+            columnNs += System.nanoTime() - startNs;
+            sink += sum;
+        }
+
+        final EiderColumnKernels vector = new EiderColumnKernels(true);
+        final long mismatches = vector.isVectorized() ?
+            compareKernels(report, buffer, records, new EiderColumnKernels(false), vector) : 0;
+
+        final double scans = (double)rounds * records;
+        System.out.printf("records=%d rounds=%d facadeNs=%.2f accessorNs=%.2f columnNs=%.2f vectorized=%b%n",
+            records, rounds, facadeNs / scans, accessorNs / scans, columnNs / scans, vector.isVectorized());
+        System.out.println("vectorMismatches=" + mismatches);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    private static long compareKernels(final QuillServiceLatencyReport report, final UnsafeBuffer buffer,
+        final int records, final EiderColumnKernels scalar, final EiderColumnKernels vector)
+    {
+        long mismatches = 0;
+        final int port = report.getQuillHostLatencyPortColumnOffset();
+        final int errors = report.getQuillHostLatencyErrorsColumnOffset();
+        final int requests = report.getQuillHostLatencyRequestsColumnOffset();
+        final int latency = report.getQuillHostLatencyLatencyMicrosColumnOffset();
+        // counts which do and do not fill whole vectors
+        for (final int count : new int[]{records, records - 1, records - 7, Math.min(records, 3), 0})
+        {
+            mismatches += vector.sumShort(buffer, port, count) == scalar.sumShort(buffer, port, count) ? 0 : 1;
+            mismatches += vector.sumInt(buffer, errors, count) == scalar.sumInt(buffer, errors, count) ? 0 : 1;
+            mismatches += vector.sumLong(buffer, requests, count) == scalar.sumLong(buffer, requests, count) ? 0 : 1;
+            // vector lanes add doubles in a different order, so only the leading digits must agree
+            final double latencySum = scalar.sumDouble(buffer, latency, count);
+            mismatches += Math.abs(vector.sumDouble(buffer, latency, count) - latencySum) <=
+                Math.abs(latencySum) * 1e-9 ? 0 : 1;
+            mismatches += vector.maxShort(buffer, port, count) == scalar.maxShort(buffer, port, count) ? 0 : 1;
+            mismatches += vector.minInt(buffer, errors, count) == scalar.minInt(buffer, errors, count) ? 0 : 1;
+            mismatches += vector.minLong(buffer, requests, count) == scalar.minLong(buffer, requests, count) ? 0 : 1;
+            mismatches += vector.maxDouble(buffer, latency, count) == scalar.maxDouble(buffer, latency, count) ? 0 : 1;
+            for (final EiderComparison comparison : EiderComparison.values())
+            {
+                mismatches += vector.countLong(buffer, requests, count, comparison, PIVOT) ==
+                    scalar.countLong(buffer, requests, count, comparison, PIVOT) ? 0 : 1;
+            }
+        }
+        return mismatches;
+    }
+}
@@ -0,0 +1,85 @@
+package io.skua.configurationservice.records;
+
+import io.skua.configurationservice.gen.QuillHostConnection;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Fills a RegisterQuillServiceCommand with random QuillHostConnection records, sorts them in place by port, by
+ * hostName and by hostName then port, and then finds every record by binary search. Reports the time per sort and
+ * per search; {@code RecordSortTest} checks the orders and searches against sorts on the heap.
+ *
+ * <p>Usage: {@code RecordSortHarness [records] [rounds]}, e.g. {@code RecordSortHarness 100000 10}.
+ */
+public final class RecordSortHarness
+{
+    private static final int DEFAULT_RECORDS = 100_000;
+    private static final int DEFAULT_ROUNDS = 10;
+    private static final int HOST_NAMES = 1_000;
+
+    private RecordSortHarness()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args)
+    {
+        final int records = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RECORDS;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        final SplittableRandom random = new SplittableRandom(42L);
+
+        final RegisterQuillServiceCommand command = new RegisterQuillServiceCommand();
+        final UnsafeBuffer buffer =
+            new UnsafeBuffer(ByteBuffer.allocateDirect(command.precomputeBufferLength(records)));
+        command.setBufferWriteHeader(buffer, 0);
+        command.resetQuillHostConnectionSize(records);
+
+        final Host[] hosts = new Host[records];
+        long found = 0;
+        long sortNs = 0;
+        long searchNs = 0;
+        for (int round = 0; round < rounds; round++)
+        {
+            for (int i = 0; i < records; i++)
+            {
+                hosts[i] = new Host((short)random.nextInt(Short.MIN_VALUE, Short.MAX_VALUE + 1),
+                    "quill-" + random.nextInt(HOST_NAMES));
+                final QuillHostConnection connection = command.getQuillHostConnection(i);
+                connection.writePort(hosts[i].port);
+                connection.writeHostNameWithPadding(hosts[i].hostName);
+            }
+
+            long startNs = System.nanoTime();
+            command.sortQuillHostConnectionByPort();
+            command.sortQuillHostConnectionByHostName();
+            command.sortQuillHostConnectionByHostNameThenPort();
+            sortNs += System.nanoTime() - startNs;
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < records; i++)
+            {
+                found += command.binarySearchQuillHostConnectionByHostNameThenPort(hosts[i].hostName,
+                    hosts[i].port) >= 0 ? 1 : 0;
+            }
+            searchNs += System.nanoTime() - startNs;
+        }
+
+        System.out.printf("records=%d rounds=%d found=%d sortNs/record=%.1f searchNs=%.1f%n", records, rounds,
+            found / rounds, (double)sortNs / (3L * rounds * records), (double)searchNs / ((long)rounds * records));
+    }
+
+    private static final class Host
+    {
+        private final short port;
+        private final String hostName;
+
+        private Host(final short port, final String hostName)
+        {
+            this.port = port;
+            this.hostName = hostName;
+        }
+    }
+}
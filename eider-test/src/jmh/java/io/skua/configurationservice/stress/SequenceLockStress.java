@@ -0,0 +1,144 @@
+package io.skua.configurationservice.stress;
+
+import io.skua.configurationservice.gen.QuillServiceStatusState;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Concurrency stress for the sequence lock: one thread rewrites QuillServiceStatusState in shared memory as fast as
+ * it can, writing the same value into every field, while reader threads take snapshots with tryRead. Reports the
+ * writes and, per reader, the snapshots taken, the reads refused while a write was in progress, and the torn values
+ * seen when reading the same fields without the lock; {@code SequenceLockTest} checks locked snapshots are never torn.
+ *
+ * <p>Usage: {@code SequenceLockStress [readers] [seconds]}, e.g. {@code SequenceLockStress 3 10}.
+ */
+public final class SequenceLockStress
+{
+    private static final int DEFAULT_READERS = 3;
+    private static final int DEFAULT_SECONDS = 10;
+
+    private SequenceLockStress()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args) throws InterruptedException
+    {
+        final int readerCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_READERS;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+
+        // direct buffers are at least 8 byte aligned, so the sequence at an aligned offset is accessed atomically
+        final UnsafeBuffer shared = new UnsafeBuffer(ByteBuffer.allocateDirect(QuillServiceStatusState.BUFFER_LENGTH));
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final QuillServiceStatusState writer = new QuillServiceStatusState();
+        writer.setBufferWriteHeader(shared, 0);
+        final long[] writes = new long[1];
+        final Thread writerThread = new Thread(() ->
+        {
+            long value = 0;
+            while (running.get())
+            {
+                value++;
+                writer.beginWrite();
+                writer.writeHeartbeatNs(value);
+                writer.writeActiveConnections((int)value);
+                writer.writeQueueDepth((int)value);
+                writer.writeStatusCode((short)value);
+                writer.endWrite();
+            }
+            writes[0] = value;
+        }, "status-writer");
+
+        final List<Reader> readers = new ArrayList<>();
+        final List<Thread> readerThreads = new ArrayList<>();
+        for (int i = 0; i < readerCount; i++)
+        {
+            final Reader reader = new Reader(shared, running);
+            readers.add(reader);
+            readerThreads.add(new Thread(reader, "status-reader-" + i));
+        }
+
+        writerThread.start();
+        readerThreads.forEach(Thread::start);
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        writerThread.join();
+        for (final Thread thread : readerThreads)
+        {
+            thread.join();
+        }
+
+        System.out.printf("writes=%,d sequence=%,d%n", writes[0], writer.readSequence());
+        for (int i = 0; i < readers.size(); i++)
+        {
+            final Reader reader = readers.get(i);
+            System.out.printf("reader=%d snapshots=%,d busy=%,d unlocked reads=%,d unlocked torn=%,d%n",
+                i, reader.snapshots, reader.busy, reader.unlockedReads, reader.tornUnlocked);
+        }
+    }
+
+    private static final class Reader implements Runnable, Consumer<QuillServiceStatusState>
+    {
+        private final QuillServiceStatusState status = new QuillServiceStatusState();
+        private final AtomicBoolean running;
+        private long heartbeatNs;
+        private int activeConnections;
+        private int queueDepth;
+        private short statusCode;
+        private long snapshots;
+        private long busy;
+        private long unlockedReads;
+        private long tornUnlocked;
+
+        private Reader(final UnsafeBuffer shared, final AtomicBoolean running)
+        {
+            this.running = running;
+            status.setUnderlyingBuffer(shared, 0);
+        }
+
+        @Override
+        public void accept(final QuillServiceStatusState snapshot)
+        {
+            heartbeatNs = snapshot.readHeartbeatNs();
+            activeConnections = snapshot.readActiveConnections();
+            queueDepth = snapshot.readQueueDepth();
+            statusCode = snapshot.readStatusCode();
+        }
+
+        @Override
+        public void run()
+        {
+            while (running.get())
+            {
+                if (status.tryRead(this))
+                {
+                    snapshots++;
+                }
+                else
+                {
+                    busy++;
+                }
+
+                accept(status);
+                unlockedReads++;
+                if (torn())
+                {
+                    tornUnlocked++;
+                }
+            }
+        }
+
+        private boolean torn()
+        {
+            return activeConnections != (int)heartbeatNs || queueDepth != (int)heartbeatNs ||
+                statusCode != (short)heartbeatNs;
+        }
+    }
+}
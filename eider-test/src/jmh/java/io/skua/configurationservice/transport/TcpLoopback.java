@@ -0,0 +1,220 @@
+package io.skua.configurationservice.transport;
+
+import io.eider.transport.EiderTcpClient;
+import io.eider.transport.EiderTcpConnection;
+import io.eider.transport.EiderTcpServer;
+import io.eider.transport.EiderVirtualThreadTcpServer;
+import io.eider.util.EiderDispatcher;
+import io.eider.util.EiderMessageListener;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.HdrHistogram.Histogram;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Loopback benchmark for the TCP transport. A server echoes every QuillServiceRegisteredEvent back to the client,
+ * both ends decoding through the generated dispatcher. The ping pong phase sends one message at a time to measure
+ * round trip latency; the streaming phase sends as fast as the send buffer allows to measure messages per second
+ * and the round trip latency under load. The send time travels in correlationId.
+ *
+ * <p>Usage: {@code TcpLoopback [messages] [selector|virtual]}, e.g. {@code TcpLoopback 1000000 selector}.
+ */
+public final class TcpLoopback
+{
+    private static final int DEFAULT_MESSAGES = 1_000_000;
+    private static final long HIGHEST_TRACKABLE_NS = 60_000_000_000L;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Histogram histogram = new Histogram(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+    private final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+    private final UnsafeBuffer sendBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(
+        QuillServiceRegisteredEvent.BUFFER_LENGTH));
+    private long received;
+
+    private TcpLoopback()
+    {
+        event.setBufferWriteHeader(sendBuffer, 0);
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        final boolean virtual = args.length > 1 && "virtual".equals(args[1]);
+        final InetSocketAddress address = new InetSocketAddress("localhost", 0);
+        final Function<EiderTcpConnection, MessageHandler> echo =
+            connection -> new EiderDispatcher(new Echo(connection));
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AutoCloseable server;
+        final InetSocketAddress serverAddress;
+        final Thread serverThread;
+        if (virtual)
+        {
+            final EiderVirtualThreadTcpServer virtualServer =
+                new EiderVirtualThreadTcpServer(address, echo, Throwable::printStackTrace);
+            server = virtualServer;
+            serverAddress = virtualServer.localAddress();
+            serverThread = null;
+        }
+        else
+        {
+            final EiderTcpServer selectorServer = new EiderTcpServer(address, echo, Throwable::printStackTrace);
+            server = selectorServer;
+            serverAddress = selectorServer.localAddress();
+            serverThread = new Thread(() -> pollUntilStopped(selectorServer, running), "eider-tcp-server");
+            serverThread.start();
+        }
+
+        final TcpLoopback loopback = new TcpLoopback();
+        try (EiderTcpClient client = EiderTcpClient.connect(serverAddress,
+            new EiderDispatcher(loopback.new Recorder())))
+        {
+            loopback.pingPong(client, messages / 10);
+            loopback.report("ping pong warm up", messages / 10, 0);
+            final long pingPongNs = loopback.pingPong(client, messages);
+            loopback.report("ping pong", messages, pingPongNs);
+
+            loopback.stream(client, messages / 10);
+            final long streamNs = loopback.stream(client, messages);
+            loopback.report("streaming", messages, streamNs);
+        }
+        finally
+        {
+            running.set(false);
+            if (serverThread != null)
+            {
+                serverThread.join();
+            }
+            server.close();
+        }
+    }
+
+    private static void pollUntilStopped(final EiderTcpServer server, final AtomicBoolean running)
+    {
+        try
+        {
+            while (running.get())
+            {
+                if (server.poll() == 0)
+                {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long pingPong(final EiderTcpClient client, final int messages) throws IOException
+    {
+        histogram.reset();
+        received = 0;
+        final long startNs = System.nanoTime();
+        for (int i = 0; i < messages; i++)
+        {
+            send(client);
+            while (received <= i)
+            {
+                poll(client);
+            }
+        }
+        return System.nanoTime() - startNs;
+    }
+
+    private long stream(final EiderTcpClient client, final int messages) throws IOException
+    {
+        histogram.reset();
+        received = 0;
+        final long startNs = System.nanoTime();
+        for (int i = 0; i < messages; i++)
+        {
+            send(client);
+            poll(client);
+        }
+        while (received < messages)
+        {
+            poll(client);
+        }
+        return System.nanoTime() - startNs;
+    }
+
+    private void send(final EiderTcpClient client) throws IOException
+    {
+        event.writeCorrelationId(System.nanoTime());
+        event.writeSuccess(true);
+        event.writeStatusCode((short)200);
+        while (!client.offer(sendBuffer, 0))
+        {
+            poll(client);
+        }
+    }
+
+    private static void poll(final EiderTcpClient client) throws IOException
+    {
+        if (client.poll() < 0)
+        {
+            throw new IOException("server closed the connection");
+        }
+    }
+
+    private void report(final String phase, final int messages, final long durationNs)
+    {
+        System.out.printf("%-18s messages=%,d msg/s=%,.0f p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+            phase, messages, durationNs == 0 ? 0.0 : messages * (double)TimeUnit.SECONDS.toNanos(1) / durationNs,
+            histogram.getValueAtPercentile(50.0) / 1000.0, histogram.getValueAtPercentile(99.0) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+
+    private final class Recorder implements EiderMessageListener
+    {
+        @Override
+        public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+        {
+            histogram.recordValue(Math.min(HIGHEST_TRACKABLE_NS, System.nanoTime() - message.readCorrelationId()));
+            received++;
+        }
+    }
+
+    private static final class Echo implements EiderMessageListener
+    {
+        private final EiderTcpConnection connection;
+        private final QuillServiceRegisteredEvent reply = new QuillServiceRegisteredEvent();
+        private final UnsafeBuffer replyBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(
+            QuillServiceRegisteredEvent.BUFFER_LENGTH));
+
+        private Echo(final EiderTcpConnection connection)
+        {
+            this.connection = connection;
+            reply.setBufferWriteHeader(replyBuffer, 0);
+        }
+
+        @Override
+        public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+        {
+            reply.writeCorrelationId(message.readCorrelationId());
+            reply.writeSuccess(message.readSuccess());
+            reply.writeStatusCode(message.readStatusCode());
+            try
+            {
+                while (!connection.offer(replyBuffer, 0))
+                {
+                    connection.flush();
+                }
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.skua.configurationservice.transport;
+
+import io.eider.transport.EiderUdpPublisher;
+import io.eider.transport.EiderUdpSubscriber;
+import io.eider.util.EiderDispatcher;
+import io.eider.util.EiderMessageListener;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recovery of the sequenced UDP stream on localhost. The subscriber drops a fraction of the datagrams it
+ * receives, retransmissions included, and the harness reports how long the stream took to deliver every
+ * QuillServiceRegisteredEvent and how many NAKs and retransmissions that needed. Both ends are polled from one thread.
+ * EiderUdpStreamTest in eider-transport checks that delivery is complete and in order.
+ *
+ * <p>Usage: {@code UdpLossHarness [messages] [lossRate]}, e.g. {@code UdpLossHarness 1000000 0.05}.
+ */
+public final class UdpLossHarness
+{
+    private static final int DEFAULT_MESSAGES = 1_000_000;
+    private static final double DEFAULT_LOSS_RATE = 0.05;
+    private static final int MESSAGES_PER_POLL = 16;
+    private static final long DRAIN_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(10);
+
+    private long received;
+    private long lostDatagrams;
+
+    private UdpLossHarness()
+    {
+        //nothing
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        final double lossRate = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_LOSS_RATE;
+        final UdpLossHarness harness = new UdpLossHarness();
+
+        final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+        final UnsafeBuffer buffer = new UnsafeBuffer(
+            ByteBuffer.allocateDirect(QuillServiceRegisteredEvent.BUFFER_LENGTH));
+        event.setBufferWriteHeader(buffer, 0);
+
+        try (EiderUdpSubscriber subscriber = new EiderUdpSubscriber(new InetSocketAddress("localhost", 0),
+            new EiderDispatcher(harness.new Counter()), (fromSequence, count) -> harness.lostDatagrams += count);
+            EiderUdpPublisher publisher = new EiderUdpPublisher(new InetSocketAddress("localhost", 0),
+                subscriber.localAddress()))
+        {
+            subscriber.injectLoss(lossRate, 42L);
+
+            final long startNs = System.nanoTime();
+            for (int i = 0; i < messages; i++)
+            {
+                event.writeCorrelationId(i);
+                event.writeSuccess(true);
+                event.writeStatusCode((short)200);
+                publisher.offer(buffer, 0);
+                if (i % MESSAGES_PER_POLL == 0)
+                {
+                    publisher.poll();
+                    subscriber.poll();
+                }
+            }
+
+            publisher.flush();
+            final long deadlineNs = System.nanoTime() + DRAIN_TIMEOUT_NS;
+            while (subscriber.nextSequence() < publisher.nextSequence() && System.nanoTime() < deadlineNs)
+            {
+                publisher.poll();
+                subscriber.poll();
+            }
+            final long durationNs = System.nanoTime() - startNs;
+
+            System.out.printf("messages=%,d received=%,d in %,dms datagrams=%,d dropped=%,d naks=%,d " +
+                "retransmits=%,d unrecovered datagrams=%,d%n",
+                messages, harness.received, TimeUnit.NANOSECONDS.toMillis(durationNs), publisher.nextSequence(),
+                subscriber.droppedCount(), subscriber.nakCount(), publisher.retransmitCount(), harness.lostDatagrams);
+        }
+    }
+
+    private final class Counter implements EiderMessageListener
+    {
+        @Override
+        public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+        {
+            received++;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderBroadcastPublisher;
+import io.eider.util.EiderBroadcastSubscriber;
+import io.eider.util.EiderMessageListener;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.broadcast.BroadcastBufferDescriptor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BroadcastTest
+{
+    private static final int CAPACITY = 1024;
+
+    private final UnsafeBuffer broadcastBuffer = new UnsafeBuffer(
+        ByteBuffer.allocateDirect(CAPACITY + BroadcastBufferDescriptor.TRAILER_LENGTH));
+    private final EiderBroadcastPublisher publisher = new EiderBroadcastPublisher(broadcastBuffer);
+    private final List<Long> received = new ArrayList<>();
+    private final List<Long> laps = new ArrayList<>();
+    private final EiderMessageListener listener = new EiderMessageListener()
+    {
+        @Override
+        public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+        {
+            received.add(message.readCorrelationId());
+        }
+    };
+
+    @Test
+    void subscribersKeepingUpAreNeverLapped()
+    {
+        final EiderBroadcastSubscriber subscriber = new EiderBroadcastSubscriber(broadcastBuffer, listener, laps::add);
+        for (int i = 1; i <= 1_000; i++)
+        {
+            publish(i);
+            assertEquals(1, subscriber.receive(Integer.MAX_VALUE));
+        }
+
+        assertEquals(1_000, received.size());
+        for (int i = 0; i < received.size(); i++)
+        {
+            assertEquals(i + 1, received.get(i).longValue());
+        }
+        assertTrue(laps.isEmpty());
+        assertEquals(0, subscriber.lappedCount());
+    }
+
+    @Test
+    void slowSubscribersAreToldTheyWereLapped()
+    {
+        final EiderBroadcastSubscriber subscriber = new EiderBroadcastSubscriber(broadcastBuffer, listener, laps::add);
+        // many times the capacity of the buffer, so the publisher overwrites what the subscriber has not received
+        final int published = 1_000;
+        for (int i = 1; i <= published; i++)
+        {
+            publish(i);
+        }
+        subscriber.receive(Integer.MAX_VALUE);
+
+        assertEquals(List.of(1L), laps);
+        assertEquals(1, subscriber.lappedCount());
+        assertTrue(received.size() < published);
+        assertEquals(published, received.get(received.size() - 1).longValue());
+        for (int i = 1; i < received.size(); i++)
+        {
+            assertTrue(received.get(i) > received.get(i - 1));
+        }
+
+        // once caught up it is not lapped again
+        publish(published + 1);
+        subscriber.receive(Integer.MAX_VALUE);
+        assertEquals(1, subscriber.lappedCount());
+        assertEquals(published + 1, received.get(received.size() - 1).longValue());
+    }
+
+    private void publish(final long correlationId)
+    {
+        final QuillServiceRegisteredEvent event = publisher.claimQuillServiceRegisteredEvent();
+        event.writeCorrelationId(correlationId);
+        event.writeSuccess(true);
+        event.writeStatusCode((short)200);
+        publisher.publish();
+    }
+}
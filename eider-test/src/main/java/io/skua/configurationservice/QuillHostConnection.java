@@ -6,7 +6,8 @@ import io.eider.annotation.EiderRepeatableRecord;
 @EiderRepeatableRecord
 public class QuillHostConnection
 {
+    @EiderAttribute(sortKey = 2)
     private short port;
-    @EiderAttribute(maxLength = 50)
+    @EiderAttribute(maxLength = 50, sortKey = 1)
     private String hostName;
 }
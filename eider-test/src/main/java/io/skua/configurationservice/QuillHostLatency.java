@@ -0,0 +1,17 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderRecordLayout;
+import io.eider.annotation.EiderRepeatableRecord;
+
+@EiderRepeatableRecord(layout = EiderRecordLayout.COLUMNAR)
+public class QuillHostLatency
+{
+    private short port;
+    private int errors;
+    private long requests;
+    private double latencyMicros;
+    private boolean healthy;
+    @EiderAttribute(maxLength = 16)
+    private String hostName;
+}
@@ -0,0 +1,32 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 104, name = "QuillServiceConfigState", delta = true)
+public class QuillServiceConfig
+{
+    private long configVersion;
+    private long updatedAtNs;
+    @EiderAttribute(maxLength = 32, key = true)
+    private String region;
+    private int maxConnections;
+    private int maxQueueDepth;
+    private int requestTimeoutMs;
+    private int idleTimeoutMs;
+    private int heartbeatIntervalMs;
+    private int retryLimit;
+    private double loadFactor;
+    private double sampleRate;
+    private short priority;
+    private short weight;
+    private short logLevel;
+    private boolean acceptingTraffic;
+    private boolean tracingEnabled;
+    private boolean drainOnShutdown;
+    @EiderAttribute(optional = true)
+    private long ownerId;
+    @EiderAttribute(optional = true)
+    private long leaseExpiresAtNs;
+    private int shardCount;
+}
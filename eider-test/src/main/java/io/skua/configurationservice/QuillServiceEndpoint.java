@@ -0,0 +1,20 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderByteOrder;
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 108, name = "QuillServiceEndpointState", byteOrder = EiderByteOrder.BIG_ENDIAN)
+public class QuillServiceEndpoint
+{
+    @EiderAttribute(key = true)
+    private int endpointId;
+    private short port;
+    private long updatedAtNs;
+    private double loadFactor;
+    private boolean healthy;
+    @EiderAttribute(maxLength = 16)
+    private String hostName;
+    @EiderAttribute(optional = true)
+    private long leaseId;
+}
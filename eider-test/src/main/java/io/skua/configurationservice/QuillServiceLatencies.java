@@ -0,0 +1,12 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 105, name = "QuillServiceLatencyReport")
+public class QuillServiceLatencies
+{
+    private long reportedAt;
+    @EiderAttribute(repeatedRecord = true)
+    private QuillHostLatency hosts;
+}
@@ -0,0 +1,14 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 103, name = "QuillServiceMetricsCounters")
+public class QuillServiceMetrics
+{
+    private short statusCode;
+    @EiderAttribute(atomic = true)
+    private long requestsHandled;
+    @EiderAttribute(atomic = true)
+    private int activeSessions;
+}
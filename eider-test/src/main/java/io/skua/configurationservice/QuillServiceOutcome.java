@@ -0,0 +1,13 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 106, name = "QuillServiceOutcomeEvent", timestampHops = 5,
+    projectFrom = {"QuillServiceRegisteredEvent", "QuillServiceMetricsCounters"})
+public class QuillServiceOutcome
+{
+    private long correlationId;
+    private boolean success;
+    private short statusCode;
+    private int attempts;
+}
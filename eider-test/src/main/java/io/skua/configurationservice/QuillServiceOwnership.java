@@ -0,0 +1,15 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 107, name = "QuillServiceOwnershipState", projectFrom = "QuillServiceConfigState")
+public class QuillServiceOwnership
+{
+    @EiderAttribute(maxLength = 32)
+    private String region;
+    @EiderAttribute(optional = true)
+    private long ownerId;
+    @EiderAttribute(optional = true)
+    private long leaseExpiresAtNs;
+}
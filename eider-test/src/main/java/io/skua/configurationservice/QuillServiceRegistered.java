@@ -1,10 +1,13 @@
 package io.skua.configurationservice;
 
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderCorrelation;
 import io.eider.annotation.EiderSpec;
 
-@EiderSpec(wireProtocolId = 101, name = "QuillServiceRegisteredEvent")
+@EiderSpec(wireProtocolId = 101, name = "QuillServiceRegisteredEvent", timestampHops = 5)
 public class QuillServiceRegistered
 {
+    @EiderAttribute(key = true, correlation = EiderCorrelation.RESPONSE)
     private long correlationId;
     private boolean success;
     private short statusCode;
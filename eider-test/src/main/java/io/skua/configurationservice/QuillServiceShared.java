@@ -0,0 +1,18 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderByteOrder;
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 109, name = "QuillServiceSharedCounters", byteOrder = EiderByteOrder.NATIVE)
+public class QuillServiceShared
+{
+    private short shardId;
+    private int activeSessions;
+    @EiderAttribute(atomic = true)
+    private long requestsServed;
+    private double meanLatencyMs;
+    private boolean draining;
+    @EiderAttribute(maxLength = 8)
+    private String shardName;
+}
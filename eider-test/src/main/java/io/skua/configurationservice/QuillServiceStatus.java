@@ -0,0 +1,12 @@
+package io.skua.configurationservice;
+
+import io.eider.annotation.EiderSpec;
+
+@EiderSpec(wireProtocolId = 102, name = "QuillServiceStatusState", sequenceLock = true)
+public class QuillServiceStatus
+{
+    private long heartbeatNs;
+    private int activeConnections;
+    private int queueDepth;
+    private short statusCode;
+}
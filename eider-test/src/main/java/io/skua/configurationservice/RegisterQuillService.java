@@ -1,11 +1,13 @@
 package io.skua.configurationservice;
 
 import io.eider.annotation.EiderAttribute;
+import io.eider.annotation.EiderCorrelation;
 import io.eider.annotation.EiderSpec;
 
 @EiderSpec(wireProtocolId = 100, name = "RegisterQuillServiceCommand")
 public class RegisterQuillService
 {
+    @EiderAttribute(correlation = EiderCorrelation.REQUEST)
     private long correlationId;
     @EiderAttribute(repeatedRecord = true)
     private QuillHostConnection quillGateway;
@@ -0,0 +1,212 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderComparison;
+import io.eider.util.EiderMessageType;
+import io.eider.util.EiderRegistry;
+import io.skua.configurationservice.gen.QuillServiceEndpointState;
+import io.skua.configurationservice.gen.QuillServiceEndpointStateFilter;
+import io.skua.configurationservice.gen.QuillServiceEndpointStateLastValueCache;
+import io.skua.configurationservice.gen.QuillServiceMetricsCounters;
+import io.skua.configurationservice.gen.QuillServiceSharedCounters;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteOrderTest
+{
+    private static final int MESSAGES = 1_000;
+
+    private final SplittableRandom random = new SplittableRandom(42L);
+
+    @Test
+    void registryGivesTheDeclaredOrder()
+    {
+        assertEquals(ByteOrder.BIG_ENDIAN,
+            EiderRegistry.lookup(QuillServiceEndpointState.WIRE_PROTOCOL_ID).byteOrder());
+        assertEquals(ByteOrder.nativeOrder(),
+            EiderRegistry.lookup(QuillServiceSharedCounters.WIRE_PROTOCOL_ID).byteOrder());
+        assertEquals(ByteOrder.LITTLE_ENDIAN,
+            EiderRegistry.lookup(QuillServiceMetricsCounters.WIRE_PROTOCOL_ID).byteOrder());
+    }
+
+    @Test
+    void bigEndianFieldsMatchAByteBuffer()
+    {
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            final byte[] bytes = new byte[QuillServiceEndpointState.BUFFER_LENGTH];
+            final UnsafeBuffer buffer = new UnsafeBuffer(bytes);
+            final QuillServiceEndpointState endpoint = new QuillServiceEndpointState();
+            final Map<String, Object> expected = new HashMap<>();
+            endpoint.setBufferWriteHeader(buffer, 0);
+            endpoint.writeEndpointId(i);
+            expected.put("endpointId", i);
+            final short port = (short)random.nextInt(Short.MAX_VALUE);
+            endpoint.writePort(port);
+            expected.put("port", port);
+            final long updatedAtNs = random.nextLong();
+            endpoint.writeUpdatedAtNs(updatedAtNs);
+            expected.put("updatedAtNs", updatedAtNs);
+            final double loadFactor = random.nextDouble() * 100;
+            endpoint.writeLoadFactor(loadFactor);
+            expected.put("loadFactor", loadFactor);
+            final boolean healthy = random.nextBoolean();
+            endpoint.writeHealthy(healthy);
+            expected.put("healthy", healthy);
+            final String hostName = "host-" + random.nextInt(10_000);
+            endpoint.writeHostNameWithPadding(hostName);
+            expected.put("hostName", hostName);
+            final long leaseId = random.nextLong();
+            endpoint.writeLeaseId(leaseId);
+            expected.put("leaseId", leaseId);
+
+            assertFields(bytes, expected);
+            assertEquals(port, endpoint.readPort());
+            assertEquals(updatedAtNs, endpoint.readUpdatedAtNs());
+            assertEquals(loadFactor, endpoint.readLoadFactor().doubleValue());
+            assertEquals(healthy, endpoint.readHealthy());
+            assertEquals(hostName, endpoint.readHostName());
+            assertTrue(endpoint.hasLeaseId());
+            assertEquals(leaseId, endpoint.readLeaseId());
+        }
+    }
+
+    @Test
+    void bigEndianFiltersAndCacheAgreeWithTheFlyweight()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[QuillServiceEndpointState.BUFFER_LENGTH]);
+        final QuillServiceEndpointState endpoint = new QuillServiceEndpointState();
+        final QuillServiceEndpointStateLastValueCache cache = new QuillServiceEndpointStateLastValueCache(MESSAGES);
+        final QuillServiceEndpointState cached = new QuillServiceEndpointState();
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            endpoint.setBufferWriteHeader(buffer, 0);
+            endpoint.writeEndpointId(i);
+            final short port = (short)random.nextInt(Short.MAX_VALUE);
+            endpoint.writePort(port);
+            final long updatedAtNs = random.nextLong();
+            endpoint.writeUpdatedAtNs(updatedAtNs);
+            endpoint.writeLeaseId(random.nextLong());
+
+            assertEquals(port > 16_000,
+                QuillServiceEndpointStateFilter.port(EiderComparison.GT, (short)16_000).test(buffer, 0));
+            assertTrue(QuillServiceEndpointStateFilter.updatedAtNs(EiderComparison.EQ, updatedAtNs)
+                .and(QuillServiceEndpointStateFilter.hasLeaseId()).test(buffer, 0));
+
+            assertTrue(cache.put(buffer, 0) >= 0);
+            assertTrue(cache.lookup(i, cached));
+            assertEquals(updatedAtNs, cached.readUpdatedAtNs());
+        }
+    }
+
+    @Test
+    void nativeFieldsAndAtomicsMatchAByteBuffer()
+    {
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            final byte[] bytes = new byte[QuillServiceSharedCounters.BUFFER_LENGTH];
+            final UnsafeBuffer buffer = new UnsafeBuffer(bytes);
+            final QuillServiceSharedCounters counters = new QuillServiceSharedCounters();
+            final Map<String, Object> expected = new HashMap<>();
+            counters.setBufferWriteHeader(buffer, 0);
+            final short shardId = (short)random.nextInt(Short.MAX_VALUE);
+            counters.writeShardId(shardId);
+            expected.put("shardId", shardId);
+            final int activeSessions = random.nextInt();
+            counters.writeActiveSessions(activeSessions);
+            expected.put("activeSessions", activeSessions);
+            final long requestsServed = random.nextLong(Long.MAX_VALUE / 2);
+            counters.writeRequestsServed(requestsServed);
+            final double meanLatencyMs = random.nextDouble();
+            counters.writeMeanLatencyMs(meanLatencyMs);
+            expected.put("meanLatencyMs", meanLatencyMs);
+            final boolean draining = random.nextBoolean();
+            counters.writeDraining(draining);
+            expected.put("draining", draining);
+            final String shardName = "s" + random.nextInt(1_000);
+            counters.writeShardNameWithPadding(shardName);
+            expected.put("shardName", shardName);
+
+            // the atomic accessors use the native order too, so agree with the plain reads and writes
+            final long served = random.nextInt(1_000);
+            assertEquals(requestsServed, counters.getAndAddRequestsServed(served));
+            expected.put("requestsServed", requestsServed + served);
+
+            assertFields(bytes, expected);
+            assertEquals(requestsServed + served, counters.readRequestsServed());
+            assertEquals(requestsServed + served, counters.getRequestsServedVolatile());
+            assertEquals(shardId, counters.readShardId());
+            assertEquals(activeSessions, counters.readActiveSessions());
+            assertEquals(meanLatencyMs, counters.readMeanLatencyMs().doubleValue());
+            assertEquals(draining, counters.readDraining());
+            assertEquals(shardName, counters.readShardName());
+        }
+    }
+
+    @Test
+    void littleEndianAtomicsAgreeWithPlainReadsOnThisHost()
+    {
+        // the spec fails to load on a big endian host, so on any host it loads on the two accessors agree
+        final QuillServiceMetricsCounters metrics = new QuillServiceMetricsCounters();
+        final UnsafeBuffer buffer =
+            new UnsafeBuffer(ByteBuffer.allocateDirect(QuillServiceMetricsCounters.BUFFER_LENGTH));
+        metrics.setBufferWriteHeader(buffer, 0);
+        metrics.writeRequestsHandled(0x0102030405060708L);
+        assertEquals(0x0102030405060708L, metrics.getRequestsHandledVolatile());
+        metrics.getAndAddRequestsHandled(1);
+        assertEquals(0x0102030405060709L, metrics.readRequestsHandled());
+    }
+
+    /**
+     * Checks the header is little endian and decodes every field the registry describes in the byte order it gives
+     * for the type, which must match the values written and cover every field.
+     */
+    private static void assertFields(final byte[] bytes, final Map<String, Object> expected)
+    {
+        final ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final EiderMessageType type = EiderRegistry.lookup(header.getShort(6));
+        assertNotNull(type);
+        assertTrue(type.validateHeader(new UnsafeBuffer(bytes), 0));
+        assertEquals(type.bufferLength(), header.getInt(0));
+        assertEquals(expected.size(), type.fieldCount());
+
+        final ByteBuffer fields = ByteBuffer.wrap(bytes).order(type.byteOrder());
+        for (int i = 0; i < type.fieldCount(); i++)
+        {
+            final int offset = type.fieldOffset(i);
+            final Object value;
+            switch (type.fieldType(i))
+            {
+                case BOOLEAN:
+                    value = fields.get(offset) == 1;
+                    break;
+                case SHORT:
+                    value = fields.getShort(offset);
+                    break;
+                case INT:
+                    value = fields.getInt(offset);
+                    break;
+                case LONG:
+                    value = fields.getLong(offset);
+                    break;
+                case DOUBLE:
+                    value = fields.getDouble(offset);
+                    break;
+                default:
+                    value = new String(bytes, offset, type.fieldLength(i), StandardCharsets.US_ASCII).trim();
+                    break;
+            }
+            assertEquals(expected.get(type.fieldName(i)), value, type.fieldName(i));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderColumnKernels;
+import io.eider.util.EiderComparison;
+import io.skua.configurationservice.gen.QuillHostLatency;
+import io.skua.configurationservice.gen.QuillServiceLatencyReport;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnKernelsTest
+{
+    private static final int RECORDS = 1_000;
+    private static final long PIVOT = 500_000L;
+
+    private final QuillServiceLatencyReport report = new QuillServiceLatencyReport();
+    private final UnsafeBuffer buffer =
+        new UnsafeBuffer(ByteBuffer.allocateDirect(report.precomputeBufferLength(RECORDS)));
+
+    @Test
+    void aggregatesMatchALoopOverTheRows()
+    {
+        // counts which do and do not fill whole vectors or blocks
+        for (final int count : new int[]{RECORDS, RECORDS - 1, RECORDS - 7, 3, 0})
+        {
+            fill(count);
+            long portSum = 0;
+            long errorsSum = 0;
+            long requestsSum = 0;
+            double latencySum = 0;
+            short portMin = Short.MAX_VALUE;
+            short portMax = Short.MIN_VALUE;
+            int errorsMin = Integer.MAX_VALUE;
+            int errorsMax = Integer.MIN_VALUE;
+            long requestsMin = Long.MAX_VALUE;
+            long requestsMax = Long.MIN_VALUE;
+            double latencyMin = Double.POSITIVE_INFINITY;
+            double latencyMax = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++)
+            {
+                final QuillHostLatency host = report.getQuillHostLatency(i);
+                portSum += host.readPort();
+                errorsSum += host.readErrors();
+                requestsSum += host.readRequests();
+                latencySum += host.readLatencyMicros();
+                portMin = (short)Math.min(portMin, host.readPort());
+                portMax = (short)Math.max(portMax, host.readPort());
+                errorsMin = Math.min(errorsMin, host.readErrors());
+                errorsMax = Math.max(errorsMax, host.readErrors());
+                requestsMin = Math.min(requestsMin, host.readRequests());
+                requestsMax = Math.max(requestsMax, host.readRequests());
+                latencyMin = Math.min(latencyMin, host.readLatencyMicros());
+                latencyMax = Math.max(latencyMax, host.readLatencyMicros());
+            }
+
+            assertEquals(portSum, report.sumQuillHostLatencyPort());
+            assertEquals(errorsSum, report.sumQuillHostLatencyErrors());
+            assertEquals(requestsSum, report.sumQuillHostLatencyRequests());
+            assertEquals(latencySum, report.sumQuillHostLatencyLatencyMicros(), Math.abs(latencySum) * 1e-9);
+            assertEquals(portMin, report.minQuillHostLatencyPort());
+            assertEquals(portMax, report.maxQuillHostLatencyPort());
+            assertEquals(errorsMin, report.minQuillHostLatencyErrors());
+            assertEquals(errorsMax, report.maxQuillHostLatencyErrors());
+            assertEquals(requestsMin, report.minQuillHostLatencyRequests());
+            assertEquals(requestsMax, report.maxQuillHostLatencyRequests());
+            assertEquals(latencyMin, report.minQuillHostLatencyLatencyMicros());
+            assertEquals(latencyMax, report.maxQuillHostLatencyLatencyMicros());
+        }
+    }
+
+    @Test
+    void countsMatchALoopOverTheRowsForEveryComparison()
+    {
+        for (final int count : new int[]{RECORDS, RECORDS - 1, RECORDS - 7, 3, 0})
+        {
+            fill(count);
+            for (final EiderComparison comparison : EiderComparison.values())
+            {
+                int requests = 0;
+                int errors = 0;
+                for (int i = 0; i < count; i++)
+                {
+                    final QuillHostLatency host = report.getQuillHostLatency(i);
+                    requests += compare(Long.compare(host.readRequests(), PIVOT), comparison) ? 1 : 0;
+                    errors += compare(Integer.compare(host.readErrors(), 500), comparison) ? 1 : 0;
+                }
+                assertEquals(requests, report.countQuillHostLatencyRequests(comparison, PIVOT), comparison.name());
+                assertEquals(errors, report.countQuillHostLatencyErrors(comparison, 500), comparison.name());
+            }
+        }
+    }
+
+    @Test
+    void kernelsReadAColumnAtItsStride()
+    {
+        fill(RECORDS);
+        final EiderColumnKernels kernels = new EiderColumnKernels();
+        final int column = report.getQuillHostLatencyRequestsColumnOffset();
+        long sum = 0;
+        for (int i = 0; i < RECORDS; i++)
+        {
+            sum += buffer.getLong(column + i * QuillHostLatency.REQUESTS_WIDTH, ByteOrder.LITTLE_ENDIAN);
+            assertEquals(report.getQuillHostLatency(i).readRequests(), report.readQuillHostLatencyRequests(i));
+        }
+        assertEquals(sum, kernels.sumLong(buffer, column, RECORDS));
+    }
+
+    private void fill(final int count)
+    {
+        final SplittableRandom random = new SplittableRandom(count);
+        report.setBufferWriteHeader(buffer, 0);
+        report.resetQuillHostLatencySize(count);
+        for (int i = 0; i < count; i++)
+        {
+            final QuillHostLatency host = report.getQuillHostLatency(i);
+            host.writePort((short)random.nextInt(Short.MIN_VALUE, Short.MAX_VALUE));
+            host.writeErrors(random.nextInt(1_000));
+            host.writeRequests(random.nextLong(2 * PIVOT));
+            host.writeLatencyMicros(random.nextDouble() * 10_000.0);
+        }
+        // an exact hit for the equality comparisons
+        if (count > 0)
+        {
+            report.getQuillHostLatency(count / 2).writeRequests(PIVOT);
+        }
+    }
+
+    private static boolean compare(final int order, final EiderComparison comparison)
+    {
+        switch (comparison)
+        {
+            case EQ:
+                return order == 0;
+            case NE:
+                return order != 0;
+            case LT:
+                return order < 0;
+            case LE:
+                return order <= 0;
+            case GT:
+                return order > 0;
+            default:
+                return order >= 0;
+        }
+    }
+}
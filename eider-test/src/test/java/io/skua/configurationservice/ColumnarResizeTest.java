@@ -0,0 +1,99 @@
+package io.skua.configurationservice;
+
+import io.skua.configurationservice.gen.QuillHostLatency;
+import io.skua.configurationservice.gen.QuillServiceLatencyReport;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarResizeTest
+{
+    private static final int MOST_RECORDS = 64;
+
+    private final QuillServiceLatencyReport report = new QuillServiceLatencyReport();
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[report.precomputeBufferLength(MOST_RECORDS)]);
+
+    @Test
+    void growingKeepsTheRecordsWritten()
+    {
+        report.setBufferWriteHeader(buffer, 0);
+        report.resetQuillHostLatencySize(3);
+        writeRows(0, 3);
+
+        for (int count = 4; count <= MOST_RECORDS; count += 7)
+        {
+            final int previous = report.readQuillHostLatencySize();
+            report.resetQuillHostLatencySize(count);
+            writeRows(previous, count);
+            assertRows(count);
+        }
+    }
+
+    @Test
+    void shrinkingKeepsTheLeadingRecords()
+    {
+        report.setBufferWriteHeader(buffer, 0);
+        report.resetQuillHostLatencySize(MOST_RECORDS);
+        writeRows(0, MOST_RECORDS);
+
+        for (int count = MOST_RECORDS - 1; count >= 0; count -= 5)
+        {
+            report.resetQuillHostLatencySize(count);
+            assertRows(count);
+        }
+    }
+
+    @Test
+    void readersSeeTheRecordsAfterAResize()
+    {
+        report.setBufferWriteHeader(buffer, 0);
+        report.resetQuillHostLatencySize(2);
+        writeRows(0, 2);
+        report.resetQuillHostLatencySize(5);
+        writeRows(2, 5);
+
+        final QuillServiceLatencyReport reader = new QuillServiceLatencyReport();
+        reader.setUnderlyingBuffer(buffer, 0);
+        assertEquals(5, reader.readQuillHostLatencySize());
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(requests(i), reader.readQuillHostLatencyRequests(i));
+            assertEquals(i, reader.getQuillHostLatency(i).readPort());
+        }
+    }
+
+    private void writeRows(final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final QuillHostLatency row = report.getQuillHostLatency(i);
+            row.writePort((short)i);
+            row.writeErrors(i * 3);
+            row.writeRequests(requests(i));
+            row.writeLatencyMicros(i * 0.5);
+            row.writeHealthy(i % 2 == 0);
+            row.writeHostNameWithPadding("host-" + i);
+        }
+    }
+
+    private void assertRows(final int count)
+    {
+        assertEquals(count, report.readQuillHostLatencySize());
+        for (int i = 0; i < count; i++)
+        {
+            final QuillHostLatency row = report.getQuillHostLatency(i);
+            assertEquals((short)i, row.readPort());
+            assertEquals(i * 3, row.readErrors());
+            assertEquals(requests(i), row.readRequests());
+            assertEquals(i * 0.5, row.readLatencyMicros().doubleValue());
+            assertEquals(i % 2 == 0, row.readHealthy());
+            assertEquals("host-" + i, row.readHostName().trim());
+        }
+    }
+
+    private static long requests(final int row)
+    {
+        return 1_000_000_000_000L + row;
+    }
+}
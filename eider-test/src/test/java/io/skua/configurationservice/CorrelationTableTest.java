@@ -0,0 +1,89 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderCorrelationTable;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorrelationTableTest implements EiderCorrelationTable.ResponseHandler
+{
+    private static final long TICK_NS = 1L << 10;
+    private static final long CORRELATION_ID = 42;
+    private static final long CONTEXT = 7;
+
+    private final EiderCorrelationTable table =
+        new EiderCorrelationTable(16, TimeUnit.NANOSECONDS, 0, TICK_NS, 64, this);
+    private final List<Long> responses = new ArrayList<>();
+    private final List<Long> timeouts = new ArrayList<>();
+
+    @Test
+    void requestsDoNotCompleteThemselves()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[256]);
+        final RegisterQuillServiceCommand request = new RegisterQuillServiceCommand();
+        request.setBufferWriteHeader(buffer, 0);
+        request.writeCorrelationId(CORRELATION_ID);
+        request.resetQuillHostConnectionSize(0);
+
+        assertTrue(table.register(CORRELATION_ID, TICK_NS * 8, CONTEXT));
+        assertFalse(table.onMessage(buffer, 0, request.committedBufferLength()));
+        assertTrue(table.isPending(CORRELATION_ID));
+        assertTrue(responses.isEmpty());
+    }
+
+    @Test
+    void responsesCompleteTheirRequestOnce()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[QuillServiceRegisteredEvent.BUFFER_LENGTH]);
+        final QuillServiceRegisteredEvent response = new QuillServiceRegisteredEvent();
+        response.setBufferWriteHeader(buffer, 0);
+        response.writeCorrelationId(CORRELATION_ID);
+
+        assertTrue(table.register(CORRELATION_ID, TICK_NS * 8, CONTEXT));
+        assertFalse(table.register(CORRELATION_ID, TICK_NS * 8, CONTEXT));
+        assertTrue(table.onMessage(buffer, 0, QuillServiceRegisteredEvent.BUFFER_LENGTH));
+        assertFalse(table.onMessage(buffer, 0, QuillServiceRegisteredEvent.BUFFER_LENGTH));
+        assertEquals(List.of(CONTEXT), responses);
+
+        assertEquals(0, table.poll(TICK_NS * 64, Integer.MAX_VALUE));
+        assertTrue(timeouts.isEmpty());
+        assertEquals(0, table.pending());
+    }
+
+    @Test
+    void unansweredRequestsTimeOutOnce()
+    {
+        assertTrue(table.register(CORRELATION_ID, TICK_NS * 8, CONTEXT));
+        assertEquals(0, table.poll(TICK_NS * 4, Integer.MAX_VALUE));
+        assertEquals(1, table.poll(TICK_NS * 16, Integer.MAX_VALUE));
+        assertEquals(0, table.poll(TICK_NS * 32, Integer.MAX_VALUE));
+        assertEquals(List.of(CONTEXT), timeouts);
+        assertFalse(table.isPending(CORRELATION_ID));
+        assertTrue(responses.isEmpty());
+    }
+
+    @Override
+    public void onResponse(final long correlationId, final long context, final DirectBuffer buffer, final int offset,
+        final int length)
+    {
+        assertEquals(CORRELATION_ID, correlationId);
+        responses.add(context);
+    }
+
+    @Override
+    public void onTimeout(final long correlationId, final long context)
+    {
+        assertEquals(CORRELATION_ID, correlationId);
+        timeouts.add(context);
+    }
+}
@@ -0,0 +1,223 @@
+package io.skua.configurationservice;
+
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import io.skua.configurationservice.gen.QuillServiceConfigStateDelta;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaTest
+{
+    private static final int UPDATES = 10_000;
+    private static final int FIELDS = 9;
+
+    private final QuillServiceConfigState primary = new QuillServiceConfigState();
+    private final QuillServiceConfigState replica = new QuillServiceConfigState();
+    private final UnsafeBuffer primaryBuffer = wrap(primary);
+    private final UnsafeBuffer replicaBuffer = wrap(replica);
+    private final QuillServiceConfigStateDelta first = delta();
+    private final QuillServiceConfigStateDelta second = delta();
+    private final QuillServiceConfigStateDelta merged = delta();
+
+    @Test
+    void messagesWhichDoNotDifferGiveAnEmptyDelta()
+    {
+        assertEquals(QuillServiceConfigStateDelta.HEADER_LENGTH, first.diff(replicaBuffer, 0, primaryBuffer, 0));
+        assertEquals(0, first.presence());
+        assertEquals(QuillServiceConfigStateDelta.HEADER_LENGTH, first.applyTo(replicaBuffer, 0));
+        assertTrue(replica.contentEquals(primary));
+    }
+
+    @Test
+    void deltasCarryOnlyTheFieldsChanged()
+    {
+        primary.writeConfigVersion(7);
+        primary.writeRegion("us-east-2");
+        final int length = first.diff(replicaBuffer, 0, primaryBuffer, 0);
+
+        assertEquals(QuillServiceConfigStateDelta.CONFIGVERSION_PRESENT | QuillServiceConfigStateDelta.REGION_PRESENT,
+            first.presence());
+        assertEquals(first.deltaLength(), length);
+        assertEquals(length, first.applyTo(replicaBuffer, 0));
+        assertEquals(7, replica.readConfigVersion());
+        assertEquals("us-east-2", replica.readRegion());
+        assertTrue(replica.contentEquals(primary));
+    }
+
+    @Test
+    void randomUpdatesRoundTripThroughDiffAndApply()
+    {
+        final SplittableRandom random = new SplittableRandom(42L);
+        for (int i = 0; i < UPDATES; i++)
+        {
+            update(primary, random.nextInt(FIELDS), i);
+            first.diff(replicaBuffer, 0, primaryBuffer, 0);
+            first.applyTo(replicaBuffer, 0);
+            assertTrue(replica.contentEquals(primary), "update " + i);
+        }
+    }
+
+    @Test
+    void optionalFieldsTurnOnAndOffInTheReplica()
+    {
+        primary.writeOwnerId(11);
+        first.diff(replicaBuffer, 0, primaryBuffer, 0);
+        assertTrue(first.isPresent(QuillServiceConfigStateDelta.OWNERID_PRESENT));
+        assertTrue(first.isPresent(QuillServiceConfigStateDelta.OPTIONAL_PRESENCE_PRESENT));
+        first.applyTo(replicaBuffer, 0);
+        assertTrue(replica.hasOwnerId());
+        assertEquals(11, replica.readOwnerId());
+
+        // only the presence bitmap changes when a field is cleared
+        primary.clearOwnerId();
+        first.diff(replicaBuffer, 0, primaryBuffer, 0);
+        assertTrue(first.isPresent(QuillServiceConfigStateDelta.OPTIONAL_PRESENCE_PRESENT));
+        first.applyTo(replicaBuffer, 0);
+        assertFalse(replica.hasOwnerId());
+        assertTrue(replica.contentEquals(primary));
+    }
+
+    @Test
+    void mergedDeltasTakeTheLaterValues()
+    {
+        final UnsafeBuffer before = copy(primaryBuffer);
+        primary.writeConfigVersion(1);
+        primary.writeMaxConnections(5);
+        final UnsafeBuffer middle = copy(primaryBuffer);
+        primary.writeConfigVersion(2);
+        primary.writePriority((short)3);
+        first.diff(before, 0, middle, 0);
+        second.diff(middle, 0, primaryBuffer, 0);
+
+        final int length = merged.merge(first, second);
+        assertEquals(first.presence() | second.presence(), merged.presence());
+        assertEquals(merged.deltaLength(), length);
+        merged.applyTo(replicaBuffer, 0);
+        assertEquals(2, replica.readConfigVersion());
+        assertEquals(5, replica.readMaxConnections());
+        assertEquals(3, replica.readPriority());
+        assertTrue(replica.contentEquals(primary));
+    }
+
+    @Test
+    void mergedDeltasTakeTheLaterPresence()
+    {
+        final UnsafeBuffer before = copy(primaryBuffer);
+        primary.writeOwnerId(11);
+        final UnsafeBuffer middle = copy(primaryBuffer);
+        primary.clearOwnerId();
+        first.diff(before, 0, middle, 0);
+        second.diff(middle, 0, primaryBuffer, 0);
+        merged.merge(first, second);
+        merged.applyTo(replicaBuffer, 0);
+        assertFalse(replica.hasOwnerId());
+        assertTrue(replica.contentEquals(primary));
+    }
+
+    @Test
+    void mergedDeltasRestoreAFieldClearedInBetween()
+    {
+        primary.writeOwnerId(11);
+        first.diff(replicaBuffer, 0, primaryBuffer, 0);
+        first.applyTo(replicaBuffer, 0);
+
+        final UnsafeBuffer before = copy(primaryBuffer);
+        primary.clearOwnerId();
+        final UnsafeBuffer middle = copy(primaryBuffer);
+        primary.writeOwnerId(12);
+        first.diff(before, 0, middle, 0);
+        second.diff(middle, 0, primaryBuffer, 0);
+        merged.merge(first, second);
+        merged.applyTo(replicaBuffer, 0);
+        assertTrue(replica.hasOwnerId());
+        assertEquals(12, replica.readOwnerId());
+        assertTrue(replica.contentEquals(primary));
+    }
+
+    @Test
+    void mergingPairsOfRandomUpdatesMatchesApplyingBoth()
+    {
+        final SplittableRandom random = new SplittableRandom(7L);
+        final UnsafeBuffer middle = copy(primaryBuffer);
+        for (int i = 0; i < UPDATES; i++)
+        {
+            update(primary, random.nextInt(FIELDS), i);
+            first.diff(replicaBuffer, 0, primaryBuffer, 0);
+            middle.putBytes(0, primaryBuffer, 0, QuillServiceConfigState.BUFFER_LENGTH);
+            update(primary, random.nextInt(FIELDS), i + UPDATES);
+            second.diff(middle, 0, primaryBuffer, 0);
+
+            merged.merge(first, second);
+            merged.applyTo(replicaBuffer, 0);
+            assertTrue(replica.contentEquals(primary), "update " + i);
+        }
+    }
+
+    private static UnsafeBuffer wrap(final QuillServiceConfigState state)
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        state.setBufferWriteHeader(buffer, 0);
+        state.writeRegion("eu-west-1");
+        return buffer;
+    }
+
+    private static UnsafeBuffer copy(final UnsafeBuffer buffer)
+    {
+        final UnsafeBuffer copy = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        copy.putBytes(0, buffer, 0, QuillServiceConfigState.BUFFER_LENGTH);
+        return copy;
+    }
+
+    private static QuillServiceConfigStateDelta delta()
+    {
+        final QuillServiceConfigStateDelta delta = new QuillServiceConfigStateDelta();
+        delta.setUnderlyingBuffer(new UnsafeBuffer(new byte[QuillServiceConfigStateDelta.MAX_LENGTH]), 0);
+        return delta;
+    }
+
+    private static void update(final QuillServiceConfigState state, final int field, final int i)
+    {
+        switch (field)
+        {
+            case 0:
+                state.writeConfigVersion(i);
+                break;
+            case 1:
+                state.writeUpdatedAtNs(i * 31L);
+                break;
+            case 2:
+                state.writeRegion((i & 1) == 0 ? "eu-west-1" : "us-east-2");
+                break;
+            case 3:
+                state.writeMaxConnections(i & 1023);
+                break;
+            case 4:
+                state.writeLoadFactor(i / 1000.0);
+                break;
+            case 5:
+                state.writePriority((short)(i & 7));
+                break;
+            case 6:
+                state.writeAcceptingTraffic((i & 1) == 0);
+                break;
+            case 7:
+                state.writeLeaseExpiresAtNs(i * 1000L);
+                break;
+            default:
+                if (state.hasOwnerId())
+                {
+                    state.clearOwnerId();
+                }
+                else
+                {
+                    state.writeOwnerId(i);
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderDispatcher;
+import io.eider.util.EiderMessageListener;
+import io.eider.util.EiderMessageType;
+import io.eider.util.EiderRegistry;
+import io.skua.configurationservice.gen.QuillServiceLatencyReport;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EiderDispatcherTest
+{
+    private static final int HOSTS = 3;
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final List<Long> reported = new ArrayList<>();
+    private final EiderDispatcher dispatcher = new EiderDispatcher(new EiderMessageListener()
+    {
+        @Override
+        public void onQuillServiceLatencyReport(final QuillServiceLatencyReport message)
+        {
+            reported.add(message.readReportedAt());
+        }
+    });
+
+    @Test
+    void dispatchesWholeMessages()
+    {
+        final int length = writeReport();
+        dispatcher.onMessage(0, buffer, 0, length);
+        assertEquals(List.of(42L), reported);
+    }
+
+    @Test
+    void rejectsLengthsShorterThanTheMessage()
+    {
+        final int length = writeReport();
+        assertThrows(IllegalStateException.class,
+            () -> dispatcher.onMessage(0, buffer, 0, report().precomputeBufferLength(0)));
+        assertThrows(IllegalStateException.class, () -> dispatcher.onMessage(0, buffer, 0, length - 1));
+        assertThrows(IllegalStateException.class, () -> dispatcher.onMessage(0, buffer, 0, Integer.BYTES));
+        assertTrue(reported.isEmpty());
+    }
+
+    @Test
+    void validatesHeadersThroughTheRegistry()
+    {
+        final int length = writeReport();
+        final EiderMessageType type = EiderRegistry.lookup(buffer, 0);
+        assertEquals(QuillServiceLatencyReport.WIRE_PROTOCOL_ID, type.protocolId());
+        assertEquals(length, EiderRegistry.messageLength(buffer, 0));
+        assertTrue(type.validateHeader(buffer, 0));
+
+        // the encoding type follows the 32 bit length
+        buffer.putByte(Integer.BYTES, (byte)0);
+        assertFalse(type.validateHeader(buffer, 0));
+    }
+
+    private QuillServiceLatencyReport report()
+    {
+        final QuillServiceLatencyReport report = new QuillServiceLatencyReport();
+        report.setUnderlyingBuffer(buffer, 0);
+        return report;
+    }
+
+    private int writeReport()
+    {
+        final QuillServiceLatencyReport report = report();
+        report.writeHeader();
+        report.writeReportedAt(42L);
+        report.resetQuillHostLatencySize(HOSTS);
+        return report.precomputeBufferLength(HOSTS);
+    }
+}
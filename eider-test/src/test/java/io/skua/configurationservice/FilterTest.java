@@ -0,0 +1,140 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderComparison;
+import io.eider.util.EiderDispatcher;
+import io.eider.util.EiderFilter;
+import io.eider.util.EiderMessageListener;
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import io.skua.configurationservice.gen.QuillServiceConfigStateFilter;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEventFilter;
+import io.skua.configurationservice.gen.QuillServiceStatusState;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterTest
+{
+    private static final int MESSAGES = 1_000;
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final SplittableRandom random = new SplittableRandom(42L);
+
+    @Test
+    void comparisonsMatchTheDecodedFields()
+    {
+        final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            event.setBufferWriteHeader(buffer, 0);
+            final short statusCode = (short)random.nextInt(-2, 3);
+            final boolean success = random.nextBoolean();
+            event.writeStatusCode(statusCode);
+            event.writeSuccess(success);
+
+            assertEquals(statusCode == 0, test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.EQ,
+                (short)0)));
+            assertEquals(statusCode != 0, test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.NE,
+                (short)0)));
+            assertEquals(statusCode < 0, test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.LT,
+                (short)0)));
+            assertEquals(statusCode <= 0, test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.LE,
+                (short)0)));
+            assertEquals(statusCode > 0, test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.GT,
+                (short)0)));
+            assertEquals(statusCode >= 0, test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.GE,
+                (short)0)));
+            assertEquals(success, test(QuillServiceRegisteredEventFilter.success(true)));
+
+            final EiderFilter failed = QuillServiceRegisteredEventFilter.statusCode(EiderComparison.NE, (short)0)
+                .and(QuillServiceRegisteredEventFilter.success(false));
+            assertEquals(statusCode != 0 && !success, test(failed));
+            assertEquals(statusCode == 0 || success, test(failed.negate()));
+            assertEquals(statusCode == 0 || !success,
+                test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.EQ, (short)0)
+                    .or(QuillServiceRegisteredEventFilter.success(false))));
+        }
+    }
+
+    @Test
+    void optionalFieldsOnlyMatchWhenPresent()
+    {
+        final QuillServiceConfigState config = new QuillServiceConfigState();
+        config.setBufferWriteHeader(buffer, 0);
+        config.writeRegionWithPadding("us-east");
+        assertFalse(test(QuillServiceConfigStateFilter.hasOwnerId()));
+        assertFalse(test(QuillServiceConfigStateFilter.ownerId(EiderComparison.EQ, 0L)));
+        assertFalse(test(QuillServiceConfigStateFilter.ownerId(EiderComparison.NE, 7L)));
+
+        config.writeOwnerId(7L);
+        assertTrue(test(QuillServiceConfigStateFilter.hasOwnerId()));
+        assertTrue(test(QuillServiceConfigStateFilter.ownerId(EiderComparison.EQ, 7L)));
+        assertFalse(test(QuillServiceConfigStateFilter.hasLeaseExpiresAtNs()));
+    }
+
+    @Test
+    void stringsMatchWithoutSurroundingSpaces()
+    {
+        final QuillServiceConfigState config = new QuillServiceConfigState();
+        config.setBufferWriteHeader(buffer, 0);
+        config.writeRegionWithPadding("us-east");
+        assertTrue(test(QuillServiceConfigStateFilter.region("us-east")));
+        assertTrue(test(QuillServiceConfigStateFilter.region(" us-east ")));
+        assertFalse(test(QuillServiceConfigStateFilter.region("us-eas")));
+        assertFalse(test(QuillServiceConfigStateFilter.region("us-east-1")));
+    }
+
+    @Test
+    void filtersRejectOtherMessageTypes()
+    {
+        final QuillServiceStatusState status = new QuillServiceStatusState();
+        status.setBufferWriteHeader(buffer, 0);
+        assertTrue(test(EiderFilter.ALL));
+        assertFalse(test(QuillServiceRegisteredEventFilter.any()));
+        assertFalse(test(QuillServiceRegisteredEventFilter.statusCode(EiderComparison.GE, Short.MIN_VALUE)));
+        assertFalse(test(QuillServiceConfigStateFilter.any().negate().negate()));
+    }
+
+    @Test
+    void dispatcherCountsFilteredAndUnknownMessagesApart()
+    {
+        final List<Short> dispatched = new ArrayList<>();
+        final EiderDispatcher dispatcher = new EiderDispatcher(new EiderMessageListener()
+        {
+            @Override
+            public void onQuillServiceRegisteredEvent(final QuillServiceRegisteredEvent message)
+            {
+                dispatched.add(message.readStatusCode());
+            }
+        });
+        dispatcher.setQuillServiceRegisteredEventFilter(
+            QuillServiceRegisteredEventFilter.statusCode(EiderComparison.NE, (short)0));
+
+        final QuillServiceRegisteredEvent event = new QuillServiceRegisteredEvent();
+        event.setBufferWriteHeader(buffer, 0);
+        event.writeStatusCode((short)3);
+        assertTrue(dispatcher.dispatch(buffer, 0));
+        event.writeStatusCode((short)0);
+        assertFalse(dispatcher.dispatch(buffer, 0));
+        assertEquals(1, dispatcher.filteredCount());
+        assertEquals(0, dispatcher.unknownCount());
+
+        buffer.putShort(6, (short)-1);
+        assertFalse(dispatcher.dispatch(buffer, 0));
+        assertEquals(1, dispatcher.filteredCount());
+        assertEquals(1, dispatcher.unknownCount());
+        assertEquals(List.of((short)3), dispatched);
+    }
+
+    private boolean test(final EiderFilter filter)
+    {
+        return filter.test(buffer, 0);
+    }
+}
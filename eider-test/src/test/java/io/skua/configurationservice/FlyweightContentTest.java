@@ -0,0 +1,91 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderMessageType;
+import io.eider.util.EiderRegistry;
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlyweightContentTest
+{
+    private static final int OFFSET = 13;
+
+    @Test
+    void equalContentHasEqualHash()
+    {
+        final SplittableRandom random = new SplittableRandom(26L);
+        final UnsafeBuffer left = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        final UnsafeBuffer right = new UnsafeBuffer(new byte[OFFSET + QuillServiceConfigState.BUFFER_LENGTH]);
+        final QuillServiceConfigState leftState = new QuillServiceConfigState();
+        final QuillServiceConfigState rightState = new QuillServiceConfigState();
+        for (int i = 0; i < 1_000; i++)
+        {
+            leftState.setBufferWriteHeader(left, 0);
+            write(leftState, random);
+            right.putBytes(OFFSET, left, 0, QuillServiceConfigState.BUFFER_LENGTH);
+            rightState.setUnderlyingBuffer(right, OFFSET);
+
+            assertTrue(leftState.contentEquals(rightState));
+            assertEquals(leftState.contentHash(), rightState.contentHash());
+        }
+    }
+
+    @Test
+    void anyChangedByteBreaksEquality()
+    {
+        final UnsafeBuffer left = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        final UnsafeBuffer right = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        final QuillServiceConfigState leftState = new QuillServiceConfigState();
+        final QuillServiceConfigState rightState = new QuillServiceConfigState();
+        leftState.setBufferWriteHeader(left, 0);
+        write(leftState, new SplittableRandom(26L));
+        rightState.setUnderlyingBuffer(right, 0);
+        for (int i = 0; i < QuillServiceConfigState.BUFFER_LENGTH; i++)
+        {
+            right.putBytes(0, left, 0, QuillServiceConfigState.BUFFER_LENGTH);
+            right.putByte(i, (byte)(right.getByte(i) ^ 0x80));
+            assertFalse(leftState.contentEquals(rightState), "byte " + i);
+        }
+    }
+
+    @Test
+    void comparesFixedStringsAsUnsignedBytes()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        final QuillServiceConfigState state = new QuillServiceConfigState();
+        state.setBufferWriteHeader(buffer, 0);
+        state.writeRegionWithPadding("ab");
+
+        // the last byte of the right aligned region, so the stored value is "a\u00E9"
+        final EiderMessageType type = EiderRegistry.lookup(QuillServiceConfigState.WIRE_PROTOCOL_ID);
+        final int region = type.fieldIndex("region");
+        buffer.putByte(type.fieldOffset(region) + type.fieldLength(region) - 1, (byte)0xE9);
+
+        assertEquals(0, state.compareRegion("a\u00E9"));
+        assertTrue(state.compareRegion("a\u00FF") < 0);
+        assertTrue(state.compareRegion("ab") > 0);
+        assertTrue(state.compareRegion("a") > 0);
+    }
+
+    private static void write(final QuillServiceConfigState state, final SplittableRandom random)
+    {
+        state.writeConfigVersion(random.nextLong());
+        state.writeUpdatedAtNs(random.nextLong());
+        state.writeRegionWithPadding("region-" + random.nextInt(100));
+        state.writeMaxConnections(random.nextInt());
+        state.writeRetryLimit(random.nextInt(10));
+        state.writeLoadFactor(random.nextDouble());
+        state.writePriority((short)random.nextInt(Short.MAX_VALUE));
+        state.writeAcceptingTraffic(random.nextBoolean());
+        if (random.nextBoolean())
+        {
+            state.writeOwnerId(random.nextLong());
+        }
+    }
+}
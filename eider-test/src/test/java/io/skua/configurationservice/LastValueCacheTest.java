@@ -0,0 +1,65 @@
+package io.skua.configurationservice;
+
+import io.skua.configurationservice.gen.QuillServiceEndpointState;
+import io.skua.configurationservice.gen.QuillServiceEndpointStateLastValueCache;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LastValueCacheTest
+{
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[QuillServiceEndpointState.BUFFER_LENGTH]);
+    private final QuillServiceEndpointState endpoint = new QuillServiceEndpointState();
+
+    @Test
+    void rejectsCapacitiesWhoseSlabWouldNotFitInABuffer()
+    {
+        assertTrue((long)QuillServiceEndpointStateLastValueCache.MAX_CAPACITY *
+            QuillServiceEndpointStateLastValueCache.SLOT_LENGTH <= Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> new QuillServiceEndpointStateLastValueCache(0));
+        final int tooMany = QuillServiceEndpointStateLastValueCache.MAX_CAPACITY + 1;
+        assertThrows(IllegalArgumentException.class, () -> new QuillServiceEndpointStateLastValueCache(tooMany));
+        assertThrows(IllegalArgumentException.class,
+            () -> new QuillServiceEndpointStateLastValueCache(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void keepsTheLatestMessageOfEachKeyAndDrainsEachChangedKeyOnce()
+    {
+        final QuillServiceEndpointStateLastValueCache cache = new QuillServiceEndpointStateLastValueCache(2);
+        put(cache, 1, 10);
+        put(cache, 2, 20);
+        put(cache, 1, 11);
+        assertEquals(-1, put(cache, 3, 30));
+
+        final QuillServiceEndpointState cached = new QuillServiceEndpointState();
+        assertTrue(cache.lookup(1, cached));
+        assertEquals(11, cached.readUpdatedAtNs());
+        assertFalse(cache.lookup(3, cached));
+
+        final List<Long> drained = new ArrayList<>();
+        final QuillServiceEndpointState flyweight = new QuillServiceEndpointState();
+        assertEquals(2, cache.drainDirty((dirtyBuffer, offset, length) ->
+        {
+            flyweight.setUnderlyingBuffer(dirtyBuffer, offset);
+            drained.add(flyweight.readUpdatedAtNs());
+        }, 10));
+        assertEquals(List.of(11L, 20L), drained);
+        assertEquals(0, cache.drainDirty((dirtyBuffer, offset, length) -> drained.add(-1L), 10));
+    }
+
+    private int put(final QuillServiceEndpointStateLastValueCache cache, final int endpointId, final long updatedAtNs)
+    {
+        endpoint.setBufferWriteHeader(buffer, 0);
+        endpoint.writeEndpointId(endpointId);
+        endpoint.writeUpdatedAtNs(updatedAtNs);
+        return cache.put(buffer, 0);
+    }
+}
@@ -0,0 +1,122 @@
+package io.skua.configurationservice;
+
+import io.eider.util.EiderProjections;
+import io.skua.configurationservice.gen.QuillServiceConfigState;
+import io.skua.configurationservice.gen.QuillServiceMetricsCounters;
+import io.skua.configurationservice.gen.QuillServiceOutcomeEvent;
+import io.skua.configurationservice.gen.QuillServiceOwnershipState;
+import io.skua.configurationservice.gen.QuillServiceRegisteredEvent;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionTest
+{
+    private static final int MESSAGES = 1_000;
+    private static final int HOPS = 3;
+
+    private final SplittableRandom random = new SplittableRandom(42L);
+    private final QuillServiceOutcomeEvent outcome = new QuillServiceOutcomeEvent();
+    private final UnsafeBuffer target = new UnsafeBuffer(new byte[QuillServiceOutcomeEvent.BUFFER_LENGTH]);
+
+    @Test
+    void projectedEventsReadBackAsTheSourceWasWritten()
+    {
+        final QuillServiceRegisteredEvent registered = new QuillServiceRegisteredEvent();
+        final UnsafeBuffer source = new UnsafeBuffer(new byte[QuillServiceRegisteredEvent.BUFFER_LENGTH]);
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            registered.setBufferWriteHeader(source, 0);
+            registered.writeCorrelationId(random.nextLong());
+            registered.writeSuccess(random.nextBoolean());
+            registered.writeStatusCode((short)random.nextInt(Short.MAX_VALUE));
+            for (int hop = 0; hop < HOPS; hop++)
+            {
+                registered.stampHop(random.nextLong());
+            }
+
+            // the target is left dirty from the last message, so the field the source lacks must be cleared
+            outcome.setUnderlyingBuffer(target, 0);
+            outcome.writeAttempts(random.nextInt());
+            final int length =
+                EiderProjections.quillServiceRegisteredEventToQuillServiceOutcomeEvent(source, 0, target, 0);
+
+            assertEquals(QuillServiceOutcomeEvent.BUFFER_LENGTH, length);
+            assertTrue(outcome.validateHeader());
+            assertEquals(registered.readCorrelationId(), outcome.readCorrelationId());
+            assertEquals(registered.readSuccess(), outcome.readSuccess());
+            assertEquals(registered.readStatusCode(), outcome.readStatusCode());
+            assertEquals(0, outcome.readAttempts());
+            assertEquals(HOPS, outcome.readHopCount());
+            for (int hop = 0; hop < HOPS; hop++)
+            {
+                assertEquals(registered.readHopTimestamp(hop), outcome.readHopTimestamp(hop));
+            }
+        }
+    }
+
+    @Test
+    void fieldsMissingFromTheSourceAreCleared()
+    {
+        outcome.setBufferWriteHeader(target, 0);
+        outcome.writeCorrelationId(7L);
+        outcome.writeSuccess(true);
+        outcome.stampHop(11L);
+
+        final QuillServiceMetricsCounters metrics = new QuillServiceMetricsCounters();
+        final UnsafeBuffer source = new UnsafeBuffer(new byte[QuillServiceMetricsCounters.BUFFER_LENGTH]);
+        metrics.setBufferWriteHeader(source, 0);
+        metrics.writeStatusCode((short)503);
+        metrics.writeRequestsHandled(1_000L);
+        EiderProjections.quillServiceMetricsCountersToQuillServiceOutcomeEvent(source, 0, target, 0);
+
+        outcome.setUnderlyingBuffer(target, 0);
+        assertTrue(outcome.validateHeader());
+        assertEquals(503, outcome.readStatusCode());
+        assertEquals(0, outcome.readCorrelationId());
+        assertFalse(outcome.readSuccess());
+        assertEquals(0, outcome.readHopCount());
+    }
+
+    @Test
+    void optionalFieldsKeepTheirPresence()
+    {
+        final QuillServiceConfigState config = new QuillServiceConfigState();
+        final QuillServiceOwnershipState ownership = new QuillServiceOwnershipState();
+        final UnsafeBuffer source = new UnsafeBuffer(new byte[QuillServiceConfigState.BUFFER_LENGTH]);
+        final UnsafeBuffer ownershipTarget = new UnsafeBuffer(new byte[QuillServiceOwnershipState.BUFFER_LENGTH]);
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            config.setBufferWriteHeader(source, 0);
+            config.writeRegionWithPadding("region-" + random.nextInt(100));
+            if (random.nextBoolean())
+            {
+                config.writeOwnerId(random.nextLong());
+            }
+            if (random.nextBoolean())
+            {
+                config.writeLeaseExpiresAtNs(random.nextLong());
+            }
+            EiderProjections.quillServiceConfigStateToQuillServiceOwnershipState(source, 0, ownershipTarget, 0);
+
+            ownership.setUnderlyingBuffer(ownershipTarget, 0);
+            assertTrue(ownership.validateHeader());
+            assertEquals(config.readRegion(), ownership.readRegion());
+            assertEquals(config.hasOwnerId(), ownership.hasOwnerId());
+            assertEquals(config.hasLeaseExpiresAtNs(), ownership.hasLeaseExpiresAtNs());
+            if (config.hasOwnerId())
+            {
+                assertEquals(config.readOwnerId(), ownership.readOwnerId());
+            }
+            if (config.hasLeaseExpiresAtNs())
+            {
+                assertEquals(config.readLeaseExpiresAtNs(), ownership.readLeaseExpiresAtNs());
+            }
+        }
+    }
+}
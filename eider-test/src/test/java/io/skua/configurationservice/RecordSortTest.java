@@ -0,0 +1,185 @@
+package io.skua.configurationservice;
+
+import io.skua.configurationservice.gen.QuillHostConnection;
+import io.skua.configurationservice.gen.QuillHostLatency;
+import io.skua.configurationservice.gen.QuillServiceLatencyReport;
+import io.skua.configurationservice.gen.RegisterQuillServiceCommand;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordSortTest
+{
+    private static final int RECORDS = 2_000;
+    private static final int HOST_NAMES = 100;
+
+    private final SplittableRandom random = new SplittableRandom(42L);
+    private final RegisterQuillServiceCommand command = new RegisterQuillServiceCommand();
+    private final Host[] hosts = new Host[RECORDS];
+
+    @Test
+    void sortsByPortLikeASortOnTheHeap()
+    {
+        writeConnections(RECORDS);
+        command.sortQuillHostConnectionByPort();
+        Arrays.sort(hosts, Comparator.comparingInt((Host host) -> host.port));
+        for (int i = 0; i < RECORDS; i++)
+        {
+            assertEquals(hosts[i].port, command.getQuillHostConnection(i).readPort());
+        }
+    }
+
+    @Test
+    void sortsByHostNameWhateverThePadding()
+    {
+        writeConnections(RECORDS);
+        command.sortQuillHostConnectionByHostName();
+        Arrays.sort(hosts, Comparator.comparing((Host host) -> host.hostName));
+        for (int i = 0; i < RECORDS; i++)
+        {
+            assertEquals(hosts[i].hostName, command.getQuillHostConnection(i).readHostName());
+        }
+    }
+
+    @Test
+    void sortsByRankedKeysAndFindsEveryRecord()
+    {
+        writeConnections(RECORDS);
+        command.sortQuillHostConnectionByHostNameThenPort();
+        Arrays.sort(hosts, Comparator.comparing((Host host) -> host.hostName).thenComparingInt(host -> host.port));
+        for (int i = 0; i < RECORDS; i++)
+        {
+            final QuillHostConnection connection = command.getQuillHostConnection(i);
+            assertEquals(hosts[i].hostName, connection.readHostName());
+            assertEquals(hosts[i].port, connection.readPort());
+        }
+
+        for (final Host host : hosts)
+        {
+            final int found = command.binarySearchQuillHostConnectionByHostNameThenPort(host.hostName, host.port);
+            assertTrue(found >= 0);
+            final QuillHostConnection connection = command.getQuillHostConnection(found);
+            assertEquals(host.hostName, connection.readHostName());
+            assertEquals(host.port, connection.readPort());
+        }
+    }
+
+    @Test
+    void searchesForMissingValuesGiveTheInsertionPoint()
+    {
+        writeConnections(RECORDS);
+        command.sortQuillHostConnectionByHostName();
+        assertEquals(-1, command.binarySearchQuillHostConnectionByHostName("quill-"));
+        assertEquals(-(RECORDS + 1), command.binarySearchQuillHostConnectionByHostName("zz"));
+
+        command.sortQuillHostConnectionByPort();
+        Arrays.sort(hosts, Comparator.comparingInt((Host host) -> host.port));
+        final short missing = missingPort();
+        int insertion = 0;
+        while (insertion < RECORDS && hosts[insertion].port < missing)
+        {
+            insertion++;
+        }
+        assertEquals(-insertion - 1, command.binarySearchQuillHostConnectionByPort(missing));
+    }
+
+    @Test
+    void sortsAndSearchesOnlyTheCommittedRecords()
+    {
+        writeConnections(RECORDS);
+        command.resetQuillHostConnectionSize(2);
+        command.sortQuillHostConnectionByPort();
+        assertEquals(Math.min(hosts[0].port, hosts[1].port), command.getQuillHostConnection(0).readPort());
+        assertEquals(Math.max(hosts[0].port, hosts[1].port), command.getQuillHostConnection(1).readPort());
+        assertEquals(-3, command.binarySearchQuillHostConnectionByPort(Short.MAX_VALUE));
+    }
+
+    @Test
+    void columnarSortsKeepEachRowTogether()
+    {
+        final QuillServiceLatencyReport report = new QuillServiceLatencyReport();
+        report.setBufferWriteHeader(new UnsafeBuffer(new byte[report.precomputeBufferLength(RECORDS)]), 0);
+        report.resetQuillHostLatencySize(RECORDS);
+        for (int i = 0; i < RECORDS; i++)
+        {
+            // every field follows from the requests, so a row split across sorts no longer agrees with itself
+            final long requests = random.nextLong(1_000_000L);
+            final QuillHostLatency host = report.getQuillHostLatency(i);
+            host.writeRequests(requests);
+            host.writePort((short)(requests % Short.MAX_VALUE));
+            host.writeErrors((int)(requests % 1_000));
+            host.writeLatencyMicros(random.nextDouble() * 1_000);
+            host.writeHealthy(requests % 2 == 0);
+            host.writeHostName("quill-" + requests);
+        }
+
+        report.sortQuillHostLatencyByLatencyMicros();
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < RECORDS; i++)
+        {
+            final QuillHostLatency host = report.getQuillHostLatency(i);
+            final long requests = host.readRequests();
+            final double latencyMicros = host.readLatencyMicros().doubleValue();
+            assertTrue(latencyMicros >= previous);
+            assertEquals((short)(requests % Short.MAX_VALUE), host.readPort());
+            assertEquals(requests % 1_000, host.readErrors());
+            assertEquals(requests % 2 == 0, host.readHealthy());
+            assertEquals("quill-" + requests, host.readHostName());
+            assertEquals(host.readPort(), report.readQuillHostLatencyPort(i));
+            assertEquals(i, report.binarySearchQuillHostLatencyByLatencyMicros(latencyMicros));
+            previous = latencyMicros;
+        }
+    }
+
+    private void writeConnections(final int records)
+    {
+        command.setBufferWriteHeader(new UnsafeBuffer(new byte[command.precomputeBufferLength(records)]), 0);
+        command.resetQuillHostConnectionSize(records);
+        for (int i = 0; i < records; i++)
+        {
+            hosts[i] = new Host((short)random.nextInt(Short.MIN_VALUE, Short.MAX_VALUE),
+                "quill-" + random.nextInt(HOST_NAMES));
+            final QuillHostConnection connection = command.getQuillHostConnection(i);
+            connection.writePort(hosts[i].port);
+            if (i % 10 == 0)
+            {
+                connection.writeHostNameWithPadding(hosts[i].hostName);
+            }
+            else
+            {
+                connection.writeHostNameWithPadding("");
+                connection.writeHostName(hosts[i].hostName);
+            }
+        }
+    }
+
+    private short missingPort()
+    {
+        while (true)
+        {
+            final short port = (short)random.nextInt(Short.MIN_VALUE, Short.MAX_VALUE);
+            if (Arrays.stream(hosts).noneMatch(host -> host.port == port))
+            {
+                return port;
+            }
+        }
+    }
+
+    private static final class Host
+    {
+        private final short port;
+        private final String hostName;
+
+        private Host(final short port, final String hostName)
+        {
+            this.port = port;
+            this.hostName = hostName;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.skua.configurationservice;
+
+import io.skua.configurationservice.gen.QuillServiceStatusState;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SequenceLockTest
+{
+    private static final int READERS = 3;
+    private static final long WRITES = 2_000_000;
+
+    // direct buffers are at least 8 byte aligned, so the sequence at an aligned offset is accessed atomically
+    private final UnsafeBuffer shared =
+        new UnsafeBuffer(ByteBuffer.allocateDirect(QuillServiceStatusState.BUFFER_LENGTH));
+
+    @Test
+    void refusesReadsWhileAWriteIsInProgress()
+    {
+        final QuillServiceStatusState status = new QuillServiceStatusState();
+        status.setBufferWriteHeader(shared, 0);
+        final long before = status.readSequence();
+
+        status.beginWrite();
+        status.writeHeartbeatNs(7);
+        assertEquals(before + 1, status.readSequence());
+        assertFalse(status.tryRead(snapshot -> { }));
+
+        status.endWrite();
+        assertEquals(before + 2, status.readSequence());
+        final long[] heartbeat = new long[1];
+        assertTrue(status.tryRead(snapshot -> heartbeat[0] = snapshot.readHeartbeatNs()));
+        assertEquals(7, heartbeat[0]);
+    }
+
+    @Test
+    @Timeout(60)
+    void readersNeverSeeTornSnapshots() throws InterruptedException
+    {
+        final QuillServiceStatusState writer = new QuillServiceStatusState();
+        writer.setBufferWriteHeader(shared, 0);
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final List<Reader> readers = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < READERS; i++)
+        {
+            final Reader reader = new Reader(running);
+            readers.add(reader);
+            threads.add(new Thread(reader, "status-reader-" + i));
+        }
+        threads.forEach(Thread::start);
+
+        // every write puts the same value into each field, so a snapshot is torn if any two fields differ
+        for (long value = 1; value <= WRITES; value++)
+        {
+            writer.beginWrite();
+            writer.writeHeartbeatNs(value);
+            writer.writeActiveConnections((int)value);
+            writer.writeQueueDepth((int)value);
+            writer.writeStatusCode((short)value);
+            writer.endWrite();
+        }
+        running.set(false);
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(WRITES * 2, writer.readSequence());
+        for (final Reader reader : readers)
+        {
+            assertTrue(reader.snapshots > 0);
+            assertEquals(0, reader.torn);
+            assertEquals(0, reader.wentBack);
+        }
+    }
+
+    private final class Reader implements Runnable, Consumer<QuillServiceStatusState>
+    {
+        private final QuillServiceStatusState status = new QuillServiceStatusState();
+        private final AtomicBoolean running;
+        private long heartbeatNs;
+        private int activeConnections;
+        private int queueDepth;
+        private short statusCode;
+        private long snapshots;
+        private long torn;
+        private long wentBack;
+
+        private Reader(final AtomicBoolean running)
+        {
+            this.running = running;
+            status.setUnderlyingBuffer(shared, 0);
+        }
+
+        @Override
+        public void accept(final QuillServiceStatusState snapshot)
+        {
+            heartbeatNs = snapshot.readHeartbeatNs();
+            activeConnections = snapshot.readActiveConnections();
+            queueDepth = snapshot.readQueueDepth();
+            statusCode = snapshot.readStatusCode();
+        }
+
+        @Override
+        public void run()
+        {
+            long previous = 0;
+            while (running.get())
+            {
+                if (status.tryRead(this))
+                {
+                    snapshots++;
+                    if (activeConnections != (int)heartbeatNs || queueDepth != (int)heartbeatNs ||
+                        statusCode != (short)heartbeatNs)
+                    {
+                        torn++;
+                    }
+                    if (heartbeatNs < previous)
+                    {
+                        wentBack++;
+                    }
+                    previous = heartbeatNs;
+                }
+            }
+        }
+    }
+}
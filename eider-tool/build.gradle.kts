@@ -8,6 +8,15 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    val jmh by creating {
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output
+    }
+}
+
+configurations["jmhImplementation"].extendsFrom(configurations.implementation.get())
+
 configurations[JavaPlugin.API_CONFIGURATION_NAME].let { apiConfiguration ->
     apiConfiguration.setExtendsFrom(apiConfiguration.extendsFrom.filter { it.name != "antlr" })
 }
@@ -17,6 +26,7 @@ dependencies {
 
     implementation(libs.antlrRuntime)
     implementation(libs.picocli)
+    implementation(libs.agrona)
     implementation(project(":eider-internals"))
     implementation(project(":eider-java-writer"))
 
@@ -24,6 +34,9 @@ dependencies {
     testRuntimeOnly(libs.jupiterEngine)
 
     antlr(libs.antlr)
+
+    "jmhImplementation"(libs.jmhCore)
+    "jmhAnnotationProcessor"(libs.jmhAnnotationProcessor)
 }
 
 tasks {
@@ -33,6 +46,12 @@ tasks {
         "-Werror",
         "-lib", "src/main/antlr")
     }
+    register("jmh", type=JavaExec::class) {
+        dependsOn("jmhClasses")
+        group = "benchmark"
+        mainClass.set("org.openjdk.jmh.Main")
+        classpath = sourceSets["jmh"].runtimeClasspath
+    }
 }
 
 testing {
@@ -0,0 +1,66 @@
+package io.eider.tool.jmh;
+
+import io.eider.language.eiderLexer;
+import io.eider.language.eiderParser;
+import io.eider.tool.EiderLanguageVisitor;
+import io.eider.tool.EiderParserContext;
+import io.eider.tool.EiderSchemaParser;
+import io.eider.tool.ParserErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a synthetic schema with the reused, SLL-first {@link EiderSchemaParser}, against a new lexer and parser
+ * per file with the default LL prediction, as the tool did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EiderParseBenchmark
+{
+    @Param({"1000", "5000"})
+    public int messageCount;
+
+    private final EiderSchemaParser parser = new EiderSchemaParser(false);
+    private String schema;
+
+    @Setup
+    public void setup()
+    {
+        schema = SyntheticSchema.build(messageCount);
+    }
+
+    @Benchmark
+    public EiderParserContext sllFirstReused()
+    {
+        return parser.parse(CharStreams.fromString(schema));
+    }
+
+    @Benchmark
+    public EiderParserContext llNewParser()
+    {
+        final eiderLexer lexer = new eiderLexer(CharStreams.fromString(schema));
+        final eiderParser llParser = new eiderParser(new CommonTokenStream(lexer));
+        llParser.removeErrorListeners();
+        llParser.addErrorListener(ParserErrorListener.INSTANCE);
+        final EiderLanguageVisitor visitor = new EiderLanguageVisitor(false);
+        visitor.visit(llParser.eider());
+        return visitor.getContext();
+    }
+}
@@ -0,0 +1,49 @@
+package io.eider.tool.jmh;
+
+/**
+ * Builds a large .eider schema using every field type and annotation, with one record for every ten messages.
+ */
+public final class SyntheticSchema
+{
+    private SyntheticSchema()
+    {
+        //nothing
+    }
+
+    public static String build(final int messageCount)
+    {
+        final StringBuilder schema = new StringBuilder(messageCount * 300)
+            .append("syntax = \"eiderwire\";\n")
+            .append("package io.eider.synthetic;\n\n")
+            .append("enum Corpus {\n    UNIVERSAL = 0;\n    WEB = 1;\n    IMAGES = 2;\n}\n\n");
+
+        for (int i = 0; i < messageCount; i += 10)
+        {
+            schema.append("record Endpoint").append(i / 10).append(" {\n")
+                .append("    @attribute(maxLength = 16)\n")
+                .append("    string host = 1;\n")
+                .append("    int32 port = 2;\n")
+                .append("}\n\n");
+        }
+
+        for (int i = 0; i < messageCount; i++)
+        {
+            schema.append("@spec(wireProtocolId = ").append(i + 1).append(", version = 1)\n")
+                .append("message Message").append(i).append(" {\n")
+                .append("    int64 id = 1;\n")
+                .append("    int32 count = 2;\n")
+                .append("    int16 kind = 3;\n")
+                .append("    bool active = 4;\n")
+                .append("    double price = 5;\n")
+                .append("    @attribute(maxLength = 32)\n")
+                .append("    string name = 6;\n")
+                .append("    Corpus corpus = 7;\n");
+            if (i % 10 == 0)
+            {
+                schema.append("    Endpoint").append(i / 10).append(" endpoints = 8;\n");
+            }
+            schema.append("}\n\n");
+        }
+        return schema.toString();
+    }
+}
@@ -60,6 +60,7 @@ fieldNumber
 type_
   : DOUBLE
   | FLOAT
+  | INT16
   | INT32
   | INT64
   | BOOL
@@ -171,6 +172,7 @@ SYNTAX: 'syntax';
 IMPORT: 'import';
 PUBLIC: 'public';
 PACKAGE: 'package';
+INT16: 'int16';
 INT32: 'int32';
 INT64: 'int64';
 BOOL: 'bool';
@@ -241,6 +243,7 @@ keywords
   : SYNTAX
   | IMPORT
   | PACKAGE
+  | INT16
   | INT32
   | INT64
   | BOOL
@@ -0,0 +1,97 @@
+package io.eider.tool;
+
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.CountersReader;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the values and rates of the counters written by a process built with {@code -Aeider.counters=true}.
+ * The counters file is only read, so the process being watched is unaffected.
+ */
+@Command(name = "eider-counters", mixinStandardHelpOptions = true,
+    description = "Prints the value and rate per second of every counter in an Eider counters file.")
+public class EiderCountersTool implements Callable<Integer>
+{
+    @Option(names = {"-f", "--file"}, description = "The counters file.")
+    private File file;
+
+    @Option(names = {"-p", "--pid"},
+        description = "The id of the process writing the counters, for its default file, " +
+            "eider-counters-<pid>.dat in java.io.tmpdir.")
+    private long pid;
+
+    @Option(names = {"-i", "--interval"}, description = "Seconds between samples.", defaultValue = "1")
+    private int intervalSeconds;
+
+    @Option(names = {"-n", "--samples"}, description = "Samples to print before exiting, 0 to run until stopped.",
+        defaultValue = "0")
+    private int samples;
+
+    public static void main(final String[] args)
+    {
+        System.exit(new CommandLine(new EiderCountersTool()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws InterruptedException
+    {
+        if (file == null && pid == 0)
+        {
+            System.err.println("either --file or --pid is needed");
+            return 1;
+        }
+        final File counters = file != null ? file :
+            new File(System.getProperty("java.io.tmpdir"), "eider-counters-" + pid + ".dat");
+        if (!counters.exists())
+        {
+            System.err.println("counters file not found: " + counters);
+            return 1;
+        }
+
+        final MappedByteBuffer mapped = IoUtil.mapExistingFile(counters, "eider counters");
+        try
+        {
+            // the file holds the metadata buffer followed by the values buffer, see EiderCounters
+            final int counterCount = mapped.capacity() /
+                (CountersReader.METADATA_LENGTH + CountersReader.COUNTER_LENGTH);
+            final int metadataLength = counterCount * CountersReader.METADATA_LENGTH;
+            final CountersReader reader = new CountersReader(
+                new UnsafeBuffer(mapped, 0, metadataLength),
+                new UnsafeBuffer(mapped, metadataLength, counterCount * CountersReader.COUNTER_LENGTH));
+
+            final long[] previous = new long[counterCount];
+            reader.forEach((value, counterId, label) -> previous[counterId] = value);
+            long previousNs = System.nanoTime();
+
+            for (int sample = 0; samples == 0 || sample < samples; sample++)
+            {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(intervalSeconds));
+                final long nowNs = System.nanoTime();
+                final double seconds = (nowNs - previousNs) / (double)TimeUnit.SECONDS.toNanos(1);
+                previousNs = nowNs;
+
+                System.out.println(String.format("%-60s %16s %16s", "counter", "value", "per second"));
+                reader.forEach((value, counterId, label) ->
+                {
+                    System.out.println(String.format("%-60s %,16d %,16.0f", label, value,
+                        (value - previous[counterId]) / seconds));
+                    previous[counterId] = value;
+                });
+                System.out.println();
+            }
+        }
+        finally
+        {
+            IoUtil.unmap(mapped);
+        }
+        return 0;
+    }
+}
@@ -3,13 +3,28 @@ package io.eider.tool;
 import io.eider.language.eiderBaseVisitor;
 import io.eider.language.eiderParser;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
 public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
 {
     private final EiderParserContext context;
+    private final boolean verbose;
 
     public EiderLanguageVisitor()
+    {
+        this(false);
+    }
+
+    /**
+     * @param verbose print each definition as it is visited.
+     */
+    public EiderLanguageVisitor(final boolean verbose)
     {
         super();
+        this.verbose = verbose;
         context = new EiderParserContext();
     }
 
@@ -24,10 +39,21 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
     public EiderParserContext visitMessageDef(final eiderParser.MessageDefContext ctx)
     {
         context.startMessage();
-        System.out.println("start message: " + ctx.messageName().getText());
+        log(() -> "start message: " + ctx.messageName().getText());
+        final var f = visitChildren(ctx);
+        context.endMessage(ctx.messageName().getText(), options(ctx.annotationStatement()));
+        log(() -> "end message: " + ctx.messageName().getText());
+        return f;
+    }
+
+    @Override
+    public EiderParserContext visitRecordDef(final eiderParser.RecordDefContext ctx)
+    {
+        context.startRecord();
+        log(() -> "start record: " + ctx.recordName().getText());
         final var f = visitChildren(ctx);
-        context.endMessage(ctx.messageName().getText());
-        System.out.println("end message: " + ctx.messageName().getText());
+        context.endRecord(ctx.recordName().getText(), options(ctx.annotationStatement()));
+        log(() -> "end record: " + ctx.recordName().getText());
         return f;
     }
 
@@ -40,37 +66,29 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
     @Override
     public EiderParserContext visitField(final eiderParser.FieldContext ctx)
     {
-        if (ctx.getChildCount() == 5)
-        { //no annotation
-            System.out.println("field: " + ctx.getChild(0).getText() + ":" + ctx.getChild(1).getText());
-            context.addMessageField(ctx.getChild(0).getText(), ctx.getChild(1).getText());
-        }
-        else
-        { //annotation; todo capture annotation
-            System.out.println("annotatedField: " + ctx.getChild(1).getText() + ":" + ctx.getChild(2).getText());
-            context.addMessageField(ctx.getChild(1).getText(), ctx.getChild(2).getText());
-        }
+        log(() -> "field: " + ctx.type_().getText() + ":" + ctx.fieldName().getText());
+        context.addMessageField(ctx.type_().getText(), ctx.fieldName().getText(), options(ctx.annotationStatement()));
         return visitChildren(ctx);
     }
 
     @Override
     public EiderParserContext visitAnnotationStatement(final eiderParser.AnnotationStatementContext ctx)
     {
-        System.out.println("annotation statement for above: " + ctx.getText());
+        log(() -> "annotation statement for above: " + ctx.getText());
         return visitChildren(ctx);
     }
 
     @Override
     public EiderParserContext visitAnnotationName(final eiderParser.AnnotationNameContext ctx)
     {
-        System.out.println("annotation name for above: " + ctx.getText());
+        log(() -> "annotation name for above: " + ctx.getText());
         return visitChildren(ctx);
     }
 
     @Override
     public EiderParserContext visitAnnotationOptions(final eiderParser.AnnotationOptionsContext ctx)
     {
-        System.out.println("annotation options for above: " + ctx.getText());
+        log(() -> "annotation options for above: " + ctx.getText());
         return visitChildren(ctx);
     }
 
@@ -79,12 +97,12 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
     {
         if (ctx.getChildCount() == 1)
         {
-            System.out.println("annotation option: " + ctx.getText());
+            log(() -> "annotation option: " + ctx.getText());
         }
         else if (ctx.getChildCount() == 3)
         {
-            System.out.println("annotation option key: " + ctx.getChild(0).getText());
-            System.out.println("annotation option val: " + ctx.getChild(2).getText());
+            log(() -> "annotation option key: " + ctx.getChild(0).getText());
+            log(() -> "annotation option val: " + ctx.getChild(2).getText());
         }
         return visitChildren(ctx);
     }
@@ -98,11 +116,11 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
     @Override
     public EiderParserContext visitEnumDef(final eiderParser.EnumDefContext ctx)
     {
-        System.out.println("start enum");
-        System.out.println("enum name: " + ctx.getChild(1).getText());
+        log(() -> "start enum");
+        log(() -> "enum name: " + ctx.getChild(1).getText());
         context.startEnum();
         final var f = visitChildren(ctx);
-        System.out.println("end enum");
+        log(() -> "end enum");
         context.endEnum(ctx.getChild(1).getText());
         return f;
     }
@@ -116,7 +134,7 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
     @Override
     public EiderParserContext visitEnumField(final eiderParser.EnumFieldContext ctx)
     {
-        System.out.println("enum field f=" + ctx.getChild(0).getText() + " val=" + ctx.getChild(2).getText());
+        log(() -> "enum field f=" + ctx.getChild(0).getText() + " val=" + ctx.getChild(2).getText());
         context.addEnumItem(ctx.getChild(0).getText(), ctx.getChild(2).getText());
         return visitChildren(ctx);
     }
@@ -130,7 +148,7 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
     @Override
     public EiderParserContext visitPackageStatement(final eiderParser.PackageStatementContext ctx)
     {
-        System.out.println("package " + ctx.getChild(1).getText());
+        log(() -> "package " + ctx.getChild(1).getText());
         context.setPackageName(ctx.getChild(1).getText());
         return context;
     }
@@ -140,4 +158,44 @@ public class EiderLanguageVisitor extends eiderBaseVisitor<EiderParserContext>
         return context;
     }
 
+    private void log(final Supplier<String> message)
+    {
+        // built lazily as getText() walks the tree, which is most of the cost of the visit when quiet
+        if (verbose)
+        {
+            System.out.println(message.get());
+        }
+    }
+
+    /**
+     * Flattens annotations into a map; {@code @attribute(maxLength = 16)} gives attribute=true and maxLength=16.
+     */
+    private static Map<String, String> options(final List<eiderParser.AnnotationStatementContext> annotations)
+    {
+        final Map<String, String> options = new HashMap<>();
+        for (final eiderParser.AnnotationStatementContext annotation : annotations)
+        {
+            final eiderParser.AnnotationNameContext name = annotation.annotationName();
+            options.put(name.fullIdent().getText(), "true");
+            if (name.annotationOptions() != null)
+            {
+                for (final eiderParser.AnnotationOptionContext option : name.annotationOptions().annotationOption())
+                {
+                    options.put(option.annotationName().getText(),
+                        option.constant() == null ? "true" : unquote(option.constant().getText()));
+                }
+            }
+        }
+        return options;
+    }
+
+    private static String unquote(final String value)
+    {
+        if (value.length() > 1 && (value.charAt(0) == '"' || value.charAt(0) == '\''))
+        {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
 }
@@ -1,20 +1,53 @@
 package io.eider.tool;
 
+import io.eider.internals.ByteOrderType;
+import io.eider.internals.EiderPropertyType;
 import io.eider.internals.PreprocessedEiderEnum;
 import io.eider.internals.PreprocessedEiderEnumItem;
 import io.eider.internals.PreprocessedEiderMessage;
 import io.eider.internals.PreprocessedEiderProperty;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.internals.RepresentationType;
+import io.eider.javawriter.agrona.AttributeConstants;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Collects the definitions of a single .eider file as it is visited. Field types are only resolved when the
+ * messages are built, as a field may refer to a record defined later in the file or in another file.
+ */
 public class EiderParserContext
 {
-    private final List<PreprocessedEiderMessage> messages = new ArrayList<>();
+    static final String WIRE_PROTOCOL_ID = "wireProtocolId";
+    static final String VERSION = "version";
+    static final String FIXED_LENGTH = "fixedLength";
+    static final String HEADER = "header";
+    static final String TIMESTAMP_HOPS = "timestampHops";
+    static final String SEQUENCE_LOCK = "sequenceLock";
+    static final String DELTA = "delta";
+    static final String NAME = "name";
+    static final String MAX_LENGTH = "maxLength";
+    static final String ATOMIC = "atomic";
+    static final String OPTIONAL = "optional";
+    static final String KEY = "key";
+    static final String CORRELATION = "correlation";
+    static final String SORT_KEY = "sortKey";
+    static final String LAYOUT = "layout";
+    static final String PROJECT_FROM = "projectFrom";
+    static final String BYTE_ORDER = "byteOrder";
+
     private final List<PreprocessedEiderEnum> enums = new ArrayList<>();
+    private final List<WorkingDefinition> messages = new ArrayList<>();
+    private final List<WorkingDefinition> records = new ArrayList<>();
+    private final Deque<WorkingDefinition> working = new ArrayDeque<>();
     private String syntax;
     private String packageName;
-    private List<PreprocessedEiderProperty> workingMsgFields;
     private List<PreprocessedEiderEnumItem> workingEnumItems;
 
     public String getSyntax()
@@ -27,6 +60,11 @@ public class EiderParserContext
         this.syntax = syntax;
     }
 
+    public String getPackageName()
+    {
+        return packageName;
+    }
+
     public void setPackageName(final String packageName)
     {
         this.packageName = packageName;
@@ -34,61 +72,335 @@ public class EiderParserContext
 
     public void startMessage()
     {
+        working.push(new WorkingDefinition());
+    }
+
+    public void endMessage(final String name, final Map<String, String> options)
+    {
+        final WorkingDefinition message = working.pop();
+        message.name = name;
+        message.options = options;
+        messages.add(message);
+    }
 
-        workingMsgFields = new ArrayList<>();
+    public void startRecord()
+    {
+        working.push(new WorkingDefinition());
     }
 
-    public void endMessage(final String name)
+    public void endRecord(final String name, final Map<String, String> options)
     {
-//        messages.add(new PreprocessedEiderMessage(name, "zzz", (short) 0, (short) 0, packageName,
-//                true, false, "", false, false, true,
-//                workingMsgFields));
+        final WorkingDefinition rec = working.pop();
+        rec.name = name;
+        rec.options = options;
+        records.add(rec);
+    }
+
+    public void addMessageField(final String type, final String name, final Map<String, String> options)
+    {
+        if (working.isEmpty())
+        {
+            throw new EiderToolException("field " + name + " is not within a message or record");
+        }
+        working.peek().fields.add(new WorkingField(type, name, options));
     }
 
-    public void addMessageAnnotation(final String name)
+    public void startEnum()
     {
+        workingEnumItems = new ArrayList<>();
+    }
 
+    public void endEnum(final String name)
+    {
+        final PreprocessedEiderEnum preprocessedEnum = new PreprocessedEiderEnum(name, RepresentationType.INT);
+        preprocessedEnum.getItems().addAll(workingEnumItems);
+        enums.add(preprocessedEnum);
     }
 
-    public void addMessageFieldAnnotation(final String name)
+    public void addEnumItem(final String name, final String value)
     {
+        workingEnumItems.add(new PreprocessedEiderEnumItem(name, value));
+    }
 
+    public List<PreprocessedEiderEnum> getEnums()
+    {
+        return enums;
     }
 
-    public void addMessageField(final String type, final String name)
+    public List<PreprocessedEiderRepeatableRecord> buildRecords()
     {
-        boolean enumFound = false;
-        for (final PreprocessedEiderEnum enumItem : enums)
+        final List<PreprocessedEiderRepeatableRecord> result = new ArrayList<>();
+        for (final WorkingDefinition rec : records)
+        {
+            final List<PreprocessedEiderProperty> properties = new ArrayList<>();
+            for (final WorkingField field : rec.fields)
+            {
+                if (Boolean.parseBoolean(field.options.get(OPTIONAL)) || Boolean.parseBoolean(field.options.get(KEY)) ||
+                    field.options.containsKey(CORRELATION))
+                {
+                    throw new EiderToolException("Record fields cannot be optional, keys or correlation ids: " +
+                        rec.name + "." + field.name);
+                }
+                // records within records are not supported, so no record names are passed
+                final PreprocessedEiderProperty property = buildProperty(rec.name, field, new ArrayList<>());
+                final String sortKey = field.options.get(SORT_KEY);
+                if (sortKey != null)
+                {
+                    if (!sortKey.matches("[1-9][0-9]*") || property.getType() == EiderPropertyType.BOOLEAN)
+                    {
+                        throw new EiderToolException("Sort keys must be ranked from 1 and cannot be bool: " +
+                            rec.name + "." + field.name);
+                    }
+                    property.getAnnotations().put(AttributeConstants.SORT_KEY, sortKey);
+                }
+                properties.add(property);
+            }
+            final String layout = rec.options.getOrDefault(LAYOUT, "ROW");
+            if (!layout.equals("ROW") && !layout.equals("COLUMNAR"))
+            {
+                throw new EiderToolException("Record layouts are ROW or COLUMNAR: " + rec.name + ", not " + layout);
+            }
+            result.add(new PreprocessedEiderRepeatableRecord(rec.name, rec.name, packageName, properties,
+                layout.equals("COLUMNAR")));
+        }
+        return result;
+    }
+
+    /**
+     * @param recordNames the names of the records defined across every file being generated.
+     */
+    public List<PreprocessedEiderMessage> buildMessages(final Collection<String> recordNames)
+    {
+        final List<PreprocessedEiderMessage> result = new ArrayList<>();
+        for (final WorkingDefinition message : messages)
+        {
+            final boolean fixedLength = Boolean.parseBoolean(message.options.getOrDefault(FIXED_LENGTH, "true"));
+            final boolean header = Boolean.parseBoolean(message.options.getOrDefault(HEADER, "true"));
+            final int timestampHops = intOption(message, TIMESTAMP_HOPS, 0);
+            if (timestampHops < 0 || (timestampHops > 0 && !header))
+            {
+                throw new EiderToolException("Timestamp hops must not be negative and require a header: " +
+                    message.name);
+            }
+
+            final List<PreprocessedEiderProperty> properties = new ArrayList<>();
+            for (final WorkingField field : message.fields)
+            {
+                if (field.options.containsKey(SORT_KEY))
+                {
+                    throw new EiderToolException("Only record fields can be sort keys: " + message.name + "." +
+                        field.name);
+                }
+                properties.add(buildProperty(message.name, field, recordNames));
+            }
+
+            final boolean hasRecords =
+                properties.stream().anyMatch(p -> p.getType() == EiderPropertyType.REPEATABLE_RECORD);
+            final boolean sequenceLock = Boolean.parseBoolean(message.options.getOrDefault(SEQUENCE_LOCK, "false"));
+            if (sequenceLock && hasRecords)
+            {
+                throw new EiderToolException("A sequence lock requires a message without records: " + message.name);
+            }
+            final boolean delta = Boolean.parseBoolean(message.options.getOrDefault(DELTA, "false"));
+            if (delta && hasRecords)
+            {
+                throw new EiderToolException("Deltas require a message without records: " + message.name);
+            }
+            final ByteOrderType byteOrder = byteOrder(message);
+            if (byteOrder != ByteOrderType.LITTLE_ENDIAN && hasRecords)
+            {
+                throw new EiderToolException("Records are little endian, so messages with records must be too: " +
+                    message.name);
+            }
+            if (byteOrder == ByteOrderType.BIG_ENDIAN && properties.stream()
+                .anyMatch(p -> Boolean.parseBoolean(p.getAnnotations().get(AttributeConstants.ATOMIC))))
+            {
+                throw new EiderToolException("Atomic fields use the native byte order, so cannot be big endian: " +
+                    message.name);
+            }
+
+            final short eiderId = message.options.containsKey(WIRE_PROTOCOL_ID)
+                ? (short)intOption(message, WIRE_PROTOCOL_ID, 0)
+                : PreprocessedEiderMessage.defaultEiderId(packageName + "." + message.name);
+
+            result.add(new PreprocessedEiderMessage(message.options.getOrDefault(NAME, message.name),
+                message.name,
+                eiderId,
+                (short)intOption(message, VERSION, 1),
+                packageName,
+                fixedLength,
+                header,
+                timestampHops,
+                sequenceLock,
+                delta,
+                projectFrom(message),
+                byteOrder,
+                properties));
+        }
+        return result;
+    }
+
+    private PreprocessedEiderProperty buildProperty(final String owner, final WorkingField field,
+        final Collection<String> recordNames)
+    {
+        final Map<String, String> annotations = new HashMap<>();
+        final String maxLength = field.options.get(MAX_LENGTH);
+        annotations.put(AttributeConstants.MAXLENGTH,
+            maxLength == null ? Integer.toString(Integer.MIN_VALUE) : maxLength);
+
+        final EiderPropertyType type = resolveType(field.type, recordNames);
+        if (type == EiderPropertyType.INVALID)
+        {
+            throw new EiderToolException("Unsupported type " + field.type + " for " + owner + "." + field.name);
+        }
+        if (type == EiderPropertyType.FIXED_STRING && maxLength == null)
+        {
+            throw new EiderToolException("Strings must have a maxLength: " + owner + "." + field.name);
+        }
+        if (Boolean.parseBoolean(field.options.get(ATOMIC)))
+        {
+            if (type != EiderPropertyType.INT && type != EiderPropertyType.LONG)
+            {
+                throw new EiderToolException("Only int32 and int64 fields can be atomic: " + owner + "." + field.name);
+            }
+            annotations.put(AttributeConstants.ATOMIC, "true");
+        }
+        if (Boolean.parseBoolean(field.options.get(OPTIONAL)))
+        {
+            if (type == EiderPropertyType.REPEATABLE_RECORD || Boolean.parseBoolean(field.options.get(ATOMIC)))
+            {
+                throw new EiderToolException("Atomic fields and records cannot be optional: " + owner + "." +
+                    field.name);
+            }
+            annotations.put(AttributeConstants.OPTIONAL, "true");
+        }
+        if (Boolean.parseBoolean(field.options.get(KEY)))
+        {
+            if (type != EiderPropertyType.SHORT && type != EiderPropertyType.INT && type != EiderPropertyType.LONG &&
+                type != EiderPropertyType.FIXED_STRING)
+            {
+                throw new EiderToolException("Keys must be integers or strings: " + owner + "." + field.name);
+            }
+            annotations.put(AttributeConstants.KEY, "true");
+        }
+        final String correlation = field.options.get(CORRELATION);
+        if (correlation != null)
         {
-            if (enumItem.getName().equalsIgnoreCase(type))
+            if (!correlation.equals(AttributeConstants.CORRELATION_REQUEST) &&
+                !correlation.equals(AttributeConstants.CORRELATION_RESPONSE))
+            {
+                throw new EiderToolException("Correlation ids are REQUEST or RESPONSE: " + owner + "." + field.name +
+                    ", not " + correlation);
+            }
+            if (type != EiderPropertyType.INT && type != EiderPropertyType.LONG)
             {
-                enumFound = true;
-                // workingMsgFields.add(new PreprocessedEiderProperty(name,
-                //       EiderPropertyType.ENUM, null, type, new HashMap<>()));
+                throw new EiderToolException("Only int32 and int64 fields can be correlation ids: " + owner + "." +
+                    field.name);
+            }
+            annotations.put(AttributeConstants.CORRELATION, correlation);
+        }
+
+        return new PreprocessedEiderProperty(field.name, type,
+            type == EiderPropertyType.REPEATABLE_RECORD ? field.type : "", annotations);
+    }
+
+    private EiderPropertyType resolveType(final String type, final Collection<String> recordNames)
+    {
+        switch (type)
+        {
+            case "int16":
+                return EiderPropertyType.SHORT;
+            case "int32":
+                return EiderPropertyType.INT;
+            case "int64":
+                return EiderPropertyType.LONG;
+            case "bool":
+                return EiderPropertyType.BOOLEAN;
+            case "double":
+                return EiderPropertyType.DOUBLE;
+            case "string":
+                return EiderPropertyType.FIXED_STRING;
+            default:
                 break;
+        }
+
+        for (final PreprocessedEiderEnum enumItem : enums)
+        {
+            if (enumItem.getName().equals(type))
+            {
+                return EiderPropertyType.INT;
             }
         }
-        if (!enumFound)
+
+        if (recordNames.contains(type))
         {
-            //workingMsgFields.add(new PreprocessedEiderProperty(name,
-            //      EiderPropertyType.fromAntlr(type), null, null, new HashMap<>()));
+            return EiderPropertyType.REPEATABLE_RECORD;
+        }
+        return EiderPropertyType.INVALID;
+    }
 
+    private static List<String> projectFrom(final WorkingDefinition message)
+    {
+        final List<String> result = new ArrayList<>();
+        for (final String source : message.options.getOrDefault(PROJECT_FROM, "").split(","))
+        {
+            if (!source.isBlank())
+            {
+                result.add(source.trim());
+            }
         }
+        return result;
+    }
 
+    private static ByteOrderType byteOrder(final WorkingDefinition message)
+    {
+        final String byteOrder = message.options.getOrDefault(BYTE_ORDER, "LITTLE_ENDIAN");
+        for (final ByteOrderType type : ByteOrderType.values())
+        {
+            if (type.name().equals(byteOrder))
+            {
+                return type;
+            }
+        }
+        throw new EiderToolException("Byte orders are LITTLE_ENDIAN, BIG_ENDIAN or NATIVE: " + message.name +
+            ", not " + byteOrder);
     }
 
-    public void startEnum()
+    private int intOption(final WorkingDefinition definition, final String option, final int defaultValue)
     {
-        workingEnumItems = new ArrayList<>();
+        final String value = definition.options.get(option);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.decode(value);
+        }
+        catch (final NumberFormatException e)
+        {
+            throw new EiderToolException(option + " must be a number on " + definition.name + ", not " + value, e);
+        }
     }
 
-    public void endEnum(final String name)
+    private static final class WorkingDefinition
     {
-        // enums.add(new PreprocessedEiderEnum(name, RepresentationType.SHORT, workingEnumItems));
+        private final List<WorkingField> fields = new ArrayList<>();
+        private String name;
+        private Map<String, String> options = new HashMap<>();
     }
 
-    public void addEnumItem(final String name, final String value)
+    private static final class WorkingField
     {
-        workingEnumItems.add(new PreprocessedEiderEnumItem(name, value));
+        private final String type;
+        private final String name;
+        private final Map<String, String> options;
+
+        private WorkingField(final String type, final String name, final Map<String, String> options)
+        {
+            this.type = type;
+            this.name = name;
+            this.options = options;
+        }
     }
 }
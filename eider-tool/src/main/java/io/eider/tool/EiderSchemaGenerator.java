@@ -0,0 +1,186 @@
+package io.eider.tool;
+
+import io.eider.internals.PreprocessedEiderMessage;
+import io.eider.internals.PreprocessedEiderRepeatableRecord;
+import io.eider.javawriter.EiderCodeWriter;
+import io.eider.javawriter.EiderOutput;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses .eider files and generates code for them. Each file is parsed, and then generated, as a separate task so
+ * large schemas use every core; the code depending on every message is generated once all files are done.
+ */
+public class EiderSchemaGenerator
+{
+    private static final String EXTENSION = ".eider";
+
+    private final EiderCodeWriter writer;
+    private final EiderOutput output;
+    private final int threads;
+    private final ThreadLocal<EiderSchemaParser> parsers;
+
+    /**
+     * @param writer  the writer to generate code with; it must be safe to use from several threads.
+     * @param output  where generated files are written; it must be safe to use from several threads.
+     * @param threads the number of files to parse or generate at once.
+     * @param verbose print each definition as it is parsed.
+     */
+    public EiderSchemaGenerator(final EiderCodeWriter writer, final EiderOutput output, final int threads,
+        final boolean verbose)
+    {
+        this.writer = writer;
+        this.output = output;
+        this.threads = threads;
+        // each pool thread keeps its own lexer and parser for all the files it parses
+        this.parsers = ThreadLocal.withInitial(() -> new EiderSchemaParser(verbose));
+    }
+
+    /**
+     * Expands directories into the .eider files below them, in a stable order.
+     */
+    public static List<Path> findSchemaFiles(final List<Path> inputs) throws IOException
+    {
+        final List<Path> files = new ArrayList<>();
+        for (final Path input : inputs)
+        {
+            if (Files.isDirectory(input))
+            {
+                try (Stream<Path> walk = Files.walk(input))
+                {
+                    files.addAll(walk.filter(path -> path.toString().endsWith(EXTENSION))
+                        .sorted()
+                        .collect(Collectors.toList()));
+                }
+            }
+            else
+            {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    private EiderParserContext parse(final Path file) throws IOException
+    {
+        return parsers.get().parse(CharStreams.fromPath(file));
+    }
+
+    public void generate(final List<Path> files) throws InterruptedException
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<EiderParserContext>> parsing = new ArrayList<>();
+            for (final Path file : files)
+            {
+                parsing.add(executor.submit(() -> parse(file)));
+            }
+            final List<EiderParserContext> contexts = await(files, parsing);
+
+            // records and messages can be referenced across files, so they are only resolved once all are parsed
+            final List<PreprocessedEiderRepeatableRecord> records = new ArrayList<>();
+            for (final EiderParserContext context : contexts)
+            {
+                records.addAll(context.buildRecords());
+            }
+            final Set<String> recordNames = new HashSet<>();
+            for (final PreprocessedEiderRepeatableRecord rec : records)
+            {
+                recordNames.add(rec.getClassNameInput());
+            }
+
+            final List<List<PreprocessedEiderMessage>> messagesByFile = new ArrayList<>();
+            final List<PreprocessedEiderMessage> messages = new ArrayList<>();
+            for (int i = 0; i < contexts.size(); i++)
+            {
+                final List<PreprocessedEiderMessage> fileMessages = contexts.get(i).buildMessages(recordNames);
+                messagesByFile.add(fileMessages);
+                messages.addAll(fileMessages);
+            }
+            checkUniqueProtocolIds(messages);
+
+            final List<Future<Void>> generating = new ArrayList<>();
+            for (int i = 0; i < contexts.size(); i++)
+            {
+                final EiderParserContext context = contexts.get(i);
+                final List<PreprocessedEiderMessage> fileMessages = messagesByFile.get(i);
+                generating.add(executor.submit(() -> generateFile(context, fileMessages, records)));
+            }
+            await(files, generating);
+
+            writer.generateAggregates(output, records, messages);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private Void generateFile(final EiderParserContext context, final List<PreprocessedEiderMessage> messages,
+        final List<PreprocessedEiderRepeatableRecord> records)
+    {
+        for (final PreprocessedEiderRepeatableRecord rec : context.buildRecords())
+        {
+            writer.generateRecord(output, rec);
+        }
+        for (final PreprocessedEiderMessage message : messages)
+        {
+            writer.generateSpec(output, records, message);
+        }
+        return null;
+    }
+
+    private static <T> List<T> await(final List<Path> files, final List<Future<T>> futures)
+        throws InterruptedException
+    {
+        final List<T> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                results.add(futures.get(i).get());
+            }
+            catch (final ExecutionException e)
+            {
+                throw new EiderToolException(files.get(i) + ": " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static void checkUniqueProtocolIds(final List<PreprocessedEiderMessage> messages)
+    {
+        final Map<Short, PreprocessedEiderMessage> byId = new HashMap<>();
+        for (final PreprocessedEiderMessage message : messages)
+        {
+            if (!message.mustBuildHeader())
+            {
+                continue;
+            }
+            final PreprocessedEiderMessage existing = byId.putIfAbsent(message.getEiderId(), message);
+            if (existing != null)
+            {
+                throw new EiderToolException("Wire protocol id " + message.getEiderId() + " is used by both " +
+                    existing.getPackageNameGen() + "." + existing.getName() + " and " +
+                    message.getPackageNameGen() + "." + message.getName() + "; ids which are not given are derived " +
+                    "from a hash of the qualified name and can collide, so set wireProtocolId on one of them");
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.eider.tool;
+
+import io.eider.language.eiderLexer;
+import io.eider.language.eiderParser;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Parses .eider files, reusing one lexer and parser for every file. Not thread safe; use one per thread.
+ * <p>
+ * Files are parsed in two stages: first with SLL prediction, which is much faster but may fail on input that is
+ * valid, and only if that fails again with full LL prediction, which also reports any syntax errors.
+ */
+public class EiderSchemaParser
+{
+    private final eiderLexer lexer = new eiderLexer(CharStreams.fromString(""));
+    private final CommonTokenStream tokens = new CommonTokenStream(lexer);
+    private final eiderParser parser = new eiderParser(tokens);
+    private final boolean verbose;
+
+    /**
+     * @param verbose print each definition as it is visited.
+     */
+    public EiderSchemaParser(final boolean verbose)
+    {
+        this.verbose = verbose;
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(ParserErrorListener.INSTANCE);
+    }
+
+    public EiderParserContext parse(final CharStream input)
+    {
+        lexer.setInputStream(input);
+        tokens.setTokenSource(lexer);
+        // lex up front so lexer errors are reported directly rather than causing the LL stage to run
+        tokens.fill();
+
+        final EiderLanguageVisitor visitor = new EiderLanguageVisitor(verbose);
+        eiderParser.EiderContext tree;
+        try
+        {
+            parser.setTokenStream(tokens);
+            parser.removeErrorListeners();
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            tree = parser.eider();
+        }
+        catch (final ParseCancellationException e)
+        {
+            tokens.seek(0);
+            parser.setTokenStream(tokens);
+            parser.addErrorListener(ParserErrorListener.INSTANCE);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            tree = parser.eider();
+        }
+        visitor.visit(tree);
+        return visitor.getContext();
+    }
+}
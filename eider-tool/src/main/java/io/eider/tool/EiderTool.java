@@ -1,59 +1,84 @@
 package io.eider.tool;
 
-import io.eider.language.eiderLexer;
-import io.eider.language.eiderParser;
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
+import io.eider.javawriter.DirectoryEiderOutput;
+import io.eider.javawriter.EiderWriterOptions;
+import io.eider.javawriter.agrona.AgronaWriter;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
-public class EiderTool
+/**
+ * Generates Agrona flyweights from .eider files, producing the same code as the annotation processor.
+ */
+@Command(name = "eider", mixinStandardHelpOptions = true,
+    description = "Generates Agrona flyweights from .eider schema files.")
+public class EiderTool implements Callable<Integer>
 {
+    @Parameters(paramLabel = "SCHEMA", arity = "1..*",
+        description = ".eider files, or directories which are searched for .eider files.")
+    private List<Path> inputs;
 
-    private static final String SAMPLE = "syntax = \"eiderwire\";\n" +
-        "package io.eider;\n" +
-        "\n" +
-        "enum Corpus {\n" +
-        "    UNIVERSAL = 0;\n" +
-        "    WEB = 1;\n" +
-        "    IMAGES = 2;\n" +
-        "    LOCAL = 3;\n" +
-        "    NEWS = 4;\n" +
-        "    PRODUCTS = 5;\n" +
-        "    VIDEO = 6;\n" +
-        "}\n" +
-        "\n" +
-        "message SearchRequest {\n" +
-        "  string query = 1;\n" +
-        "  @repeated\n" +
-        "  int32 repeatedField = 2;\n" +
-        "  int32 thingMaBob = 3;\n" +
-        "  Corpus corpus = 4;\n" +
-        "}\n" +
-        "message Foobar {\n" +
-        "  int64 query = 1;\n" +
-        "  int32 page_number = 2;\n" +
-        "  int32 result_per_page = 3;\n" +
-        "  int16 corpus = 4;\n" +
-        "}";
-
-    public static void main(final String[] args) throws IOException
+    @Option(names = {"-o", "--output"}, required = true, description = "The source root to write generated code to.")
+    private Path output;
+
+    @Option(names = "--benchmarks", description = "Generate JMH benchmarks for each message.")
+    private boolean benchmarks;
+
+    @Option(names = "--counters", description = "Generate off-heap codec counters.")
+    private boolean counters;
+
+    @Option(names = "--broadcast", description = "Generate a broadcast publisher and subscriber.")
+    private boolean broadcast;
+
+    @Option(names = "--vector", description = "Use the Vector API in the column kernels of columnar records.")
+    private boolean vector;
+
+    @Option(names = {"-t", "--threads"}, description = "Files to parse or generate at once, the cores by default.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = {"-v", "--verbose"}, description = "Print each definition as it is parsed.")
+    private boolean verbose;
+
+    public static void main(final String[] args)
     {
-        final InputStream stream = new ByteArrayInputStream(SAMPLE.getBytes(StandardCharsets.UTF_8));
-        final CharStream fromStream = CharStreams.fromStream(stream);
-        final eiderLexer lexer = new eiderLexer(fromStream);
-        final CommonTokenStream tokens = new CommonTokenStream(lexer);
-        final eiderParser parser = new eiderParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(ParserErrorListener.INSTANCE);
-        final EiderLanguageVisitor visitor = new EiderLanguageVisitor();
-        visitor.visit(parser.eider());
-        System.out.println(visitor.getContext().getSyntax());
-        //parser.eider();
+        System.exit(new CommandLine(new EiderTool()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws IOException, InterruptedException
+    {
+        final List<Path> files = EiderSchemaGenerator.findSchemaFiles(inputs);
+        if (files.isEmpty())
+        {
+            System.err.println("no .eider files found in " + inputs);
+            return 1;
+        }
+
+        final Map<String, String> options = new HashMap<>();
+        options.put(EiderWriterOptions.BENCHMARKS, Boolean.toString(benchmarks));
+        options.put(EiderWriterOptions.COUNTERS, Boolean.toString(counters));
+        options.put(EiderWriterOptions.BROADCAST, Boolean.toString(broadcast));
+        options.put(EiderWriterOptions.VECTOR, Boolean.toString(vector));
 
+        try
+        {
+            new EiderSchemaGenerator(new AgronaWriter(options), new DirectoryEiderOutput(output), threads, verbose)
+                .generate(files);
+        }
+        catch (final EiderToolException e)
+        {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+        System.out.println("generated code for " + files.size() + " schema files into " + output);
+        return 0;
     }
 }
@@ -0,0 +1,14 @@
+package io.eider.tool;
+
+public class EiderToolException extends RuntimeException
+{
+    public EiderToolException(final String msg)
+    {
+        super(msg);
+    }
+
+    public EiderToolException(final String msg, final Throwable cause)
+    {
+        super(msg, cause);
+    }
+}
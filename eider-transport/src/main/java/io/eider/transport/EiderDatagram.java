@@ -0,0 +1,63 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+/**
+ * The layout of the datagrams of a sequenced UDP stream. Every datagram starts with the same 16 byte header:
+ *
+ * <pre>
+ * 16 bit - datagram type
+ * 16 bit - messages in the datagram (data only)
+ * 32 bit - session id of the publisher
+ * 64 bit - sequence number
+ * </pre>
+ *
+ * A data datagram carries its sequence number followed by one or more whole Eider messages, each framed by the
+ * length in its own header. A heartbeat carries the sequence number the publisher will use next, so a subscriber
+ * notices loss at the end of a burst. A NAK carries the first sequence number missing followed by a 32 bit count.
+ * An unrecoverable datagram has the same layout as a NAK, and answers one with the datagrams that are no longer in the
+ * retransmit ring, so the subscriber gives up on them rather than asking again. The session id is chosen at random
+ * by each publisher, so a publisher restarted on the same address, whose sequence numbers start again at zero, is
+ * told apart from the one before; NAKs carry the session id they ask about.
+ */
+public final class EiderDatagram
+{
+    public static final short TYPE_DATA = 1;
+    public static final short TYPE_HEARTBEAT = 2;
+    public static final short TYPE_NAK = 3;
+    public static final short TYPE_UNRECOVERABLE = 4;
+
+    public static final int TYPE_OFFSET = 0;
+    public static final int MESSAGE_COUNT_OFFSET = 2;
+    public static final int SESSION_ID_OFFSET = 4;
+    public static final int SEQUENCE_OFFSET = 8;
+    public static final int HEADER_LENGTH = 16;
+
+    public static final int NAK_COUNT_OFFSET = HEADER_LENGTH;
+    public static final int NAK_LENGTH = NAK_COUNT_OFFSET + Integer.BYTES;
+
+    /**
+     * Fits in an Ethernet MTU of 1500 bytes once IP and UDP headers are added, with room for IP options.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 1408;
+
+    private EiderDatagram()
+    {
+        //unused
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.DirectBuffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * Frames Eider messages on a byte stream. Every message with a header starts with the length of its fixed part, so
+ * no additional framing is needed; messages without a header cannot be sent over a transport. Messages with repeated
+ * records are longer than that, so they are sized by a {@link MessageSizer} which reads their record count.
+ */
+public final class EiderFraming
+{
+    /**
+     * The offset of the 32 bit message length within the header.
+     */
+    public static final int LENGTH_OFFSET = 0;
+
+    /**
+     * The offset of the 16 bit wire protocol id within the header.
+     */
+    public static final int PROTOCOL_ID_OFFSET = 6;
+
+    /**
+     * The length of the header without a hop trail, and so the shortest possible message.
+     */
+    public static final int HEADER_LENGTH = 10;
+
+    /**
+     * Sizes messages by the length in their header, which is their total length unless they have repeated records.
+     */
+    public static final MessageSizer HEADER_SIZER = EiderFraming::frameLength;
+
+    private EiderFraming()
+    {
+        //unused
+    }
+
+    /**
+     * Reads the total length of the message at the given offset from its header.
+     */
+    public static int frameLength(final DirectBuffer buffer, final int offset)
+    {
+        return buffer.getInt(offset + LENGTH_OFFSET, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Gives the total length of the message at an offset, which for specs with repeated records is the fixed part
+     * plus the records. It is only called once the fixed part of the message, as long as the length in its header,
+     * can be read, so it may read the record counts there.
+     */
+    @FunctionalInterface
+    public interface MessageSizer
+    {
+        int messageLength(DirectBuffer buffer, int offset);
+    }
+
+    /**
+     * Reads the wire protocol id of the message at the given offset from its header.
+     */
+    public static short protocolId(final DirectBuffer buffer, final int offset)
+    {
+        return buffer.getShort(offset + PROTOCOL_ID_OFFSET, ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The client end of a TCP connection to an {@link EiderTcpServer} or {@link EiderVirtualThreadTcpServer}. It
+ * connects in blocking mode and is then polled without blocking, so it can share a busy spinning thread with other
+ * work.
+ */
+public final class EiderTcpClient implements AutoCloseable
+{
+    private final EiderTcpConnection connection;
+
+    private EiderTcpClient(final EiderTcpConnection connection)
+    {
+        this.connection = connection;
+    }
+
+    /**
+     * @param handler handles inbound messages, typically the generated {@code EiderDispatcher}.
+     */
+    public static EiderTcpClient connect(final InetSocketAddress address, final MessageHandler handler)
+        throws IOException
+    {
+        return connect(address, handler, EiderTcpConnection.DEFAULT_BUFFER_LENGTH,
+            EiderTcpConnection.DEFAULT_BUFFER_LENGTH);
+    }
+
+    /**
+     * @param receiveBufferLength the longest inbound message.
+     * @param sendBufferLength    the outbound bytes that can be queued, a power of two.
+     */
+    public static EiderTcpClient connect(final InetSocketAddress address, final MessageHandler handler,
+        final int receiveBufferLength, final int sendBufferLength) throws IOException
+    {
+        return connect(address, handler, receiveBufferLength, sendBufferLength, EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param sizer sizes messages; specs with repeated records need one which reads their record counts.
+     */
+    public static EiderTcpClient connect(final InetSocketAddress address, final MessageHandler handler,
+        final int receiveBufferLength, final int sendBufferLength, final EiderFraming.MessageSizer sizer)
+        throws IOException
+    {
+        final SocketChannel channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        final EiderTcpConnection connection =
+            new EiderTcpConnection(channel, receiveBufferLength, sendBufferLength, sizer);
+        connection.handler(handler);
+        return new EiderTcpClient(connection);
+    }
+
+    /**
+     * Queues the whole message at the given offset, as sized by the client's sizer.
+     *
+     * @return false if the send buffer is full; poll and try again.
+     */
+    public boolean offer(final DirectBuffer buffer, final int offset)
+    {
+        return connection.offer(buffer, offset);
+    }
+
+    /**
+     * Writes queued messages and dispatches any complete inbound messages, without blocking.
+     *
+     * @return the amount of work done, zero when idle, or -1 if the server closed the connection.
+     */
+    public int poll() throws IOException
+    {
+        final int written = connection.hasPendingWrites() ? connection.flush() : 0;
+        final int messages = connection.read();
+        if (messages < 0)
+        {
+            return -1;
+        }
+        return messages + (written > 0 ? 1 : 0);
+    }
+
+    public EiderTcpConnection connection()
+    {
+        return connection;
+    }
+
+    @Override
+    public void close()
+    {
+        connection.close();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A TCP connection carrying Eider messages. Inbound messages are handed to the connection's handler, typically the
+ * generated {@code EiderDispatcher}; outbound messages are queued with {@link #offer} and written on the next
+ * {@link #flush}. A connection is used from one thread only: the polling thread of its server or client, or its own
+ * virtual thread.
+ */
+public final class EiderTcpConnection implements AutoCloseable
+{
+    /**
+     * The default size of the receive and send buffers of each connection.
+     */
+    public static final int DEFAULT_BUFFER_LENGTH = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final FrameReceiver receiver;
+    private final FrameSender sender;
+    private MessageHandler handler;
+
+    EiderTcpConnection(final SocketChannel channel, final int receiveBufferLength, final int sendBufferLength,
+        final EiderFraming.MessageSizer sizer) throws IOException
+    {
+        this.channel = channel;
+        this.receiver = new FrameReceiver(receiveBufferLength, sizer);
+        this.sender = new FrameSender(sendBufferLength, sizer);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    void handler(final MessageHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    /**
+     * Queues the whole message at the given offset, as sized by the connection's sizer.
+     *
+     * @return false if the send buffer is full; flush, or poll, and try again.
+     */
+    public boolean offer(final DirectBuffer buffer, final int offset)
+    {
+        return sender.offer(buffer, offset);
+    }
+
+    /**
+     * Reads once from the socket and dispatches every complete message.
+     *
+     * @return the number of messages dispatched, or -1 if the peer closed the connection.
+     */
+    public int read() throws IOException
+    {
+        return receiver.read(channel, handler);
+    }
+
+    /**
+     * Writes as much of the queued data as the socket accepts; on a blocking socket, all of it.
+     *
+     * @return the number of bytes written.
+     */
+    public int flush() throws IOException
+    {
+        return sender.flush(channel);
+    }
+
+    public boolean hasPendingWrites()
+    {
+        return sender.pendingBytes() > 0;
+    }
+
+    public SocketAddress remoteAddress() throws IOException
+    {
+        return channel.getRemoteAddress();
+    }
+
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    SocketChannel channel()
+    {
+        return channel;
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (final IOException e)
+        {
+            // nothing more can be done with the connection
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.MessageHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A TCP server driven by a single thread calling {@link #poll()}, which accepts connections, reads and dispatches
+ * inbound messages and writes queued outbound messages for every connection without blocking. The caller decides
+ * how to wait between polls, e.g. with an Agrona {@code IdleStrategy}.
+ */
+public final class EiderTcpServer implements AutoCloseable
+{
+    private final List<EiderTcpConnection> connections = new ArrayList<>();
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Function<EiderTcpConnection, MessageHandler> handlerFactory;
+    private final ErrorHandler errorHandler;
+    private final int receiveBufferLength;
+    private final int sendBufferLength;
+    private final EiderFraming.MessageSizer sizer;
+
+    /**
+     * @param handlerFactory creates the handler for the inbound messages of each new connection.
+     * @param errorHandler   told of errors on a connection, which is then closed.
+     */
+    public EiderTcpServer(final InetSocketAddress address,
+        final Function<EiderTcpConnection, MessageHandler> handlerFactory, final ErrorHandler errorHandler)
+        throws IOException
+    {
+        this(address, handlerFactory, errorHandler, EiderTcpConnection.DEFAULT_BUFFER_LENGTH,
+            EiderTcpConnection.DEFAULT_BUFFER_LENGTH);
+    }
+
+    /**
+     * @param receiveBufferLength the longest inbound message.
+     * @param sendBufferLength    the outbound bytes each connection can queue, a power of two.
+     */
+    public EiderTcpServer(final InetSocketAddress address,
+        final Function<EiderTcpConnection, MessageHandler> handlerFactory, final ErrorHandler errorHandler,
+        final int receiveBufferLength, final int sendBufferLength) throws IOException
+    {
+        this(address, handlerFactory, errorHandler, receiveBufferLength, sendBufferLength,
+            EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param sizer sizes messages; specs with repeated records need one which reads their record counts.
+     */
+    public EiderTcpServer(final InetSocketAddress address,
+        final Function<EiderTcpConnection, MessageHandler> handlerFactory, final ErrorHandler errorHandler,
+        final int receiveBufferLength, final int sendBufferLength, final EiderFraming.MessageSizer sizer)
+        throws IOException
+    {
+        this.sizer = sizer;
+        this.handlerFactory = handlerFactory;
+        this.errorHandler = errorHandler;
+        this.receiveBufferLength = receiveBufferLength;
+        this.sendBufferLength = sendBufferLength;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public InetSocketAddress localAddress() throws IOException
+    {
+        return (InetSocketAddress)serverChannel.getLocalAddress();
+    }
+
+    /**
+     * The open connections, in the order they were accepted.
+     */
+    public List<EiderTcpConnection> connections()
+    {
+        return Collections.unmodifiableList(connections);
+    }
+
+    /**
+     * Does any work that can be done without blocking.
+     *
+     * @return the amount of work done, zero when idle.
+     */
+    public int poll() throws IOException
+    {
+        int workCount = 0;
+        if (selector.selectNow() > 0)
+        {
+            final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext())
+            {
+                final SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isAcceptable())
+                {
+                    workCount += accept();
+                }
+                else if (key.isValid())
+                {
+                    workCount += service(key, (EiderTcpConnection)key.attachment());
+                }
+            }
+        }
+
+        // handlers queue replies while reading, so flush every connection rather than waiting for OP_WRITE
+        for (int i = connections.size() - 1; i >= 0; i--)
+        {
+            final EiderTcpConnection connection = connections.get(i);
+            if (connection.hasPendingWrites())
+            {
+                workCount += flush(connection);
+            }
+        }
+        return workCount;
+    }
+
+    private int accept() throws IOException
+    {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+        {
+            return 0;
+        }
+        channel.configureBlocking(false);
+        final EiderTcpConnection connection = new EiderTcpConnection(channel, receiveBufferLength, sendBufferLength,
+            sizer);
+        connection.handler(handlerFactory.apply(connection));
+        channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        return 1;
+    }
+
+    private int service(final SelectionKey key, final EiderTcpConnection connection)
+    {
+        try
+        {
+            int workCount = 0;
+            if (key.isReadable())
+            {
+                final int messages = connection.read();
+                if (messages < 0)
+                {
+                    disconnect(connection);
+                    return 1;
+                }
+                workCount += messages;
+            }
+            if (key.isWritable())
+            {
+                workCount += connection.flush();
+            }
+            return workCount;
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            errorHandler.onError(e);
+            disconnect(connection);
+            return 1;
+        }
+    }
+
+    private int flush(final EiderTcpConnection connection)
+    {
+        try
+        {
+            final int written = connection.flush();
+            final SelectionKey key = connection.channel().keyFor(selector);
+            // only wait for the socket to become writable while it is refusing data
+            key.interestOps(connection.hasPendingWrites() ?
+                SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            return written > 0 ? 1 : 0;
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            errorHandler.onError(e);
+            disconnect(connection);
+            return 1;
+        }
+    }
+
+    private void disconnect(final EiderTcpConnection connection)
+    {
+        connections.remove(connection);
+        connection.close();
+    }
+
+    @Override
+    public void close()
+    {
+        for (final EiderTcpConnection connection : connections)
+        {
+            connection.close();
+        }
+        connections.clear();
+        try
+        {
+            serverChannel.close();
+            selector.close();
+        }
+        catch (final IOException e)
+        {
+            errorHandler.onError(e);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes Eider messages as a sequenced stream of UDP datagrams to one or more {@link EiderUdpSubscriber}s.
+ * Messages offered are batched into a datagram until it is full or the publisher is polled. Every datagram sent is
+ * kept in an off-heap retransmit ring, from which the datagrams a subscriber reports missing in a NAK are sent again
+ * to that subscriber alone. Once the ring wraps the oldest datagrams can no longer be recovered, and a NAK for them
+ * is answered with an unrecoverable datagram so that the subscriber stops asking. Each publisher stamps its datagrams
+ * with a random session id, and ignores NAKs about another session. Not thread safe.
+ */
+public final class EiderUdpPublisher implements AutoCloseable
+{
+    public static final int DEFAULT_RETRANSMIT_DATAGRAMS = 1024;
+    public static final long DEFAULT_HEARTBEAT_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress[] destinations;
+    private final int maxDatagramLength;
+    private final long heartbeatIntervalNs;
+    private final EiderFraming.MessageSizer sizer;
+    private final UnsafeBuffer ring;
+    private final ByteBuffer ringView;
+    private final long[] slotSequences;
+    private final int[] slotLengths;
+    private final int mask;
+    private final ByteBuffer controlByteBuffer;
+    private final UnsafeBuffer controlBuffer;
+    private final int sessionId = new SplittableRandom().nextInt();
+    private long nextSequence;
+    private int batchOffset;
+    private int batchLength;
+    private int batchCount;
+    private long lastSendNs;
+    private long retransmitCount;
+    private long unrecoverableCount;
+
+    /**
+     * @param bindAddress  the local address, to which subscribers send NAKs.
+     * @param destinations the subscribers every datagram is sent to.
+     */
+    public EiderUdpPublisher(final InetSocketAddress bindAddress, final InetSocketAddress... destinations)
+        throws IOException
+    {
+        this(bindAddress, destinations, EiderDatagram.DEFAULT_MAX_LENGTH, DEFAULT_RETRANSMIT_DATAGRAMS,
+            DEFAULT_HEARTBEAT_INTERVAL_NS);
+    }
+
+    /**
+     * @param maxDatagramLength    the largest datagram sent, which limits the length of a message.
+     * @param retransmitDatagrams  the datagrams kept for retransmission, a power of two.
+     * @param heartbeatIntervalNs  how long the publisher may be idle before it sends a heartbeat.
+     */
+    public EiderUdpPublisher(final InetSocketAddress bindAddress, final InetSocketAddress[] destinations,
+        final int maxDatagramLength, final int retransmitDatagrams, final long heartbeatIntervalNs) throws IOException
+    {
+        this(bindAddress, destinations, maxDatagramLength, retransmitDatagrams, heartbeatIntervalNs,
+            EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param sizer gives the total length of a message offered, see {@link EiderFraming.MessageSizer}.
+     */
+    public EiderUdpPublisher(final InetSocketAddress bindAddress, final InetSocketAddress[] destinations,
+        final int maxDatagramLength, final int retransmitDatagrams, final long heartbeatIntervalNs,
+        final EiderFraming.MessageSizer sizer) throws IOException
+    {
+        if (!BitUtil.isPowerOfTwo(retransmitDatagrams))
+        {
+            throw new IllegalArgumentException("Retransmit datagrams must be a power of two: " + retransmitDatagrams);
+        }
+        this.destinations = destinations.clone();
+        this.maxDatagramLength = maxDatagramLength;
+        this.heartbeatIntervalNs = heartbeatIntervalNs;
+        this.sizer = sizer;
+        final ByteBuffer ringBuffer = ByteBuffer.allocateDirect(retransmitDatagrams * maxDatagramLength);
+        this.ring = new UnsafeBuffer(ringBuffer);
+        this.ringView = ringBuffer.duplicate();
+        this.slotSequences = new long[retransmitDatagrams];
+        this.slotLengths = new int[retransmitDatagrams];
+        this.mask = retransmitDatagrams - 1;
+        Arrays.fill(slotSequences, -1);
+        this.controlByteBuffer = ByteBuffer.allocateDirect(maxDatagramLength);
+        this.controlBuffer = new UnsafeBuffer(controlByteBuffer);
+        this.channel = DatagramChannel.open();
+        channel.bind(bindAddress);
+        channel.configureBlocking(false);
+        this.lastSendNs = System.nanoTime();
+    }
+
+    public InetSocketAddress localAddress() throws IOException
+    {
+        return (InetSocketAddress)channel.getLocalAddress();
+    }
+
+    /**
+     * Adds the message at the given offset to the current datagram, sized by the publisher's
+     * {@link EiderFraming.MessageSizer}. The datagram is sent first if the message does not fit in it.
+     *
+     * @throws IllegalArgumentException if the message is longer than a datagram can carry.
+     */
+    public void offer(final DirectBuffer buffer, final int offset) throws IOException
+    {
+        final int length = sizer.messageLength(buffer, offset);
+        if (length > maxDatagramLength - EiderDatagram.HEADER_LENGTH)
+        {
+            throw new IllegalArgumentException("Message of " + length + " bytes does not fit in a datagram of " +
+                maxDatagramLength);
+        }
+
+        if (batchLength + length > maxDatagramLength)
+        {
+            flush();
+        }
+        if (batchLength == 0)
+        {
+            batchOffset = slot(nextSequence) * maxDatagramLength;
+            batchLength = EiderDatagram.HEADER_LENGTH;
+            batchCount = 0;
+        }
+        ring.putBytes(batchOffset + batchLength, buffer, offset, length);
+        batchLength += length;
+        batchCount++;
+    }
+
+    /**
+     * Sends the current datagram, if any messages have been offered since the last one was sent.
+     *
+     * @return the number of datagrams sent.
+     */
+    public int flush() throws IOException
+    {
+        if (batchLength == 0)
+        {
+            return 0;
+        }
+
+        ring.putShort(batchOffset + EiderDatagram.TYPE_OFFSET, EiderDatagram.TYPE_DATA, ByteOrder.LITTLE_ENDIAN);
+        ring.putShort(batchOffset + EiderDatagram.MESSAGE_COUNT_OFFSET, (short)batchCount, ByteOrder.LITTLE_ENDIAN);
+        ring.putInt(batchOffset + EiderDatagram.SESSION_ID_OFFSET, sessionId, ByteOrder.LITTLE_ENDIAN);
+        ring.putLong(batchOffset + EiderDatagram.SEQUENCE_OFFSET, nextSequence, ByteOrder.LITTLE_ENDIAN);
+
+        final int slot = slot(nextSequence);
+        slotSequences[slot] = nextSequence;
+        slotLengths[slot] = batchLength;
+        for (final InetSocketAddress destination : destinations)
+        {
+            send(slot, destination);
+        }
+
+        nextSequence++;
+        batchLength = 0;
+        lastSendNs = System.nanoTime();
+        return 1;
+    }
+
+    /**
+     * Sends the current datagram, serves any NAKs received and sends a heartbeat if the publisher has been idle.
+     *
+     * @return the amount of work done, zero when idle.
+     */
+    public int poll() throws IOException
+    {
+        int workCount = flush();
+        SocketAddress from;
+        while ((from = receiveControl()) != null)
+        {
+            workCount += onControl(from);
+        }
+        if (System.nanoTime() - lastSendNs >= heartbeatIntervalNs)
+        {
+            heartbeat();
+            workCount++;
+        }
+        return workCount;
+    }
+
+    /**
+     * The session id stamped on every datagram, which tells this publisher apart from one restarted on its address.
+     */
+    public int sessionId()
+    {
+        return sessionId;
+    }
+
+    /**
+     * The sequence number of the next datagram to be sent.
+     */
+    public long nextSequence()
+    {
+        return nextSequence;
+    }
+
+    /**
+     * The number of datagrams sent again in reply to NAKs.
+     */
+    public long retransmitCount()
+    {
+        return retransmitCount;
+    }
+
+    /**
+     * The number of datagrams asked for in NAKs which were no longer in the retransmit ring.
+     */
+    public long unrecoverableCount()
+    {
+        return unrecoverableCount;
+    }
+
+    private SocketAddress receiveControl() throws IOException
+    {
+        controlByteBuffer.clear();
+        return channel.receive(controlByteBuffer);
+    }
+
+    private int onControl(final SocketAddress from) throws IOException
+    {
+        if (controlByteBuffer.position() < EiderDatagram.NAK_LENGTH ||
+            controlBuffer.getShort(EiderDatagram.TYPE_OFFSET, ByteOrder.LITTLE_ENDIAN) != EiderDatagram.TYPE_NAK ||
+            controlBuffer.getInt(EiderDatagram.SESSION_ID_OFFSET, ByteOrder.LITTLE_ENDIAN) != sessionId)
+        {
+            return 0;
+        }
+
+        final long fromSequence = controlBuffer.getLong(EiderDatagram.SEQUENCE_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        final long toSequence = Math.min(nextSequence,
+            fromSequence + controlBuffer.getInt(EiderDatagram.NAK_COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN));
+        // the ring holds the latest datagrams sent, so those before the oldest it holds were overwritten
+        final long oldestSequence = Math.max(0, nextSequence - slotSequences.length);
+        final long unrecoverableTo = Math.min(oldestSequence, toSequence);
+        int workCount = 0;
+        if (fromSequence < unrecoverableTo)
+        {
+            unrecoverable(from, fromSequence, unrecoverableTo - fromSequence);
+            workCount++;
+        }
+        for (long sequence = Math.max(fromSequence, oldestSequence); sequence < toSequence; sequence++)
+        {
+            final int slot = slot(sequence);
+            if (slotSequences[slot] == sequence)
+            {
+                send(slot, from);
+                retransmitCount++;
+                workCount++;
+            }
+        }
+        return workCount;
+    }
+
+    private void unrecoverable(final SocketAddress destination, final long fromSequence, final long count)
+        throws IOException
+    {
+        controlBuffer.putShort(EiderDatagram.TYPE_OFFSET, EiderDatagram.TYPE_UNRECOVERABLE, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putShort(EiderDatagram.MESSAGE_COUNT_OFFSET, (short)0, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putInt(EiderDatagram.SESSION_ID_OFFSET, sessionId, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putLong(EiderDatagram.SEQUENCE_OFFSET, fromSequence, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putInt(EiderDatagram.NAK_COUNT_OFFSET, (int)count, ByteOrder.LITTLE_ENDIAN);
+        controlByteBuffer.limit(EiderDatagram.NAK_LENGTH).position(0);
+        channel.send(controlByteBuffer, destination);
+        unrecoverableCount += count;
+    }
+
+    private void heartbeat() throws IOException
+    {
+        controlBuffer.putShort(EiderDatagram.TYPE_OFFSET, EiderDatagram.TYPE_HEARTBEAT, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putShort(EiderDatagram.MESSAGE_COUNT_OFFSET, (short)0, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putInt(EiderDatagram.SESSION_ID_OFFSET, sessionId, ByteOrder.LITTLE_ENDIAN);
+        controlBuffer.putLong(EiderDatagram.SEQUENCE_OFFSET, nextSequence, ByteOrder.LITTLE_ENDIAN);
+        for (final InetSocketAddress destination : destinations)
+        {
+            controlByteBuffer.limit(EiderDatagram.HEADER_LENGTH).position(0);
+            channel.send(controlByteBuffer, destination);
+        }
+        lastSendNs = System.nanoTime();
+    }
+
+    private void send(final int slot, final SocketAddress destination) throws IOException
+    {
+        final int offset = slot * maxDatagramLength;
+        ringView.limit(offset + slotLengths[slot]).position(offset);
+        // a datagram the socket has no room for is dropped like any other, and recovered by a NAK
+        channel.send(ringView, destination);
+    }
+
+    private int slot(final long sequence)
+    {
+        return (int)sequence & mask;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the sequenced UDP stream of an {@link EiderUdpPublisher} and hands its messages, in order, to a
+ * {@link MessageHandler}, usually the generated {@code EiderDispatcher}. Datagrams arriving after a gap are held in
+ * an off-heap reorder window while the missing ones are requested with NAKs, repeated until they arrive. When a
+ * datagram arrives which no longer fits in the window, or the publisher answers a NAK saying the datagrams have left
+ * its retransmit ring, the missing datagrams are given up on and reported to the {@link LossHandler}. A subscriber
+ * joins the stream at the first datagram or heartbeat it receives, and from then on ignores datagrams from any other
+ * address. A datagram from the same address with another session id comes from a restarted publisher: the gaps left
+ * in the old stream are given up on and the subscriber joins the new one. Not thread safe.
+ */
+public final class EiderUdpSubscriber implements AutoCloseable
+{
+    public static final int DEFAULT_WINDOW_DATAGRAMS = 1024;
+    public static final long DEFAULT_NAK_DELAY_NS = TimeUnit.MICROSECONDS.toNanos(250);
+    private static final int MAX_NAKS_PER_POLL = 16;
+
+    /**
+     * Told of datagrams which could not be recovered, and so of the messages within them which were never
+     * delivered.
+     */
+    @FunctionalInterface
+    public interface LossHandler
+    {
+        void onLoss(long fromSequence, long count);
+    }
+
+    private final DatagramChannel channel;
+    private final MessageHandler handler;
+    private final LossHandler lossHandler;
+    private final EiderFraming.MessageSizer sizer;
+    private final long nakDelayNs;
+    private final ByteBuffer receiveByteBuffer;
+    private final UnsafeBuffer receiveBuffer;
+    private final UnsafeBuffer window;
+    private final long[] windowSequences;
+    private final int[] windowLengths;
+    private final int maxDatagramLength;
+    private final int mask;
+    private final ByteBuffer nakByteBuffer = ByteBuffer.allocateDirect(EiderDatagram.NAK_LENGTH);
+    private final UnsafeBuffer nakBuffer = new UnsafeBuffer(nakByteBuffer);
+    private SocketAddress publisherAddress;
+    private int sessionId;
+    private long nextSequence = -1;
+    private long highestSequence = -1;
+    private long lastNakNs;
+    private long nakCount;
+    private long lossCount;
+    private long duplicateCount;
+    private long foreignCount;
+    private long restartCount;
+    private SplittableRandom lossRandom;
+    private double lossRate;
+    private long droppedCount;
+
+    public EiderUdpSubscriber(final InetSocketAddress bindAddress, final MessageHandler handler,
+        final LossHandler lossHandler) throws IOException
+    {
+        this(bindAddress, handler, lossHandler, EiderDatagram.DEFAULT_MAX_LENGTH, DEFAULT_WINDOW_DATAGRAMS,
+            DEFAULT_NAK_DELAY_NS);
+    }
+
+    /**
+     * @param maxDatagramLength the largest datagram the publisher sends.
+     * @param windowDatagrams   the datagrams that can be held while waiting for a gap to fill, a power of two; no
+     *                          larger than the retransmit ring of the publisher, which cannot resend older ones.
+     * @param nakDelayNs        how long to wait for a missing datagram before asking for it again.
+     */
+    public EiderUdpSubscriber(final InetSocketAddress bindAddress, final MessageHandler handler,
+        final LossHandler lossHandler, final int maxDatagramLength, final int windowDatagrams, final long nakDelayNs)
+        throws IOException
+    {
+        this(bindAddress, handler, lossHandler, maxDatagramLength, windowDatagrams, nakDelayNs,
+            EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param sizer gives the total length of each message received, see {@link EiderFraming.MessageSizer}.
+     */
+    public EiderUdpSubscriber(final InetSocketAddress bindAddress, final MessageHandler handler,
+        final LossHandler lossHandler, final int maxDatagramLength, final int windowDatagrams, final long nakDelayNs,
+        final EiderFraming.MessageSizer sizer) throws IOException
+    {
+        if (!BitUtil.isPowerOfTwo(windowDatagrams))
+        {
+            throw new IllegalArgumentException("Window datagrams must be a power of two: " + windowDatagrams);
+        }
+        this.handler = handler;
+        this.lossHandler = lossHandler;
+        this.sizer = sizer;
+        this.nakDelayNs = nakDelayNs;
+        this.maxDatagramLength = maxDatagramLength;
+        this.receiveByteBuffer = ByteBuffer.allocateDirect(maxDatagramLength);
+        this.receiveBuffer = new UnsafeBuffer(receiveByteBuffer);
+        this.window = new UnsafeBuffer(ByteBuffer.allocateDirect(windowDatagrams * maxDatagramLength));
+        this.windowSequences = new long[windowDatagrams];
+        this.windowLengths = new int[windowDatagrams];
+        this.mask = windowDatagrams - 1;
+        Arrays.fill(windowSequences, -1);
+        this.channel = DatagramChannel.open();
+        channel.bind(bindAddress);
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Drops the given fraction of the datagrams received, retransmissions included, to test recovery.
+     */
+    public void injectLoss(final double rate, final long seed)
+    {
+        this.lossRate = rate;
+        this.lossRandom = new SplittableRandom(seed);
+    }
+
+    public InetSocketAddress localAddress() throws IOException
+    {
+        return (InetSocketAddress)channel.getLocalAddress();
+    }
+
+    /**
+     * Delivers the messages of every datagram received, in order, and sends NAKs while gaps are waiting to fill.
+     *
+     * @return the amount of work done, zero when idle.
+     */
+    public int poll() throws IOException
+    {
+        int workCount = 0;
+        SocketAddress from;
+        while ((from = receive()) != null)
+        {
+            if (lossRate > 0 && lossRandom.nextDouble() < lossRate)
+            {
+                droppedCount++;
+                continue;
+            }
+            if (publisherAddress != null && !publisherAddress.equals(from))
+            {
+                foreignCount++;
+                continue;
+            }
+            workCount += onDatagram(from, receiveByteBuffer.position());
+        }
+
+        if (highestSequence >= nextSequence && nextSequence >= 0)
+        {
+            workCount += nak();
+        }
+        return workCount;
+    }
+
+    /**
+     * The sequence number of the next datagram to deliver, or -1 before joining the stream.
+     */
+    public long nextSequence()
+    {
+        return nextSequence;
+    }
+
+    public long nakCount()
+    {
+        return nakCount;
+    }
+
+    /**
+     * The number of datagrams given up on.
+     */
+    public long lossCount()
+    {
+        return lossCount;
+    }
+
+    public long duplicateCount()
+    {
+        return duplicateCount;
+    }
+
+    /**
+     * The number of datagrams ignored because they came from an address other than the publisher's.
+     */
+    public long foreignCount()
+    {
+        return foreignCount;
+    }
+
+    /**
+     * The number of times the publisher was found to have restarted, and the stream joined again.
+     */
+    public long restartCount()
+    {
+        return restartCount;
+    }
+
+    /**
+     * The number of datagrams dropped by {@link #injectLoss}.
+     */
+    public long droppedCount()
+    {
+        return droppedCount;
+    }
+
+    private SocketAddress receive() throws IOException
+    {
+        receiveByteBuffer.clear();
+        return channel.receive(receiveByteBuffer);
+    }
+
+    private int onDatagram(final SocketAddress from, final int length)
+    {
+        if (length < EiderDatagram.HEADER_LENGTH)
+        {
+            return 0;
+        }
+        final short type = receiveBuffer.getShort(EiderDatagram.TYPE_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        final int session = receiveBuffer.getInt(EiderDatagram.SESSION_ID_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        final long sequence = receiveBuffer.getLong(EiderDatagram.SEQUENCE_OFFSET, ByteOrder.LITTLE_ENDIAN);
+
+        if (type == EiderDatagram.TYPE_UNRECOVERABLE)
+        {
+            return length < EiderDatagram.NAK_LENGTH || session != sessionId ? 0 : onUnrecoverable(sequence,
+                receiveBuffer.getInt(EiderDatagram.NAK_COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN));
+        }
+        final boolean isData = type == EiderDatagram.TYPE_DATA;
+        if (isData ? !isWellFormed(receiveBuffer, 0, length) : type != EiderDatagram.TYPE_HEARTBEAT)
+        {
+            return 0;
+        }
+
+        if (nextSequence >= 0 && session != sessionId)
+        {
+            restart();
+        }
+        if (nextSequence < 0)
+        {
+            publisherAddress = from;
+            sessionId = session;
+            nextSequence = sequence;
+        }
+        if (!isData)
+        {
+            // the heartbeat carries the next sequence to be sent, so anything before it should have arrived
+            highestSequence = Math.max(highestSequence, sequence - 1);
+            return 1;
+        }
+        highestSequence = Math.max(highestSequence, sequence);
+
+        if (sequence < nextSequence || windowSequences[slot(sequence)] == sequence)
+        {
+            duplicateCount++;
+            return 1;
+        }
+        if (sequence == nextSequence)
+        {
+            deliver(receiveBuffer, 0);
+            nextSequence++;
+            drainWindow();
+            return 1;
+        }
+
+        if (sequence - nextSequence >= windowSequences.length)
+        {
+            skipTo(sequence - windowSequences.length + 1);
+        }
+        final int slot = slot(sequence);
+        window.putBytes(slot * maxDatagramLength, receiveBuffer, 0, length);
+        windowSequences[slot] = sequence;
+        windowLengths[slot] = length;
+        drainWindow();
+        return 1;
+    }
+
+    private int onUnrecoverable(final long fromSequence, final int count)
+    {
+        final long toSequence = fromSequence + count;
+        if (nextSequence < 0 || count <= 0 || toSequence <= nextSequence)
+        {
+            return 0;
+        }
+        // the publisher no longer has these, so deliver whatever arrived among them and give up on the rest
+        highestSequence = Math.max(highestSequence, toSequence - 1);
+        skipTo(toSequence);
+        drainWindow();
+        return 1;
+    }
+
+    private void restart()
+    {
+        // the old publisher is gone, so deliver what arrived of its stream and give up on the rest
+        if (highestSequence >= nextSequence)
+        {
+            skipTo(highestSequence + 1);
+        }
+        nextSequence = -1;
+        highestSequence = -1;
+        restartCount++;
+    }
+
+    private void drainWindow()
+    {
+        int slot = slot(nextSequence);
+        while (windowSequences[slot] == nextSequence)
+        {
+            deliver(window, slot * maxDatagramLength);
+            windowSequences[slot] = -1;
+            nextSequence++;
+            slot = slot(nextSequence);
+        }
+    }
+
+    private void skipTo(final long sequence)
+    {
+        // only the window can hold datagrams, so walk its slots at most and give up on the rest in one step
+        final long walkTo = Math.min(sequence, nextSequence + windowSequences.length);
+        long lostFrom = -1;
+        while (nextSequence < walkTo)
+        {
+            final int slot = slot(nextSequence);
+            if (windowSequences[slot] == nextSequence)
+            {
+                reportLoss(lostFrom);
+                lostFrom = -1;
+                deliver(window, slot * maxDatagramLength);
+                windowSequences[slot] = -1;
+            }
+            else if (lostFrom < 0)
+            {
+                lostFrom = nextSequence;
+            }
+            nextSequence++;
+        }
+        if (nextSequence < sequence && lostFrom < 0)
+        {
+            lostFrom = nextSequence;
+        }
+        nextSequence = sequence;
+        reportLoss(lostFrom);
+    }
+
+    private void reportLoss(final long lostFrom)
+    {
+        if (lostFrom >= 0)
+        {
+            lossCount += nextSequence - lostFrom;
+            lossHandler.onLoss(lostFrom, nextSequence - lostFrom);
+        }
+    }
+
+    private void deliver(final UnsafeBuffer buffer, final int offset)
+    {
+        final int count = buffer.getShort(offset + EiderDatagram.MESSAGE_COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        int position = offset + EiderDatagram.HEADER_LENGTH;
+        for (int i = 0; i < count; i++)
+        {
+            final int length = sizer.messageLength(buffer, position);
+            handler.onMessage(EiderFraming.protocolId(buffer, position), buffer, position, length);
+            position += length;
+        }
+    }
+
+    private int nak() throws IOException
+    {
+        final long nowNs = System.nanoTime();
+        if (nowNs - lastNakNs < nakDelayNs)
+        {
+            return 0;
+        }
+
+        // ask for every run of missing datagrams in the window, each in its own NAK
+        final long lastSequence = Math.min(highestSequence, nextSequence + windowSequences.length - 1);
+        long sequence = nextSequence;
+        int naks = 0;
+        while (sequence <= lastSequence && naks < MAX_NAKS_PER_POLL)
+        {
+            if (windowSequences[slot(sequence)] == sequence)
+            {
+                sequence++;
+                continue;
+            }
+            final long missingFrom = sequence;
+            while (sequence <= lastSequence && windowSequences[slot(sequence)] != sequence)
+            {
+                sequence++;
+            }
+            sendNak(missingFrom, (int)(sequence - missingFrom));
+            naks++;
+        }
+        lastNakNs = nowNs;
+        nakCount += naks;
+        return naks;
+    }
+
+    private void sendNak(final long fromSequence, final int count) throws IOException
+    {
+        nakBuffer.putShort(EiderDatagram.TYPE_OFFSET, EiderDatagram.TYPE_NAK, ByteOrder.LITTLE_ENDIAN);
+        nakBuffer.putShort(EiderDatagram.MESSAGE_COUNT_OFFSET, (short)0, ByteOrder.LITTLE_ENDIAN);
+        nakBuffer.putInt(EiderDatagram.SESSION_ID_OFFSET, sessionId, ByteOrder.LITTLE_ENDIAN);
+        nakBuffer.putLong(EiderDatagram.SEQUENCE_OFFSET, fromSequence, ByteOrder.LITTLE_ENDIAN);
+        nakBuffer.putInt(EiderDatagram.NAK_COUNT_OFFSET, count, ByteOrder.LITTLE_ENDIAN);
+        nakByteBuffer.clear();
+        channel.send(nakByteBuffer, publisherAddress);
+    }
+
+    private boolean isWellFormed(final DirectBuffer buffer, final int offset, final int length)
+    {
+        final int count = buffer.getShort(offset + EiderDatagram.MESSAGE_COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        int position = offset + EiderDatagram.HEADER_LENGTH;
+        for (int i = 0; i < count; i++)
+        {
+            final int remaining = offset + length - position;
+            if (remaining < EiderFraming.HEADER_LENGTH)
+            {
+                return false;
+            }
+            // the sizer may read past the header, so only once the fixed part is known to be there
+            final int fixedLength = EiderFraming.frameLength(buffer, position);
+            if (fixedLength < EiderFraming.HEADER_LENGTH || fixedLength > remaining)
+            {
+                return false;
+            }
+            final int messageLength = sizer.messageLength(buffer, position);
+            if (messageLength < fixedLength || messageLength > remaining)
+            {
+                return false;
+            }
+            position += messageLength;
+        }
+        return true;
+    }
+
+    private int slot(final long sequence)
+    {
+        return (int)sequence & mask;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.ErrorHandler;
+import org.agrona.concurrent.MessageHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A TCP server giving every connection its own virtual thread, which blocks reading the socket, dispatches inbound
+ * messages and then writes whatever the handler queued. Simpler to use than {@link EiderTcpServer} when handlers
+ * block, at the cost of some latency as virtual threads are scheduled. Messages may only be offered to a connection
+ * from its own handler.
+ */
+public final class EiderVirtualThreadTcpServer implements AutoCloseable
+{
+    private final Set<EiderTcpConnection> connections = ConcurrentHashMap.newKeySet();
+    private final ServerSocketChannel serverChannel;
+    private final Function<EiderTcpConnection, MessageHandler> handlerFactory;
+    private final ErrorHandler errorHandler;
+    private final int receiveBufferLength;
+    private final int sendBufferLength;
+    private final EiderFraming.MessageSizer sizer;
+    private volatile boolean running = true;
+
+    /**
+     * @param handlerFactory creates the handler for the inbound messages of each new connection.
+     * @param errorHandler   told of errors on a connection, which is then closed.
+     */
+    public EiderVirtualThreadTcpServer(final InetSocketAddress address,
+        final Function<EiderTcpConnection, MessageHandler> handlerFactory, final ErrorHandler errorHandler)
+        throws IOException
+    {
+        this(address, handlerFactory, errorHandler, EiderTcpConnection.DEFAULT_BUFFER_LENGTH,
+            EiderTcpConnection.DEFAULT_BUFFER_LENGTH);
+    }
+
+    /**
+     * @param receiveBufferLength the longest inbound message.
+     * @param sendBufferLength    the outbound bytes each connection can queue, a power of two.
+     */
+    public EiderVirtualThreadTcpServer(final InetSocketAddress address,
+        final Function<EiderTcpConnection, MessageHandler> handlerFactory, final ErrorHandler errorHandler,
+        final int receiveBufferLength, final int sendBufferLength) throws IOException
+    {
+        this(address, handlerFactory, errorHandler, receiveBufferLength, sendBufferLength,
+            EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param sizer sizes messages; specs with repeated records need one which reads their record counts.
+     */
+    public EiderVirtualThreadTcpServer(final InetSocketAddress address,
+        final Function<EiderTcpConnection, MessageHandler> handlerFactory, final ErrorHandler errorHandler,
+        final int receiveBufferLength, final int sendBufferLength, final EiderFraming.MessageSizer sizer)
+        throws IOException
+    {
+        this.sizer = sizer;
+        this.handlerFactory = handlerFactory;
+        this.errorHandler = errorHandler;
+        this.receiveBufferLength = receiveBufferLength;
+        this.sendBufferLength = sendBufferLength;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        Thread.ofVirtual().name("eider-tcp-acceptor").start(this::accept);
+    }
+
+    public InetSocketAddress localAddress() throws IOException
+    {
+        return (InetSocketAddress)serverChannel.getLocalAddress();
+    }
+
+    public int connectionCount()
+    {
+        return connections.size();
+    }
+
+    private void accept()
+    {
+        while (running)
+        {
+            try
+            {
+                final SocketChannel channel = serverChannel.accept();
+                final EiderTcpConnection connection =
+                    new EiderTcpConnection(channel, receiveBufferLength, sendBufferLength, sizer);
+                connection.handler(handlerFactory.apply(connection));
+                connections.add(connection);
+                if (!running)
+                {
+                    // closed while accepting, after the open connections were closed
+                    connection.close();
+                    return;
+                }
+                Thread.ofVirtual().name("eider-tcp-" + channel.getRemoteAddress()).start(() -> serve(connection));
+            }
+            catch (final ClosedChannelException e)
+            {
+                return;
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                errorHandler.onError(e);
+            }
+        }
+    }
+
+    private void serve(final EiderTcpConnection connection)
+    {
+        try
+        {
+            while (connection.read() >= 0)
+            {
+                // the socket is blocking, so a single flush writes everything queued
+                connection.flush();
+            }
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            if (running)
+            {
+                errorHandler.onError(e);
+            }
+        }
+        finally
+        {
+            connections.remove(connection);
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        running = false;
+        try
+        {
+            serverChannel.close();
+        }
+        catch (final IOException e)
+        {
+            errorHandler.onError(e);
+        }
+        for (final EiderTcpConnection connection : connections)
+        {
+            connection.close();
+        }
+    }
+}
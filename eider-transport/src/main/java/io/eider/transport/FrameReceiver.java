@@ -0,0 +1,133 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads a byte stream into an off-heap buffer and hands each complete message to a {@link MessageHandler} where it
+ * lies, so messages are decoded straight from the bytes the channel read. A partial message stays in place and the
+ * next read appends the rest of it; only when it would not fit before the end of the buffer are its bytes moved to
+ * the start. Not thread safe.
+ */
+public final class FrameReceiver
+{
+    private final ByteBuffer byteBuffer;
+    private final UnsafeBuffer buffer;
+    private final EiderFraming.MessageSizer sizer;
+    private int readPosition;
+
+    /**
+     * @param capacity the size of the buffer, which is also the longest message that can be received.
+     */
+    public FrameReceiver(final int capacity)
+    {
+        this(capacity, EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param capacity the size of the buffer, which is also the longest message that can be received.
+     * @param sizer    sizes each message once its fixed part has been read.
+     */
+    public FrameReceiver(final int capacity, final EiderFraming.MessageSizer sizer)
+    {
+        this.sizer = sizer;
+        this.byteBuffer = ByteBuffer.allocateDirect(capacity);
+        this.buffer = new UnsafeBuffer(byteBuffer);
+    }
+
+    /**
+     * Reads once from the channel and dispatches every message which is then complete. The wire protocol id is
+     * passed to the handler as the message type id.
+     *
+     * @return the number of messages dispatched, or -1 if the channel has reached the end of the stream.
+     * @throws EiderTransportException if a message length is not valid, as the stream can no longer be framed.
+     */
+    public int read(final ReadableByteChannel channel, final MessageHandler handler) throws IOException
+    {
+        if (channel.read(byteBuffer) < 0)
+        {
+            return -1;
+        }
+
+        final int writePosition = byteBuffer.position();
+        int messages = 0;
+        int required = Integer.BYTES;
+        while (writePosition - readPosition >= Integer.BYTES)
+        {
+            final int fixedLength = EiderFraming.frameLength(buffer, readPosition);
+            if (fixedLength < EiderFraming.HEADER_LENGTH || fixedLength > buffer.capacity())
+            {
+                throw invalidLength(fixedLength);
+            }
+            if (writePosition - readPosition < fixedLength)
+            {
+                required = fixedLength;
+                break;
+            }
+
+            // the fixed part holds any record count, so the whole message can be sized now
+            final int length = sizer.messageLength(buffer, readPosition);
+            if (length < fixedLength || length > buffer.capacity())
+            {
+                throw invalidLength(length);
+            }
+            if (writePosition - readPosition < length)
+            {
+                required = length;
+                break;
+            }
+
+            handler.onMessage(EiderFraming.protocolId(buffer, readPosition), buffer, readPosition, length);
+            readPosition += length;
+            messages++;
+        }
+
+        if (readPosition == writePosition)
+        {
+            byteBuffer.clear();
+            readPosition = 0;
+        }
+        else if (buffer.capacity() - readPosition < required)
+        {
+            byteBuffer.limit(writePosition).position(readPosition);
+            byteBuffer.compact();
+            readPosition = 0;
+        }
+        return messages;
+    }
+
+    private EiderTransportException invalidLength(final int length)
+    {
+        return new EiderTransportException("Invalid message length " + length + ", the buffer holds " +
+            buffer.capacity() + " bytes");
+    }
+
+    /**
+     * The number of bytes of a partial message waiting for the rest of it.
+     */
+    public int pendingBytes()
+    {
+        return byteBuffer.position() - readPosition;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package io.eider.transport;
+
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Queues outbound messages in an off-heap ring and writes them to a channel in as few calls as possible. When the
+ * queued bytes wrap around the end of the ring, both parts are written in a single gathering write rather than
+ * being copied together first. Not thread safe.
+ */
+public final class FrameSender
+{
+    private final ByteBuffer[] segments = new ByteBuffer[2];
+    private final UnsafeBuffer buffer;
+    private final EiderFraming.MessageSizer sizer;
+    private final int mask;
+    private long head;
+    private long tail;
+
+    /**
+     * @param capacity the size of the ring, a power of two, which limits the bytes queued but not yet written.
+     */
+    public FrameSender(final int capacity)
+    {
+        this(capacity, EiderFraming.HEADER_SIZER);
+    }
+
+    /**
+     * @param capacity the size of the ring, a power of two, which limits the bytes queued but not yet written.
+     * @param sizer    sizes the messages offered without a length.
+     */
+    public FrameSender(final int capacity, final EiderFraming.MessageSizer sizer)
+    {
+        if (!BitUtil.isPowerOfTwo(capacity))
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(capacity);
+        this.buffer = new UnsafeBuffer(byteBuffer);
+        this.sizer = sizer;
+        this.mask = capacity - 1;
+        this.segments[0] = byteBuffer.duplicate();
+        this.segments[1] = byteBuffer.duplicate();
+    }
+
+    /**
+     * Queues the whole message at the given offset, as sized by the sizer.
+     *
+     * @return false if there is not enough room, in which case nothing is queued and the caller should flush.
+     */
+    public boolean offer(final DirectBuffer source, final int offset)
+    {
+        return offer(source, offset, sizer.messageLength(source, offset));
+    }
+
+    /**
+     * Queues length bytes at the given offset, which must be one or more whole messages.
+     *
+     * @return false if there is not enough room, in which case nothing is queued and the caller should flush.
+     */
+    public boolean offer(final DirectBuffer source, final int offset, final int length)
+    {
+        if (buffer.capacity() - (tail - head) < length)
+        {
+            return false;
+        }
+
+        final int index = (int)tail & mask;
+        final int toEnd = Math.min(length, buffer.capacity() - index);
+        buffer.putBytes(index, source, offset, toEnd);
+        if (toEnd < length)
+        {
+            buffer.putBytes(0, source, offset + toEnd, length - toEnd);
+        }
+        tail += length;
+        return true;
+    }
+
+    /**
+     * Writes as many of the queued bytes as the channel accepts.
+     *
+     * @return the number of bytes written.
+     */
+    public int flush(final GatheringByteChannel channel) throws IOException
+    {
+        final int pending = (int)(tail - head);
+        if (pending == 0)
+        {
+            return 0;
+        }
+
+        final int index = (int)head & mask;
+        final int toEnd = Math.min(pending, buffer.capacity() - index);
+        segments[0].limit(index + toEnd).position(index);
+
+        final long written;
+        if (toEnd < pending)
+        {
+            segments[1].limit(pending - toEnd).position(0);
+            written = channel.write(segments, 0, 2);
+        }
+        else
+        {
+            written = channel.write(segments[0]);
+        }
+        head += written;
+        return (int)written;
+    }
+
+    /**
+     * The number of bytes queued but not yet written.
+     */
+    public int pendingBytes()
+    {
+        return (int)(tail - head);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.transport;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EiderUdpStreamTest
+{
+    private static final short PROTOCOL_ID = 7;
+    private static final int COUNT_OFFSET = 12;
+    private static final int ID_OFFSET = 16;
+    private static final int FIXED_LENGTH = 24;
+    private static final int RECORD_LENGTH = Long.BYTES;
+    private static final EiderFraming.MessageSizer SIZER = (buffer, offset) ->
+        FIXED_LENGTH + buffer.getInt(offset + COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN) * RECORD_LENGTH;
+    private static final long INTERVAL_NS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long DRAIN_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(20);
+
+    private final UnsafeBuffer message = new UnsafeBuffer(new byte[256]);
+    private final List<Long> received = new ArrayList<>();
+    private final List<long[]> losses = new ArrayList<>();
+    private long lost;
+
+    @Test
+    @Timeout(60)
+    void deliversEveryMessageInOrderDespiteLoss() throws IOException
+    {
+        final int messages = 20_000;
+        try (EiderUdpSubscriber subscriber = subscriber(1024);
+            EiderUdpPublisher publisher = publisher(subscriber, 1024))
+        {
+            subscriber.injectLoss(0.1, 42L);
+            for (int i = 0; i < messages; i++)
+            {
+                encode(i, i % 4);
+                publisher.offer(message, 0);
+                if (i % 16 == 0)
+                {
+                    publisher.poll();
+                    subscriber.poll();
+                }
+            }
+            drain(publisher, subscriber);
+
+            assertTrue(subscriber.droppedCount() > 0);
+            assertTrue(publisher.retransmitCount() > 0);
+            assertEquals(0, subscriber.lossCount());
+            assertEquals(0, lost);
+            assertEquals(messages, received.size());
+            for (int i = 0; i < messages; i++)
+            {
+                assertEquals(i, received.get(i).longValue());
+            }
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void givesUpOnDatagramsNoLongerInTheRing() throws IOException
+    {
+        // one message per datagram, all sent before the subscriber reads any, so most gaps have left the small ring
+        final int datagrams = 256;
+        try (EiderUdpSubscriber subscriber = subscriber(datagrams);
+            EiderUdpPublisher publisher = publisher(subscriber, 4))
+        {
+            subscriber.injectLoss(0.2, 7L);
+            for (int i = 0; i < datagrams; i++)
+            {
+                encode(i, 1);
+                publisher.offer(message, 0);
+                publisher.flush();
+            }
+            drain(publisher, subscriber);
+
+            assertEquals(publisher.nextSequence(), subscriber.nextSequence());
+            assertTrue(publisher.unrecoverableCount() > 0);
+            assertTrue(lost > 0);
+            assertEquals(lost, subscriber.lossCount());
+            assertEquals(datagrams, received.size() + lost);
+            for (int i = 1; i < received.size(); i++)
+            {
+                assertTrue(received.get(i) > received.get(i - 1));
+            }
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void skipsFarAheadInOneStep() throws IOException
+    {
+        final int windowDatagrams = 16;
+        final long farAhead = 1L << 40;
+        try (EiderUdpSubscriber subscriber = subscriber(windowDatagrams);
+            DatagramChannel publisher = DatagramChannel.open())
+        {
+            sendData(publisher, subscriber, 1, 0);
+            sendData(publisher, subscriber, 1, 1);
+            sendData(publisher, subscriber, 1, farAhead);
+            pollUntil(subscriber, () -> !losses.isEmpty());
+
+            // the datagrams the window cannot hold are given up on together, not walked one by one
+            assertEquals(2, received.size());
+            assertEquals(1, losses.size());
+            assertEquals(2, losses.get(0)[0]);
+            assertEquals(farAhead - windowDatagrams - 1, losses.get(0)[1]);
+            assertEquals(farAhead - windowDatagrams + 1, subscriber.nextSequence());
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void ignoresDatagramsFromOtherSenders() throws IOException
+    {
+        try (EiderUdpSubscriber subscriber = subscriber(16);
+            DatagramChannel publisher = DatagramChannel.open();
+            DatagramChannel stranger = DatagramChannel.open())
+        {
+            sendData(publisher, subscriber, 1, 0);
+            sendData(stranger, subscriber, 1, 1);
+            sendData(stranger, subscriber, 2, 0);
+            sendData(publisher, subscriber, 1, 1);
+            pollUntil(subscriber, () -> received.size() == 2 && subscriber.foreignCount() == 2);
+
+            assertEquals(List.of(0L, 1L), received);
+            assertEquals(2, subscriber.foreignCount());
+            assertEquals(0, subscriber.restartCount());
+            assertEquals(2, subscriber.nextSequence());
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void joinsTheStreamOfARestartedPublisher() throws IOException
+    {
+        try (EiderUdpSubscriber subscriber = subscriber(16);
+            DatagramChannel publisher = DatagramChannel.open())
+        {
+            sendData(publisher, subscriber, 1, 0);
+            sendData(publisher, subscriber, 1, 1);
+            sendData(publisher, subscriber, 1, 3);
+            // the restarted publisher numbers its datagrams from zero again under a new session
+            sendData(publisher, subscriber, 2, 0);
+            sendData(publisher, subscriber, 2, 1);
+            pollUntil(subscriber, () -> received.size() == 5);
+
+            assertEquals(List.of(0L, 1L, 3L, 0L, 1L), received);
+            assertEquals(1, subscriber.restartCount());
+            assertEquals(0, subscriber.duplicateCount());
+            assertEquals(1, losses.size());
+            assertEquals(2, losses.get(0)[0]);
+            assertEquals(1, losses.get(0)[1]);
+            assertEquals(2, subscriber.nextSequence());
+        }
+    }
+
+    private EiderUdpSubscriber subscriber(final int windowDatagrams) throws IOException
+    {
+        return new EiderUdpSubscriber(new InetSocketAddress("localhost", 0), this::onMessage,
+            this::onLoss, EiderDatagram.DEFAULT_MAX_LENGTH, windowDatagrams, INTERVAL_NS,
+            SIZER);
+    }
+
+    private static EiderUdpPublisher publisher(final EiderUdpSubscriber subscriber, final int retransmitDatagrams)
+        throws IOException
+    {
+        return new EiderUdpPublisher(new InetSocketAddress("localhost", 0),
+            new InetSocketAddress[]{subscriber.localAddress()}, EiderDatagram.DEFAULT_MAX_LENGTH, retransmitDatagrams,
+            INTERVAL_NS, SIZER);
+    }
+
+    private static void drain(final EiderUdpPublisher publisher, final EiderUdpSubscriber subscriber)
+        throws IOException
+    {
+        publisher.flush();
+        final long deadlineNs = System.nanoTime() + DRAIN_TIMEOUT_NS;
+        while (subscriber.nextSequence() < publisher.nextSequence() && System.nanoTime() < deadlineNs)
+        {
+            publisher.poll();
+            subscriber.poll();
+        }
+    }
+
+    private void sendData(final DatagramChannel from, final EiderUdpSubscriber subscriber, final int sessionId,
+        final long sequence) throws IOException
+    {
+        encode(sequence, 0);
+        final ByteBuffer datagram = ByteBuffer.allocateDirect(EiderDatagram.HEADER_LENGTH + FIXED_LENGTH);
+        final UnsafeBuffer buffer = new UnsafeBuffer(datagram);
+        buffer.putShort(EiderDatagram.TYPE_OFFSET, EiderDatagram.TYPE_DATA, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(EiderDatagram.MESSAGE_COUNT_OFFSET, (short)1, ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(EiderDatagram.SESSION_ID_OFFSET, sessionId, ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(EiderDatagram.SEQUENCE_OFFSET, sequence, ByteOrder.LITTLE_ENDIAN);
+        buffer.putBytes(EiderDatagram.HEADER_LENGTH, message, 0, FIXED_LENGTH);
+        from.send(datagram, subscriber.localAddress());
+    }
+
+    private static void pollUntil(final EiderUdpSubscriber subscriber, final BooleanSupplier done)
+        throws IOException
+    {
+        while (!done.getAsBoolean())
+        {
+            subscriber.poll();
+        }
+    }
+
+    private void onLoss(final long fromSequence, final long count)
+    {
+        lost += count;
+        losses.add(new long[]{fromSequence, count});
+    }
+
+    private void encode(final long id, final int records)
+    {
+        message.putInt(EiderFraming.LENGTH_OFFSET, FIXED_LENGTH, ByteOrder.LITTLE_ENDIAN);
+        message.putShort(EiderFraming.PROTOCOL_ID_OFFSET, PROTOCOL_ID, ByteOrder.LITTLE_ENDIAN);
+        message.putInt(COUNT_OFFSET, records, ByteOrder.LITTLE_ENDIAN);
+        message.putLong(ID_OFFSET, id, ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < records; i++)
+        {
+            message.putLong(FIXED_LENGTH + i * RECORD_LENGTH, id, ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private void onMessage(final int typeId, final DirectBuffer buffer, final int offset, final int length)
+    {
+        assertEquals(PROTOCOL_ID, typeId);
+        final int records = buffer.getInt(offset + COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        assertEquals(FIXED_LENGTH + records * RECORD_LENGTH, length);
+        final long id = buffer.getLong(offset + ID_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < records; i++)
+        {
+            assertEquals(id, buffer.getLong(offset + FIXED_LENGTH + i * RECORD_LENGTH, ByteOrder.LITTLE_ENDIAN));
+        }
+        received.add(id);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright ©2019-2023 Shaun Laurens
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package io.eider.transport;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FrameReceiverTest
+{
+    private static final short PROTOCOL_ID = 7;
+    private static final int FIXED_LENGTH = 16;
+    private static final int COUNT_OFFSET = 12;
+    private static final int RECORD_LENGTH = Long.BYTES;
+    private static final EiderFraming.MessageSizer SIZER = (buffer, offset) ->
+        FIXED_LENGTH + buffer.getInt(offset + COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN) * RECORD_LENGTH;
+
+    @Test
+    void framesMessagesWithRecordsWhole() throws IOException
+    {
+        final Pipe pipe = Pipe.open();
+        final FrameSender sender = new FrameSender(1024, SIZER);
+        final UnsafeBuffer message = new UnsafeBuffer(new byte[256]);
+        for (int records = 0; records < 6; records++)
+        {
+            encode(message, records);
+            sender.offer(message, 0);
+        }
+        sender.flush(pipe.sink());
+
+        final List<Long> received = new ArrayList<>();
+        final FrameReceiver receiver = new FrameReceiver(1024, SIZER);
+        assertEquals(6, receiver.read(pipe.source(), (typeId, buffer, offset, length) ->
+            received.add(lastRecord(typeId, buffer, offset, length))));
+        for (int records = 0; records < 6; records++)
+        {
+            assertEquals(records == 0 ? -1L : records - 1L, received.get(records).longValue());
+        }
+        assertEquals(0, receiver.pendingBytes());
+    }
+
+    @Test
+    void completesMessagesSplitAcrossReads() throws IOException
+    {
+        final Pipe pipe = Pipe.open();
+        final UnsafeBuffer message = new UnsafeBuffer(new byte[256]);
+        final int length = encode(message, 3);
+        final List<Long> received = new ArrayList<>();
+        final FrameReceiver receiver = new FrameReceiver(64, SIZER);
+        for (int round = 0; round < 4; round++)
+        {
+            for (int i = 0; i < length; i++)
+            {
+                pipe.sink().write(ByteBuffer.wrap(message.byteArray(), i, 1));
+                receiver.read(pipe.source(), (typeId, buffer, offset, messageLength) ->
+                    received.add(lastRecord(typeId, buffer, offset, messageLength)));
+                assertEquals(round + (i == length - 1 ? 1 : 0), received.size());
+            }
+        }
+        assertEquals(List.of(2L, 2L, 2L, 2L), received);
+    }
+
+    @Test
+    void rejectsMessagesLongerThanTheBuffer() throws IOException
+    {
+        final Pipe pipe = Pipe.open();
+        final UnsafeBuffer message = new UnsafeBuffer(new byte[256]);
+        final int length = encode(message, 10);
+        pipe.sink().write(ByteBuffer.wrap(message.byteArray(), 0, length));
+
+        final FrameReceiver receiver = new FrameReceiver(64, SIZER);
+        assertThrows(EiderTransportException.class,
+            () -> receiver.read(pipe.source(), (typeId, buffer, offset, messageLength) -> { }));
+    }
+
+    private static int encode(final UnsafeBuffer buffer, final int records)
+    {
+        buffer.putInt(EiderFraming.LENGTH_OFFSET, FIXED_LENGTH, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(EiderFraming.PROTOCOL_ID_OFFSET, PROTOCOL_ID, ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(COUNT_OFFSET, records, ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < records; i++)
+        {
+            buffer.putLong(FIXED_LENGTH + i * RECORD_LENGTH, i, ByteOrder.LITTLE_ENDIAN);
+        }
+        return FIXED_LENGTH + records * RECORD_LENGTH;
+    }
+
+    private static long lastRecord(final int typeId, final DirectBuffer buffer, final int offset, final int length)
+    {
+        assertEquals(PROTOCOL_ID, typeId);
+        final int records = buffer.getInt(offset + COUNT_OFFSET, ByteOrder.LITTLE_ENDIAN);
+        assertEquals(FIXED_LENGTH + records * RECORD_LENGTH, length);
+        return records == 0 ? -1L : buffer.getLong(offset + length - RECORD_LENGTH, ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -14,4 +14,6 @@ include("eider-tool")
 include("eider-internals")
 include("eider-processor")
 include("eider-java-writer")
+include("eider-transport")
+include("eider-runtime")
 include("eider-test")